@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.benchmarks;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Lutece environment of the benchmarks : the plugin services and DAOs are booted the way the unit tests boot them, on the in-memory HSQL database of
+ * the test webapp
+ */
+public final class BenchmarkEnvironment extends LuteceTestCase
+{
+    private static BenchmarkEnvironment _instance;
+
+    /**
+     * Private constructor
+     */
+    private BenchmarkEnvironment( )
+    {
+    }
+
+    /**
+     * Boot the Lutece environment once for the benchmark JVM
+     * 
+     * @throws Exception
+     *             if the environment cannot be booted
+     */
+    public static synchronized void start( ) throws Exception
+    {
+        if ( _instance == null )
+        {
+            BenchmarkEnvironment environment = new BenchmarkEnvironment( );
+            environment.setUp( );
+            _instance = environment;
+        }
+    }
+
+    /**
+     * Shut the Lutece environment down
+     * 
+     * @throws Exception
+     *             if the environment cannot be shut down
+     */
+    public static synchronized void stop( ) throws Exception
+    {
+        if ( _instance != null )
+        {
+            _instance.tearDown( );
+            _instance = null;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Random;
+
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.FileStoreOutputStream;
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.IStreamingFileStoreServiceProvider;
+import fr.paris.lutece.portal.business.file.File;
+import fr.paris.lutece.portal.business.physicalfile.PhysicalFile;
+import fr.paris.lutece.portal.service.file.FileServiceException;
+import fr.paris.lutece.portal.service.file.IFileStoreServiceProvider;
+
+/**
+ * File store used as source or target of the transfer benchmarks. The provider is a dynamic proxy, so that the benchmarks do not depend on the
+ * methods of IFileStoreServiceProvider that the transfer engine does not call : those throw an UnsupportedOperationException.
+ */
+public abstract class BenchmarkFileStore implements InvocationHandler
+{
+    private static final int BLOCK_SIZE = 65536;
+
+    private final String _strName;
+    private volatile boolean _bDeleteEnabled = true;
+
+    /**
+     * Constructor
+     * 
+     * @param strName
+     *            the name of the provider
+     */
+    protected BenchmarkFileStore( String strName )
+    {
+        _strName = strName;
+    }
+
+    /**
+     * Get the name of the provider
+     * 
+     * @return the name
+     */
+    public String getName( )
+    {
+        return _strName;
+    }
+
+    /**
+     * Enable or disable the deletion of the files. A source store with deletion disabled serves the same file to every benchmark invocation.
+     * 
+     * @param bDeleteEnabled
+     *            true if the files are deleted
+     */
+    public void setDeleteEnabled( boolean bDeleteEnabled )
+    {
+        _bDeleteEnabled = bDeleteEnabled;
+    }
+
+    /**
+     * Create the provider backed by this store
+     * 
+     * @return the provider
+     */
+    public IStreamingFileStoreServiceProvider newProvider( )
+    {
+        return newProvider( IStreamingFileStoreServiceProvider.class );
+    }
+
+    /**
+     * Create the provider backed by this store, implementing the given provider interface : the transfer engine chooses its transfer route from the
+     * interfaces of the providers
+     * 
+     * @param <T>
+     *            the provider interface
+     * @param providerType
+     *            the provider interface
+     * @return the provider
+     */
+    public <T extends IFileStoreServiceProvider> T newProvider( Class<T> providerType )
+    {
+        return providerType.cast( Proxy.newProxyInstance( providerType.getClassLoader( ), new Class<?> [ ] {
+                providerType
+        }, this ) );
+    }
+
+    /**
+     * Store a file content
+     * 
+     * @param content
+     *            the content
+     * @return the key of the file
+     * @throws IOException
+     *             if the file cannot be stored
+     */
+    public String put( byte [ ] content ) throws IOException
+    {
+        File fileMetaData = new File( );
+        fileMetaData.setSize( content.length );
+
+        FileStoreOutputStream outputStream = openOutputStream( fileMetaData );
+        outputStream.write( content );
+        outputStream.close( );
+
+        return outputStream.getFileKey( );
+    }
+
+    /**
+     * Store a file of random content, written by blocks so that large files are not built in memory first
+     * 
+     * @param nSize
+     *            the size of the file
+     * @param random
+     *            the generator of the content
+     * @return the key of the file
+     * @throws IOException
+     *             if the file cannot be stored
+     */
+    public String putRandom( int nSize, Random random ) throws IOException
+    {
+        File fileMetaData = new File( );
+        fileMetaData.setSize( nSize );
+
+        byte [ ] block = new byte [ BLOCK_SIZE];
+        FileStoreOutputStream outputStream = openOutputStream( fileMetaData );
+
+        for ( int nWritten = 0; nWritten < nSize; nWritten += block.length )
+        {
+            random.nextBytes( block );
+            outputStream.write( block, 0, Math.min( block.length, nSize - nWritten ) );
+        }
+        outputStream.close( );
+
+        return outputStream.getFileKey( );
+    }
+
+    /**
+     * Get the size of a stored file
+     * 
+     * @param strKey
+     *            the key of the file
+     * @return the size, or -1 if there is no such file
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    protected abstract long size( String strKey ) throws IOException;
+
+    /**
+     * Open a stream reading a stored file
+     * 
+     * @param strKey
+     *            the key of the file
+     * @return the input stream
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    protected abstract InputStream openInputStream( String strKey ) throws IOException;
+
+    /**
+     * Open a stream storing a new file
+     * 
+     * @param fileMetaData
+     *            the metadata of the file
+     * @return the output stream
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    protected abstract FileStoreOutputStream openOutputStream( File fileMetaData ) throws IOException;
+
+    /**
+     * Remove a stored file
+     * 
+     * @param strKey
+     *            the key of the file
+     * @throws IOException
+     *             if the file cannot be removed
+     */
+    protected abstract void remove( String strKey ) throws IOException;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object invoke( Object proxy, Method method, Object [ ] args ) throws Throwable
+    {
+        try
+        {
+            switch( method.getName( ) )
+            {
+                case "getName":
+                    return _strName;
+                case "isDefault":
+                    return Boolean.FALSE;
+                case "getFileMetaData":
+                    return getFileMetaData( (String) args [0] );
+                case "getFile":
+                    return getFile( (String) args [0] );
+                case "getInputStream":
+                    return size( (String) args [0] ) < 0 ? null : openInputStream( (String) args [0] );
+                case "openFileOutputStream":
+                    return openOutputStream( (File) args [0] );
+                case "storeBytes":
+                    return put( (byte [ ]) args [0] );
+                case "storeInputStream":
+                    return put( ( (InputStream) args [0] ).readAllBytes( ) );
+                case "storeFile":
+                    return put( ( (File) args [0] ).getPhysicalFile( ).getValue( ) );
+                case "delete":
+                    if ( _bDeleteEnabled )
+                    {
+                        remove( (String) args [0] );
+                    }
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode( proxy );
+                case "equals":
+                    return proxy == args [0];
+                case "toString":
+                    return _strName;
+                default:
+                    throw new UnsupportedOperationException( method.getName( ) );
+            }
+        }
+        catch( IOException e )
+        {
+            throw new FileServiceException( e.getMessage( ), 500, e );
+        }
+    }
+
+    /**
+     * Get the metadata of a stored file
+     * 
+     * @param strKey
+     *            the key of the file
+     * @return the metadata, or null if there is no such file
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private File getFileMetaData( String strKey ) throws IOException
+    {
+        long lSize = size( strKey );
+
+        if ( lSize < 0 )
+        {
+            return null;
+        }
+
+        File file = new File( );
+        file.setFileKey( strKey );
+        file.setTitle( strKey );
+        file.setMimeType( "application/octet-stream" );
+        file.setSize( (int) lSize );
+
+        return file;
+    }
+
+    /**
+     * Get a stored file with its content
+     * 
+     * @param strKey
+     *            the key of the file
+     * @return the file, or null if there is no such file
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private File getFile( String strKey ) throws IOException
+    {
+        File file = getFileMetaData( strKey );
+
+        if ( file != null )
+        {
+            PhysicalFile physicalFile = new PhysicalFile( );
+
+            try ( InputStream inputStream = openInputStream( strKey ) )
+            {
+                physicalFile.setValue( inputStream.readAllBytes( ) );
+            }
+            file.setPhysicalFile( physicalFile );
+        }
+
+        return file;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.FileStoreOutputStream;
+import fr.paris.lutece.portal.business.file.File;
+
+/**
+ * Benchmark file store keeping the files in a directory of the local disk. Its providers may implement IFileSystemFileStoreServiceProvider, the
+ * key of a file being its name in the directory.
+ */
+public class DiskFileStore extends BenchmarkFileStore
+{
+    private final Path _directory;
+
+    /**
+     * Constructor
+     * 
+     * @param strName
+     *            the name of the provider
+     * @param directory
+     *            the directory of the files, created if needed
+     * @throws IOException
+     *             if the directory cannot be created
+     */
+    public DiskFileStore( String strName, Path directory ) throws IOException
+    {
+        super( strName );
+        _directory = Files.createDirectories( directory );
+    }
+
+    /**
+     * Get the directory of the files
+     * 
+     * @return the directory
+     */
+    public Path getDirectory( )
+    {
+        return _directory;
+    }
+
+    /**
+     * Remove the directory of the files and its content
+     * 
+     * @throws IOException
+     *             if a file cannot be removed
+     */
+    public void clear( ) throws IOException
+    {
+        try ( Stream<Path> files = Files.list( _directory ) )
+        {
+            for ( Path file : (Iterable<Path>) files::iterator )
+            {
+                Files.delete( file );
+            }
+        }
+        Files.delete( _directory );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long size( String strKey ) throws IOException
+    {
+        Path file = _directory.resolve( strKey );
+
+        return Files.exists( file ) ? Files.size( file ) : -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected InputStream openInputStream( String strKey ) throws IOException
+    {
+        return Files.newInputStream( _directory.resolve( strKey ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected FileStoreOutputStream openOutputStream( File fileMetaData ) throws IOException
+    {
+        String strKey = UUID.randomUUID( ).toString( );
+
+        return new DiskOutputStream( strKey, Files.newOutputStream( _directory.resolve( strKey ) ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void remove( String strKey ) throws IOException
+    {
+        Files.deleteIfExists( _directory.resolve( strKey ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object invoke( Object proxy, Method method, Object [ ] args ) throws Throwable
+    {
+        switch( method.getName( ) )
+        {
+            case "getFilePath":
+                Path file = _directory.resolve( (String) args [0] );
+                return Files.exists( file ) ? file : null;
+            case "newFilePath":
+                return _directory.resolve( UUID.randomUUID( ).toString( ) );
+            case "commitFilePath":
+                return ( (Path) args [0] ).getFileName( ).toString( );
+            default:
+                return super.invoke( proxy, method, args );
+        }
+    }
+
+    /**
+     * Output stream writing a file of the directory
+     */
+    private class DiskOutputStream extends FileStoreOutputStream
+    {
+        private final String _strKey;
+        private final OutputStream _outputStream;
+        private boolean _bClosed;
+
+        /**
+         * Constructor
+         * 
+         * @param strKey
+         *            the key of the file
+         * @param outputStream
+         *            the stream writing the file
+         */
+        DiskOutputStream( String strKey, OutputStream outputStream )
+        {
+            _strKey = strKey;
+            _outputStream = outputStream;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write( int b ) throws IOException
+        {
+            _outputStream.write( b );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write( byte [ ] b, int nOffset, int nLength ) throws IOException
+        {
+            _outputStream.write( b, nOffset, nLength );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close( ) throws IOException
+        {
+            _bClosed = true;
+            _outputStream.close( );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void abort( ) throws IOException
+        {
+            close( );
+            remove( _strKey );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getFileKey( )
+        {
+            return _bClosed ? _strKey : null;
+        }
+    }
+}
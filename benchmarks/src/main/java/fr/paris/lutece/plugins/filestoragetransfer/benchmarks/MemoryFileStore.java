@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.FileStoreOutputStream;
+import fr.paris.lutece.portal.business.file.File;
+
+/**
+ * Benchmark file store keeping the files in memory
+ */
+public class MemoryFileStore extends BenchmarkFileStore
+{
+    private final Map<String, byte [ ]> _mapFiles = new ConcurrentHashMap<>( );
+    private final AtomicLong _lastKey = new AtomicLong( );
+
+    /**
+     * Constructor
+     * 
+     * @param strName
+     *            the name of the provider
+     */
+    public MemoryFileStore( String strName )
+    {
+        super( strName );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long size( String strKey )
+    {
+        byte [ ] content = _mapFiles.get( strKey );
+
+        return content == null ? -1 : content.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected InputStream openInputStream( String strKey )
+    {
+        return new ByteArrayInputStream( _mapFiles.get( strKey ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected FileStoreOutputStream openOutputStream( File fileMetaData )
+    {
+        return new MemoryOutputStream( fileMetaData.getSize( ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void remove( String strKey )
+    {
+        _mapFiles.remove( strKey );
+    }
+
+    /**
+     * Output stream storing the content in the map of the files once closed
+     */
+    private class MemoryOutputStream extends FileStoreOutputStream
+    {
+        private final ByteArrayOutputStream _buffer;
+        private String _strKey;
+
+        /**
+         * Constructor
+         * 
+         * @param nExpectedSize
+         *            the expected size of the content
+         */
+        MemoryOutputStream( int nExpectedSize )
+        {
+            _buffer = new ByteArrayOutputStream( Math.max( nExpectedSize, 32 ) );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write( int b )
+        {
+            _buffer.write( b );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write( byte [ ] b, int nOffset, int nLength )
+        {
+            _buffer.write( b, nOffset, nLength );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close( )
+        {
+            if ( _strKey == null )
+            {
+                _strKey = getName( ) + "-" + _lastKey.incrementAndGet( );
+                _mapFiles.put( _strKey, _buffer.toByteArray( ) );
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getFileKey( )
+        {
+            return _strKey;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.benchmarks;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequest;
+import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequestFilter;
+import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequestHome;
+import fr.paris.lutece.plugins.filestoragetransfer.business.RequestStatus;
+import fr.paris.lutece.plugins.filestoragetransfer.service.TransferDispatcherService;
+
+/**
+ * Benchmarks of the request DAO on the in-memory HSQL database : selection of the requests to execute, creation of a request and update of its
+ * status. The table is filled with requests of which one in ten is due, the others being done.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 5 )
+@Measurement( iterations = 5, time = 5 )
+@Fork( 1 )
+public class RequestDaoBenchmark
+{
+    private static final String SOURCE = "benchmarkSource";
+    private static final String TARGET = "benchmarkTarget";
+    private static final int DUE_RATIO = 10;
+
+    /**
+     * Number of requests in the table
+     */
+    @Param( {
+            "1000", "100000"
+    } )
+    public int _nRequestCount;
+
+    /**
+     * Number of requests selected for execution
+     */
+    @Param( {
+            "100"
+    } )
+    public int _nBatchSize;
+
+    /**
+     * Fill the table of the requests
+     * 
+     * @throws Exception
+     *             if the environment cannot be booted
+     */
+    @Setup( Level.Trial )
+    public void setUp( ) throws Exception
+    {
+        BenchmarkEnvironment.start( );
+
+        // the due requests must stay in the table instead of being executed by the dispatcher
+        TransferDispatcherService.stop( );
+
+        Timestamp past = Timestamp.from( Instant.now( ).minusSeconds( 3600 ) );
+        List<FileTransferRequest> listRequests = new ArrayList<>( _nRequestCount );
+
+        for ( int i = 0; i < _nRequestCount; i++ )
+        {
+            FileTransferRequest request = newRequest( "benchmarkKey" + i );
+            request.setExecutionTime( past );
+            request.setRequestStatus( i % DUE_RATIO == 0 ? RequestStatus.STATUS_TODO : RequestStatus.STATUS_DONE );
+            listRequests.add( request );
+        }
+
+        FileTransferRequestHome.createAll( listRequests );
+    }
+
+    /**
+     * Remove the requests of the benchmark
+     */
+    @TearDown( Level.Trial )
+    public void tearDown( )
+    {
+        FileTransferRequestFilter filter = new FileTransferRequestFilter( );
+        filter.setSourceFileserviceproviderName( SOURCE );
+        FileTransferRequestHome.deleteByFilter( filter );
+    }
+
+    /**
+     * Selection of the due requests
+     * 
+     * @return the selected requests
+     */
+    @Benchmark
+    public List<FileTransferRequest> selectRequestsListToExecute( )
+    {
+        return FileTransferRequestHome.selectRequestsListByStatusAndExecutionTime( Timestamp.from( Instant.now( ) ), _nBatchSize );
+    }
+
+    /**
+     * Creation of a request, which is not due so that the selection benchmark is not affected
+     * 
+     * @return the created request
+     */
+    @Benchmark
+    public FileTransferRequest insert( )
+    {
+        FileTransferRequest request = newRequest( "benchmarkInsertedKey" );
+        request.setExecutionTime( Timestamp.from( Instant.now( ).plusSeconds( 86400 ) ) );
+
+        return FileTransferRequestHome.create( request );
+    }
+
+    /**
+     * Update of the status of a request owned by the benchmark thread
+     * 
+     * @param state
+     *            the request of the thread
+     * @return the updated request
+     */
+    @Benchmark
+    public FileTransferRequest updateStatus( ThreadRequest state )
+    {
+        FileTransferRequest request = state._request;
+        request.setRequestStatus( request.getRequestStatus( ) == RequestStatus.STATUS_IN_PROGRESS ? RequestStatus.STATUS_DONE
+                : RequestStatus.STATUS_IN_PROGRESS );
+
+        return FileTransferRequestHome.update( request );
+    }
+
+    /**
+     * Create a request of the benchmark
+     * 
+     * @param strKey
+     *            the key of the file
+     * @return the request
+     */
+    private static FileTransferRequest newRequest( String strKey )
+    {
+        return new FileTransferRequest( strKey, SOURCE, TARGET, null, null );
+    }
+
+    /**
+     * Request updated by a benchmark thread
+     */
+    @State( Scope.Thread )
+    public static class ThreadRequest
+    {
+        private FileTransferRequest _request;
+
+        /**
+         * Create the request of the thread
+         * 
+         * @throws Exception
+         *             if the environment cannot be booted
+         */
+        @Setup( Level.Trial )
+        public void setUp( ) throws Exception
+        {
+            BenchmarkEnvironment.start( );
+
+            FileTransferRequest request = newRequest( "benchmarkUpdatedKey" );
+            request.setExecutionTime( Timestamp.from( Instant.now( ).plusSeconds( 86400 ) ) );
+            request.setRequestStatus( RequestStatus.STATUS_DONE );
+            _request = FileTransferRequestHome.create( request );
+        }
+    }
+}
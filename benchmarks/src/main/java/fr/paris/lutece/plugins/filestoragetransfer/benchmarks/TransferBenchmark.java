@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.paris.lutece.plugins.filestoragetransfer.service.FileSwitcherService;
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.IStreamingFileStoreServiceProvider;
+import fr.paris.lutece.portal.service.file.FileServiceException;
+
+/**
+ * Benchmarks of the transfer path : streaming copy, checksum verification, throttling and metrics, between two stores of the same kind. The source file
+ * is never deleted so that every invocation transfers it again, and the transferred file is removed from the target at the end of the invocation.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 5 )
+@Measurement( iterations = 5, time = 10 )
+@Fork( 1 )
+public class TransferBenchmark
+{
+    private static final String STORAGE_MEMORY = "memory";
+    private static final String STORAGE_DISK = "disk";
+    private static final String PROPERTY_DIRECTORY = "benchmark.dir";
+
+    /**
+     * Size of the transferred file : 1 KB, 1 MB, 64 MB and 1 GB
+     */
+    @Param( {
+            "1024", "1048576", "67108864", "1073741824"
+    } )
+    public int _nFileSize;
+
+    /**
+     * Kind of the source and target stores
+     */
+    @Param( {
+            STORAGE_MEMORY, STORAGE_DISK
+    } )
+    public String _strStorage;
+
+    private BenchmarkFileStore _source;
+    private BenchmarkFileStore _target;
+    private IStreamingFileStoreServiceProvider _sourceProvider;
+    private IStreamingFileStoreServiceProvider _targetProvider;
+    private String _strSourceKey;
+
+    /**
+     * Create the stores and the source file
+     * 
+     * @throws Exception
+     *             if the environment or the stores cannot be created
+     */
+    @Setup( Level.Trial )
+    public void setUp( ) throws Exception
+    {
+        BenchmarkEnvironment.start( );
+
+        if ( STORAGE_DISK.equals( _strStorage ) )
+        {
+            String strDirectory = System.getProperty( PROPERTY_DIRECTORY, System.getProperty( "java.io.tmpdir" ) );
+            Path root = Files.createTempDirectory( Paths.get( strDirectory ), "filestoragetransfer-benchmark" );
+            _source = new DiskFileStore( "benchmarkDiskSource", root.resolve( "source" ) );
+            _target = new DiskFileStore( "benchmarkDiskTarget", root.resolve( "target" ) );
+        }
+        else
+        {
+            _source = new MemoryFileStore( "benchmarkMemorySource" );
+            _target = new MemoryFileStore( "benchmarkMemoryTarget" );
+        }
+
+        _source.setDeleteEnabled( false );
+        _sourceProvider = _source.newProvider( );
+        _targetProvider = _target.newProvider( );
+        _strSourceKey = _source.putRandom( _nFileSize, new Random( 42 ) );
+    }
+
+    /**
+     * Remove the files of the disk stores
+     * 
+     * @throws IOException
+     *             if a file cannot be removed
+     */
+    @TearDown( Level.Trial )
+    public void tearDown( ) throws IOException
+    {
+        if ( _source instanceof DiskFileStore )
+        {
+            ( (DiskFileStore) _source ).clear( );
+            ( (DiskFileStore) _target ).clear( );
+            Files.delete( ( (DiskFileStore) _source ).getDirectory( ).getParent( ) );
+        }
+    }
+
+    /**
+     * One transfer at a time
+     * 
+     * @return the key of the transferred file
+     * @throws FileServiceException
+     *             if the transfer fails
+     */
+    @Benchmark
+    @Threads( 1 )
+    public String transfer( ) throws FileServiceException
+    {
+        return transferOnce( );
+    }
+
+    /**
+     * Four concurrent transfers of the same source file
+     * 
+     * @return the key of the transferred file
+     * @throws FileServiceException
+     *             if the transfer fails
+     */
+    @Benchmark
+    @Threads( 4 )
+    public String transfer4Threads( ) throws FileServiceException
+    {
+        return transferOnce( );
+    }
+
+    /**
+     * Sixteen concurrent transfers of the same source file
+     * 
+     * @return the key of the transferred file
+     * @throws FileServiceException
+     *             if the transfer fails
+     */
+    @Benchmark
+    @Threads( 16 )
+    public String transfer16Threads( ) throws FileServiceException
+    {
+        return transferOnce( );
+    }
+
+    /**
+     * Transfer the source file and remove the transferred file
+     * 
+     * @return the key of the transferred file
+     * @throws FileServiceException
+     *             if the transfer fails
+     */
+    private String transferOnce( ) throws FileServiceException
+    {
+        String strNewKey = FileSwitcherService.TransferFileToNewFileService( _strSourceKey, _sourceProvider, _targetProvider );
+        _targetProvider.delete( strNewKey );
+
+        return strNewKey;
+    }
+}
@@ -56,6 +56,8 @@ public class FileRequestError implements Serializable
 
     private String _strErrorTrace;
 
+    private String _strFingerprint;
+
     private Timestamp _tExecutionTime;
 
     public FileRequestError( )
@@ -179,6 +181,27 @@ public class FileRequestError implements Serializable
         _strErrorTrace = strErrorTrace;
     }
 
+    /**
+     * Returns the Fingerprint of the trace, null for the errors whose trace is stored with them
+     * 
+     * @return the Fingerprint
+     */
+    public String getFingerprint( )
+    {
+        return _strFingerprint;
+    }
+
+    /**
+     * Sets the Fingerprint of the trace
+     * 
+     * @param strFingerprint
+     *            The Fingerprint
+     */
+    public void setFingerprint( String strFingerprint )
+    {
+        _strFingerprint = strFingerprint;
+    }
+
     /**
      * Get the ExecutionTime
      * 
@@ -37,11 +37,18 @@ package fr.paris.lutece.plugins.filestoragetransfer.business;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.util.ReferenceList;
 import fr.paris.lutece.util.sql.DAOUtil;
+import fr.paris.lutece.portal.service.util.AppException;
+
 import java.sql.Statement;
+import java.sql.Timestamp;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
 
 /**
  * This class provides Data Access methods for Error objects
@@ -49,16 +56,25 @@ import java.util.Optional;
 public final class FileRequestErrorDAO implements IFileRequestErrorDAO
 {
     // Constants
-    private static final String SQL_QUERY_INSERT = "INSERT INTO filestoragetransfer_error ( id_request, code, error_message, error_trace, execution_time ) VALUES ( ?, ?, ?, ?, ? ) ";
+    private static final String SQL_QUERY_INSERT = "INSERT INTO filestoragetransfer_error ( id_request, code, error_message, error_trace, fingerprint, execution_time ) VALUES ( ?, ?, ?, ?, ?, ? ) ";
     private static final String SQL_QUERY_DELETE = "DELETE FROM filestoragetransfer_error WHERE id_error = ? ";
-    private static final String SQL_QUERY_UPDATE = "UPDATE filestoragetransfer_error SET id_request = ?, code = ?, error_message = ?,  error_trace = ?, execution_time = ? WHERE id_error = ?";
+    private static final String SQL_QUERY_UPDATE = "UPDATE filestoragetransfer_error SET id_request = ?, code = ?, error_message = ?,  error_trace = ?, fingerprint = ?, execution_time = ? WHERE id_error = ?";
 
-    private static final String SQL_QUERY_SELECTALL = "SELECT id_error, id_request, code, error_message, error_trace, execution_time FROM filestoragetransfer_error";
+    // the errors with a fingerprint share the trace of the trace table, the older errors hold their own trace
+    private static final String SQL_QUERY_SELECTALL = "SELECT e.id_error, e.id_request, e.code, e.error_message, COALESCE( t.error_trace, e.error_trace ), e.fingerprint, e.execution_time"
+            + " FROM filestoragetransfer_error e LEFT JOIN filestoragetransfer_error_trace t ON t.fingerprint = e.fingerprint";
     private static final String SQL_QUERY_SELECTALL_ID = "SELECT id_error FROM filestoragetransfer_error";
 
-    private static final String SQL_QUERY_SELECTALL_BY_IDS = SQL_QUERY_SELECTALL + " WHERE id_error IN (  ";
-    private static final String SQL_QUERY_SELECT_BY_ID = SQL_QUERY_SELECTALL + " WHERE id_error = ?";
-    private static final String SQL_QUERY_SELECT_BY_ID_REQUEST = SQL_QUERY_SELECTALL + " WHERE id_request = ?";
+    private static final String SQL_QUERY_SELECTALL_BY_IDS = SQL_QUERY_SELECTALL + " WHERE e.id_error IN (  ";
+    private static final String SQL_QUERY_SELECT_BY_ID = SQL_QUERY_SELECTALL + " WHERE e.id_error = ?";
+    private static final String SQL_QUERY_SELECT_BY_ID_REQUEST = SQL_QUERY_SELECTALL + " WHERE e.id_request = ?";
+    private static final String SQL_QUERY_SELECT_TRACE = "SELECT fingerprint FROM filestoragetransfer_error_trace WHERE fingerprint = ?";
+    private static final String SQL_QUERY_INSERT_TRACE = "INSERT INTO filestoragetransfer_error_trace ( fingerprint, error_trace, creation_time ) VALUES ( ?, ?, ? ) ";
+
+    private static final int MAX_KNOWN_FINGERPRINTS = 1000;
+
+    // fingerprints known to be stored, sparing a query for each error of an outage
+    private final Set<String> _setKnownFingerprints = ConcurrentHashMap.newKeySet( );
 
     /**
      * {@inheritDoc }
@@ -66,13 +82,19 @@ public final class FileRequestErrorDAO implements IFileRequestErrorDAO
     @Override
     public void insert( FileRequestError error, Plugin plugin )
     {
+        if ( error.getFingerprint( ) != null )
+        {
+            insertTraceIfAbsent( error, plugin );
+        }
+
         try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, Statement.RETURN_GENERATED_KEYS, plugin ) )
         {
             int nIndex = 1;
             daoUtil.setInt( nIndex++, error.getIdRequest( ) );
             daoUtil.setInt( nIndex++, error.getCode( ) );
             daoUtil.setString( nIndex++, error.getErrorMessage( ) );
-            daoUtil.setString( nIndex++, error.getErrorTrace( ) );
+            daoUtil.setString( nIndex++, getOwnTrace( error ) );
+            daoUtil.setString( nIndex++, error.getFingerprint( ) );
             daoUtil.setTimestamp( nIndex++, error.getExecutionTime( ) );
 
             daoUtil.executeUpdate( );
@@ -124,6 +146,11 @@ public final class FileRequestErrorDAO implements IFileRequestErrorDAO
     @Override
     public void store( FileRequestError error, Plugin plugin )
     {
+        if ( error.getFingerprint( ) != null )
+        {
+            insertTraceIfAbsent( error, plugin );
+        }
+
         try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE, plugin ) )
         {
             int nIndex = 1;
@@ -131,7 +158,9 @@ public final class FileRequestErrorDAO implements IFileRequestErrorDAO
             daoUtil.setInt( nIndex++, error.getIdRequest( ) );
             daoUtil.setInt( nIndex++, error.getCode( ) );
             daoUtil.setString( nIndex++, error.getErrorMessage( ) );
-            daoUtil.setString( nIndex++, error.getErrorTrace( ) );
+            daoUtil.setString( nIndex++, getOwnTrace( error ) );
+            daoUtil.setString( nIndex++, error.getFingerprint( ) );
+            daoUtil.setTimestamp( nIndex++, error.getExecutionTime( ) );
             daoUtil.setInt( nIndex, error.getId( ) );
 
             daoUtil.executeUpdate( );
@@ -264,6 +293,81 @@ public final class FileRequestErrorDAO implements IFileRequestErrorDAO
         return errorList;
     }
 
+    /**
+     * Insert the trace of an error in the trace table, unless a trace with the same fingerprint is already stored
+     * 
+     * @param error
+     *            the error
+     * @param plugin
+     *            the Plugin
+     */
+    private void insertTraceIfAbsent( FileRequestError error, Plugin plugin )
+    {
+        String strFingerprint = error.getFingerprint( );
+
+        if ( _setKnownFingerprints.contains( strFingerprint ) )
+        {
+            return;
+        }
+
+        if ( !isTraceStored( strFingerprint, plugin ) )
+        {
+            try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT_TRACE, plugin ) )
+            {
+                daoUtil.setString( 1, strFingerprint );
+                daoUtil.setString( 2, StringUtils.defaultString( error.getErrorTrace( ) ) );
+                daoUtil.setTimestamp( 3, new Timestamp( System.currentTimeMillis( ) ) );
+                daoUtil.executeUpdate( );
+            }
+            catch( AppException e )
+            {
+                // the same trace may have been inserted by a concurrent error
+                if ( !isTraceStored( strFingerprint, plugin ) )
+                {
+                    throw e;
+                }
+            }
+        }
+
+        if ( _setKnownFingerprints.size( ) >= MAX_KNOWN_FINGERPRINTS )
+        {
+            _setKnownFingerprints.clear( );
+        }
+        _setKnownFingerprints.add( strFingerprint );
+    }
+
+    /**
+     * Tell if a trace is stored in the trace table
+     * 
+     * @param strFingerprint
+     *            the fingerprint of the trace
+     * @param plugin
+     *            the Plugin
+     * @return true if the trace is stored
+     */
+    private static boolean isTraceStored( String strFingerprint, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_TRACE, plugin ) )
+        {
+            daoUtil.setString( 1, strFingerprint );
+            daoUtil.executeQuery( );
+
+            return daoUtil.next( );
+        }
+    }
+
+    /**
+     * Get the trace stored with an error : empty if it is stored in the trace table
+     * 
+     * @param error
+     *            the error
+     * @return the trace
+     */
+    private static String getOwnTrace( FileRequestError error )
+    {
+        return error.getFingerprint( ) != null ? "" : error.getErrorTrace( );
+    }
+
     private FileRequestError loadFromDaoUtil( DAOUtil daoUtil )
     {
 
@@ -275,6 +379,7 @@ public final class FileRequestErrorDAO implements IFileRequestErrorDAO
         error.setCode( daoUtil.getInt( nIndex++) );
         error.setErrorMessage( daoUtil.getString( nIndex++ ) );
         error.setErrorTrace( daoUtil.getString( nIndex++ ) );
+        error.setFingerprint( daoUtil.getString( nIndex++ ) );
         error.setExecutionTime( daoUtil.getTimestamp( nIndex ) );
 
         return error;
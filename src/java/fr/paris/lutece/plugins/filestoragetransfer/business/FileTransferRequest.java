@@ -77,6 +77,14 @@ public class FileTransferRequest implements Serializable
 
     private String _strContactMail;
 
+    private String _strOwnerNode;
+
+    private Timestamp _tLeaseExpiration;
+
+    private String _strClaimToken;
+
+    private String _strChecksum;
+
     // Constructor
     public FileTransferRequest( String oldFileKey, String sourceFileserviceproviderName , String targetFileserviceproviderName,
     String requestContext, String contactMail )
@@ -310,4 +318,98 @@ public class FileTransferRequest implements Serializable
         _strContactMail = strContactMail;
     }
 
+    /**
+     * Returns the identifier of the node holding the lease on this request
+     * 
+     * @return The OwnerNode
+     */
+    public String getOwnerNode( )
+    {
+        return _strOwnerNode;
+    }
+
+    /**
+     * Sets the identifier of the node holding the lease on this request
+     * 
+     * @param strOwnerNode
+     *            The OwnerNode
+     */
+    public void setOwnerNode( String strOwnerNode )
+    {
+        _strOwnerNode = strOwnerNode;
+    }
+
+    /**
+     * Get the LeaseExpiration
+     * 
+     * @return The LeaseExpiration
+     */
+    public Timestamp getLeaseExpiration( )
+    {
+        return _tLeaseExpiration;
+    }
+
+    /**
+     * Set the LeaseExpiration
+     * 
+     * @param tLeaseExpiration
+     *            The LeaseExpiration
+     */
+    public void setLeaseExpiration( Timestamp tLeaseExpiration )
+    {
+        _tLeaseExpiration = tLeaseExpiration;
+    }
+
+    /**
+     * Returns the token of the claim which granted the lease
+     * 
+     * @return The ClaimToken
+     */
+    public String getClaimToken( )
+    {
+        return _strClaimToken;
+    }
+
+    /**
+     * Sets the token of the claim which granted the lease
+     * 
+     * @param strClaimToken
+     *            The ClaimToken
+     */
+    public void setClaimToken( String strClaimToken )
+    {
+        _strClaimToken = strClaimToken;
+    }
+
+    /**
+     * Returns the checksum of the transferred file, as algorithm:value
+     * 
+     * @return The Checksum
+     */
+    public String getChecksum( )
+    {
+        return _strChecksum;
+    }
+
+    /**
+     * Sets the checksum of the transferred file, as algorithm:value
+     * 
+     * @param strChecksum
+     *            The Checksum
+     */
+    public void setChecksum( String strChecksum )
+    {
+        _strChecksum = strChecksum;
+    }
+
+    /**
+     * Release the lease held on this request
+     */
+    public void releaseLease( )
+    {
+        _strOwnerNode = null;
+        _tLeaseExpiration = null;
+        _strClaimToken = null;
+    }
+
 }
@@ -35,12 +35,19 @@
 package fr.paris.lutece.plugins.filestoragetransfer.business;
 
 import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
 import fr.paris.lutece.util.ReferenceList;
 import fr.paris.lutece.util.sql.DAOUtil;
+import fr.paris.lutece.util.sql.TransactionManager;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -48,12 +55,21 @@ import java.util.Optional;
  */
 public final class FileTransferRequestDAO implements IFileTransferRequestDAO
 {
+    // Properties
+    private static final String PROPERTY_SQL_LIMIT_SYNTAX = "filestoragetransfer.sql.limitSyntax";
+    private static final String LIMIT_SYNTAX_FETCH_FIRST = "fetchFirst";
+
     // Constants
-    private static final String SQL_QUERY_INSERT = "INSERT INTO filestoragetransfer_request ( old_file_key, source_fileserviceprovider_name, new_file_key, target_fileserviceprovider_name, request_status, retry_count ,execution_time, creation_time, request_context, contact_mail ) VALUES ( ?, ?, ?, ?, ?, ?, ?, ?, ?, ? ) ";
+    private static final String SQL_QUERY_INSERT = "INSERT INTO filestoragetransfer_request ( old_file_key, source_fileserviceprovider_name, new_file_key, target_fileserviceprovider_name, request_status, retry_count ,execution_time, creation_time, request_context, contact_mail, owner_node, lease_expiration, claim_token, checksum ) VALUES ( ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ? ) ";
     private static final String SQL_QUERY_DELETE = "DELETE FROM filestoragetransfer_request WHERE id_request = ? ";
-    private static final String SQL_QUERY_UPDATE = "UPDATE filestoragetransfer_request SET old_file_key = ?, source_fileserviceprovider_name = ?, new_file_key = ?, target_fileserviceprovider_name = ?, request_status = ?, retry_count = ?, execution_time = ?, creation_time = ?, request_context = ?, contact_mail = ? WHERE id_request = ?";
+    private static final String SQL_QUERY_UPDATE = "UPDATE filestoragetransfer_request SET old_file_key = ?, source_fileserviceprovider_name = ?, new_file_key = ?, target_fileserviceprovider_name = ?, request_status = ?, retry_count = ?, execution_time = ?, creation_time = ?, request_context = ?, contact_mail = ?, owner_node = ?, lease_expiration = ?, claim_token = ?, checksum = ? WHERE id_request = ?";
+
+    // Lease fencing : a request executed under a lease is only updated by the node still holding the lease
+    private static final String SQL_FILTER_LEASE_HELD = " AND owner_node = ? AND claim_token = ? AND request_status = ?";
+    private static final String SQL_QUERY_UPDATE_LEASED = SQL_QUERY_UPDATE + SQL_FILTER_LEASE_HELD;
+    private static final String SQL_QUERY_RENEW_LEASE = "UPDATE filestoragetransfer_request SET lease_expiration = ? WHERE id_request = ?" + SQL_FILTER_LEASE_HELD;
 
-    private static final String SQL_QUERY_SELECTALL = "SELECT id_request, old_file_key, source_fileserviceprovider_name, new_file_key, target_fileserviceprovider_name, request_status, retry_count, execution_time, creation_time, request_context, contact_mail FROM filestoragetransfer_request";
+    private static final String SQL_QUERY_SELECTALL = "SELECT id_request, old_file_key, source_fileserviceprovider_name, new_file_key, target_fileserviceprovider_name, request_status, retry_count, execution_time, creation_time, request_context, contact_mail, owner_node, lease_expiration, claim_token, checksum FROM filestoragetransfer_request";
     private static final String SQL_QUERY_SELECTALL_ID = "SELECT id_request FROM filestoragetransfer_request";
 
     private static final String SQL_QUERY_SELECTALL_BY_IDS = SQL_QUERY_SELECTALL + " WHERE id_request IN (  ";
@@ -62,36 +78,227 @@ public final class FileTransferRequestDAO implements IFileTransferRequestDAO
     private static final String SQL_QUERY_SELECT_BY_STATUS = SQL_QUERY_SELECTALL + " WHERE request_status = ?";
     private static final String SQL_QUERY_SELECTALL_ID_BY_STATUS = SQL_QUERY_SELECTALL_ID + " WHERE request_status = ?";
 
-    private static final String SQL_FILTER_SELECT_TIMESTAMP_BEFORE= " AND execution_time < ?";
     private static final String SQL_FILTER_ORDER_BY_TIMESTAMP = " ORDER BY execution_time ASC";
 
+    // Due TODO and FAILED requests, served by the ( request_status, execution_time ) index
+    private static final String SQL_QUERY_SELECT_TO_EXECUTE = SQL_QUERY_SELECTALL + " WHERE request_status IN ( ?, ? ) AND execution_time < ?" + SQL_FILTER_ORDER_BY_TIMESTAMP;
+
+    // Work claiming : due TODO / FAILED requests, and IN_PROGRESS requests whose lease has expired
+    private static final String SQL_FILTER_CLAIMABLE = " ( ( request_status IN ( ?, ? ) AND execution_time < ? ) OR ( request_status = ? AND lease_expiration < ? ) )";
+    private static final String SQL_QUERY_SELECT_TO_CLAIM = "SELECT source_fileserviceprovider_name, target_fileserviceprovider_name, request_status, id_request FROM filestoragetransfer_request WHERE"
+            + SQL_FILTER_CLAIMABLE + SQL_FILTER_ORDER_BY_TIMESTAMP;
+    private static final String SQL_FILTER_LIMIT = " LIMIT ?";
+    private static final String SQL_FILTER_FETCH_FIRST = " FETCH FIRST ? ROWS ONLY";
+    private static final String SQL_FILTER_FOR_UPDATE_SKIP_LOCKED = " FOR UPDATE SKIP LOCKED";
+    private static final String SQL_QUERY_COUNT = "SELECT COUNT(*) FROM filestoragetransfer_request";
+    private static final String SQL_QUERY_REQUEUE = "UPDATE filestoragetransfer_request SET request_status = ?, retry_count = 0, execution_time = ?, owner_node = NULL, lease_expiration = NULL, claim_token = NULL";
+    private static final String SQL_QUERY_CANCEL = "UPDATE filestoragetransfer_request SET request_status = ?, owner_node = NULL, lease_expiration = NULL, claim_token = NULL";
+    private static final String SQL_QUERY_LOCK_BY_IDS = "SELECT id_request FROM filestoragetransfer_request WHERE request_status = ? AND id_request IN ( ";
+    private static final String SQL_FOR_UPDATE = " FOR UPDATE";
+    private static final String SQL_QUERY_DELETE_ERRORS_BY_IDS = "DELETE FROM filestoragetransfer_error WHERE id_request IN ( ";
+    private static final String SQL_QUERY_DELETE_CHECKPOINTS_BY_IDS = "DELETE FROM filestoragetransfer_checkpoint WHERE id_request IN ( ";
+    private static final String SQL_QUERY_DELETE_NOTIFICATIONS_BY_IDS = "DELETE FROM filestoragetransfer_notification WHERE id_request IN ( ";
+    private static final String SQL_QUERY_DELETE_BY_IDS = "DELETE FROM filestoragetransfer_request WHERE id_request IN ( ";
+    private static final String SQL_END_IN = " )";
+    private static final int DELETE_CHUNK_SIZE = 500;
+
+    // the bulk transitions only apply to these statuses : a DONE request has no source file left to transfer again
+    private static final RequestStatus [ ] REQUEUABLE_STATUS = {
+            RequestStatus.STATUS_FAILED, RequestStatus.STATUS_ERROR, RequestStatus.STATUS_CANCELED
+    };
+    private static final RequestStatus [ ] CANCELABLE_STATUS = {
+            RequestStatus.STATUS_TODO, RequestStatus.STATUS_FAILED, RequestStatus.STATUS_ERROR
+    };
+    private static final String SQL_FILTER_STATUS = "request_status = ?";
+    private static final String SQL_FILTER_STATUS_IN = "request_status IN ( ";
+    private static final String SQL_FILTER_NOT_STATUS = "request_status <> ?";
+    private static final String SQL_FILTER_SOURCE_PROVIDER = "source_fileserviceprovider_name = ?";
+    private static final String SQL_FILTER_TARGET_PROVIDER = "target_fileserviceprovider_name = ?";
+    private static final String SQL_FILTER_REQUEST_CONTEXT = "request_context = ?";
+    private static final String SQL_FILTER_ERROR_CODE = "id_request IN ( SELECT id_request FROM filestoragetransfer_error WHERE code = ? )";
+    private static final String SQL_FILTER_CREATION_TIME_FROM = "creation_time >= ?";
+    private static final String SQL_FILTER_CREATION_TIME_TO = "creation_time < ?";
+    private static final String SQL_QUERY_COUNT_LIMITED = "SELECT COUNT(*) FROM ( SELECT id_request FROM filestoragetransfer_request";
+    private static final String SQL_QUERY_COUNT_LIMITED_END = " ) counted";
+    private static final String SQL_FILTER_ID_BEFORE = "id_request < ?";
+    private static final String SQL_FILTER_ID_AFTER = "id_request > ?";
+    private static final String SQL_ORDER_BY_ID_DESC = " ORDER BY id_request DESC";
+    private static final String SQL_ORDER_BY_ID_ASC = " ORDER BY id_request ASC";
+    private static final String SQL_WHERE = " WHERE ";
+    private static final String SQL_AND = " AND ";
+    private static final String SQL_QUERY_SELECT_NEXT_EXECUTION_TIME = "SELECT MIN(execution_time) FROM filestoragetransfer_request WHERE request_status IN ( ?, ? )";
+    private static final String SQL_QUERY_CLAIM = "UPDATE filestoragetransfer_request SET request_status = ?, owner_node = ?, lease_expiration = ?, claim_token = ? WHERE id_request IN ( ";
+    private static final String SQL_QUERY_SELECT_CLAIMED = SQL_QUERY_SELECTALL + " WHERE claim_token = ? AND id_request IN ( ";
+    private static final String SQL_QUERY_SELECT_GROUPS = "SELECT DISTINCT source_fileserviceprovider_name, target_fileserviceprovider_name, request_status FROM filestoragetransfer_request";
+    private static final String SQL_QUERY_SELECT_GROUPS_ID = "SELECT source_fileserviceprovider_name, target_fileserviceprovider_name, request_status, id_request FROM filestoragetransfer_request";
+    private static final String SQL_QUERY_LOCK_GROUP_BY_ID = SQL_QUERY_SELECT_GROUPS_ID + " WHERE id_request = ?" + SQL_FOR_UPDATE;
+    private static final String SQL_FILTER_GROUP = " AND source_fileserviceprovider_name = ? AND target_fileserviceprovider_name = ? AND request_status = ?";
+    private static final String SQL_QUERY_COUNT_COMPLETED_SINCE = SQL_QUERY_COUNT + " WHERE request_status = ? AND execution_time >= ?";
+
+    // the status counters are updated in the transaction of every status transition
+    private IStatusCounterDAO _statusCounterDAO;
+    private IListenerNotificationDAO _listenerNotificationDAO;
+
+    /**
+     * Set the DAO of the status counters, updated with the requests
+     * 
+     * @param statusCounterDAO
+     *            the filestoragetransfer.statusCounterDAO bean
+     */
+    public void setStatusCounterDAO( IStatusCounterDAO statusCounterDAO )
+    {
+        _statusCounterDAO = statusCounterDAO;
+    }
+
+    /**
+     * Set the DAO of the listener notifications, written with the completion of the requests
+     * 
+     * @param listenerNotificationDAO
+     *            the filestoragetransfer.listenerNotificationDAO bean
+     */
+    public void setListenerNotificationDAO( IListenerNotificationDAO listenerNotificationDAO )
+    {
+        _listenerNotificationDAO = listenerNotificationDAO;
+    }
+
     /**
      * {@inheritDoc }
      */
     @Override
     public void insert( FileTransferRequest request, Plugin plugin )
     {
-        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, Statement.RETURN_GENERATED_KEYS, plugin ) )
+        _statusCounterDAO.insertMissing( request.getSourceFileserviceproviderName( ), request.getTargetFileserviceproviderName( ), plugin );
+
+        TransactionManager.beginTransaction( plugin );
+        try
         {
-            int nIndex = 1;
-            daoUtil.setString( nIndex++, request.getOldFileKey( ) );
-            daoUtil.setString( nIndex++, request.getSourceFileserviceproviderName( ) );
-            daoUtil.setString( nIndex++, request.getNewFileKey( ) );
-            daoUtil.setString( nIndex++, request.getTargetFileserviceproviderName( ) );
-            daoUtil.setString( nIndex++, request.getRequestStatus( ).getValue() );
-            daoUtil.setInt( nIndex++, request.getRetryCount( ) );
-            daoUtil.setTimestamp( nIndex++, request.getExecutionTime( ) );
-            daoUtil.setTimestamp( nIndex++, request.getCreationTime( ) );
-            daoUtil.setString( nIndex++, request.getRequestContext( ) );
-            daoUtil.setString( nIndex, request.getContactMail( ) );
+            try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, Statement.RETURN_GENERATED_KEYS, plugin ) )
+            {
+                setInsertParameters( daoUtil, request );
+
+                daoUtil.executeUpdate( );
+                if ( daoUtil.nextGeneratedKey( ) )
+                {
+                    request.setId( daoUtil.getGeneratedKeyInt( 1 ) );
+                }
+            }
 
-            daoUtil.executeUpdate( );
-            if ( daoUtil.nextGeneratedKey( ) )
+            StatusCounterDeltas deltas = new StatusCounterDeltas( );
+            deltas.addTransition( null, request );
+            _statusCounterDAO.applyDeltas( deltas.getDeltas( ), plugin );
+
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin, e );
+            throw new AppException( "Unable to insert the file transfer request : " + e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void insertAll( Collection<FileTransferRequest> requests, int nBatchSize, Plugin plugin )
+    {
+        List<FileTransferRequest> listChunk = new ArrayList<>( );
+
+        for ( FileTransferRequest request : requests )
+        {
+            listChunk.add( request );
+
+            if ( listChunk.size( ) >= nBatchSize )
             {
-                request.setId( daoUtil.getGeneratedKeyInt( 1 ) );
+                insertChunk( listChunk, plugin );
+                listChunk.clear( );
             }
         }
 
+        if ( !listChunk.isEmpty( ) )
+        {
+            insertChunk( listChunk, plugin );
+        }
+    }
+
+    /**
+     * Insert requests with a single batch statement, in a transaction
+     * 
+     * @param listRequests
+     *            the requests to insert
+     * @param plugin
+     *            the Plugin
+     */
+    private void insertChunk( List<FileTransferRequest> listRequests, Plugin plugin )
+    {
+        StatusCounterDeltas deltas = new StatusCounterDeltas( );
+
+        for ( FileTransferRequest request : listRequests )
+        {
+            _statusCounterDAO.insertMissing( request.getSourceFileserviceproviderName( ), request.getTargetFileserviceproviderName( ), plugin );
+            deltas.addTransition( null, request );
+        }
+
+        TransactionManager.beginTransaction( plugin );
+        try
+        {
+            try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, Statement.RETURN_GENERATED_KEYS, plugin ) )
+            {
+                for ( FileTransferRequest request : listRequests )
+                {
+                    setInsertParameters( daoUtil, request );
+                    daoUtil.addBatch( );
+                }
+
+                daoUtil.executeBatch( );
+
+                // the generated keys are returned in the order of the batch
+                for ( FileTransferRequest request : listRequests )
+                {
+                    if ( !daoUtil.nextGeneratedKey( ) )
+                    {
+                        throw new AppException( "Missing generated key for a batch inserted file transfer request" );
+                    }
+                    request.setId( daoUtil.getGeneratedKeyInt( 1 ) );
+                }
+            }
+
+            _statusCounterDAO.applyDeltas( deltas.getDeltas( ), plugin );
+
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin, e );
+            throw new AppException( "Unable to insert the file transfer requests : " + e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Set the parameters of the insert statement
+     * 
+     * @param daoUtil
+     *            the insert statement
+     * @param request
+     *            the request to insert
+     */
+    private static void setInsertParameters( DAOUtil daoUtil, FileTransferRequest request )
+    {
+        int nIndex = 1;
+        daoUtil.setString( nIndex++, request.getOldFileKey( ) );
+        daoUtil.setString( nIndex++, request.getSourceFileserviceproviderName( ) );
+        daoUtil.setString( nIndex++, request.getNewFileKey( ) );
+        daoUtil.setString( nIndex++, request.getTargetFileserviceproviderName( ) );
+        daoUtil.setString( nIndex++, request.getRequestStatus( ).getValue() );
+        daoUtil.setInt( nIndex++, request.getRetryCount( ) );
+        daoUtil.setTimestamp( nIndex++, request.getExecutionTime( ) );
+        daoUtil.setTimestamp( nIndex++, request.getCreationTime( ) );
+        daoUtil.setString( nIndex++, request.getRequestContext( ) );
+        daoUtil.setString( nIndex++, request.getContactMail( ) );
+        daoUtil.setString( nIndex++, request.getOwnerNode( ) );
+        daoUtil.setTimestamp( nIndex++, request.getLeaseExpiration( ) );
+        daoUtil.setString( nIndex++, request.getClaimToken( ) );
+        daoUtil.setString( nIndex, request.getChecksum( ) );
     }
 
     /**
@@ -121,10 +328,30 @@ public final class FileTransferRequestDAO implements IFileTransferRequestDAO
     @Override
     public void delete( int nKey, Plugin plugin )
     {
-        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE, plugin ) )
+        TransactionManager.beginTransaction( plugin );
+        try
         {
-            daoUtil.setInt( 1, nKey );
-            daoUtil.executeUpdate( );
+            Optional<FileTransferRequest> request = load( nKey, plugin );
+
+            try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE, plugin ) )
+            {
+                daoUtil.setInt( 1, nKey );
+                daoUtil.executeUpdate( );
+            }
+
+            if ( request.isPresent( ) )
+            {
+                StatusCounterDeltas deltas = new StatusCounterDeltas( );
+                deltas.addTransition( request.get( ), null );
+                _statusCounterDAO.applyDeltas( deltas.getDeltas( ), plugin );
+            }
+
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin, e );
+            throw new AppException( "Unable to delete the file transfer request : " + e.getMessage( ), e );
         }
     }
 
@@ -134,7 +361,139 @@ public final class FileTransferRequestDAO implements IFileTransferRequestDAO
     @Override
     public void store( FileTransferRequest request, Plugin plugin )
     {
-        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE, plugin ) )
+        storeCompletion( request, Collections.emptyList( ), plugin );
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void storeCompletion( FileTransferRequest request, Collection<String> listListenerNames, Plugin plugin )
+    {
+        _statusCounterDAO.insertMissing( request.getSourceFileserviceproviderName( ), request.getTargetFileserviceproviderName( ), plugin );
+
+        TransactionManager.beginTransaction( plugin );
+        try
+        {
+            // only the columns of the counter are read, the row is locked so that the transition is counted once
+            Collection<RequestGroup> previousGroup;
+            try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_LOCK_GROUP_BY_ID, plugin ) )
+            {
+                daoUtil.setInt( 1, request.getId( ) );
+                previousGroup = readGroups( daoUtil, false );
+            }
+
+            update( request, plugin );
+
+            // the counters are only updated when the request changes of counter, most updates keep their status
+            for ( RequestGroup group : previousGroup )
+            {
+                if ( !group.contains( request ) )
+                {
+                    StatusCounterDeltas deltas = new StatusCounterDeltas( );
+                    deltas.add( group._strSourceFileserviceproviderName, group._strTargetFileserviceproviderName, group._status, -1 );
+                    deltas.add( request.getSourceFileserviceproviderName( ), request.getTargetFileserviceproviderName( ), request.getRequestStatus( ), 1 );
+                    _statusCounterDAO.applyDeltas( deltas.getDeltas( ), plugin );
+                }
+            }
+
+            _listenerNotificationDAO.insertAll( request.getId( ), listListenerNames, plugin );
+
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin, e );
+            throw new AppException( "Unable to update the file transfer request : " + e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean storeLeased( FileTransferRequest request, String strOwnerNode, String strClaimToken, Collection<String> listListenerNames,
+            Plugin plugin )
+    {
+        _statusCounterDAO.insertMissing( request.getSourceFileserviceproviderName( ), request.getTargetFileserviceproviderName( ), plugin );
+
+        TransactionManager.beginTransaction( plugin );
+        try
+        {
+            if ( update( request, strOwnerNode, strClaimToken, plugin ) == 0 )
+            {
+                // the lease has expired and the request may have been claimed again : its new owner's record is left untouched
+                TransactionManager.commitTransaction( plugin );
+                return false;
+            }
+
+            // the fenced row was IN_PROGRESS, the executing node does not change the providers of a request
+            StatusCounterDeltas deltas = new StatusCounterDeltas( );
+            deltas.add( request.getSourceFileserviceproviderName( ), request.getTargetFileserviceproviderName( ), RequestStatus.STATUS_IN_PROGRESS, -1 );
+            deltas.add( request.getSourceFileserviceproviderName( ), request.getTargetFileserviceproviderName( ), request.getRequestStatus( ), 1 );
+            _statusCounterDAO.applyDeltas( deltas.getDeltas( ), plugin );
+
+            _listenerNotificationDAO.insertAll( request.getId( ), listListenerNames, plugin );
+
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin, e );
+            throw new AppException( "Unable to update the file transfer request : " + e.getMessage( ), e );
+        }
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean renewLease( int nIdRequest, String strOwnerNode, String strClaimToken, Timestamp leaseExpiration, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_RENEW_LEASE, plugin ) )
+        {
+            int nIndex = 1;
+            daoUtil.setTimestamp( nIndex++, leaseExpiration );
+            daoUtil.setInt( nIndex++, nIdRequest );
+            daoUtil.setString( nIndex++, strOwnerNode );
+            daoUtil.setString( nIndex++, strClaimToken );
+            daoUtil.setString( nIndex, RequestStatus.STATUS_IN_PROGRESS.getValue( ) );
+
+            return daoUtil.executeUpdate( ) > 0;
+        }
+    }
+
+    /**
+     * Update the record of a request
+     * 
+     * @param request
+     *            the request
+     * @param plugin
+     *            the Plugin
+     */
+    private void update( FileTransferRequest request, Plugin plugin )
+    {
+        update( request, null, null, plugin );
+    }
+
+    /**
+     * Update the record of a request, fenced by its lease if a claim token is given
+     * 
+     * @param request
+     *            the request
+     * @param strOwnerNode
+     *            the node holding the lease
+     * @param strClaimToken
+     *            the token of the claim, null to update the request whatever its lease
+     * @param plugin
+     *            the Plugin
+     * @return the number of updated rows
+     */
+    private int update( FileTransferRequest request, String strOwnerNode, String strClaimToken, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( strClaimToken == null ? SQL_QUERY_UPDATE : SQL_QUERY_UPDATE_LEASED, plugin ) )
         {
             int nIndex = 1;
 
@@ -148,9 +507,20 @@ public final class FileTransferRequestDAO implements IFileTransferRequestDAO
             daoUtil.setTimestamp( nIndex++, request.getCreationTime( ) );
             daoUtil.setString( nIndex++, request.getRequestContext( ) );
             daoUtil.setString( nIndex++, request.getContactMail( ) );
-            daoUtil.setInt( nIndex, request.getId( ) );
+            daoUtil.setString( nIndex++, request.getOwnerNode( ) );
+            daoUtil.setTimestamp( nIndex++, request.getLeaseExpiration( ) );
+            daoUtil.setString( nIndex++, request.getClaimToken( ) );
+            daoUtil.setString( nIndex++, request.getChecksum( ) );
+            daoUtil.setInt( nIndex++, request.getId( ) );
+
+            if ( strClaimToken != null )
+            {
+                daoUtil.setString( nIndex++, strOwnerNode );
+                daoUtil.setString( nIndex++, strClaimToken );
+                daoUtil.setString( nIndex, RequestStatus.STATUS_IN_PROGRESS.getValue( ) );
+            }
 
-            daoUtil.executeUpdate( );
+            return daoUtil.executeUpdate( );
         }
     }
 
@@ -309,51 +679,735 @@ public final class FileTransferRequestDAO implements IFileTransferRequestDAO
     public List<FileTransferRequest> selectRequestsListToExecute( Plugin plugin, Timestamp executionTime, int limit )
     {
         List<FileTransferRequest> requestList = new ArrayList<>( );
+        String strQuery = SQL_QUERY_SELECT_TO_EXECUTE + ( limit > 0 ? getLimitClause( ) : "" );
 
-        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_BY_STATUS + SQL_FILTER_SELECT_TIMESTAMP_BEFORE + SQL_FILTER_ORDER_BY_TIMESTAMP, plugin ) )
+        try ( DAOUtil daoUtil = new DAOUtil( strQuery, plugin ) )
         {
-            daoUtil.setString( 1, RequestStatus.STATUS_FAILED.getValue() );
-            daoUtil.setTimestamp( 2, executionTime );
+            int nIndex = 1;
+            daoUtil.setString( nIndex++, RequestStatus.STATUS_TODO.getValue( ) );
+            daoUtil.setString( nIndex++, RequestStatus.STATUS_FAILED.getValue( ) );
+            daoUtil.setTimestamp( nIndex++, executionTime );
+            if ( limit > 0 )
+            {
+                daoUtil.setInt( nIndex, limit );
+            }
             daoUtil.executeQuery( );
 
-            while ( daoUtil.next( ))
+            while ( daoUtil.next( ) )
             {
                 requestList.add( loadFromDaoUtil( daoUtil ) );
-                if(requestList.size() <= limit && limit > 0) {
-                    break;
-                }
             }
-            
-            daoUtil.setString( 1, RequestStatus.STATUS_TODO.getValue() );
+        }
+
+        return requestList;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<Integer> selectIdRequestsListByFilter( FileTransferRequestFilter filter, Plugin plugin )
+    {
+        List<Integer> listIds = new ArrayList<>( );
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECTALL_ID + getFilterClause( filter, false ), plugin ) )
+        {
+            setFilterParameters( daoUtil, 1, filter, false );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                listIds.add( daoUtil.getInt( 1 ) );
+            }
+        }
+
+        return listIds;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<FileTransferRequest> selectRequestsPage( FileTransferRequestFilter filter, int nIdCursor, boolean bForward, int nLimit, Plugin plugin )
+    {
+        List<FileTransferRequest> requestList = new ArrayList<>( );
+        String strFilterClause = getFilterClause( filter, false );
+        StringBuilder sbQuery = new StringBuilder( SQL_QUERY_SELECTALL ).append( strFilterClause );
+
+        if ( nIdCursor > 0 )
+        {
+            sbQuery.append( strFilterClause.isEmpty( ) ? SQL_WHERE : SQL_AND ).append( bForward ? SQL_FILTER_ID_BEFORE : SQL_FILTER_ID_AFTER );
+        }
+        sbQuery.append( bForward ? SQL_ORDER_BY_ID_DESC : SQL_ORDER_BY_ID_ASC ).append( getLimitClause( ) );
+
+        try ( DAOUtil daoUtil = new DAOUtil( sbQuery.toString( ), plugin ) )
+        {
+            int nIndex = setFilterParameters( daoUtil, 1, filter, false );
+            if ( nIdCursor > 0 )
+            {
+                daoUtil.setInt( nIndex++, nIdCursor );
+            }
+            daoUtil.setInt( nIndex, nLimit );
             daoUtil.executeQuery( );
 
-            while ( daoUtil.next( ))
+            while ( daoUtil.next( ) )
             {
                 requestList.add( loadFromDaoUtil( daoUtil ) );
-                if(requestList.size() <= limit && limit > 0) {
-                    break;
+            }
+        }
+
+        return requestList;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int countByFilter( FileTransferRequestFilter filter, int nLimit, Plugin plugin )
+    {
+        // the counted rows are limited so that the cost of the count does not grow with the table
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_COUNT_LIMITED + getFilterClause( filter, false ) + getLimitClause( ) + SQL_QUERY_COUNT_LIMITED_END,
+                plugin ) )
+        {
+            int nIndex = setFilterParameters( daoUtil, 1, filter, false );
+            daoUtil.setInt( nIndex, nLimit );
+            daoUtil.executeQuery( );
+
+            return daoUtil.next( ) ? daoUtil.getInt( 1 ) : 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int countByFilter( FileTransferRequestFilter filter, Plugin plugin )
+    {
+        return count( getFilterClause( filter, false ), filter, false, plugin );
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int requeueByFilter( FileTransferRequestFilter filter, Timestamp executionTime, Plugin plugin )
+    {
+        String strFilterClause = getStatusFilterClause( filter, REQUEUABLE_STATUS );
+        StatusCounterDeltas deltas = new StatusCounterDeltas( );
+        int nCount = 0;
+
+        TransactionManager.beginTransaction( plugin );
+        try
+        {
+            // the requests are updated by provider pair and status : the counters are updated with the rows actually updated
+            for ( RequestGroup group : selectGroups( strFilterClause, filter, REQUEUABLE_STATUS, false, plugin ) )
+            {
+                try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_REQUEUE + strFilterClause + SQL_FILTER_GROUP, plugin ) )
+                {
+                    daoUtil.setString( 1, RequestStatus.STATUS_TODO.getValue( ) );
+                    daoUtil.setTimestamp( 2, executionTime );
+                    setGroupParameters( daoUtil, setStatusFilterParameters( daoUtil, 3, filter, REQUEUABLE_STATUS ), group );
+
+                    nCount += group.addTransitions( deltas, RequestStatus.STATUS_TODO, daoUtil.executeUpdate( ) );
                 }
             }
 
-            daoUtil.free( );
+            _statusCounterDAO.applyDeltas( deltas.getDeltas( ), plugin );
+
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin, e );
+            throw new AppException( "Unable to requeue the file transfer requests : " + e.getMessage( ), e );
+        }
+
+        return nCount;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int cancelByFilter( FileTransferRequestFilter filter, Plugin plugin )
+    {
+        String strFilterClause = getStatusFilterClause( filter, CANCELABLE_STATUS );
+        StatusCounterDeltas deltas = new StatusCounterDeltas( );
+        int nCount = 0;
+
+        TransactionManager.beginTransaction( plugin );
+        try
+        {
+            for ( RequestGroup group : selectGroups( strFilterClause, filter, CANCELABLE_STATUS, false, plugin ) )
+            {
+                try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_CANCEL + strFilterClause + SQL_FILTER_GROUP, plugin ) )
+                {
+                    daoUtil.setString( 1, RequestStatus.STATUS_CANCELED.getValue( ) );
+                    setGroupParameters( daoUtil, setStatusFilterParameters( daoUtil, 2, filter, CANCELABLE_STATUS ), group );
+
+                    nCount += group.addTransitions( deltas, RequestStatus.STATUS_CANCELED, daoUtil.executeUpdate( ) );
+                }
+            }
+
+            _statusCounterDAO.applyDeltas( deltas.getDeltas( ), plugin );
+
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin, e );
+            throw new AppException( "Unable to cancel the file transfer requests : " + e.getMessage( ), e );
+        }
+
+        return nCount;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int deleteByFilter( FileTransferRequestFilter filter, Plugin plugin )
+    {
+        StatusCounterDeltas deltas = new StatusCounterDeltas( );
+        int nCount = 0;
+
+        TransactionManager.beginTransaction( plugin );
+        try
+        {
+            // the ids are selected first : deleting the errors would otherwise change the result of an error code filter
+            for ( RequestGroup group : selectGroups( getFilterClause( filter, true ), filter, new RequestStatus [ 0 ], true, plugin ) )
+            {
+                for ( int nFrom = 0; nFrom < group._listIds.size( ); nFrom += DELETE_CHUNK_SIZE )
+                {
+                    List<Integer> listIds = group._listIds.subList( nFrom, Math.min( nFrom + DELETE_CHUNK_SIZE, group._listIds.size( ) ) );
+
+                    // the requests still in the status of the group are locked, so that their status does not change until they are deleted
+                    List<Integer> listLockedIds = lockByIds( listIds, group._status, plugin );
+
+                    if ( !listLockedIds.isEmpty( ) )
+                    {
+                        executeByIds( SQL_QUERY_DELETE_ERRORS_BY_IDS, listLockedIds, plugin );
+                        executeByIds( SQL_QUERY_DELETE_CHECKPOINTS_BY_IDS, listLockedIds, plugin );
+                        executeByIds( SQL_QUERY_DELETE_NOTIFICATIONS_BY_IDS, listLockedIds, plugin );
+
+                        nCount += group.addTransitions( deltas, null, executeByIds( SQL_QUERY_DELETE_BY_IDS, listLockedIds, plugin ) );
+                    }
+                }
+            }
+
+            _statusCounterDAO.applyDeltas( deltas.getDeltas( ), plugin );
+
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin, e );
+            throw new AppException( "Unable to delete the file transfer requests : " + e.getMessage( ), e );
+        }
+
+        return nCount;
+    }
+
+    /**
+     * Count the requests matching a filter clause
+     * 
+     * @param strFilterClause
+     *            the filter clause
+     * @param filter
+     *            the filter
+     * @param bExcludeInProgress
+     *            true if the clause excludes the requests in progress
+     * @param plugin
+     *            the Plugin
+     * @return the number of requests
+     */
+    private int count( String strFilterClause, FileTransferRequestFilter filter, boolean bExcludeInProgress, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_COUNT + strFilterClause, plugin ) )
+        {
+            setFilterParameters( daoUtil, 1, filter, bExcludeInProgress );
+            daoUtil.executeQuery( );
+
+            return daoUtil.next( ) ? daoUtil.getInt( 1 ) : 0;
+        }
+    }
+
+    /**
+     * Select the provider pairs and statuses of the requests matching a filter, and optionally their ids
+     * 
+     * @param strFilterClause
+     *            the filter clause, excluding the requests in progress and limited to the given statuses
+     * @param filter
+     *            the filter
+     * @param status
+     *            the statuses of the clause, empty for all the statuses
+     * @param bWithIds
+     *            true to select the ids of the requests of each group
+     * @param plugin
+     *            the Plugin
+     * @return the groups of requests
+     */
+    private static Collection<RequestGroup> selectGroups( String strFilterClause, FileTransferRequestFilter filter, RequestStatus [ ] status,
+            boolean bWithIds, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( ( bWithIds ? SQL_QUERY_SELECT_GROUPS_ID : SQL_QUERY_SELECT_GROUPS ) + strFilterClause, plugin ) )
+        {
+            setStatusFilterParameters( daoUtil, 1, filter, status );
+
+            return readGroups( daoUtil, bWithIds );
+        }
+    }
+
+    /**
+     * Execute a query selecting the provider names, the status and optionally the id of requests, and group its rows
+     * 
+     * @param daoUtil
+     *            the statement, with its parameters
+     * @param bWithIds
+     *            true if the query selects the ids of the requests
+     * @return the groups of requests, by provider pair and status
+     */
+    private static Collection<RequestGroup> readGroups( DAOUtil daoUtil, boolean bWithIds )
+    {
+        Map<String, RequestGroup> mapGroups = new LinkedHashMap<>( );
+        daoUtil.executeQuery( );
 
+        while ( daoUtil.next( ) )
+        {
+            RequestGroup group = mapGroups.computeIfAbsent( daoUtil.getString( 1 ) + '\n' + daoUtil.getString( 2 ) + '\n' + daoUtil.getString( 3 ),
+                    k -> new RequestGroup( daoUtil.getString( 1 ), daoUtil.getString( 2 ), RequestStatus.getRequestStatusByValue( daoUtil.getString( 3 ) ) ) );
+            if ( bWithIds )
+            {
+                group._listIds.add( daoUtil.getInt( 4 ) );
+            }
         }
-        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_BY_STATUS + SQL_FILTER_SELECT_TIMESTAMP_BEFORE + SQL_FILTER_ORDER_BY_TIMESTAMP, plugin ) )
+
+        return mapGroups.values( );
+    }
+
+    /**
+     * Set the parameters of a group clause
+     * 
+     * @param daoUtil
+     *            the statement
+     * @param nFirstIndex
+     *            the index of the first parameter of the clause
+     * @param group
+     *            the group
+     * @return the index following the parameters of the clause
+     */
+    private static int setGroupParameters( DAOUtil daoUtil, int nFirstIndex, RequestGroup group )
+    {
+        int nIndex = nFirstIndex;
+        daoUtil.setString( nIndex++, group._strSourceFileserviceproviderName );
+        daoUtil.setString( nIndex++, group._strTargetFileserviceproviderName );
+        daoUtil.setString( nIndex++, group._status.getValue( ) );
+
+        return nIndex;
+    }
+
+    /**
+     * Lock the requests of a list still in a status
+     * 
+     * @param listIds
+     *            the ids of the requests
+     * @param status
+     *            the status
+     * @param plugin
+     *            the Plugin
+     * @return the ids of the locked requests
+     */
+    private static List<Integer> lockByIds( List<Integer> listIds, RequestStatus status, Plugin plugin )
+    {
+        List<Integer> listLockedIds = new ArrayList<>( listIds.size( ) );
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_LOCK_BY_IDS + getPlaceHolders( listIds.size( ) ) + SQL_END_IN + SQL_FOR_UPDATE, plugin ) )
         {
-            daoUtil.setString( 1, RequestStatus.STATUS_TODO.getValue() );
-            daoUtil.setTimestamp( 2, executionTime );
+            int nIndex = 1;
+            daoUtil.setString( nIndex++, status.getValue( ) );
+            for ( Integer nId : listIds )
+            {
+                daoUtil.setInt( nIndex++, nId );
+            }
             daoUtil.executeQuery( );
 
-            while ( daoUtil.next( ) && requestList.size() <= limit && limit > 0)
+            while ( daoUtil.next( ) )
             {
-                requestList.add( loadFromDaoUtil( daoUtil ) );
+                listLockedIds.add( daoUtil.getInt( 1 ) );
             }
+        }
 
-            daoUtil.free( );
+        return listLockedIds;
+    }
+
+    /**
+     * Execute an update whose last clause is an IN clause on ids
+     * 
+     * @param strQuery
+     *            the query, ending with an open IN clause
+     * @param listIds
+     *            the ids
+     * @param plugin
+     *            the Plugin
+     * @return the number of updated rows
+     */
+    private static int executeByIds( String strQuery, List<Integer> listIds, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( strQuery + getPlaceHolders( listIds.size( ) ) + SQL_END_IN, plugin ) )
+        {
+            int nIndex = 1;
+            for ( Integer nId : listIds )
+            {
+                daoUtil.setInt( nIndex++, nId );
+            }
+
+            return daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * Build the WHERE clause of a filter
+     * 
+     * @param filter
+     *            the filter
+     * @param bExcludeInProgress
+     *            true to exclude the requests in progress, which are updated by the node executing them
+     * @return the WHERE clause, empty if there is no criteria
+     */
+    private static String getFilterClause( FileTransferRequestFilter filter, boolean bExcludeInProgress )
+    {
+        List<String> listCriteria = new ArrayList<>( );
+
+        if ( bExcludeInProgress )
+        {
+            listCriteria.add( SQL_FILTER_NOT_STATUS );
+        }
+        if ( filter.containsRequestStatus( ) )
+        {
+            listCriteria.add( SQL_FILTER_STATUS );
+        }
+        if ( filter.containsSourceFileserviceproviderName( ) )
+        {
+            listCriteria.add( SQL_FILTER_SOURCE_PROVIDER );
+        }
+        if ( filter.containsTargetFileserviceproviderName( ) )
+        {
+            listCriteria.add( SQL_FILTER_TARGET_PROVIDER );
+        }
+        if ( filter.containsRequestContext( ) )
+        {
+            listCriteria.add( SQL_FILTER_REQUEST_CONTEXT );
+        }
+        if ( filter.containsErrorCode( ) )
+        {
+            listCriteria.add( SQL_FILTER_ERROR_CODE );
+        }
+        if ( filter.getCreationTimeFrom( ) != null )
+        {
+            listCriteria.add( SQL_FILTER_CREATION_TIME_FROM );
+        }
+        if ( filter.getCreationTimeTo( ) != null )
+        {
+            listCriteria.add( SQL_FILTER_CREATION_TIME_TO );
+        }
+
+        return listCriteria.isEmpty( ) ? "" : SQL_WHERE + String.join( SQL_AND, listCriteria );
+    }
+
+    /**
+     * Build the clause of a filter excluding the requests in progress, limited to some statuses
+     * 
+     * @param filter
+     *            the filter
+     * @param status
+     *            the statuses, empty for all the statuses
+     * @return the clause
+     */
+    private static String getStatusFilterClause( FileTransferRequestFilter filter, RequestStatus [ ] status )
+    {
+        String strFilterClause = getFilterClause( filter, true );
+
+        return ( status.length == 0 ) ? strFilterClause : strFilterClause + SQL_AND + SQL_FILTER_STATUS_IN + getPlaceHolders( status.length ) + SQL_END_IN;
+    }
+
+    /**
+     * Set the parameters of a clause built by {@link #getStatusFilterClause(FileTransferRequestFilter, RequestStatus[])}
+     * 
+     * @param daoUtil
+     *            the statement
+     * @param nFirstIndex
+     *            the index of the first parameter of the clause
+     * @param filter
+     *            the filter
+     * @param status
+     *            the statuses of the clause
+     * @return the index following the parameters of the clause
+     */
+    private static int setStatusFilterParameters( DAOUtil daoUtil, int nFirstIndex, FileTransferRequestFilter filter, RequestStatus [ ] status )
+    {
+        int nIndex = setFilterParameters( daoUtil, nFirstIndex, filter, true );
+
+        for ( RequestStatus requestStatus : status )
+        {
+            daoUtil.setString( nIndex++, requestStatus.getValue( ) );
+        }
+
+        return nIndex;
+    }
+
+    /**
+     * Set the parameters of a filter clause, in the order of {@link #getFilterClause(FileTransferRequestFilter, boolean)}
+     * 
+     * @param daoUtil
+     *            the statement
+     * @param nFirstIndex
+     *            the index of the first parameter of the clause
+     * @param filter
+     *            the filter
+     * @param bExcludeInProgress
+     *            true if the clause excludes the requests in progress
+     * @return the index following the parameters of the clause
+     */
+    private static int setFilterParameters( DAOUtil daoUtil, int nFirstIndex, FileTransferRequestFilter filter, boolean bExcludeInProgress )
+    {
+        int nIndex = nFirstIndex;
+
+        if ( bExcludeInProgress )
+        {
+            daoUtil.setString( nIndex++, RequestStatus.STATUS_IN_PROGRESS.getValue( ) );
+        }
+        if ( filter.containsRequestStatus( ) )
+        {
+            daoUtil.setString( nIndex++, filter.getRequestStatus( ).getValue( ) );
+        }
+        if ( filter.containsSourceFileserviceproviderName( ) )
+        {
+            daoUtil.setString( nIndex++, filter.getSourceFileserviceproviderName( ) );
+        }
+        if ( filter.containsTargetFileserviceproviderName( ) )
+        {
+            daoUtil.setString( nIndex++, filter.getTargetFileserviceproviderName( ) );
+        }
+        if ( filter.containsRequestContext( ) )
+        {
+            daoUtil.setString( nIndex++, filter.getRequestContext( ) );
+        }
+        if ( filter.containsErrorCode( ) )
+        {
+            daoUtil.setInt( nIndex++, filter.getErrorCode( ) );
+        }
+        if ( filter.getCreationTimeFrom( ) != null )
+        {
+            daoUtil.setTimestamp( nIndex++, filter.getCreationTimeFrom( ) );
+        }
+        if ( filter.getCreationTimeTo( ) != null )
+        {
+            daoUtil.setTimestamp( nIndex++, filter.getCreationTimeTo( ) );
+        }
+
+        return nIndex;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public Optional<Timestamp> selectNextExecutionTime( Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_NEXT_EXECUTION_TIME, plugin ) )
+        {
+            daoUtil.setString( 1, RequestStatus.STATUS_TODO.getValue( ) );
+            daoUtil.setString( 2, RequestStatus.STATUS_FAILED.getValue( ) );
+            daoUtil.executeQuery( );
+
+            Timestamp nextExecutionTime = null;
+            if ( daoUtil.next( ) )
+            {
+                nextExecutionTime = daoUtil.getTimestamp( 1 );
+            }
+
+            return Optional.ofNullable( nextExecutionTime );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int countCompletedSince( Timestamp since, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_COUNT_COMPLETED_SINCE, plugin ) )
+        {
+            daoUtil.setString( 1, RequestStatus.STATUS_DONE.getValue( ) );
+            daoUtil.setTimestamp( 2, since );
+            daoUtil.executeQuery( );
+
+            return daoUtil.next( ) ? daoUtil.getInt( 1 ) : 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<FileTransferRequest> claimRequestsToExecute( Plugin plugin, Timestamp executionTime, int limit, String strOwnerNode, String strClaimToken,
+            Timestamp leaseExpiration, boolean bSkipLocked )
+    {
+        List<Integer> listIds = new ArrayList<>( );
+
+        TransactionManager.beginTransaction( plugin );
+        try
+        {
+            StatusCounterDeltas deltas = new StatusCounterDeltas( );
+
+            // the requests are claimed by provider pair and status : the counters are updated with the rows actually claimed
+            for ( RequestGroup group : selectRequestsToClaim( plugin, executionTime, limit, bSkipLocked ) )
+            {
+                // the claimable filter is checked again : a row taken by another node in the meantime is left untouched
+                try ( DAOUtil daoUtil = new DAOUtil(
+                        SQL_QUERY_CLAIM + getPlaceHolders( group._listIds.size( ) ) + " ) AND " + SQL_FILTER_STATUS + " AND" + SQL_FILTER_CLAIMABLE, plugin ) )
+                {
+                    int nIndex = 1;
+                    daoUtil.setString( nIndex++, RequestStatus.STATUS_IN_PROGRESS.getValue( ) );
+                    daoUtil.setString( nIndex++, strOwnerNode );
+                    daoUtil.setTimestamp( nIndex++, leaseExpiration );
+                    daoUtil.setString( nIndex++, strClaimToken );
+                    for ( Integer nId : group._listIds )
+                    {
+                        daoUtil.setInt( nIndex++, nId );
+                    }
+                    daoUtil.setString( nIndex++, group._status.getValue( ) );
+                    setClaimableFilter( daoUtil, nIndex, executionTime );
+
+                    group.addTransitions( deltas, RequestStatus.STATUS_IN_PROGRESS, daoUtil.executeUpdate( ) );
+                }
+                listIds.addAll( group._listIds );
+            }
+
+            _statusCounterDAO.applyDeltas( deltas.getDeltas( ), plugin );
+
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin, e );
+            throw new AppException( "Unable to claim the file transfer requests : " + e.getMessage( ), e );
+        }
+
+        List<FileTransferRequest> requestList = new ArrayList<>( );
 
+        if ( listIds.isEmpty( ) )
+        {
+            return requestList;
         }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_CLAIMED + getPlaceHolders( listIds.size( ) ) + " )" + SQL_FILTER_ORDER_BY_TIMESTAMP, plugin ) )
+        {
+            int nIndex = 1;
+            daoUtil.setString( nIndex++, strClaimToken );
+            for ( Integer nId : listIds )
+            {
+                daoUtil.setInt( nIndex++, nId );
+            }
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                requestList.add( loadFromDaoUtil( daoUtil ) );
+            }
+        }
+
         return requestList;
+    }
+
+    /**
+     * Select the requests which can be claimed
+     * 
+     * @param plugin
+     *            the Plugin
+     * @param executionTime
+     *            the due date
+     * @param limit
+     *            the maximum number of requests, 0 for no limit
+     * @param bSkipLocked
+     *            true to lock the selected rows and skip the ones locked by another node
+     * @return the ids of the requests, grouped by provider pair and status
+     */
+    private Collection<RequestGroup> selectRequestsToClaim( Plugin plugin, Timestamp executionTime, int limit, boolean bSkipLocked )
+    {
+        StringBuilder sbQuery = new StringBuilder( SQL_QUERY_SELECT_TO_CLAIM );
+
+        if ( limit > 0 )
+        {
+            sbQuery.append( getLimitClause( ) );
+        }
+        if ( bSkipLocked )
+        {
+            sbQuery.append( SQL_FILTER_FOR_UPDATE_SKIP_LOCKED );
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( sbQuery.toString( ), plugin ) )
+        {
+            int nIndex = setClaimableFilter( daoUtil, 1, executionTime );
+            if ( limit > 0 )
+            {
+                daoUtil.setInt( nIndex, limit );
+            }
+
+            return readGroups( daoUtil, true );
+        }
+    }
+
+    /**
+     * Set the parameters of the claimable requests filter
+     * 
+     * @param daoUtil
+     *            the daoUtil
+     * @param nStartIndex
+     *            the index of the first parameter of the filter
+     * @param executionTime
+     *            the due date
+     * @return the index of the next parameter
+     */
+    private int setClaimableFilter( DAOUtil daoUtil, int nStartIndex, Timestamp executionTime )
+    {
+        int nIndex = nStartIndex;
+        daoUtil.setString( nIndex++, RequestStatus.STATUS_TODO.getValue( ) );
+        daoUtil.setString( nIndex++, RequestStatus.STATUS_FAILED.getValue( ) );
+        daoUtil.setTimestamp( nIndex++, executionTime );
+        daoUtil.setString( nIndex++, RequestStatus.STATUS_IN_PROGRESS.getValue( ) );
+        daoUtil.setTimestamp( nIndex++, executionTime );
 
+        return nIndex;
+    }
+
+    /**
+     * Get the row limiting clause of the configured SQL dialect : LIMIT (MySQL, PostgreSQL, HSQLDB, H2) or FETCH FIRST (SQL:2008, Oracle 12c+, Derby)
+     * 
+     * @return the limit clause, with one parameter
+     */
+    static String getLimitClause( )
+    {
+        String strSyntax = AppPropertiesService.getProperty( PROPERTY_SQL_LIMIT_SYNTAX );
+
+        return LIMIT_SYNTAX_FETCH_FIRST.equalsIgnoreCase( strSyntax ) ? SQL_FILTER_FETCH_FIRST : SQL_FILTER_LIMIT;
+    }
+
+    /**
+     * Build the place holders of an IN clause
+     * 
+     * @param nCount
+     *            the number of place holders
+     * @return the place holders
+     */
+    static String getPlaceHolders( int nCount )
+    {
+        StringBuilder builder = new StringBuilder( );
+        for ( int i = 0; i < nCount; i++ )
+        {
+            builder.append( i == 0 ? "?" : ",?" );
+        }
+        return builder.toString( );
     }
 
     private FileTransferRequest loadFromDaoUtil( DAOUtil daoUtil )
@@ -372,8 +1426,75 @@ public final class FileTransferRequestDAO implements IFileTransferRequestDAO
         request.setExecutionTime( daoUtil.getTimestamp( nIndex++ ) );
         request.setCreationTime( daoUtil.getTimestamp( nIndex++ ) );
         request.setRequestContext( daoUtil.getString( nIndex++ ) );
-        request.setContactMail( daoUtil.getString( nIndex ) );
+        request.setContactMail( daoUtil.getString( nIndex++ ) );
+        request.setOwnerNode( daoUtil.getString( nIndex++ ) );
+        request.setLeaseExpiration( daoUtil.getTimestamp( nIndex++ ) );
+        request.setClaimToken( daoUtil.getString( nIndex++ ) );
+        request.setChecksum( daoUtil.getString( nIndex ) );
 
         return request;
     }
+
+    /**
+     * Requests of a provider pair in a status
+     */
+    private static final class RequestGroup
+    {
+        private final String _strSourceFileserviceproviderName;
+        private final String _strTargetFileserviceproviderName;
+        private final RequestStatus _status;
+        private final List<Integer> _listIds = new ArrayList<>( );
+
+        /**
+         * Constructor
+         * 
+         * @param strSourceFileserviceproviderName
+         *            the source provider name
+         * @param strTargetFileserviceproviderName
+         *            the target provider name
+         * @param status
+         *            the status
+         */
+        RequestGroup( String strSourceFileserviceproviderName, String strTargetFileserviceproviderName, RequestStatus status )
+        {
+            _strSourceFileserviceproviderName = strSourceFileserviceproviderName;
+            _strTargetFileserviceproviderName = strTargetFileserviceproviderName;
+            _status = status;
+        }
+
+        /**
+         * Add the transitions of requests of the group to the deltas of the status counters
+         * 
+         * @param deltas
+         *            the deltas
+         * @param newStatus
+         *            the status of the requests after the transition, null if they are deleted
+         * @param nCount
+         *            the number of requests actually updated or deleted
+         * @return the number of requests
+         */
+        int addTransitions( StatusCounterDeltas deltas, RequestStatus newStatus, int nCount )
+        {
+            deltas.add( _strSourceFileserviceproviderName, _strTargetFileserviceproviderName, _status, -nCount );
+            if ( newStatus != null )
+            {
+                deltas.add( _strSourceFileserviceproviderName, _strTargetFileserviceproviderName, newStatus, nCount );
+            }
+
+            return nCount;
+        }
+
+        /**
+         * Tell whether a request belongs to the group
+         * 
+         * @param request
+         *            the request
+         * @return true if the request has the provider pair and the status of the group
+         */
+        boolean contains( FileTransferRequest request )
+        {
+            return _status == request.getRequestStatus( ) && _strSourceFileserviceproviderName.equals( request.getSourceFileserviceproviderName( ) )
+                    && _strTargetFileserviceproviderName.equals( request.getTargetFileserviceproviderName( ) );
+        }
+    }
 }
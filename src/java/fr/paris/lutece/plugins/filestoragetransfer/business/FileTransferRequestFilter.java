@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.business;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Filter of the transfer requests, used to list them and to update them in bulk. The criteria left empty are not applied.
+ */
+public class FileTransferRequestFilter implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private RequestStatus _requestStatus;
+    private String _strSourceFileserviceproviderName;
+    private String _strTargetFileserviceproviderName;
+    private String _strRequestContext;
+    private Integer _nErrorCode;
+    private Timestamp _tCreationTimeFrom;
+    private Timestamp _tCreationTimeTo;
+
+    /**
+     * Returns the status
+     * 
+     * @return the status, null if not filtered
+     */
+    public RequestStatus getRequestStatus( )
+    {
+        return _requestStatus;
+    }
+
+    /**
+     * Sets the status
+     * 
+     * @param requestStatus
+     *            the status, null if not filtered
+     */
+    public void setRequestStatus( RequestStatus requestStatus )
+    {
+        _requestStatus = requestStatus;
+    }
+
+    /**
+     * Returns the name of the source provider
+     * 
+     * @return the name of the source provider
+     */
+    public String getSourceFileserviceproviderName( )
+    {
+        return _strSourceFileserviceproviderName;
+    }
+
+    /**
+     * Sets the name of the source provider
+     * 
+     * @param strSourceFileserviceproviderName
+     *            the name of the source provider
+     */
+    public void setSourceFileserviceproviderName( String strSourceFileserviceproviderName )
+    {
+        _strSourceFileserviceproviderName = strSourceFileserviceproviderName;
+    }
+
+    /**
+     * Returns the name of the target provider
+     * 
+     * @return the name of the target provider
+     */
+    public String getTargetFileserviceproviderName( )
+    {
+        return _strTargetFileserviceproviderName;
+    }
+
+    /**
+     * Sets the name of the target provider
+     * 
+     * @param strTargetFileserviceproviderName
+     *            the name of the target provider
+     */
+    public void setTargetFileserviceproviderName( String strTargetFileserviceproviderName )
+    {
+        _strTargetFileserviceproviderName = strTargetFileserviceproviderName;
+    }
+
+    /**
+     * Returns the request context
+     * 
+     * @return the request context
+     */
+    public String getRequestContext( )
+    {
+        return _strRequestContext;
+    }
+
+    /**
+     * Sets the request context
+     * 
+     * @param strRequestContext
+     *            the request context
+     */
+    public void setRequestContext( String strRequestContext )
+    {
+        _strRequestContext = strRequestContext;
+    }
+
+    /**
+     * Returns the code of an error of the requests
+     * 
+     * @return the error code
+     */
+    public Integer getErrorCode( )
+    {
+        return _nErrorCode;
+    }
+
+    /**
+     * Sets the code of an error of the requests
+     * 
+     * @param nErrorCode
+     *            the error code
+     */
+    public void setErrorCode( Integer nErrorCode )
+    {
+        _nErrorCode = nErrorCode;
+    }
+
+    /**
+     * Returns the lower bound of the creation time
+     * 
+     * @return the lower bound, included
+     */
+    public Timestamp getCreationTimeFrom( )
+    {
+        return _tCreationTimeFrom;
+    }
+
+    /**
+     * Sets the lower bound of the creation time
+     * 
+     * @param tCreationTimeFrom
+     *            the lower bound, included
+     */
+    public void setCreationTimeFrom( Timestamp tCreationTimeFrom )
+    {
+        _tCreationTimeFrom = tCreationTimeFrom;
+    }
+
+    /**
+     * Returns the upper bound of the creation time
+     * 
+     * @return the upper bound, excluded
+     */
+    public Timestamp getCreationTimeTo( )
+    {
+        return _tCreationTimeTo;
+    }
+
+    /**
+     * Sets the upper bound of the creation time
+     * 
+     * @param tCreationTimeTo
+     *            the upper bound, excluded
+     */
+    public void setCreationTimeTo( Timestamp tCreationTimeTo )
+    {
+        _tCreationTimeTo = tCreationTimeTo;
+    }
+
+    /**
+     * Tell if the requests are filtered by status
+     * 
+     * @return true if filtered
+     */
+    public boolean containsRequestStatus( )
+    {
+        return _requestStatus != null && _requestStatus != RequestStatus.STATUS_UNKNOWN;
+    }
+
+    /**
+     * Tell if the requests are filtered by source provider
+     * 
+     * @return true if filtered
+     */
+    public boolean containsSourceFileserviceproviderName( )
+    {
+        return StringUtils.isNotEmpty( _strSourceFileserviceproviderName );
+    }
+
+    /**
+     * Tell if the requests are filtered by target provider
+     * 
+     * @return true if filtered
+     */
+    public boolean containsTargetFileserviceproviderName( )
+    {
+        return StringUtils.isNotEmpty( _strTargetFileserviceproviderName );
+    }
+
+    /**
+     * Tell if the requests are filtered by request context
+     * 
+     * @return true if filtered
+     */
+    public boolean containsRequestContext( )
+    {
+        return StringUtils.isNotEmpty( _strRequestContext );
+    }
+
+    /**
+     * Tell if the requests are filtered by error code
+     * 
+     * @return true if filtered
+     */
+    public boolean containsErrorCode( )
+    {
+        return _nErrorCode != null;
+    }
+}
@@ -37,17 +37,27 @@ package fr.paris.lutece.plugins.filestoragetransfer.business;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.portal.service.plugin.PluginService;
 import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
 import fr.paris.lutece.util.ReferenceList;
 
 import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * This class provides instances management methods (create, find, ...) for Request objects
  */
 public final class FileTransferRequestHome
 {
+    private static final String PROPERTY_INSERT_BATCH_SIZE = "filestoragetransfer.insert.batchSize";
+    private static final int DEFAULT_INSERT_BATCH_SIZE = 1000;
+
+    private static final List<IRequestQueueListener> _listQueueListeners = new CopyOnWriteArrayList<>( );
+
     // Static variable pointed at the DAO instance
     private static IFileTransferRequestDAO _dao = SpringContextService.getBean( "filestoragetransfer.requestDAO" );
     private static Plugin _plugin = PluginService.getPlugin( "filestoragetransfer" );
@@ -70,9 +80,33 @@ public final class FileTransferRequestHome
     {
         _dao.insert( request, _plugin );
 
+        // the dispatcher of this node, listening to the queue, executes the new request without waiting for its next poll
+        fireRequestsQueued( );
+
         return request;
     }
 
+    /**
+     * Create requests with batch statements
+     * 
+     * @param requests
+     *            the requests to create
+     * @return the requests, with their primary keys
+     */
+    public static Collection<FileTransferRequest> createAll( Collection<FileTransferRequest> requests )
+    {
+        if ( requests.isEmpty( ) )
+        {
+            return requests;
+        }
+
+        _dao.insertAll( requests, Math.max( AppPropertiesService.getPropertyInt( PROPERTY_INSERT_BATCH_SIZE, DEFAULT_INSERT_BATCH_SIZE ), 1 ), _plugin );
+
+        fireRequestsQueued( );
+
+        return requests;
+    }
+
     /**
      * Update of the request which is specified in parameter
      * 
@@ -87,6 +121,81 @@ public final class FileTransferRequestHome
         return request;
     }
 
+    /**
+     * Update a completed request and queue its notification to listeners, in the same transaction : the listeners are notified even if the node
+     * stops right after the completion
+     * 
+     * @param request
+     *            The instance of the Request which contains the data to store
+     * @param listListenerNames
+     *            the names of the listeners to notify
+     * @return The instance of the request which has been updated
+     */
+    public static FileTransferRequest complete( FileTransferRequest request, Collection<String> listListenerNames )
+    {
+        _dao.storeCompletion( request, listListenerNames, _plugin );
+
+        return request;
+    }
+
+    /**
+     * Update a request executed under a lease, release the lease and queue the notification of the request to listeners, in the same transaction.
+     * The request is only updated if its lease is still held : a request whose lease has expired may have been claimed again by another node, whose
+     * record must not be overwritten. A request which has not been claimed is updated whatever its lease.
+     * 
+     * @param request
+     *            The instance of the Request which contains the data to store
+     * @param listListenerNames
+     *            the names of the listeners to notify
+     * @return true if the request has been updated, false if its lease has been lost
+     */
+    public static boolean completeLeased( FileTransferRequest request, Collection<String> listListenerNames )
+    {
+        String strOwnerNode = request.getOwnerNode( );
+        String strClaimToken = request.getClaimToken( );
+
+        request.releaseLease( );
+
+        if ( strClaimToken == null )
+        {
+            _dao.storeCompletion( request, listListenerNames, _plugin );
+            return true;
+        }
+
+        return _dao.storeLeased( request, strOwnerNode, strClaimToken, listListenerNames, _plugin );
+    }
+
+    /**
+     * Update a request executed under a lease and release the lease, if it is still held
+     * 
+     * @param request
+     *            The instance of the Request which contains the data to store
+     * @return true if the request has been updated, false if its lease has been lost
+     * @see #completeLeased(FileTransferRequest, Collection)
+     */
+    public static boolean updateLeased( FileTransferRequest request )
+    {
+        return completeLeased( request, Collections.emptyList( ) );
+    }
+
+    /**
+     * Renew the lease of a request, if it is still held
+     * 
+     * @param nIdRequest
+     *            the identifier of the request
+     * @param strOwnerNode
+     *            the node holding the lease
+     * @param strClaimToken
+     *            the token of the claim
+     * @param leaseExpiration
+     *            the new expiration date of the lease
+     * @return true if the lease has been renewed, false if it has been lost
+     */
+    public static boolean renewLease( int nIdRequest, String strOwnerNode, String strClaimToken, Timestamp leaseExpiration )
+    {
+        return _dao.renewLease( nIdRequest, strOwnerNode, strClaimToken, leaseExpiration, _plugin );
+    }
+
     /**
      * Remove the request whose identifier is specified in parameter
      * 
@@ -191,4 +300,174 @@ public final class FileTransferRequestHome
         return _dao.selectRequestsListToExecute( _plugin, executionTime, limit );
     }
 
+    /**
+     * Load the ids of the requests matching a filter
+     * 
+     * @param filter
+     *            the filter
+     * @return the list of ids
+     */
+    public static List<Integer> getIdRequestsListByFilter( FileTransferRequestFilter filter )
+    {
+        return _dao.selectIdRequestsListByFilter( filter, _plugin );
+    }
+
+    /**
+     * Count the requests matching a filter
+     * 
+     * @param filter
+     *            the filter
+     * @return the number of requests
+     */
+    public static int countByFilter( FileTransferRequestFilter filter )
+    {
+        return _dao.countByFilter( filter, _plugin );
+    }
+
+    /**
+     * Load a page of the requests matching a filter, the most recent first
+     * 
+     * @param filter
+     *            the filter
+     * @param nIdCursor
+     *            the id of the last request of the previous page when reading forward, of the first request of the next page otherwise, 0 to
+     *            start from the most recent request
+     * @param bForward
+     *            true to read the requests older than the cursor, false to read the more recent ones
+     * @param nLimit
+     *            the maximum number of requests
+     * @return the list of requests, ordered by descending id
+     */
+    public static List<FileTransferRequest> getRequestsPage( FileTransferRequestFilter filter, int nIdCursor, boolean bForward, int nLimit )
+    {
+        List<FileTransferRequest> listRequests = _dao.selectRequestsPage( filter, nIdCursor, bForward, nLimit, _plugin );
+
+        if ( !bForward )
+        {
+            Collections.reverse( listRequests );
+        }
+
+        return listRequests;
+    }
+
+    /**
+     * Count the requests matching a filter, up to a limit
+     * 
+     * @param filter
+     *            the filter
+     * @param nLimit
+     *            the maximum number of requests counted
+     * @return the number of requests, equal to the limit if there are more requests
+     */
+    public static int countByFilter( FileTransferRequestFilter filter, int nLimit )
+    {
+        return _dao.countByFilter( filter, nLimit, _plugin );
+    }
+
+    /**
+     * Set the FAILED, ERROR and CANCELED requests matching a filter back to TODO, to be executed now with a reset retry count
+     * 
+     * @param filter
+     *            the filter
+     * @return the number of requeued requests
+     */
+    public static int requeueByFilter( FileTransferRequestFilter filter )
+    {
+        int nCount = _dao.requeueByFilter( filter, Timestamp.from( Instant.now( ) ), _plugin );
+
+        if ( nCount > 0 )
+        {
+            fireRequestsQueued( );
+        }
+
+        return nCount;
+    }
+
+    /**
+     * Cancel the TODO, FAILED and ERROR requests matching a filter
+     * 
+     * @param filter
+     *            the filter
+     * @return the number of canceled requests
+     */
+    public static int cancelByFilter( FileTransferRequestFilter filter )
+    {
+        return _dao.cancelByFilter( filter, _plugin );
+    }
+
+    /**
+     * Delete the requests matching a filter, with their errors and checkpoints
+     * 
+     * @param filter
+     *            the filter
+     * @return the number of deleted requests
+     */
+    public static int deleteByFilter( FileTransferRequestFilter filter )
+    {
+        return _dao.deleteByFilter( filter, _plugin );
+    }
+
+    /**
+     * Returns the earliest execution time of the requests waiting to be executed
+     * 
+     * @return the earliest execution time, empty if there is no request to execute
+     */
+    public static Optional<Timestamp> getNextExecutionTime( )
+    {
+        return _dao.selectNextExecutionTime( _plugin );
+    }
+
+    /**
+     * Count the requests completed since a date
+     * 
+     * @param since
+     *            the date
+     * @return the number of requests
+     */
+    public static int countCompletedSince( Timestamp since )
+    {
+        return _dao.countCompletedSince( since, _plugin );
+    }
+
+    /**
+     * Claim the requests to execute for the given node
+     * 
+     * @param executionTime
+     *            the due date
+     * @param limit
+     *            the maximum number of requests to claim, 0 for no limit
+     * @param strOwnerNode
+     *            the identifier of the claiming node
+     * @param strClaimToken
+     *            the unique token of this claim
+     * @param leaseExpiration
+     *            the date after which the claimed requests can be claimed again
+     * @param bSkipLocked
+     *            true to use a SELECT ... FOR UPDATE SKIP LOCKED statement
+     * @return The list of the claimed requests
+     */
+    public static List<FileTransferRequest> claimRequestsToExecute( Timestamp executionTime, int limit, String strOwnerNode, String strClaimToken,
+            Timestamp leaseExpiration, boolean bSkipLocked )
+    {
+        return _dao.claimRequestsToExecute( _plugin, executionTime, limit, strOwnerNode, strClaimToken, leaseExpiration, bSkipLocked );
+    }
+
+    /**
+     * Register a listener of the requests queued for execution
+     * 
+     * @param listener
+     *            the listener
+     */
+    public static void addQueueListener( IRequestQueueListener listener )
+    {
+        _listQueueListeners.add( listener );
+    }
+
+    /**
+     * Notify the listeners that requests have been queued for execution
+     */
+    private static void fireRequestsQueued( )
+    {
+        _listQueueListeners.forEach( IRequestQueueListener::onRequestsQueued );
+    }
 }
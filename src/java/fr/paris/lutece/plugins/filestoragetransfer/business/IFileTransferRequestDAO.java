@@ -38,6 +38,7 @@ import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.util.ReferenceList;
 
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -56,6 +57,19 @@ public interface IFileTransferRequestDAO
      */
     void insert( FileTransferRequest request, Plugin plugin );
 
+    /**
+     * Insert new records in the table with batch statements, each batch being inserted in its own transaction. The generated keys are set on the
+     * requests.
+     * 
+     * @param requests
+     *            the requests to insert
+     * @param nBatchSize
+     *            the number of requests inserted by a batch statement
+     * @param plugin
+     *            the Plugin
+     */
+    void insertAll( Collection<FileTransferRequest> requests, int nBatchSize, Plugin plugin );
+
     /**
      * Update the record in the table
      * 
@@ -66,6 +80,53 @@ public interface IFileTransferRequestDAO
      */
     void store( FileTransferRequest request, Plugin plugin );
 
+    /**
+     * Update the record of a completed request and queue its notification to listeners, in the same transaction
+     * 
+     * @param request
+     *            the reference of the Request
+     * @param listListenerNames
+     *            the names of the listeners to notify
+     * @param plugin
+     *            the Plugin
+     */
+    void storeCompletion( FileTransferRequest request, Collection<String> listListenerNames, Plugin plugin );
+
+    /**
+     * Update the record of a request executed under a lease and queue its notification to listeners, in the same transaction, if the lease is still
+     * held : the record is left untouched if the lease has expired and the request has been claimed again
+     * 
+     * @param request
+     *            the reference of the Request
+     * @param strOwnerNode
+     *            the node holding the lease
+     * @param strClaimToken
+     *            the token of the claim
+     * @param listListenerNames
+     *            the names of the listeners to notify
+     * @param plugin
+     *            the Plugin
+     * @return true if the record has been updated, false if the lease has been lost
+     */
+    boolean storeLeased( FileTransferRequest request, String strOwnerNode, String strClaimToken, Collection<String> listListenerNames, Plugin plugin );
+
+    /**
+     * Renew the lease of a request, if it is still held
+     * 
+     * @param nIdRequest
+     *            the identifier of the request
+     * @param strOwnerNode
+     *            the node holding the lease
+     * @param strClaimToken
+     *            the token of the claim
+     * @param leaseExpiration
+     *            the new expiration date of the lease
+     * @param plugin
+     *            the Plugin
+     * @return true if the lease has been renewed, false if it has been lost
+     */
+    boolean renewLease( int nIdRequest, String strOwnerNode, String strClaimToken, Timestamp leaseExpiration, Plugin plugin );
+
     /**
      * Delete a record from the table
      * 
@@ -140,16 +201,128 @@ public interface IFileTransferRequestDAO
     List<FileTransferRequest> selectRequestsListByStatus( Plugin plugin, String RequestStatus );
 
     /**
-     * Load the data of all the avant objects and returns them as a list
+     * Load the due TODO and FAILED requests, ordered by execution time
      * 
      * @param plugin
      *            the Plugin
-     * @param RequestStatus
-     *            Status of the request
-     * @return The list which contains the data of all the avant objects
+     * @param executionTime
+     *            the due date
+     * @param limit
+     *            the maximum number of requests, 0 for no limit
+     * @return The list of the requests to execute
      */
     List<FileTransferRequest> selectRequestsListToExecute( Plugin plugin, Timestamp executionTime, int limit );
 
+    /**
+     * Load the ids of the requests matching a filter
+     * 
+     * @param filter
+     *            the filter
+     * @param plugin
+     *            the Plugin
+     * @return the list of ids
+     */
+    List<Integer> selectIdRequestsListByFilter( FileTransferRequestFilter filter, Plugin plugin );
+
+    /**
+     * Load a page of the requests matching a filter, by keyset on the id. The requests are ordered by descending id when reading forward, by
+     * ascending id otherwise.
+     * 
+     * @param filter
+     *            the filter
+     * @param nIdCursor
+     *            the id of the last request of the previous page when reading forward, of the first request of the next page otherwise, 0 to
+     *            start from the most recent request
+     * @param bForward
+     *            true to read the requests older than the cursor, false to read the more recent ones
+     * @param nLimit
+     *            the maximum number of requests
+     * @param plugin
+     *            the Plugin
+     * @return the list of requests
+     */
+    List<FileTransferRequest> selectRequestsPage( FileTransferRequestFilter filter, int nIdCursor, boolean bForward, int nLimit, Plugin plugin );
+
+    /**
+     * Count the requests matching a filter, up to a limit
+     * 
+     * @param filter
+     *            the filter
+     * @param nLimit
+     *            the maximum number of requests counted
+     * @param plugin
+     *            the Plugin
+     * @return the number of requests, equal to the limit if there are more requests
+     */
+    int countByFilter( FileTransferRequestFilter filter, int nLimit, Plugin plugin );
+
+    /**
+     * Count the requests matching a filter
+     * 
+     * @param filter
+     *            the filter
+     * @param plugin
+     *            the Plugin
+     * @return the number of requests
+     */
+    int countByFilter( FileTransferRequestFilter filter, Plugin plugin );
+
+    /**
+     * Set the FAILED, ERROR and CANCELED requests matching a filter back to TODO, with a reset retry count. The requests in the other statuses are left
+     * untouched.
+     * 
+     * @param filter
+     *            the filter
+     * @param executionTime
+     *            the new execution time
+     * @param plugin
+     *            the Plugin
+     * @return the number of requeued requests
+     */
+    int requeueByFilter( FileTransferRequestFilter filter, Timestamp executionTime, Plugin plugin );
+
+    /**
+     * Cancel the TODO, FAILED and ERROR requests matching a filter. The requests in the other statuses are left untouched.
+     * 
+     * @param filter
+     *            the filter
+     * @param plugin
+     *            the Plugin
+     * @return the number of canceled requests
+     */
+    int cancelByFilter( FileTransferRequestFilter filter, Plugin plugin );
+
+    /**
+     * Delete the requests matching a filter, with their errors and checkpoints. The requests in progress are left untouched.
+     * 
+     * @param filter
+     *            the filter
+     * @param plugin
+     *            the Plugin
+     * @return the number of deleted requests
+     */
+    int deleteByFilter( FileTransferRequestFilter filter, Plugin plugin );
+
+    /**
+     * Load the earliest execution time of the TODO and FAILED requests
+     * 
+     * @param plugin
+     *            the Plugin
+     * @return the earliest execution time, empty if there is no request to execute
+     */
+    Optional<Timestamp> selectNextExecutionTime( Plugin plugin );
+
+    /**
+     * Count the requests completed since a date, their execution time being the time of their completion
+     * 
+     * @param since
+     *            the date
+     * @param plugin
+     *            the Plugin
+     * @return the number of requests
+     */
+    int countCompletedSince( Timestamp since, Plugin plugin );
+
     /**
      * Load the id of all the request objects with a specific status and returns them as a list
      * 
@@ -158,4 +331,27 @@ public interface IFileTransferRequestDAO
      * @return The list which contains the id of all the request objects
      */
     List<Integer> selectIdRequestsListByStatus(Plugin _plugin, String RequestStatus);
+
+    /**
+     * Atomically claim the requests to execute : the due requests are set IN_PROGRESS and leased to the given node, so that no other node executes
+     * them until the lease expires
+     * 
+     * @param plugin
+     *            the Plugin
+     * @param executionTime
+     *            the due date
+     * @param limit
+     *            the maximum number of requests to claim, 0 for no limit
+     * @param strOwnerNode
+     *            the identifier of the claiming node
+     * @param strClaimToken
+     *            the unique token of this claim
+     * @param leaseExpiration
+     *            the date after which the claimed requests can be claimed again
+     * @param bSkipLocked
+     *            true to use a SELECT ... FOR UPDATE SKIP LOCKED statement, if supported by the database
+     * @return The list of the claimed requests
+     */
+    List<FileTransferRequest> claimRequestsToExecute( Plugin plugin, Timestamp executionTime, int limit, String strOwnerNode, String strClaimToken,
+            Timestamp leaseExpiration, boolean bSkipLocked );
 }
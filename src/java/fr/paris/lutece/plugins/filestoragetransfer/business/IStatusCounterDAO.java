@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.business;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * IStatusCounterDAO Interface
+ */
+public interface IStatusCounterDAO
+{
+    /**
+     * Insert the missing counters of a provider pair, one for each status and shard. This must not be called within a transaction : a counter inserted
+     * concurrently by another node makes the insert fail.
+     * 
+     * @param strSourceFileserviceproviderName
+     *            the source provider name
+     * @param strTargetFileserviceproviderName
+     *            the target provider name
+     * @param plugin
+     *            the Plugin
+     */
+    void insertMissing( String strSourceFileserviceproviderName, String strTargetFileserviceproviderName, Plugin plugin );
+
+    /**
+     * Add deltas to counters inserted by {@link #insertMissing(String, String, Plugin)}, in the transaction of the status transitions. The deltas
+     * are added to a single shard of their counters, with one batch statement
+     * 
+     * @param deltas
+     *            the deltas, in the order of their update
+     * @param plugin
+     *            the Plugin
+     */
+    void applyDeltas( Collection<StatusCounter> deltas, Plugin plugin );
+
+    /**
+     * Recount the requests of every counter
+     * 
+     * @param plugin
+     *            the Plugin
+     */
+    void rebuild( Plugin plugin );
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Finders
+
+    /**
+     * Load the counters, ordered by provider pair and status
+     * 
+     * @param plugin
+     *            the Plugin
+     * @return The list of counters
+     */
+    List<StatusCounter> selectStatusCountersList( Plugin plugin );
+}
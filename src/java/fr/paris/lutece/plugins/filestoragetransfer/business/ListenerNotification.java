@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.business;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+/**
+ * This is the business class for the object ListenerNotification : an entry of the notification outbox, the notification of a completed request
+ * to a listener. It is written with the completion of the request and deleted once the listener has been notified.
+ */
+public class ListenerNotification implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    // Variables declarations
+    private int _nId;
+
+    private int _nIdRequest;
+
+    private String _strListenerName;
+
+    private int _nAttemptCount;
+
+    private Timestamp _tNextAttemptTime;
+
+    private Timestamp _tCreationTime;
+
+    /**
+     * Returns the Id
+     * 
+     * @return The Id
+     */
+    public int getId( )
+    {
+        return _nId;
+    }
+
+    /**
+     * Sets the Id
+     * 
+     * @param nId
+     *            The Id
+     */
+    public void setId( int nId )
+    {
+        _nId = nId;
+    }
+
+    /**
+     * Returns the IdRequest
+     * 
+     * @return The IdRequest
+     */
+    public int getIdRequest( )
+    {
+        return _nIdRequest;
+    }
+
+    /**
+     * Sets the IdRequest
+     * 
+     * @param nIdRequest
+     *            The IdRequest
+     */
+    public void setIdRequest( int nIdRequest )
+    {
+        _nIdRequest = nIdRequest;
+    }
+
+    /**
+     * Returns the name of the notified listener
+     * 
+     * @return The ListenerName
+     */
+    public String getListenerName( )
+    {
+        return _strListenerName;
+    }
+
+    /**
+     * Sets the name of the notified listener
+     * 
+     * @param strListenerName
+     *            The ListenerName
+     */
+    public void setListenerName( String strListenerName )
+    {
+        _strListenerName = strListenerName;
+    }
+
+    /**
+     * Returns the number of delivery attempts, the current one included
+     * 
+     * @return The AttemptCount
+     */
+    public int getAttemptCount( )
+    {
+        return _nAttemptCount;
+    }
+
+    /**
+     * Sets the number of delivery attempts
+     * 
+     * @param nAttemptCount
+     *            The AttemptCount
+     */
+    public void setAttemptCount( int nAttemptCount )
+    {
+        _nAttemptCount = nAttemptCount;
+    }
+
+    /**
+     * Returns the time of the next delivery attempt, the end of the lease of a claimed notification
+     * 
+     * @return The NextAttemptTime
+     */
+    public Timestamp getNextAttemptTime( )
+    {
+        return _tNextAttemptTime;
+    }
+
+    /**
+     * Sets the time of the next delivery attempt
+     * 
+     * @param tNextAttemptTime
+     *            The NextAttemptTime
+     */
+    public void setNextAttemptTime( Timestamp tNextAttemptTime )
+    {
+        _tNextAttemptTime = tNextAttemptTime;
+    }
+
+    /**
+     * Returns the CreationTime
+     * 
+     * @return The CreationTime
+     */
+    public Timestamp getCreationTime( )
+    {
+        return _tCreationTime;
+    }
+
+    /**
+     * Sets the CreationTime
+     * 
+     * @param tCreationTime
+     *            The CreationTime
+     */
+    public void setCreationTime( Timestamp tCreationTime )
+    {
+        _tCreationTime = tCreationTime;
+    }
+}
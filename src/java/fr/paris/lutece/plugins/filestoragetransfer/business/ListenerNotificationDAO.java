@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.business;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.util.sql.DAOUtil;
+import fr.paris.lutece.util.sql.TransactionManager;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * This class provides Data Access methods for ListenerNotification objects
+ */
+public final class ListenerNotificationDAO implements IListenerNotificationDAO
+{
+    // Constants
+    private static final String SQL_QUERY_INSERT = "INSERT INTO filestoragetransfer_notification ( id_request, listener_name, attempt_count, next_attempt_time, creation_time ) VALUES ( ?, ?, 0, ?, ? ) ";
+    private static final String SQL_QUERY_SELECTALL = "SELECT id_notification, id_request, listener_name, attempt_count, next_attempt_time, creation_time FROM filestoragetransfer_notification";
+    private static final String SQL_FILTER_DUE = " WHERE next_attempt_time <= ?";
+    private static final String SQL_QUERY_SELECT_ID_DUE = "SELECT id_notification FROM filestoragetransfer_notification" + SQL_FILTER_DUE;
+    private static final String SQL_FILTER_LISTENER_NOT_IN = " AND listener_name NOT IN ( ";
+    private static final String SQL_ORDER_BY_DUE = " ORDER BY next_attempt_time, id_notification";
+    private static final String SQL_QUERY_CLAIM = "UPDATE filestoragetransfer_notification SET attempt_count = attempt_count + 1, next_attempt_time = ?, claim_token = ?"
+            + SQL_FILTER_DUE + " AND id_notification IN ( ";
+    private static final String SQL_QUERY_SELECT_CLAIMED = SQL_QUERY_SELECTALL + " WHERE claim_token = ? AND id_notification IN ( ";
+    private static final String SQL_QUERY_DELETE = "DELETE FROM filestoragetransfer_notification WHERE claim_token = ? AND id_notification IN ( ";
+    private static final String SQL_QUERY_RELEASE = "UPDATE filestoragetransfer_notification SET next_attempt_time = ?, claim_token = NULL WHERE claim_token = ? AND id_notification IN ( ";
+    private static final String SQL_QUERY_COUNT = "SELECT COUNT(*) FROM filestoragetransfer_notification";
+    private static final String SQL_END_IN = " )";
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void insertAll( int nIdRequest, Collection<String> listListenerNames, Plugin plugin )
+    {
+        if ( listListenerNames.isEmpty( ) )
+        {
+            return;
+        }
+
+        Timestamp now = Timestamp.from( Instant.now( ) );
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, plugin ) )
+        {
+            for ( String strListenerName : listListenerNames )
+            {
+                int nIndex = 1;
+                daoUtil.setInt( nIndex++, nIdRequest );
+                daoUtil.setString( nIndex++, strListenerName );
+                daoUtil.setTimestamp( nIndex++, now );
+                daoUtil.setTimestamp( nIndex, now );
+                daoUtil.addBatch( );
+            }
+
+            daoUtil.executeBatch( );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<ListenerNotification> claim( Timestamp now, int nLimit, Collection<String> listExcludedListeners, String strClaimToken,
+            Timestamp leaseExpiration, Plugin plugin )
+    {
+        List<Integer> listIds = new ArrayList<>( );
+        StringBuilder sbSql = new StringBuilder( SQL_QUERY_SELECT_ID_DUE );
+        if ( !listExcludedListeners.isEmpty( ) )
+        {
+            sbSql.append( SQL_FILTER_LISTENER_NOT_IN ).append( FileTransferRequestDAO.getPlaceHolders( listExcludedListeners.size( ) ) ).append( SQL_END_IN );
+        }
+        sbSql.append( SQL_ORDER_BY_DUE );
+        if ( nLimit > 0 )
+        {
+            sbSql.append( FileTransferRequestDAO.getLimitClause( ) );
+        }
+
+        TransactionManager.beginTransaction( plugin );
+        try
+        {
+            try ( DAOUtil daoUtil = new DAOUtil( sbSql.toString( ), plugin ) )
+            {
+                int nIndex = 1;
+                daoUtil.setTimestamp( nIndex++, now );
+                for ( String strListenerName : listExcludedListeners )
+                {
+                    daoUtil.setString( nIndex++, strListenerName );
+                }
+                if ( nLimit > 0 )
+                {
+                    daoUtil.setInt( nIndex, nLimit );
+                }
+                daoUtil.executeQuery( );
+
+                while ( daoUtil.next( ) )
+                {
+                    listIds.add( daoUtil.getInt( 1 ) );
+                }
+            }
+
+            if ( !listIds.isEmpty( ) )
+            {
+                // the due filter is checked again : a notification claimed by another node in the meantime is left untouched
+                try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_CLAIM + FileTransferRequestDAO.getPlaceHolders( listIds.size( ) ) + SQL_END_IN, plugin ) )
+                {
+                    int nIndex = 1;
+                    daoUtil.setTimestamp( nIndex++, leaseExpiration );
+                    daoUtil.setString( nIndex++, strClaimToken );
+                    daoUtil.setTimestamp( nIndex++, now );
+                    setIds( daoUtil, nIndex, listIds );
+
+                    daoUtil.executeUpdate( );
+                }
+            }
+
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin, e );
+            throw new AppException( "Unable to claim the listener notifications : " + e.getMessage( ), e );
+        }
+
+        List<ListenerNotification> listNotifications = new ArrayList<>( );
+
+        if ( listIds.isEmpty( ) )
+        {
+            return listNotifications;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_CLAIMED + FileTransferRequestDAO.getPlaceHolders( listIds.size( ) ) + SQL_END_IN, plugin ) )
+        {
+            daoUtil.setString( 1, strClaimToken );
+            setIds( daoUtil, 2, listIds );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                listNotifications.add( loadFromDaoUtil( daoUtil ) );
+            }
+        }
+
+        return listNotifications;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void delete( Collection<Integer> listIds, String strClaimToken, Plugin plugin )
+    {
+        if ( listIds.isEmpty( ) )
+        {
+            return;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE + FileTransferRequestDAO.getPlaceHolders( listIds.size( ) ) + SQL_END_IN, plugin ) )
+        {
+            daoUtil.setString( 1, strClaimToken );
+            setIds( daoUtil, 2, listIds );
+
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void release( Collection<Integer> listIds, String strClaimToken, Timestamp nextAttemptTime, Plugin plugin )
+    {
+        if ( listIds.isEmpty( ) )
+        {
+            return;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_RELEASE + FileTransferRequestDAO.getPlaceHolders( listIds.size( ) ) + SQL_END_IN, plugin ) )
+        {
+            daoUtil.setTimestamp( 1, nextAttemptTime );
+            daoUtil.setString( 2, strClaimToken );
+            setIds( daoUtil, 3, listIds );
+
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int countPending( Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_COUNT, plugin ) )
+        {
+            daoUtil.executeQuery( );
+
+            return daoUtil.next( ) ? daoUtil.getInt( 1 ) : 0;
+        }
+    }
+
+    /**
+     * Set the identifiers of an IN clause
+     * 
+     * @param daoUtil
+     *            the statement
+     * @param nFirstIndex
+     *            the index of the first identifier
+     * @param listIds
+     *            the identifiers
+     */
+    private static void setIds( DAOUtil daoUtil, int nFirstIndex, Collection<Integer> listIds )
+    {
+        int nIndex = nFirstIndex;
+        for ( Integer nId : listIds )
+        {
+            daoUtil.setInt( nIndex++, nId );
+        }
+    }
+
+    /**
+     * Load a notification from the current row
+     * 
+     * @param daoUtil
+     *            the statement
+     * @return the notification
+     */
+    private static ListenerNotification loadFromDaoUtil( DAOUtil daoUtil )
+    {
+        ListenerNotification notification = new ListenerNotification( );
+        int nIndex = 1;
+
+        notification.setId( daoUtil.getInt( nIndex++ ) );
+        notification.setIdRequest( daoUtil.getInt( nIndex++ ) );
+        notification.setListenerName( daoUtil.getString( nIndex++ ) );
+        notification.setAttemptCount( daoUtil.getInt( nIndex++ ) );
+        notification.setNextAttemptTime( daoUtil.getTimestamp( nIndex++ ) );
+        notification.setCreationTime( daoUtil.getTimestamp( nIndex ) );
+
+        return notification;
+    }
+}
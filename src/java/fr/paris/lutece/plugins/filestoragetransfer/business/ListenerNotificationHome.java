@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.business;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.plugin.PluginService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * This class provides instances management methods for ListenerNotification objects. The notifications are created with the completion of their
+ * request, by {@link FileTransferRequestHome#completeLeased(FileTransferRequest, Collection)}.
+ */
+public final class ListenerNotificationHome
+{
+    // Static variable pointed at the DAO instance
+    private static IListenerNotificationDAO _dao = SpringContextService.getBean( "filestoragetransfer.listenerNotificationDAO" );
+    private static Plugin _plugin = PluginService.getPlugin( "filestoragetransfer" );
+
+    /**
+     * Private constructor - this class need not be instantiated
+     */
+    private ListenerNotificationHome( )
+    {
+    }
+
+    /**
+     * Claim the due notifications
+     * 
+     * @param now
+     *            the current time
+     * @param nLimit
+     *            the maximum number of notifications to claim, 0 for no limit
+     * @param listExcludedListeners
+     *            the names of the listeners whose notifications are not claimed
+     * @param strClaimToken
+     *            the token identifying the claim
+     * @param leaseExpiration
+     *            the end of the lease
+     * @return the claimed notifications
+     */
+    public static List<ListenerNotification> claim( Timestamp now, int nLimit, Collection<String> listExcludedListeners, String strClaimToken,
+            Timestamp leaseExpiration )
+    {
+        return _dao.claim( now, nLimit, listExcludedListeners, strClaimToken, leaseExpiration, _plugin );
+    }
+
+    /**
+     * Remove delivered notifications
+     * 
+     * @param listIds
+     *            the identifiers of the notifications
+     * @param strClaimToken
+     *            the token of the claim
+     */
+    public static void remove( Collection<Integer> listIds, String strClaimToken )
+    {
+        _dao.delete( listIds, strClaimToken, _plugin );
+    }
+
+    /**
+     * Release undelivered notifications for a later attempt
+     * 
+     * @param listIds
+     *            the identifiers of the notifications
+     * @param strClaimToken
+     *            the token of the claim
+     * @param nextAttemptTime
+     *            the time of the next attempt
+     */
+    public static void release( Collection<Integer> listIds, String strClaimToken, Timestamp nextAttemptTime )
+    {
+        _dao.release( listIds, strClaimToken, nextAttemptTime, _plugin );
+    }
+
+    /**
+     * Count the notifications waiting for delivery
+     * 
+     * @return the number of notifications
+     */
+    public static int countPending( )
+    {
+        return _dao.countPending( _plugin );
+    }
+}
@@ -8,10 +8,12 @@ import fr.paris.lutece.portal.service.i18n.I18nService;
 public enum RequestStatus 
 {
     STATUS_TODO("TODO", "filestoragetransfer.request_status.todo", "info"), 
+    STATUS_IN_PROGRESS("IN_PROGRESS", "filestoragetransfer.request_status.in_progress", "primary"),
     STATUS_DONE("DONE", "filestoragetransfer.request_status.done", "success"),
     STATUS_UNKNOWN("UNKNOWN", "filestoragetransfer.request_status.unknown", "default"),
     STATUS_FAILED("FAILED", "filestoragetransfer.request_status.failed", "warning"), 
-    STATUS_ERROR("ERROR", "filestoragetransfer.request_status.error", "danger");
+    STATUS_ERROR("ERROR", "filestoragetransfer.request_status.error", "danger"),
+    STATUS_CANCELED("CANCELED", "filestoragetransfer.request_status.canceled", "secondary");
 
 
     private final String value;
@@ -55,6 +57,6 @@ public enum RequestStatus
     }
 
     public static List<RequestStatus> getAllStatus() {
-        return List.of( STATUS_TODO, STATUS_DONE, STATUS_FAILED, STATUS_ERROR );
+        return List.of( STATUS_TODO, STATUS_IN_PROGRESS, STATUS_DONE, STATUS_FAILED, STATUS_ERROR, STATUS_CANCELED );
     }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.business;
+
+import java.io.Serializable;
+
+/**
+ * This is the business class for the object StatusCounter : the number of requests of a provider pair in a status, maintained on every status
+ * transition
+ */
+public class StatusCounter implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    // Variables declarations
+    private String _strSourceFileserviceproviderName;
+
+    private String _strTargetFileserviceproviderName;
+
+    private RequestStatus _requestStatus;
+
+    private long _lCount;
+
+    public StatusCounter( )
+    {
+    }
+
+    public StatusCounter( String strSourceFileserviceproviderName, String strTargetFileserviceproviderName, RequestStatus requestStatus, long lCount )
+    {
+        _strSourceFileserviceproviderName = strSourceFileserviceproviderName;
+        _strTargetFileserviceproviderName = strTargetFileserviceproviderName;
+        _requestStatus = requestStatus;
+        _lCount = lCount;
+    }
+
+    /**
+     * Returns the SourceFileserviceproviderName
+     * 
+     * @return The SourceFileserviceproviderName
+     */
+    public String getSourceFileserviceproviderName( )
+    {
+        return _strSourceFileserviceproviderName;
+    }
+
+    /**
+     * Sets the SourceFileserviceproviderName
+     * 
+     * @param strSourceFileserviceproviderName
+     *            The SourceFileserviceproviderName
+     */
+    public void setSourceFileserviceproviderName( String strSourceFileserviceproviderName )
+    {
+        _strSourceFileserviceproviderName = strSourceFileserviceproviderName;
+    }
+
+    /**
+     * Returns the TargetFileserviceproviderName
+     * 
+     * @return The TargetFileserviceproviderName
+     */
+    public String getTargetFileserviceproviderName( )
+    {
+        return _strTargetFileserviceproviderName;
+    }
+
+    /**
+     * Sets the TargetFileserviceproviderName
+     * 
+     * @param strTargetFileserviceproviderName
+     *            The TargetFileserviceproviderName
+     */
+    public void setTargetFileserviceproviderName( String strTargetFileserviceproviderName )
+    {
+        _strTargetFileserviceproviderName = strTargetFileserviceproviderName;
+    }
+
+    /**
+     * Returns the RequestStatus
+     * 
+     * @return The RequestStatus
+     */
+    public RequestStatus getRequestStatus( )
+    {
+        return _requestStatus;
+    }
+
+    /**
+     * Sets the RequestStatus
+     * 
+     * @param requestStatus
+     *            The RequestStatus
+     */
+    public void setRequestStatus( RequestStatus requestStatus )
+    {
+        _requestStatus = requestStatus;
+    }
+
+    /**
+     * Returns the number of requests
+     * 
+     * @return The Count
+     */
+    public long getCount( )
+    {
+        return _lCount;
+    }
+
+    /**
+     * Sets the number of requests
+     * 
+     * @param lCount
+     *            The Count
+     */
+    public void setCount( long lCount )
+    {
+        _lCount = lCount;
+    }
+}
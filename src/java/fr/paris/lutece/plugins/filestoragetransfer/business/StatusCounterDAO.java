@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.business;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.util.sql.DAOUtil;
+import fr.paris.lutece.util.sql.TransactionManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class provides Data Access methods for StatusCounter objects. Each counter is split in shards, summed when the counters are read : a
+ * transaction adds its deltas to a random shard, so that concurrent transitions of the same provider pair rarely wait for each other's lock.
+ */
+public final class StatusCounterDAO implements IStatusCounterDAO
+{
+    // Constants
+    private static final String PROPERTY_SHARDS = "filestoragetransfer.counters.shards";
+    private static final int DEFAULT_SHARDS = 8;
+    private static final String SQL_QUERY_INSERT = "INSERT INTO filestoragetransfer_status_counter ( source_fileserviceprovider_name, target_fileserviceprovider_name, request_status, shard, request_count ) VALUES ( ?, ?, ?, ?, 0 ) ";
+    private static final String SQL_QUERY_ADD = "UPDATE filestoragetransfer_status_counter SET request_count = request_count + ? WHERE source_fileserviceprovider_name = ? AND target_fileserviceprovider_name = ? AND request_status = ? AND shard = ?";
+    private static final String SQL_QUERY_SET = "UPDATE filestoragetransfer_status_counter SET request_count = ? WHERE source_fileserviceprovider_name = ? AND target_fileserviceprovider_name = ? AND request_status = ? AND shard = ?";
+    private static final String SQL_QUERY_RESET = "UPDATE filestoragetransfer_status_counter SET request_count = 0";
+    private static final String SQL_QUERY_SELECTALL = "SELECT source_fileserviceprovider_name, target_fileserviceprovider_name, request_status, SUM(request_count) FROM filestoragetransfer_status_counter GROUP BY source_fileserviceprovider_name, target_fileserviceprovider_name, request_status ORDER BY source_fileserviceprovider_name, target_fileserviceprovider_name, request_status";
+    private static final String SQL_QUERY_SELECT_STATUS_BY_PAIR = "SELECT request_status, shard FROM filestoragetransfer_status_counter WHERE source_fileserviceprovider_name = ? AND target_fileserviceprovider_name = ?";
+    private static final String SQL_QUERY_SELECT_PAIRS = "SELECT DISTINCT source_fileserviceprovider_name, target_fileserviceprovider_name FROM filestoragetransfer_request";
+    private static final String SQL_QUERY_COUNT_REQUESTS = "SELECT source_fileserviceprovider_name, target_fileserviceprovider_name, request_status, COUNT(*) FROM filestoragetransfer_request GROUP BY source_fileserviceprovider_name, target_fileserviceprovider_name, request_status";
+
+    // the provider pairs whose counters are known to exist : counters are never deleted
+    private static final Set<String> _setKnownPairs = ConcurrentHashMap.newKeySet( );
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void insertMissing( String strSourceFileserviceproviderName, String strTargetFileserviceproviderName, Plugin plugin )
+    {
+        String strPair = strSourceFileserviceproviderName + '\n' + strTargetFileserviceproviderName;
+
+        if ( _setKnownPairs.contains( strPair ) )
+        {
+            return;
+        }
+
+        Set<String> setShards = new HashSet<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_STATUS_BY_PAIR, plugin ) )
+        {
+            daoUtil.setString( 1, strSourceFileserviceproviderName );
+            daoUtil.setString( 2, strTargetFileserviceproviderName );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                setShards.add( daoUtil.getString( 1 ) + '\n' + daoUtil.getInt( 2 ) );
+            }
+        }
+
+        int nShards = getShards( );
+        for ( RequestStatus status : RequestStatus.getAllStatus( ) )
+        {
+            for ( int nShard = 0; nShard < nShards; nShard++ )
+            {
+                if ( !setShards.contains( status.getValue( ) + '\n' + nShard ) )
+                {
+                    try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, plugin ) )
+                    {
+                        daoUtil.setString( 1, strSourceFileserviceproviderName );
+                        daoUtil.setString( 2, strTargetFileserviceproviderName );
+                        daoUtil.setString( 3, status.getValue( ) );
+                        daoUtil.setInt( 4, nShard );
+                        daoUtil.executeUpdate( );
+                    }
+                    catch( AppException e )
+                    {
+                        // inserted by another node in the meantime
+                        AppLogService.debug( "Status counter " + status.getValue( ) + " #" + nShard + " of " + strSourceFileserviceproviderName + " -> "
+                                + strTargetFileserviceproviderName + " already inserted : " + e.getMessage( ) );
+                    }
+                }
+            }
+        }
+
+        _setKnownPairs.add( strPair );
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void applyDeltas( Collection<StatusCounter> deltas, Plugin plugin )
+    {
+        // all the deltas of a transaction go to the same shard, in the order of the deltas
+        int nShard = ThreadLocalRandom.current( ).nextInt( getShards( ) );
+        boolean bEmpty = true;
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_ADD, plugin ) )
+        {
+            for ( StatusCounter delta : deltas )
+            {
+                if ( delta.getCount( ) != 0 )
+                {
+                    setParameters( daoUtil, delta, nShard );
+                    daoUtil.addBatch( );
+                    bEmpty = false;
+                }
+            }
+
+            if ( !bEmpty )
+            {
+                daoUtil.executeBatch( );
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void rebuild( Plugin plugin )
+    {
+        List<String [ ]> listPairs = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_PAIRS, plugin ) )
+        {
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                listPairs.add( new String [ ] {
+                        daoUtil.getString( 1 ), daoUtil.getString( 2 )
+                } );
+            }
+        }
+
+        for ( String [ ] pair : listPairs )
+        {
+            insertMissing( pair [0], pair [1], plugin );
+        }
+
+        TransactionManager.beginTransaction( plugin );
+        try
+        {
+            // the counters are locked before the requests are counted : a concurrent transition adds its delta after the recount.
+            // The count of a counter is written to its first shard, the other shards stay reset.
+            try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_RESET, plugin ) )
+            {
+                daoUtil.executeUpdate( );
+            }
+
+            List<StatusCounter> listCounters = new ArrayList<>( );
+            try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_COUNT_REQUESTS, plugin ) )
+            {
+                daoUtil.executeQuery( );
+
+                while ( daoUtil.next( ) )
+                {
+                    listCounters.add( loadFromDaoUtil( daoUtil ) );
+                }
+            }
+
+            for ( StatusCounter counter : listCounters )
+            {
+                try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SET, plugin ) )
+                {
+                    setParameters( daoUtil, counter, 0 );
+                    daoUtil.executeUpdate( );
+                }
+            }
+
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin, e );
+            throw new AppException( "Unable to rebuild the status counters : " + e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public List<StatusCounter> selectStatusCountersList( Plugin plugin )
+    {
+        List<StatusCounter> listCounters = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECTALL, plugin ) )
+        {
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                listCounters.add( loadFromDaoUtil( daoUtil ) );
+            }
+        }
+
+        return listCounters;
+    }
+
+    /**
+     * Set the parameters of a counter update
+     * 
+     * @param daoUtil
+     *            the update statement, with the count as first parameter
+     * @param counter
+     *            the counter
+     * @param nShard
+     *            the shard of the counter
+     */
+    private static void setParameters( DAOUtil daoUtil, StatusCounter counter, int nShard )
+    {
+        int nIndex = 1;
+        daoUtil.setLong( nIndex++, counter.getCount( ) );
+        daoUtil.setString( nIndex++, counter.getSourceFileserviceproviderName( ) );
+        daoUtil.setString( nIndex++, counter.getTargetFileserviceproviderName( ) );
+        daoUtil.setString( nIndex++, counter.getRequestStatus( ).getValue( ) );
+        daoUtil.setInt( nIndex, nShard );
+    }
+
+    /**
+     * Get the number of shards of each counter
+     * 
+     * @return the number of shards
+     */
+    private static int getShards( )
+    {
+        return Math.max( AppPropertiesService.getPropertyInt( PROPERTY_SHARDS, DEFAULT_SHARDS ), 1 );
+    }
+
+    private static StatusCounter loadFromDaoUtil( DAOUtil daoUtil )
+    {
+        int nIndex = 1;
+
+        StatusCounter counter = new StatusCounter( );
+        counter.setSourceFileserviceproviderName( daoUtil.getString( nIndex++ ) );
+        counter.setTargetFileserviceproviderName( daoUtil.getString( nIndex++ ) );
+        counter.setRequestStatus( RequestStatus.getRequestStatusByValue( daoUtil.getString( nIndex++ ) ) );
+        counter.setCount( daoUtil.getLong( nIndex ) );
+
+        return counter;
+    }
+}
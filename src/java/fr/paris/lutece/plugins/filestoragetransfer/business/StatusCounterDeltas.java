@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.business;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The deltas of the status counters of a transaction, summed by counter. The deltas are sorted by counter so that concurrent transactions lock
+ * the counters in the same order.
+ */
+final class StatusCounterDeltas
+{
+    private final Map<String, StatusCounter> _mapDeltas = new TreeMap<>( );
+
+    /**
+     * Add a delta to a counter
+     * 
+     * @param strSourceFileserviceproviderName
+     *            the source provider name
+     * @param strTargetFileserviceproviderName
+     *            the target provider name
+     * @param status
+     *            the status
+     * @param lDelta
+     *            the delta
+     */
+    void add( String strSourceFileserviceproviderName, String strTargetFileserviceproviderName, RequestStatus status, long lDelta )
+    {
+        String strKey = strSourceFileserviceproviderName + '\n' + strTargetFileserviceproviderName + '\n' + status.getValue( );
+
+        StatusCounter delta = _mapDeltas.computeIfAbsent( strKey,
+                k -> new StatusCounter( strSourceFileserviceproviderName, strTargetFileserviceproviderName, status, 0 ) );
+        delta.setCount( delta.getCount( ) + lDelta );
+    }
+
+    /**
+     * Add the transition of a request
+     * 
+     * @param request
+     *            the request, as it was before the transition, null if it has been created
+     * @param newRequest
+     *            the request, as it is after the transition, null if it has been deleted
+     */
+    void addTransition( FileTransferRequest request, FileTransferRequest newRequest )
+    {
+        if ( request != null )
+        {
+            add( request.getSourceFileserviceproviderName( ), request.getTargetFileserviceproviderName( ), request.getRequestStatus( ), -1 );
+        }
+        if ( newRequest != null )
+        {
+            add( newRequest.getSourceFileserviceproviderName( ), newRequest.getTargetFileserviceproviderName( ), newRequest.getRequestStatus( ), 1 );
+        }
+    }
+
+    /**
+     * Get the deltas
+     * 
+     * @return the deltas, sorted by counter
+     */
+    Collection<StatusCounter> getDeltas( )
+    {
+        return _mapDeltas.values( );
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.business;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+/**
+ * This is the business class for the object TransferCheckpoint : the progress of a chunked transfer, used to resume it after a failure
+ */
+public class TransferCheckpoint implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    // Variables declarations
+    private int _nIdRequest;
+
+    private String _strUploadId;
+
+    private long _lOffset;
+
+    private Timestamp _tUpdateTime;
+
+    public TransferCheckpoint( )
+    {
+    }
+
+    public TransferCheckpoint( int nIdRequest, String strUploadId, long lOffset, Timestamp tUpdateTime )
+    {
+        _nIdRequest = nIdRequest;
+        _strUploadId = strUploadId;
+        _lOffset = lOffset;
+        _tUpdateTime = tUpdateTime;
+    }
+
+    /**
+     * Returns the IdRequest
+     * 
+     * @return The IdRequest
+     */
+    public int getIdRequest( )
+    {
+        return _nIdRequest;
+    }
+
+    /**
+     * Sets the IdRequest
+     * 
+     * @param nIdRequest
+     *            The IdRequest
+     */
+    public void setIdRequest( int nIdRequest )
+    {
+        _nIdRequest = nIdRequest;
+    }
+
+    /**
+     * Returns the identifier of the upload in the target provider
+     * 
+     * @return The UploadId
+     */
+    public String getUploadId( )
+    {
+        return _strUploadId;
+    }
+
+    /**
+     * Sets the identifier of the upload in the target provider
+     * 
+     * @param strUploadId
+     *            The UploadId
+     */
+    public void setUploadId( String strUploadId )
+    {
+        _strUploadId = strUploadId;
+    }
+
+    /**
+     * Returns the number of bytes acknowledged by the target provider
+     * 
+     * @return The Offset
+     */
+    public long getOffset( )
+    {
+        return _lOffset;
+    }
+
+    /**
+     * Sets the number of bytes acknowledged by the target provider
+     * 
+     * @param lOffset
+     *            The Offset
+     */
+    public void setOffset( long lOffset )
+    {
+        _lOffset = lOffset;
+    }
+
+    /**
+     * Get the UpdateTime
+     * 
+     * @return The UpdateTime
+     */
+    public Timestamp getUpdateTime( )
+    {
+        return _tUpdateTime;
+    }
+
+    /**
+     * Set the UpdateTime
+     * 
+     * @param tUpdateTime
+     *            The UpdateTime
+     */
+    public void setUpdateTime( Timestamp tUpdateTime )
+    {
+        _tUpdateTime = tUpdateTime;
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.business;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+import java.util.Optional;
+
+/**
+ * This class provides Data Access methods for TransferCheckpoint objects
+ */
+public final class TransferCheckpointDAO implements ITransferCheckpointDAO
+{
+    // Constants
+    private static final String SQL_QUERY_INSERT = "INSERT INTO filestoragetransfer_checkpoint ( id_request, upload_id, chunk_offset, update_time ) VALUES ( ?, ?, ?, ? ) ";
+    private static final String SQL_QUERY_DELETE = "DELETE FROM filestoragetransfer_checkpoint WHERE id_request = ? ";
+    private static final String SQL_QUERY_UPDATE = "UPDATE filestoragetransfer_checkpoint SET upload_id = ?, chunk_offset = ?, update_time = ? WHERE id_request = ?";
+    private static final String SQL_QUERY_SELECT_BY_ID_REQUEST = "SELECT id_request, upload_id, chunk_offset, update_time FROM filestoragetransfer_checkpoint WHERE id_request = ?";
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void insert( TransferCheckpoint checkpoint, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, plugin ) )
+        {
+            int nIndex = 1;
+            daoUtil.setInt( nIndex++, checkpoint.getIdRequest( ) );
+            daoUtil.setString( nIndex++, checkpoint.getUploadId( ) );
+            daoUtil.setLong( nIndex++, checkpoint.getOffset( ) );
+            daoUtil.setTimestamp( nIndex, checkpoint.getUpdateTime( ) );
+
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void store( TransferCheckpoint checkpoint, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE, plugin ) )
+        {
+            int nIndex = 1;
+            daoUtil.setString( nIndex++, checkpoint.getUploadId( ) );
+            daoUtil.setLong( nIndex++, checkpoint.getOffset( ) );
+            daoUtil.setTimestamp( nIndex++, checkpoint.getUpdateTime( ) );
+            daoUtil.setInt( nIndex, checkpoint.getIdRequest( ) );
+
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void delete( int nIdRequest, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdRequest );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public Optional<TransferCheckpoint> load( int nIdRequest, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_BY_ID_REQUEST, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdRequest );
+            daoUtil.executeQuery( );
+            TransferCheckpoint checkpoint = null;
+
+            if ( daoUtil.next( ) )
+            {
+                int nIndex = 1;
+                checkpoint = new TransferCheckpoint( );
+                checkpoint.setIdRequest( daoUtil.getInt( nIndex++ ) );
+                checkpoint.setUploadId( daoUtil.getString( nIndex++ ) );
+                checkpoint.setOffset( daoUtil.getLong( nIndex++ ) );
+                checkpoint.setUpdateTime( daoUtil.getTimestamp( nIndex ) );
+            }
+
+            return Optional.ofNullable( checkpoint );
+        }
+    }
+}
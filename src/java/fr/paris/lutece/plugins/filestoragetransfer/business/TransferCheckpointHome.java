@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.business;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.plugin.PluginService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+import java.util.Optional;
+
+/**
+ * This class provides instances management methods (create, find, ...) for TransferCheckpoint objects
+ */
+public final class TransferCheckpointHome
+{
+    // Static variable pointed at the DAO instance
+    private static ITransferCheckpointDAO _dao = SpringContextService.getBean( "filestoragetransfer.checkpointDAO" );
+    private static Plugin _plugin = PluginService.getPlugin( "filestoragetransfer" );
+
+    /**
+     * Private constructor - this class need not be instantiated
+     */
+    private TransferCheckpointHome( )
+    {
+    }
+
+    /**
+     * Create an instance of the checkpoint class
+     * 
+     * @param checkpoint
+     *            The instance of the TransferCheckpoint which contains the informations to store
+     * @return The instance of checkpoint which has been created
+     */
+    public static TransferCheckpoint create( TransferCheckpoint checkpoint )
+    {
+        _dao.insert( checkpoint, _plugin );
+
+        return checkpoint;
+    }
+
+    /**
+     * Update of the checkpoint which is specified in parameter
+     * 
+     * @param checkpoint
+     *            The instance of the TransferCheckpoint which contains the data to store
+     * @return The instance of the checkpoint which has been updated
+     */
+    public static TransferCheckpoint update( TransferCheckpoint checkpoint )
+    {
+        _dao.store( checkpoint, _plugin );
+
+        return checkpoint;
+    }
+
+    /**
+     * Remove the checkpoint of the request whose identifier is specified in parameter
+     * 
+     * @param nIdRequest
+     *            The request Id
+     */
+    public static void remove( int nIdRequest )
+    {
+        _dao.delete( nIdRequest, _plugin );
+    }
+
+    /**
+     * Returns the checkpoint of the request whose identifier is specified in parameter
+     * 
+     * @param nIdRequest
+     *            The request Id
+     * @return an instance of TransferCheckpoint
+     */
+    public static Optional<TransferCheckpoint> findByIdRequest( int nIdRequest )
+    {
+        return _dao.load( nIdRequest, _plugin );
+    }
+}
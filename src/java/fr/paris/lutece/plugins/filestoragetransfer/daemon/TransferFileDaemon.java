@@ -33,19 +33,12 @@
  */
 package fr.paris.lutece.plugins.filestoragetransfer.daemon;
 
-import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequest;
-import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequestHome;
-import fr.paris.lutece.plugins.filestoragetransfer.service.FileSwitcherService;
+import fr.paris.lutece.plugins.filestoragetransfer.service.TransferDispatcherService;
 import fr.paris.lutece.portal.service.daemon.Daemon;
 import fr.paris.lutece.portal.service.util.AppPropertiesService;
 
-import java.sql.Timestamp;
-import java.time.Instant;
-import java.util.List;
-
 public class TransferFileDaemon extends Daemon
 {
-
     private static int _nBatchSize;
 
     public TransferFileDaemon(  )
@@ -55,20 +48,17 @@ public class TransferFileDaemon extends Daemon
 
     public void run( )
     {
-        Timestamp executionTime = Timestamp.from(Instant.now());
+        if ( TransferDispatcherService.isRunning( ) )
+        {
+            // the dispatcher executes the due requests of this node
+            this.setLastRunLogs( "Skipped : the transfer dispatcher is running" );
+            return;
+        }
+
+        StringBuffer sbRunLogs = new StringBuffer( );
+
+        TransferDispatcherService.processDueRequests( _nBatchSize, sbRunLogs );
 
-        List<FileTransferRequest> listRequest = FileTransferRequestHome.selectRequestsListByStatusAndExecutionTime (  executionTime, _nBatchSize );
-        
-        listRequest.forEach( request -> {
-            try
-            {
-                FileSwitcherService.TransferFileToNewFileService( request );
-                this.appendLastRunLogs( "Request " + request.getId() + ": DONE.\n"  );
-            }
-            catch( Exception e ) 
-            {
-                this.appendLastRunLogs( "Request " + request.getId() + " : FAILED ->" + e.getMessage() + "\n" );
-            }
-        });
+        this.appendLastRunLogs( sbRunLogs.toString( ) );
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.IChecksumFileStoreServiceProvider;
+import fr.paris.lutece.portal.service.file.FileServiceException;
+import fr.paris.lutece.portal.service.file.IFileStoreServiceProvider;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Service checking that a transferred file is identical to the source file before the source file is deleted
+ */
+public final class ChecksumVerificationService
+{
+    private static final String PROPERTY_VERIFY_BY_READING = "filestoragetransfer.checksum.verifyByReading";
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * Private constructor
+     */
+    private ChecksumVerificationService( )
+    {
+    }
+
+    /**
+     * Verify the checksum of the transferred file. The target provider is asked for the checksum when it can compute it, otherwise the file is read back
+     * if configured so : by default, such a file is not verified, reading it back doubling the I/O of the transfer. On mismatch, the transferred file is
+     * deleted from the target provider.
+     * 
+     * @param targetFileStoreService
+     *            the target provider
+     * @param strNewFileKey
+     *            the key of the file in the target provider
+     * @param expectedChecksum
+     *            the checksum computed while reading the source file
+     * @throws FileServiceException
+     *             if the checksums do not match
+     */
+    public static void verify( IFileStoreServiceProvider targetFileStoreService, String strNewFileKey, TransferChecksum expectedChecksum )
+            throws FileServiceException
+    {
+        String strActualChecksum = null;
+
+        if ( targetFileStoreService instanceof IChecksumFileStoreServiceProvider )
+        {
+            strActualChecksum = ( (IChecksumFileStoreServiceProvider) targetFileStoreService ).getChecksum( strNewFileKey, expectedChecksum.getAlgorithm( ) );
+        }
+
+        if ( strActualChecksum == null )
+        {
+            if ( !AppPropertiesService.getPropertyBoolean( PROPERTY_VERIFY_BY_READING, false ) )
+            {
+                AppLogService.debug( "Checksum of the transferred file " + strNewFileKey + " not verified : the target provider cannot compute it" );
+                return;
+            }
+            strActualChecksum = readChecksum( targetFileStoreService, strNewFileKey, expectedChecksum.getAlgorithm( ) );
+        }
+
+        if ( !expectedChecksum.getValue( ).equalsIgnoreCase( strActualChecksum ) )
+        {
+            deleteQuietly( targetFileStoreService, strNewFileKey );
+            throw new FileServiceException( "Checksum mismatch for the transferred file " + strNewFileKey + " : expected " + expectedChecksum
+                    + ", found " + strActualChecksum, 500, null );
+        }
+    }
+
+    /**
+     * Compute the checksum of a stored file by reading it
+     * 
+     * @param fileStoreService
+     *            the provider
+     * @param strKey
+     *            the key of the file
+     * @param strAlgorithm
+     *            the algorithm
+     * @return the checksum value
+     * @throws FileServiceException
+     *             if the file cannot be read
+     */
+    private static String readChecksum( IFileStoreServiceProvider fileStoreService, String strKey, String strAlgorithm ) throws FileServiceException
+    {
+        TransferChecksum checksum = TransferChecksum.create( strAlgorithm );
+
+        try ( InputStream inputStream = fileStoreService.getInputStream( strKey ) )
+        {
+            if ( inputStream == null )
+            {
+                throw new FileServiceException( "Transferred file not found : " + strKey, 404, null );
+            }
+
+            try ( TransferBuffer transferBuffer = TransferBufferPool.acquireHeap( BUFFER_SIZE ) )
+            {
+                byte [ ] buffer = transferBuffer.array( );
+                int nRead;
+                while ( ( nRead = inputStream.read( buffer ) ) != -1 )
+                {
+                    checksum.update( buffer, 0, nRead );
+                }
+            }
+        }
+        catch( IOException e )
+        {
+            throw new FileServiceException( "Unable to read the transferred file " + strKey + " : " + e.getMessage( ), 500, e );
+        }
+
+        return checksum.getValue( );
+    }
+
+    /**
+     * Delete the invalid copy of a file
+     * 
+     * @param fileStoreService
+     *            the provider
+     * @param strKey
+     *            the key of the file
+     */
+    private static void deleteQuietly( IFileStoreServiceProvider fileStoreService, String strKey )
+    {
+        try
+        {
+            fileStoreService.delete( strKey );
+        }
+        catch( FileServiceException e )
+        {
+            AppLogService.error( "Unable to delete the invalid transferred file " + strKey + " : " + e.getMessage( ), e );
+        }
+    }
+}
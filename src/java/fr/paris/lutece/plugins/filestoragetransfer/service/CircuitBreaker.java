@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+/**
+ * Circuit breaker of the transfers from a source file service provider to a target one. The circuit opens after a number of consecutive failures :
+ * the transfers between the two providers are then short-circuited until the open duration is elapsed. The circuit is then half-open : a limited
+ * number of trial transfers is allowed, the first success closes the circuit, a failure opens it again.
+ */
+public class CircuitBreaker
+{
+    /**
+     * State of the circuit
+     */
+    public enum State
+    {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String _strProviderPairName;
+    private final int _nFailureThreshold;
+    private final long _lOpenDuration;
+    private final int _nHalfOpenTrials;
+
+    private State _state = State.CLOSED;
+    private int _nConsecutiveFailures;
+    private long _lOpenedAt;
+    private int _nRunningTrials;
+
+    /**
+     * Constructor
+     * 
+     * @param strProviderPairName
+     *            the name of the provider pair, source and target provider names joined by an arrow
+     * @param nFailureThreshold
+     *            the number of consecutive failures opening the circuit
+     * @param lOpenDuration
+     *            the time in milliseconds the circuit stays open before trial transfers are allowed
+     * @param nHalfOpenTrials
+     *            the maximum number of simultaneous trial transfers when the circuit is half-open
+     */
+    public CircuitBreaker( String strProviderPairName, int nFailureThreshold, long lOpenDuration, int nHalfOpenTrials )
+    {
+        _strProviderPairName = strProviderPairName;
+        _nFailureThreshold = Math.max( nFailureThreshold, 1 );
+        _lOpenDuration = Math.max( lOpenDuration, 0 );
+        _nHalfOpenTrials = Math.max( nHalfOpenTrials, 1 );
+    }
+
+    /**
+     * Returns the name of the provider pair
+     * 
+     * @return the name, source and target provider names joined by an arrow
+     */
+    public String getName( )
+    {
+        return _strProviderPairName;
+    }
+
+    /**
+     * Returns the state of the circuit
+     * 
+     * @return the state
+     */
+    public synchronized State getState( )
+    {
+        return _state;
+    }
+
+    /**
+     * Tell if a transfer is allowed. When the circuit is half-open, an allowed transfer is a trial which must be ended by {@link #onSuccess()},
+     * {@link #onFailure()} or {@link #release()}
+     * 
+     * @return true if the transfer can be executed
+     */
+    public boolean allowRequest( )
+    {
+        return allowRequest( System.currentTimeMillis( ) );
+    }
+
+    /**
+     * Tell if a transfer is allowed at a given time
+     * 
+     * @param lNow
+     *            the current time in milliseconds
+     * @return true if the transfer can be executed
+     */
+    synchronized boolean allowRequest( long lNow )
+    {
+        if ( _state == State.OPEN && lNow - _lOpenedAt >= _lOpenDuration )
+        {
+            _state = State.HALF_OPEN;
+            _nRunningTrials = 0;
+        }
+
+        switch( _state )
+        {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if ( _nRunningTrials < _nHalfOpenTrials )
+                {
+                    _nRunningTrials++;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Record a successful transfer : the circuit is closed
+     * 
+     * @return true if the circuit has been closed by this success
+     */
+    public synchronized boolean onSuccess( )
+    {
+        boolean bClosed = _state != State.CLOSED;
+
+        _nConsecutiveFailures = 0;
+        _nRunningTrials = 0;
+        _state = State.CLOSED;
+
+        return bClosed;
+    }
+
+    /**
+     * Record a failed transfer
+     * 
+     * @return true if the circuit has been opened by this failure
+     */
+    public boolean onFailure( )
+    {
+        return onFailure( System.currentTimeMillis( ) );
+    }
+
+    /**
+     * Record a failed transfer at a given time
+     * 
+     * @param lNow
+     *            the current time in milliseconds
+     * @return true if the circuit has been opened by this failure
+     */
+    synchronized boolean onFailure( long lNow )
+    {
+        _nConsecutiveFailures++;
+
+        if ( _state == State.HALF_OPEN || ( _state == State.CLOSED && _nConsecutiveFailures >= _nFailureThreshold ) )
+        {
+            _state = State.OPEN;
+            _lOpenedAt = lNow;
+            _nRunningTrials = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Release a trial transfer which has not been executed
+     */
+    public synchronized void release( )
+    {
+        if ( _state == State.HALF_OPEN && _nRunningTrials > 0 )
+        {
+            _nRunningTrials--;
+        }
+    }
+
+    /**
+     * Returns the time remaining before trial transfers are allowed
+     * 
+     * @return the time in milliseconds, 0 if the circuit is not open
+     */
+    public long getRemainingOpenTime( )
+    {
+        return getRemainingOpenTime( System.currentTimeMillis( ) );
+    }
+
+    /**
+     * Returns the time remaining before trial transfers are allowed at a given time
+     * 
+     * @param lNow
+     *            the current time in milliseconds
+     * @return the time in milliseconds, 0 if the circuit is not open
+     */
+    synchronized long getRemainingOpenTime( long lNow )
+    {
+        if ( _state != State.OPEN )
+        {
+            return 0;
+        }
+        return Math.max( _lOpenedAt + _lOpenDuration - lNow, 0 );
+    }
+}
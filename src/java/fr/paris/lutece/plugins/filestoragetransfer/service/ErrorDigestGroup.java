@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.paris.lutece.plugins.filestoragetransfer.business.FileRequestError;
+import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequest;
+
+/**
+ * Errors of a digest sharing a trace fingerprint, a provider pair and a request context : the number of errors, with the identifiers of the first
+ * requests and the message of the first error as samples
+ */
+public class ErrorDigestGroup
+{
+    private final String _strFingerprint;
+    private final String _strSourceProviderName;
+    private final String _strTargetProviderName;
+    private final String _strRequestContext;
+    private final int _nCode;
+    private final String _strErrorMessage;
+    private final Timestamp _tFirstExecutionTime;
+    private Timestamp _tLastExecutionTime;
+    private int _nCount;
+    private final List<Integer> _listSampleIdRequests = new ArrayList<>( );
+
+    /**
+     * Constructor
+     * 
+     * @param request
+     *            the first request of the group
+     * @param error
+     *            the first error of the group
+     */
+    ErrorDigestGroup( FileTransferRequest request, FileRequestError error )
+    {
+        _strFingerprint = error.getFingerprint( );
+        _strSourceProviderName = request.getSourceFileserviceproviderName( );
+        _strTargetProviderName = request.getTargetFileserviceproviderName( );
+        _strRequestContext = request.getRequestContext( );
+        _nCode = error.getCode( );
+        _strErrorMessage = error.getErrorMessage( );
+        _tFirstExecutionTime = error.getExecutionTime( );
+    }
+
+    /**
+     * Get the key of the group of an error
+     * 
+     * @param request
+     *            the request
+     * @param error
+     *            the error
+     * @return the key
+     */
+    static String getKey( FileTransferRequest request, FileRequestError error )
+    {
+        return error.getFingerprint( ) + '|' + request.getSourceFileserviceproviderName( ) + '|' + request.getTargetFileserviceproviderName( ) + '|'
+                + request.getRequestContext( );
+    }
+
+    /**
+     * Count an error of the group
+     * 
+     * @param request
+     *            the request
+     * @param error
+     *            the error
+     * @param nSampleSize
+     *            the maximum number of sample request identifiers
+     */
+    void add( FileTransferRequest request, FileRequestError error, int nSampleSize )
+    {
+        _nCount++;
+        _tLastExecutionTime = error.getExecutionTime( );
+
+        if ( _listSampleIdRequests.size( ) < nSampleSize )
+        {
+            _listSampleIdRequests.add( request.getId( ) );
+        }
+    }
+
+    /**
+     * Returns the fingerprint of the trace of the errors
+     * 
+     * @return the fingerprint
+     */
+    public String getFingerprint( )
+    {
+        return _strFingerprint;
+    }
+
+    /**
+     * Returns the source provider name
+     * 
+     * @return the source provider name
+     */
+    public String getSourceFileserviceproviderName( )
+    {
+        return _strSourceProviderName;
+    }
+
+    /**
+     * Returns the target provider name
+     * 
+     * @return the target provider name
+     */
+    public String getTargetFileserviceproviderName( )
+    {
+        return _strTargetProviderName;
+    }
+
+    /**
+     * Returns the request context
+     * 
+     * @return the request context
+     */
+    public String getRequestContext( )
+    {
+        return _strRequestContext;
+    }
+
+    /**
+     * Returns the code of the first error
+     * 
+     * @return the code
+     */
+    public int getCode( )
+    {
+        return _nCode;
+    }
+
+    /**
+     * Returns the message of the first error
+     * 
+     * @return the message
+     */
+    public String getErrorMessage( )
+    {
+        return _strErrorMessage;
+    }
+
+    /**
+     * Returns the execution time of the first error
+     * 
+     * @return the execution time
+     */
+    public Timestamp getFirstExecutionTime( )
+    {
+        return _tFirstExecutionTime;
+    }
+
+    /**
+     * Returns the execution time of the last error
+     * 
+     * @return the execution time
+     */
+    public Timestamp getLastExecutionTime( )
+    {
+        return _tLastExecutionTime;
+    }
+
+    /**
+     * Returns the number of errors
+     * 
+     * @return the number of errors
+     */
+    public int getCount( )
+    {
+        return _nCount;
+    }
+
+    /**
+     * Returns the identifiers of the first requests
+     * 
+     * @return the request identifiers
+     */
+    public List<Integer> getSampleIdRequests( )
+    {
+        return _listSampleIdRequests;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+import fr.paris.lutece.plugins.filestoragetransfer.business.FileRequestError;
+import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequest;
+import fr.paris.lutece.portal.service.mail.MailService;
+import fr.paris.lutece.portal.service.template.AppTemplateService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.util.html.HtmlTemplate;
+
+/**
+ * Mail notification of the transfer errors. The errors are aggregated in memory into a digest for each recipient, the webmaster and the contact of
+ * the request, then sent periodically by the ErrorDigestDaemon : an outage is reported by a mail per recipient instead of a mail per error. The
+ * digests not sent yet are lost on shutdown, the errors remaining in the error table.
+ */
+public final class ErrorDigestService
+{
+    private static final String PROPERTY_MAX_GROUPS = "filestoragetransfer.digest.maxGroups";
+    private static final String PROPERTY_SAMPLE_SIZE = "filestoragetransfer.digest.sampleSize";
+    private static final int DEFAULT_MAX_GROUPS = 100;
+    private static final int DEFAULT_SAMPLE_SIZE = 10;
+
+    private static final String TEMPLATE_MAIL = "admin/plugins/filestoragetransfer/mail/mail_filestoragetransfer_digest.html";
+    private static final String MARK_GROUPS = "groups";
+    private static final String MARK_ERROR_COUNT = "error_count";
+    private static final String MARK_UNGROUPED_ERROR_COUNT = "ungrouped_error_count";
+
+    private static final Map<String, Digest> _mapDigests = new ConcurrentHashMap<>( );
+
+    /**
+     * Private constructor
+     */
+    private ErrorDigestService( )
+    {
+    }
+
+    /**
+     * Add an error to the digests of its recipients
+     * 
+     * @param request
+     *            the failed request
+     * @param error
+     *            the error
+     */
+    public static void add( FileTransferRequest request, FileRequestError error )
+    {
+        Set<String> setRecipients = new LinkedHashSet<>( );
+        String strMailRecipient = AppPropertiesService.getProperty( "filestoragetransfer.MailRecipient" );
+
+        if ( StringUtils.isNotBlank( strMailRecipient ) )
+        {
+            setRecipients.add( strMailRecipient );
+        }
+        if ( StringUtils.isNotBlank( request.getContactMail( ) ) )
+        {
+            setRecipients.add( request.getContactMail( ) );
+        }
+
+        int nMaxGroups = AppPropertiesService.getPropertyInt( PROPERTY_MAX_GROUPS, DEFAULT_MAX_GROUPS );
+        int nSampleSize = AppPropertiesService.getPropertyInt( PROPERTY_SAMPLE_SIZE, DEFAULT_SAMPLE_SIZE );
+
+        for ( String strRecipient : setRecipients )
+        {
+            // computed atomically with the removal of the digest being sent
+            _mapDigests.compute( strRecipient, ( strKey, digest ) -> {
+                Digest digestRecipient = digest != null ? digest : new Digest( );
+                digestRecipient.add( request, error, nMaxGroups, nSampleSize );
+                return digestRecipient;
+            } );
+        }
+    }
+
+    /**
+     * Send the pending digests
+     * 
+     * @return the number of sent mails
+     */
+    public static int sendDigests( )
+    {
+        int nSent = 0;
+
+        for ( String strRecipient : new ArrayList<>( _mapDigests.keySet( ) ) )
+        {
+            Digest digest = _mapDigests.remove( strRecipient );
+
+            if ( digest != null )
+            {
+                try
+                {
+                    send( strRecipient, digest );
+                    nSent++;
+                }
+                catch( RuntimeException e )
+                {
+                    AppLogService.error( "Unable to send the digest of " + digest._nErrorCount + " transfer errors to " + strRecipient + " : " + e.getMessage( ), e );
+                }
+            }
+        }
+
+        return nSent;
+    }
+
+    /**
+     * Get the groups of the pending digest of a recipient
+     * 
+     * @param strRecipient
+     *            the recipient
+     * @return the groups, the largest first
+     */
+    static List<ErrorDigestGroup> getPendingGroups( String strRecipient )
+    {
+        Digest digest = _mapDigests.get( strRecipient );
+
+        return digest != null ? digest.getGroups( ) : new ArrayList<>( );
+    }
+
+    /**
+     * Send a digest
+     * 
+     * @param strRecipient
+     *            the recipient
+     * @param digest
+     *            the digest
+     */
+    private static void send( String strRecipient, Digest digest )
+    {
+        Map<String, Object> model = new HashMap<>( );
+        model.put( MARK_GROUPS, digest.getGroups( ) );
+        model.put( MARK_ERROR_COUNT, digest._nErrorCount );
+        model.put( MARK_UNGROUPED_ERROR_COUNT, digest._nUngroupedErrorCount );
+
+        HtmlTemplate template = AppTemplateService.getTemplate( TEMPLATE_MAIL, null, model );
+        String strSenderName = AppPropertiesService.getProperty( "lutece.code" ) + " " + AppPropertiesService.getProperty( "lutece.name" );
+
+        MailService.sendMailHtml( strRecipient, strSenderName, AppPropertiesService.getProperty( "filestoragetransfer.MailSender" ),
+                AppPropertiesService.getProperty( "filestoragetransfer.MailSubject" ), template.getHtml( ) );
+    }
+
+    /**
+     * Pending digest of a recipient
+     */
+    private static final class Digest
+    {
+        private final Map<String, ErrorDigestGroup> _mapGroups = new LinkedHashMap<>( );
+        private int _nErrorCount;
+        private int _nUngroupedErrorCount;
+
+        /**
+         * Add an error to its group, or to the ungrouped errors once the maximum number of groups is reached
+         * 
+         * @param request
+         *            the request
+         * @param error
+         *            the error
+         * @param nMaxGroups
+         *            the maximum number of groups
+         * @param nSampleSize
+         *            the maximum number of sample request identifiers of a group
+         */
+        private void add( FileTransferRequest request, FileRequestError error, int nMaxGroups, int nSampleSize )
+        {
+            _nErrorCount++;
+
+            String strKey = ErrorDigestGroup.getKey( request, error );
+            ErrorDigestGroup group = _mapGroups.get( strKey );
+
+            if ( group == null )
+            {
+                if ( _mapGroups.size( ) >= nMaxGroups )
+                {
+                    _nUngroupedErrorCount++;
+                    return;
+                }
+
+                group = new ErrorDigestGroup( request, error );
+                _mapGroups.put( strKey, group );
+            }
+
+            group.add( request, error, nSampleSize );
+        }
+
+        /**
+         * Get the groups, the largest first
+         * 
+         * @return the groups
+         */
+        private List<ErrorDigestGroup> getGroups( )
+        {
+            List<ErrorDigestGroup> listGroups = new ArrayList<>( _mapGroups.values( ) );
+            listGroups.sort( Comparator.comparingInt( ErrorDigestGroup::getCount ).reversed( ) );
+
+            return listGroups;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Stack traces of the transfer errors. The errors of an outage share a few traces : a trace is identified by a fingerprint, the hash of the
+ * exception types of its cause chain and of their top frames, so that it is stored once whatever the number of errors.
+ */
+public final class ErrorTraceService
+{
+    private static final String PROPERTY_FINGERPRINT_FRAMES = "filestoragetransfer.errors.fingerprintFrames";
+    private static final int DEFAULT_FINGERPRINT_FRAMES = 5;
+    private static final String ALGORITHM = "SHA-256";
+    private static final char SEPARATOR = '\n';
+
+    /**
+     * Private constructor
+     */
+    private ErrorTraceService( )
+    {
+    }
+
+    /**
+     * Get the stack trace of an exception
+     * 
+     * @param e
+     *            the exception
+     * @return the stack trace
+     */
+    public static String getTrace( Throwable e )
+    {
+        StringWriter writer = new StringWriter( );
+        try ( PrintWriter printWriter = new PrintWriter( writer ) )
+        {
+            e.printStackTrace( printWriter );
+        }
+        return writer.toString( );
+    }
+
+    /**
+     * Get the fingerprint of an exception
+     * 
+     * @param e
+     *            the exception
+     * @return the fingerprint, a hexadecimal SHA-256 hash
+     */
+    public static String getFingerprint( Throwable e )
+    {
+        return getFingerprint( e, AppPropertiesService.getPropertyInt( PROPERTY_FINGERPRINT_FRAMES, DEFAULT_FINGERPRINT_FRAMES ) );
+    }
+
+    /**
+     * Get the fingerprint of an exception : the messages and the frames below the top frames, which vary between the errors of a same failure,
+     * are ignored
+     * 
+     * @param e
+     *            the exception
+     * @param nFrames
+     *            the number of top frames of each exception of the cause chain
+     * @return the fingerprint, a hexadecimal SHA-256 hash
+     */
+    static String getFingerprint( Throwable e, int nFrames )
+    {
+        StringBuilder sbSignature = new StringBuilder( );
+        Set<Throwable> setVisited = Collections.newSetFromMap( new IdentityHashMap<>( ) );
+
+        for ( Throwable cause = e; cause != null && setVisited.add( cause ); cause = cause.getCause( ) )
+        {
+            sbSignature.append( cause.getClass( ).getName( ) ).append( SEPARATOR );
+
+            StackTraceElement [ ] frames = cause.getStackTrace( );
+            for ( int i = 0; i < Math.min( nFrames, frames.length ); i++ )
+            {
+                sbSignature.append( frames [i].getClassName( ) ).append( '.' ).append( frames [i].getMethodName( ) ).append( ':' )
+                        .append( frames [i].getLineNumber( ) ).append( SEPARATOR );
+            }
+        }
+
+        try
+        {
+            return TransferChecksum.toHex( MessageDigest.getInstance( ALGORITHM ).digest( sbSignature.toString( ).getBytes( StandardCharsets.UTF_8 ) ) );
+        }
+        catch( NoSuchAlgorithmException ex )
+        {
+            throw new AppException( "Unsupported fingerprint algorithm : " + ALGORITHM, ex );
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.TransferStage;
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.TransferTimer;
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.IFileSystemFileStoreServiceProvider;
+import fr.paris.lutece.portal.business.file.File;
+import fr.paris.lutece.portal.service.file.FileServiceException;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Service copying a file between two filesystem providers with FileChannel.transferTo, the kernel moving the bytes without copying them to the heap.
+ * This zero-copy route is only taken with filestoragetransfer.checksum.algorithm=NONE : when a checksum is enabled, as it is by default, the file is
+ * instead copied through a pooled direct buffer, the checksum being updated with each chunk, so the source file is read once.
+ */
+public final class FileChannelTransferService
+{
+    private static final String PROPERTY_CHUNK_SIZE = "filestoragetransfer.fileChannel.chunkSize";
+    private static final String PROPERTY_BUFFER_SIZE = "filestoragetransfer.streaming.bufferSize";
+    private static final long DEFAULT_CHUNK_SIZE = 8388608L;
+    private static final int DEFAULT_BUFFER_SIZE = 65536;
+
+    /**
+     * Private constructor
+     */
+    private FileChannelTransferService( )
+    {
+    }
+
+    /**
+     * Copy a file from the source provider to the target provider
+     * 
+     * @param sourceFileStoreService
+     *            the source provider
+     * @param targetFileStoreService
+     *            the target provider
+     * @param strFileKey
+     *            the key of the file in the source provider
+     * @param checksum
+     *            the checksum updated with the content of the source file, null if none
+     * @param throttle
+     *            the throttle of the copied bytes
+     * @param timer
+     *            the timer of the transfer
+     * @return the key of the file in the target provider
+     * @throws FileServiceException
+     *             if the file cannot be found, read or stored
+     */
+    public static String transfer( IFileSystemFileStoreServiceProvider sourceFileStoreService, IFileSystemFileStoreServiceProvider targetFileStoreService,
+            String strFileKey, TransferChecksum checksum, TransferThrottle throttle, TransferTimer timer ) throws FileServiceException
+    {
+        long lStart = System.nanoTime( );
+        Path sourcePath = sourceFileStoreService.getFilePath( strFileKey );
+        File fileMetaData = sourceFileStoreService.getFileMetaData( strFileKey );
+        timer.record( TransferStage.SOURCE_READ, lStart );
+
+        if ( sourcePath == null || fileMetaData == null )
+        {
+            throw new FileServiceException( "File not found", 404, null );
+        }
+
+        lStart = System.nanoTime( );
+        Path targetPath = targetFileStoreService.newFilePath( fileMetaData );
+        timer.record( TransferStage.TARGET_WRITE, lStart );
+
+        try
+        {
+            try ( FileChannel sourceChannel = FileChannel.open( sourcePath, StandardOpenOption.READ );
+                    FileChannel targetChannel = FileChannel.open( targetPath, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING ) )
+            {
+                if ( checksum != null )
+                {
+                    copyWithChecksum( sourceChannel, targetChannel, checksum, throttle, timer );
+                }
+                else
+                {
+                    copy( sourceChannel, targetChannel, throttle, timer );
+                }
+
+                long lForceStart = System.nanoTime( );
+                targetChannel.force( true );
+                timer.record( TransferStage.TARGET_WRITE, lForceStart );
+            }
+
+            lStart = System.nanoTime( );
+            String strNewFileKey = targetFileStoreService.commitFilePath( targetPath, fileMetaData );
+            timer.record( TransferStage.TARGET_WRITE, lStart );
+
+            return strNewFileKey;
+        }
+        catch( IOException e )
+        {
+            deleteQuietly( targetPath );
+            throw new FileServiceException( "Unable to copy the file " + strFileKey + " : " + e.getMessage( ), 500, e );
+        }
+        catch( FileServiceException | RuntimeException e )
+        {
+            deleteQuietly( targetPath );
+            throw e;
+        }
+    }
+
+    /**
+     * Copy the source channel into the target channel, by chunks so that the throttle is applied during the copy. The caller forces the target to the
+     * storage device, the source file being deleted once transferred.
+     * 
+     * @param sourceChannel
+     *            the source channel
+     * @param targetChannel
+     *            the target channel
+     * @param throttle
+     *            the throttle of the copied bytes
+     * @param timer
+     *            the timer of the transfer
+     * @throws IOException
+     *             if the file cannot be copied
+     * @throws FileServiceException
+     *             if the throttle is interrupted
+     */
+    private static void copy( FileChannel sourceChannel, FileChannel targetChannel, TransferThrottle throttle, TransferTimer timer )
+            throws IOException, FileServiceException
+    {
+        long lSize = sourceChannel.size( );
+        long lChunkSize = Math.max( AppPropertiesService.getPropertyLong( PROPERTY_CHUNK_SIZE, DEFAULT_CHUNK_SIZE ), 1 );
+        long lPosition = 0;
+
+        while ( lPosition < lSize )
+        {
+            long lCount = Math.min( lChunkSize, lSize - lPosition );
+            throttle.acquireBytes( lCount );
+
+            long lStart = System.nanoTime( );
+            long lTransferred = sourceChannel.transferTo( lPosition, lCount, targetChannel );
+            timer.record( TransferStage.TARGET_WRITE, lStart );
+
+            if ( lTransferred <= 0 )
+            {
+                throw new IOException( "Source file truncated at " + lPosition + " bytes instead of " + lSize );
+            }
+            lPosition += lTransferred;
+            timer.addBytes( lTransferred );
+        }
+    }
+
+    /**
+     * Copy the source channel into the target channel through a pooled direct buffer, the checksum being updated with each chunk written
+     * 
+     * @param sourceChannel
+     *            the source channel
+     * @param targetChannel
+     *            the target channel
+     * @param checksum
+     *            the checksum
+     * @param throttle
+     *            the throttle of the copied bytes
+     * @param timer
+     *            the timer of the transfer
+     * @throws IOException
+     *             if the file cannot be copied
+     * @throws FileServiceException
+     *             if the throttle is interrupted
+     */
+    private static void copyWithChecksum( FileChannel sourceChannel, FileChannel targetChannel, TransferChecksum checksum, TransferThrottle throttle,
+            TransferTimer timer ) throws IOException, FileServiceException
+    {
+        try ( TransferBuffer transferBuffer = TransferBufferPool.acquireDirect( AppPropertiesService.getPropertyInt( PROPERTY_BUFFER_SIZE, DEFAULT_BUFFER_SIZE ) ) )
+        {
+            ByteBuffer buffer = transferBuffer.getByteBuffer( );
+            long lStart = System.nanoTime( );
+            int nRead;
+
+            while ( ( nRead = sourceChannel.read( buffer ) ) != -1 )
+            {
+                timer.record( TransferStage.SOURCE_READ, lStart );
+                buffer.flip( );
+                throttle.acquireBytes( nRead );
+
+                lStart = System.nanoTime( );
+                while ( buffer.hasRemaining( ) )
+                {
+                    targetChannel.write( buffer );
+                }
+                timer.record( TransferStage.TARGET_WRITE, lStart );
+                timer.addBytes( nRead );
+
+                // the written bytes are read again from the buffer, not from the file
+                buffer.rewind( );
+                checksum.update( buffer );
+                buffer.clear( );
+                lStart = System.nanoTime( );
+            }
+        }
+    }
+
+    /**
+     * Delete an incomplete copy
+     * 
+     * @param path
+     *            the path of the copy
+     */
+    private static void deleteQuietly( Path path )
+    {
+        try
+        {
+            Files.deleteIfExists( path );
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "Unable to delete the incomplete copy " + path + " : " + e.getMessage( ), e );
+        }
+    }
+}
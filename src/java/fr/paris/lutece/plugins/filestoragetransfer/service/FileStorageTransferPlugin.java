@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequestHome;
+import fr.paris.lutece.plugins.filestoragetransfer.business.StatusCounterHome;
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.TransferMetricsService;
+import fr.paris.lutece.portal.service.init.ShutdownServiceManager;
+import fr.paris.lutece.portal.service.plugin.PluginDefaultImplementation;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * FileStorageTransfer plugin, starting the metrics exporters, the lease renewal, the transfer dispatcher and the notification relay, and registering the
+ * shutdown service stopping them
+ */
+public class FileStorageTransferPlugin extends PluginDefaultImplementation
+{
+    private static final String PROPERTY_REBUILD_COUNTERS_ON_STARTUP = "filestoragetransfer.counters.rebuildOnStartup";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init( )
+    {
+        if ( AppPropertiesService.getPropertyBoolean( PROPERTY_REBUILD_COUNTERS_ON_STARTUP, false ) )
+        {
+            StatusCounterHome.rebuild( );
+        }
+
+        TransferMetricsService.start( );
+        ShutdownServiceManager.registerShutdownService( new FileStorageTransferShutdownService( ) );
+        TransferLeaseService.start( );
+
+        if ( TransferDispatcherService.isEnabled( ) )
+        {
+            FileTransferRequestHome.addQueueListener( TransferDispatcherService::signal );
+            TransferDispatcherService.start( );
+        }
+
+        if ( NotificationRelayService.isEnabled( ) )
+        {
+            NotificationRelayService.start( );
+        }
+    }
+}
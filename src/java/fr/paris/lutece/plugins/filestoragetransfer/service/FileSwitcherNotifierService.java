@@ -1,22 +1,71 @@
 package fr.paris.lutece.plugins.filestoragetransfer.service;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequest;
 import fr.paris.lutece.plugins.filestoragetransfer.service.listener.IFileTransferListener;
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.NotificationTimer;
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.TransferMetricsService;
 import fr.paris.lutece.portal.service.spring.SpringContextService;
 import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
 
+/**
+ * Notifier of the file transfer listeners. The completed transfers are aggregated into micro-batches, flushed when they reach their maximum size or
+ * delay, and each batch is passed to {@link IFileTransferListener#changeFileServices(List)}. The listeners are called on a dedicated executor, each
+ * one isolated from the others : a slow or failing listener neither delays the transfers nor changes their result. A listener still running after
+ * its timeout is interrupted.
+ */
 public final class FileSwitcherNotifierService {
-    
-    // singleton
-    private static FileSwitcherNotifierService _singleton;
 
-    private static List<IFileTransferListener> _fileTransferListeners;
+    private static final String PROPERTY_PREFIX = "filestoragetransfer.listeners.";
+    private static final String PROPERTY_THREADS = PROPERTY_PREFIX + "threads";
+    private static final String PROPERTY_QUEUE_CAPACITY = PROPERTY_PREFIX + "queueCapacity";
+    private static final String PROPERTY_BATCH_SIZE = PROPERTY_PREFIX + "batchSize";
+    private static final String PROPERTY_BATCH_DELAY = PROPERTY_PREFIX + "batchDelay";
+    private static final String PROPERTY_TIMEOUT = "timeout";
+    private static final String PROPERTY_SEPARATOR = ".";
+
+    private static final int DEFAULT_THREADS = 4;
+    private static final int DEFAULT_QUEUE_CAPACITY = 10000;
+    private static final long DEFAULT_TIMEOUT = 60;
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final long DEFAULT_BATCH_DELAY = 1000;
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final String THREAD_NAME = "filestoragetransfer-listener-";
+    private static final String WATCHDOG_THREAD_NAME = "filestoragetransfer-listener-watchdog-";
+
+    private final List<IFileTransferListener> _fileTransferListeners;
+    private final ThreadPoolExecutor _executor;
+    private final ScheduledThreadPoolExecutor _watchdog;
+    private final long _lDefaultTimeout;
+    private final int _nBatchSize;
+    private final long _lBatchDelay;
+    private final Object _batchLock = new Object( );
+    private List<FileTransferRequest> _listBatch = new ArrayList<>( );
+    private ScheduledFuture<?> _batchFlush;
 
     private FileSwitcherNotifierService ( ) {
 
-        _fileTransferListeners = SpringContextService.getBeansOfType( IFileTransferListener.class );
+        this( SpringContextService.getBeansOfType( IFileTransferListener.class ), AppPropertiesService.getPropertyInt( PROPERTY_THREADS, DEFAULT_THREADS ),
+                AppPropertiesService.getPropertyInt( PROPERTY_QUEUE_CAPACITY, DEFAULT_QUEUE_CAPACITY ),
+                AppPropertiesService.getPropertyLong( PROPERTY_PREFIX + PROPERTY_TIMEOUT, DEFAULT_TIMEOUT ) * MILLIS_PER_SECOND,
+                AppPropertiesService.getPropertyInt( PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE ),
+                AppPropertiesService.getPropertyLong( PROPERTY_BATCH_DELAY, DEFAULT_BATCH_DELAY ) );
 
         StringBuilder sbLog = new StringBuilder( );
         sbLog.append( "FileTransferListener - loading listeners  : " );
@@ -30,17 +79,374 @@ public final class FileSwitcherNotifierService {
 
     }
 
+    /**
+     * Constructor
+     *
+     * @param listListeners
+     *            the listeners
+     * @param nThreads
+     *            the number of threads calling the listeners
+     * @param nQueueCapacity
+     *            the maximum number of notifications waiting for a thread
+     * @param lDefaultTimeout
+     *            the timeout of the listeners in milliseconds, 0 for no timeout
+     * @param nBatchSize
+     *            the maximum number of requests of a batch, 1 to notify each request on its own
+     * @param lBatchDelay
+     *            the maximum time in milliseconds a request waits for its batch to be flushed
+     */
+    FileSwitcherNotifierService( List<IFileTransferListener> listListeners, int nThreads, int nQueueCapacity, long lDefaultTimeout, int nBatchSize,
+            long lBatchDelay )
+    {
+        _fileTransferListeners = listListeners;
+        _lDefaultTimeout = lDefaultTimeout;
+        _nBatchSize = Math.max( nBatchSize, 1 );
+        _lBatchDelay = Math.max( lBatchDelay, 0 );
+
+        int nPoolSize = Math.max( nThreads, 1 );
+        _executor = new ThreadPoolExecutor( nPoolSize, nPoolSize, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>( Math.max( nQueueCapacity, 1 ) ),
+                new DaemonThreadFactory( THREAD_NAME ) );
+        _watchdog = new ScheduledThreadPoolExecutor( 1, new DaemonThreadFactory( WATCHDOG_THREAD_NAME ) );
+        _watchdog.setRemoveOnCancelPolicy( true );
+    }
+
+    /**
+     * Notify the listeners of a completed transfer. The request is added to the current batch : this method does not wait for the listeners.
+     *
+     * @param request
+     *            the transfer request
+     */
     public void notifyFileTransferListeners( FileTransferRequest request ) {
-        _fileTransferListeners.forEach( listener -> listener.changeFileService( request ) );
+        List<FileTransferRequest> listFullBatch = null;
+
+        synchronized( _batchLock )
+        {
+            _listBatch.add( request );
+
+            if ( _listBatch.size( ) >= _nBatchSize || _lBatchDelay == 0 )
+            {
+                listFullBatch = takeBatch( );
+            }
+            else if ( _batchFlush == null )
+            {
+                _batchFlush = _watchdog.schedule( this::flush, _lBatchDelay, TimeUnit.MILLISECONDS );
+            }
+        }
+
+        if ( listFullBatch != null )
+        {
+            dispatch( listFullBatch );
+        }
     }
 
+    /**
+     * Get the names of the listeners
+     *
+     * @return the names
+     */
+    public List<String> getListenerNames( )
+    {
+        return _fileTransferListeners.stream( ).map( IFileTransferListener::getName ).collect( Collectors.toList( ) );
+    }
+
+    /**
+     * Notify a listener of a batch of completed transfers, on the executor of the notifier
+     *
+     * @param strListenerName
+     *            the name of the listener
+     * @param listRequests
+     *            the requests
+     * @param callback
+     *            called once with the outcome of the notification : false if the listener failed, timed out, could not be queued or does not exist
+     */
+    public void notifyListener( String strListenerName, List<FileTransferRequest> listRequests, Consumer<Boolean> callback )
+    {
+        Optional<IFileTransferListener> listener = _fileTransferListeners.stream( ).filter( l -> strListenerName.equals( l.getName( ) ) ).findFirst( );
+
+        if ( listener.isPresent( ) )
+        {
+            submit( listener.get( ), Collections.unmodifiableList( listRequests ), callback );
+        }
+        else
+        {
+            AppLogService.error( "Listener " + strListenerName + " not found : the requests " + getIds( listRequests ) + " are not notified" );
+            callback.accept( Boolean.FALSE );
+        }
+    }
+
+    /**
+     * Notify the listeners of the requests of the current batch without waiting for its maximum size or delay
+     */
+    public void flush( )
+    {
+        List<FileTransferRequest> listBatch;
+
+        synchronized( _batchLock )
+        {
+            if ( _listBatch.isEmpty( ) )
+            {
+                return;
+            }
+            listBatch = takeBatch( );
+        }
+
+        dispatch( listBatch );
+    }
+
+    /**
+     * Get the unique instance of the service, created with its threads on first use
+     * 
+     * @return the service
+     */
     public static FileSwitcherNotifierService instance( )
     {
-        if ( _singleton == null )
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Stop the threads of the notifier, the running notifications being interrupted
+     */
+    void shutdown( )
+    {
+        _executor.shutdownNow( );
+        _watchdog.shutdownNow( );
+    }
+
+    /**
+     * Take the requests of the current batch, a new batch being started. Must be called holding the batch lock.
+     *
+     * @return the requests of the batch
+     */
+    private List<FileTransferRequest> takeBatch( )
+    {
+        List<FileTransferRequest> listBatch = _listBatch;
+        _listBatch = new ArrayList<>( );
+
+        if ( _batchFlush != null )
+        {
+            _batchFlush.cancel( false );
+            _batchFlush = null;
+        }
+
+        return Collections.unmodifiableList( listBatch );
+    }
+
+    /**
+     * Queue the notification of a batch to every listener
+     *
+     * @param listBatch
+     *            the requests of the batch
+     */
+    private void dispatch( List<FileTransferRequest> listBatch )
+    {
+        _fileTransferListeners.forEach( listener -> submit( listener, listBatch, null ) );
+    }
+
+    /**
+     * Queue the notification of a listener
+     *
+     * @param listener
+     *            the listener
+     * @param listBatch
+     *            the requests of the batch
+     * @param callback
+     *            called with the outcome of the notification, may be null
+     */
+    private void submit( IFileTransferListener listener, List<FileTransferRequest> listBatch, Consumer<Boolean> callback )
+    {
+        String strListenerName = listener.getName( );
+        Notification notification = new Notification( listener, listBatch, TransferMetricsService.startNotification( strListenerName ),
+                getTimeout( strListenerName ), callback );
+
+        try
+        {
+            _executor.execute( notification.getTask( ) );
+        }
+        catch( RejectedExecutionException e )
+        {
+            notification.reject( );
+            AppLogService.error( "Notification of the listener " + strListenerName + " for the requests " + getIds( listBatch )
+                    + " dropped : the notification queue is full" );
+        }
+    }
+
+    /**
+     * Get the timeout of a listener : filestoragetransfer.listeners.&lt;name&gt;.timeout, or filestoragetransfer.listeners.timeout
+     *
+     * @param strListenerName
+     *            the name of the listener
+     * @return the timeout in milliseconds, 0 for no timeout
+     */
+    private long getTimeout( String strListenerName )
+    {
+        long lTimeout = AppPropertiesService.getPropertyLong( PROPERTY_PREFIX + strListenerName + PROPERTY_SEPARATOR + PROPERTY_TIMEOUT, -1 );
+
+        return lTimeout < 0 ? _lDefaultTimeout : lTimeout * MILLIS_PER_SECOND;
+    }
+
+    /**
+     * Get the ids of requests, for the logs
+     *
+     * @param listRequests
+     *            the requests
+     * @return the ids
+     */
+    private static String getIds( List<FileTransferRequest> listRequests )
+    {
+        return listRequests.stream( ).map( request -> String.valueOf( request.getId( ) ) ).collect( Collectors.joining( ",", "[", "]" ) );
+    }
+
+    /**
+     * Notification of a listener for a batch of transfer requests, interrupted by the watchdog if the listener does not return before its timeout
+     */
+    private final class Notification implements Runnable
+    {
+        private final IFileTransferListener _listener;
+        private final List<FileTransferRequest> _listBatch;
+        private final NotificationTimer _timer;
+        private final long _lTimeout;
+        private final FutureTask<Void> _task;
+        private final Consumer<Boolean> _callback;
+        private volatile ScheduledFuture<?> _timeoutCheck;
+
+        Notification( IFileTransferListener listener, List<FileTransferRequest> listBatch, NotificationTimer timer, long lTimeout,
+                Consumer<Boolean> callback )
+        {
+            _listener = listener;
+            _listBatch = listBatch;
+            _timer = timer;
+            _lTimeout = lTimeout;
+            _callback = callback;
+            _task = new FutureTask<>( this, null );
+        }
+
+        FutureTask<Void> getTask( )
+        {
+            return _task;
+        }
+
+        /**
+         * End the notification, not queued
+         */
+        void reject( )
+        {
+            if ( _timer.reject( ) )
+            {
+                callback( false );
+            }
+        }
+
+        @Override
+        public void run( )
         {
-            _singleton = new FileSwitcherNotifierService( );
+            _timer.start( );
+
+            if ( _lTimeout > 0 )
+            {
+                _timeoutCheck = _watchdog.schedule( this::timeout, _lTimeout, TimeUnit.MILLISECONDS );
+            }
+
+            try
+            {
+                _listener.changeFileServices( _listBatch );
+                end( true );
+            }
+            catch( RuntimeException e )
+            {
+                if ( end( false ) )
+                {
+                    AppLogService.error( "Listener " + _listener.getName( ) + " failed on the requests " + getIds( _listBatch ) + " : " + e.getMessage( ), e );
+                }
+            }
+        }
+
+        /**
+         * End the notification, the listener having returned
+         *
+         * @param bSuccess
+         *            false if the listener threw an exception
+         * @return true if the notification had not timed out
+         */
+        private boolean end( boolean bSuccess )
+        {
+            if ( _timeoutCheck != null )
+            {
+                _timeoutCheck.cancel( false );
+            }
+
+            if ( !_timer.stop( bSuccess ) )
+            {
+                return false;
+            }
+
+            callback( bSuccess );
+
+            return true;
+        }
+
+        /**
+         * Report the outcome of the notification, a failing callback not failing the notifier
+         *
+         * @param bSuccess
+         *            true if the listener has been notified
+         */
+        private void callback( boolean bSuccess )
+        {
+            if ( _callback != null )
+            {
+                try
+                {
+                    _callback.accept( bSuccess );
+                }
+                catch( RuntimeException e )
+                {
+                    AppLogService.error( "Unable to report the notification of the listener " + _listener.getName( ) + " : " + e.getMessage( ), e );
+                }
+            }
+        }
+
+        /**
+         * Interrupt the listener, still running after its timeout
+         */
+        private void timeout( )
+        {
+            if ( _timer.timeout( ) )
+            {
+                _task.cancel( true );
+                AppLogService.error( "Listener " + _listener.getName( ) + " interrupted after " + _lTimeout + " ms on the requests " + getIds( _listBatch ) );
+                callback( false );
+            }
         }
-        return _singleton;
     }
 
-}
\ No newline at end of file
+    /**
+     * Holder of the unique instance : the class initialization creates it once, even when the first calls are concurrent
+     */
+    private static final class SingletonHolder
+    {
+        private static final FileSwitcherNotifierService INSTANCE = new FileSwitcherNotifierService( );
+    }
+
+    /**
+     * Factory of the daemon threads of the notifier
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory
+    {
+        private final String _strName;
+        private final AtomicInteger _nThreadCount = new AtomicInteger( );
+
+        DaemonThreadFactory( String strName )
+        {
+            _strName = strName;
+        }
+
+        @Override
+        public Thread newThread( Runnable runnable )
+        {
+            Thread thread = new Thread( runnable, _strName + _nThreadCount.incrementAndGet( ) );
+            thread.setDaemon( true );
+
+            return thread;
+        }
+    }
+}
@@ -34,128 +34,434 @@
 
 package fr.paris.lutece.plugins.filestoragetransfer.service;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.sql.Timestamp;
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.function.BooleanSupplier;
 
 import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequest;
 import fr.paris.lutece.plugins.filestoragetransfer.business.FileRequestError;
 import fr.paris.lutece.plugins.filestoragetransfer.business.FileRequestErrorHome;
 import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequestHome;
 import fr.paris.lutece.plugins.filestoragetransfer.business.RequestStatus;
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.TransferMetricsService;
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.TransferStage;
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.TransferTimer;
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.IFileSystemFileStoreServiceProvider;
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.IServerSideTransferFileStoreServiceProvider;
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.IStreamingFileStoreServiceProvider;
 import fr.paris.lutece.portal.business.file.File;
 import fr.paris.lutece.portal.service.file.FileService;
 import fr.paris.lutece.portal.service.file.FileServiceException;
 import fr.paris.lutece.portal.service.file.IFileStoreServiceProvider;
+import fr.paris.lutece.portal.service.util.AppLogService;
 import fr.paris.lutece.portal.service.util.AppPropertiesService;
-import fr.paris.lutece.util.html.HtmlTemplate;
-import fr.paris.lutece.portal.service.mail.MailService;
-import fr.paris.lutece.portal.service.template.AppTemplateService;
 
 
 
 public class FileSwitcherService
 {
-    private static int _nRetryDelay = AppPropertiesService.getPropertyInt( "filestoragetransfer.RetryDelay", 3600 );
     private static int _nRetryLimit = AppPropertiesService.getPropertyInt( "filestoragetransfer.RetryLimit", 0 );
     private static boolean _bNotificationsEnabled = AppPropertiesService.getPropertyBoolean( "filestoragetransfer.NotificationsEnabled", false );
+    private static boolean _bStreamingEnabled = AppPropertiesService.getPropertyBoolean( "filestoragetransfer.streaming.enabled", true );
+    private static boolean _bServerSideTransferEnabled = AppPropertiesService.getPropertyBoolean( "filestoragetransfer.serverSideTransfer.enabled", true );
+    private static boolean _bFileChannelEnabled = AppPropertiesService.getPropertyBoolean( "filestoragetransfer.fileChannel.enabled", true );
 
-    private static String _sMailSubject = AppPropertiesService.getProperty( "filestoragetransfer.MailSubject" );
-    private static String _sMailSender = AppPropertiesService.getProperty( "filestoragetransfer.MailSender" );
-    private static String _sMailRecipient = AppPropertiesService.getProperty( "filestoragetransfer.MailRecipient" );
-    private static String _sApplicationCode = AppPropertiesService.getProperty( "lutece.code" );
-    private static String _sSiteName = AppPropertiesService.getProperty( "lutece.name" );
-    
-    private static String TEMPLATE_MAIL = "admin/plugins/filestoragetransfer/mail/mail_filestoragetransfer.html" ;
-
-    private static final String MARK_REQUEST = "request";
-    private static final String MARK_ERROR = "error";
-
-    private static StringWriter sw = new StringWriter();
-    private static PrintWriter pw = new PrintWriter(sw);
-    
     public static void TransferFileToNewFileService ( FileTransferRequest request )
     {
+        String strSourceProviderName = request.getSourceFileserviceproviderName( );
+        String strTargetProviderName = request.getTargetFileserviceproviderName( );
+
+        long lShortCircuitDelay = ProviderCircuitBreakerService.acquire( strSourceProviderName, strTargetProviderName );
+
+        if ( lShortCircuitDelay > 0 )
+        {
+            postpone( request, lShortCircuitDelay );
+            return;
+        }
+
+        TransferTimer timer = TransferMetricsService.startTransfer( strSourceProviderName, strTargetProviderName );
+        boolean bTransferred = false;
+
         try {
-            String newFileKey = TransferFileToNewFileService ( 
+            TransferChecksum checksum = TransferChecksum.create( );
+            String newFileKey = transferFile ( 
                 request.getOldFileKey( ), 
-                request.getSourceFileserviceproviderName( ),
-                request.getTargetFileserviceproviderName( ) 
+                strSourceProviderName,
+                strTargetProviderName,
+                request.getId( ),
+                checksum,
+                timer,
+                ( ) -> TransferLeaseService.confirmLease( request )
             );
+            bTransferred = true;
+            ProviderCircuitBreakerService.onSuccess( strSourceProviderName, strTargetProviderName );
 
             request.setNewFileKey( newFileKey );
+            request.setChecksum( checksum != null ? checksum.toString( ) : null );
             request.setRequestStatus( RequestStatus.STATUS_DONE );
-            FileTransferRequestHome.update( request );
+            // the execution time of a completed request is the time of its completion
+            request.setExecutionTime( Timestamp.from( Instant.now( ) ) );
+            long lStart = System.nanoTime( );
+            boolean bOutbox = NotificationRelayService.isEnabled( );
+            boolean bUpdated;
+            if ( bOutbox )
+            {
+                // the notifications are written with the completion and delivered by the relay
+                bUpdated = FileTransferRequestHome.completeLeased( request, FileSwitcherNotifierService.instance( ).getListenerNames( ) );
+            }
+            else
+            {
+                bUpdated = FileTransferRequestHome.updateLeased( request );
+            }
+            timer.record( TransferStage.DB_UPDATE, lStart );
 
-            FileSwitcherNotifierService _fileSwitcher = FileSwitcherNotifierService.instance();
-            _fileSwitcher.notifyFileTransferListeners(request);
+            if ( !bUpdated )
+            {
+                // the lease has been renewed before the deletion of the source : it can only be lost here by a database delay longer than the lease
+                AppLogService.error( "The lease of the request " + request.getId( ) + " has been lost after its transfer to " + newFileKey
+                        + " : its completion is discarded" );
+                return;
+            }
+
+            // the listeners are notified asynchronously : the file is transferred whatever their outcome
+            lStart = System.nanoTime( );
+            try
+            {
+                if ( bOutbox )
+                {
+                    NotificationRelayService.signal( );
+                }
+                else
+                {
+                    FileSwitcherNotifierService.instance( ).notifyFileTransferListeners( request );
+                }
+            }
+            catch( RuntimeException e )
+            {
+                AppLogService.error( "Unable to notify the listeners of the request " + request.getId( ) + " : " + e.getMessage( ), e );
+            }
+            timer.record( TransferStage.LISTENER_NOTIFICATION, lStart );
+        }
+        catch ( TransferPostponedException e ) {
+            // the node lacks the memory to run the transfer now : neither the providers nor the request are at fault
+            ProviderCircuitBreakerService.release( strSourceProviderName, strTargetProviderName );
+            AppLogService.debug( "Request " + request.getId( ) + " postponed : " + e.getMessage( ) );
+            postpone( request, e.getDelay( ) );
+        }
+        catch ( TransferLeaseLostException e ) {
+            // the request has been claimed again by another node, which transfers the file from its source
+            ProviderCircuitBreakerService.release( strSourceProviderName, strTargetProviderName );
+            AppLogService.error( "The lease of the request " + request.getId( ) + " has been lost during its transfer : " + e.getMessage( ) );
         }
         catch ( FileServiceException e ) {
-            HandleException( request, e, e.getResponseCode() != null ? e.getResponseCode() : 404 );                     
+            int nResponseCode = e.getResponseCode() != null ? e.getResponseCode() : 500;
+            recordProviderOutcome( bTransferred, nResponseCode, strSourceProviderName, strTargetProviderName );
+            HandleException( request, e, nResponseCode, timer );                     
         }
         catch ( Exception e ) {
-            HandleException( request, e, 500 );
+            recordProviderOutcome( bTransferred, 500, strSourceProviderName, strTargetProviderName );
+            HandleException( request, e, 500, timer );
+        }
+        finally
+        {
+            timer.stop( bTransferred );
+        }
+    }
+
+    /**
+     * Postpone a request short-circuited by the open circuit of its providers, or lacking the memory of the node to run. The request is not executed :
+     * neither its retry count nor its errors are updated.
+     * 
+     * @param request
+     *            the request
+     * @param lDelay
+     *            the delay in milliseconds
+     */
+    private static void postpone( FileTransferRequest request, long lDelay )
+    {
+        request.setRequestStatus( request.getRetryCount( ) > 0 ? RequestStatus.STATUS_FAILED : RequestStatus.STATUS_TODO );
+        request.setExecutionTime( Timestamp.from( Instant.now( ).plusMillis( lDelay ) ) );
+        if ( !FileTransferRequestHome.updateLeased( request ) )
+        {
+            AppLogService.error( "The lease of the request " + request.getId( ) + " has been lost : it is not postponed" );
+        }
+    }
+
+    /**
+     * Record the outcome of a failed request on the circuit of its providers
+     * 
+     * @param bTransferred
+     *            true if the file has been transferred, the failure coming from the request update
+     * @param nResponseCode
+     *            the error code
+     * @param strSourceProviderName
+     *            the name of the source provider
+     * @param strTargetProviderName
+     *            the name of the target provider
+     */
+    private static void recordProviderOutcome( boolean bTransferred, int nResponseCode, String strSourceProviderName, String strTargetProviderName )
+    {
+        if ( bTransferred )
+        {
+            return;
+        }
+
+        if ( RetryPolicyService.isPermanent( nResponseCode ) )
+        {
+            // a missing file or an invalid request does not tell anything about the availability of the providers
+            ProviderCircuitBreakerService.release( strSourceProviderName, strTargetProviderName );
+        }
+        else
+        {
+            ProviderCircuitBreakerService.onFailure( strSourceProviderName, strTargetProviderName );
         }
     }
 
     public static String TransferFileToNewFileService ( String strOldFileKey, String strSourceFileServiceProvider, String strTargetFileServiceProvider )
             throws FileServiceException
     {
-        IFileStoreServiceProvider sourceFileStoreService = FileService.getInstance( ).getFileStoreServiceProvider( strSourceFileServiceProvider );
-        IFileStoreServiceProvider targetFileStoreService = FileService.getInstance( ).getFileStoreServiceProvider( strTargetFileServiceProvider );
+        IFileStoreServiceProvider sourceFileStoreService = getFileStoreServiceProvider( strSourceFileServiceProvider );
+        IFileStoreServiceProvider targetFileStoreService = getFileStoreServiceProvider( strTargetFileServiceProvider );
+
+        return TransferFileToNewFileService( strOldFileKey, sourceFileStoreService, targetFileStoreService );
+    }
+
+    /**
+     * Transfer a file between two provider instances, which do not need to be registered in the FileService
+     * 
+     * @param strOldFileKey
+     *            the key of the file in the source provider
+     * @param sourceFileStoreService
+     *            the source provider
+     * @param targetFileStoreService
+     *            the target provider
+     * @return the key of the file in the target provider
+     * @throws FileServiceException
+     *             if the transfer fails
+     */
+    public static String TransferFileToNewFileService ( String strOldFileKey, IFileStoreServiceProvider sourceFileStoreService,
+            IFileStoreServiceProvider targetFileStoreService ) throws FileServiceException
+    {
+        TransferTimer timer = TransferMetricsService.startTransfer( sourceFileStoreService.getName( ), targetFileStoreService.getName( ) );
+        boolean bTransferred = false;
 
-        File fileToTransfer = sourceFileStoreService.getFile( strOldFileKey );
+        try
+        {
+            String strNewFileKey = transferFile( strOldFileKey, sourceFileStoreService, targetFileStoreService, 0, TransferChecksum.create( ), timer, null );
+            bTransferred = true;
 
-        if( fileToTransfer == null ) {
-            throw new FileServiceException( "File not found", 404, null );
+            return strNewFileKey;
+        }
+        finally
+        {
+            timer.stop( bTransferred );
         }
+    }
 
-        String strNewFileKey = targetFileStoreService.storeFile( fileToTransfer );
+    /**
+     * Transfer a file to a new file service
+     * 
+     * @param strOldFileKey
+     *            the key of the file in the source file service
+     * @param strSourceFileServiceProvider
+     *            the name of the source file service provider
+     * @param strTargetFileServiceProvider
+     *            the name of the target file service provider
+     * @param nIdRequest
+     *            the id of the transfer request, used to resume chunked transfers, 0 if none
+     * @param checksum
+     *            the checksum computed from the source file and verified on the target file before the source is deleted, null to skip the
+     *            verification
+     * @param timer
+     *            the timer of the transfer stages
+     * @param leaseCheck
+     *            the check of the lease of the request, done before the source file is deleted, null if the transfer is not leased
+     * @return the key of the file in the target file service
+     * @throws FileServiceException
+     *             if the transfer fails
+     */
+    private static String transferFile ( String strOldFileKey, String strSourceFileServiceProvider, String strTargetFileServiceProvider, int nIdRequest,
+            TransferChecksum checksum, TransferTimer timer, BooleanSupplier leaseCheck ) throws FileServiceException
+    {
+        return transferFile( strOldFileKey, getFileStoreServiceProvider( strSourceFileServiceProvider ), getFileStoreServiceProvider( strTargetFileServiceProvider ),
+                nIdRequest, checksum, timer, leaseCheck );
+    }
 
-        sourceFileStoreService.delete( strOldFileKey );
+    /**
+     * Get a file service provider by its name
+     * 
+     * @param strFileServiceProvider
+     *            the name of the provider
+     * @return the provider
+     * @throws FileServiceException
+     *             if there is no provider with this name
+     */
+    private static IFileStoreServiceProvider getFileStoreServiceProvider( String strFileServiceProvider ) throws FileServiceException
+    {
+        IFileStoreServiceProvider fileStoreService = FileService.getInstance( ).getFileStoreServiceProvider( strFileServiceProvider );
 
-        return strNewFileKey;
+        if ( fileStoreService == null )
+        {
+            throw new FileServiceException( "File service provider not found : " + strFileServiceProvider, 400, null );
+        }
 
+        return fileStoreService;
     }
 
-    private static void HandleException ( FileTransferRequest request, Exception e, int ResponseCode ) 
+    /**
+     * Transfer a file between two providers
+     * 
+     * @param strOldFileKey
+     *            the key of the file in the source provider
+     * @param sourceFileStoreService
+     *            the source provider
+     * @param targetFileStoreService
+     *            the target provider
+     * @param nIdRequest
+     *            the id of the transfer request, used to resume chunked transfers, 0 if none
+     * @param checksum
+     *            the checksum verified on the target file before the source is deleted, null to skip the verification
+     * @param timer
+     *            the timer of the transfer stages
+     * @param leaseCheck
+     *            the check of the lease of the request, done before the source file is deleted, null if the transfer is not leased
+     * @return the key of the file in the target provider
+     * @throws FileServiceException
+     *             if the transfer fails, or if the lease has been lost before the deletion of the source file
+     */
+    private static String transferFile ( String strOldFileKey, IFileStoreServiceProvider sourceFileStoreService, IFileStoreServiceProvider targetFileStoreService,
+            int nIdRequest, TransferChecksum checksum, TransferTimer timer, BooleanSupplier leaseCheck ) throws FileServiceException
     {
-        request.upRetryCount();
-        
-        if(request.getRetryCount() >= _nRetryLimit) 
+        String strNewFileKey;
+        TransferThrottle throttle = ThrottlingService.getThrottle( sourceFileStoreService.getName( ), targetFileStoreService.getName( ) );
+        throttle.acquireOperation( );
+
+        // providers of the same backend transfer the file by themselves, the content not going through the JVM
+        if ( _bServerSideTransferEnabled && sourceFileStoreService instanceof IServerSideTransferFileStoreServiceProvider )
         {
-            request.setRequestStatus( RequestStatus.STATUS_ERROR );
+            strNewFileKey = ServerSideTransferService.transfer( (IServerSideTransferFileStoreServiceProvider) sourceFileStoreService, targetFileStoreService,
+                    strOldFileKey, checksum, timer, leaseCheck );
+
+            if ( strNewFileKey != null )
+            {
+                return strNewFileKey;
+            }
         }
-        else 
+
+        // the memory governor only admits the transfers loading the whole file : the other copies go through bounded buffers
+        long lReservedBytes = 0;
+
+        try
         {
-            request.setRequestStatus( RequestStatus.STATUS_FAILED );
+            if ( _bFileChannelEnabled && sourceFileStoreService instanceof IFileSystemFileStoreServiceProvider
+                    && targetFileStoreService instanceof IFileSystemFileStoreServiceProvider )
+            {
+                // the kernel copies the file between the two filesystems, without going through the heap
+                strNewFileKey = FileChannelTransferService.transfer( (IFileSystemFileStoreServiceProvider) sourceFileStoreService,
+                        (IFileSystemFileStoreServiceProvider) targetFileStoreService, strOldFileKey, checksum, throttle, timer );
+            }
+            else if ( _bStreamingEnabled && targetFileStoreService instanceof IStreamingFileStoreServiceProvider )
+            {
+                strNewFileKey = StreamingTransferService.transfer( sourceFileStoreService, (IStreamingFileStoreServiceProvider) targetFileStoreService, strOldFileKey, nIdRequest, checksum, throttle, timer );
+            }
+            else
+            {
+                // the target provider can only store a whole file : the content is loaded in memory, within the budget of the node
+                lReservedBytes = TransferMemoryGovernor.reserve( sourceFileStoreService, strOldFileKey );
+
+                long lStart = System.nanoTime( );
+                File fileToTransfer = sourceFileStoreService.getFile( strOldFileKey );
+                timer.record( TransferStage.SOURCE_READ, lStart );
+
+                if( fileToTransfer == null ) {
+                    throw new FileServiceException( "File not found", 404, null );
+                }
+
+                if ( fileToTransfer.getPhysicalFile( ) != null && fileToTransfer.getPhysicalFile( ).getValue( ) != null )
+                {
+                    throttle.acquireBytes( fileToTransfer.getPhysicalFile( ).getValue( ).length );
+                    timer.addBytes( fileToTransfer.getPhysicalFile( ).getValue( ).length );
+                }
+
+                lStart = System.nanoTime( );
+                strNewFileKey = targetFileStoreService.storeFile( fileToTransfer );
+                timer.record( TransferStage.TARGET_WRITE, lStart );
+
+                if ( checksum != null && fileToTransfer.getPhysicalFile( ) != null && fileToTransfer.getPhysicalFile( ).getValue( ) != null )
+                {
+                    byte [ ] content = fileToTransfer.getPhysicalFile( ).getValue( );
+                    checksum.update( content, 0, content.length );
+                }
+            }
+
+            // the source is only deleted once the target content is known to be identical. The reservation is held until the verification
+            // has ended, the target provider possibly loading the stored file again to compute its checksum
+            if ( checksum != null )
+            {
+                long lStart = System.nanoTime( );
+                ChecksumVerificationService.verify( targetFileStoreService, strNewFileKey, checksum );
+                timer.record( TransferStage.CHECKSUM_VERIFICATION, lStart );
+            }
+        }
+        finally
+        {
+            TransferMemoryGovernor.release( lReservedBytes );
         }
 
-        request.setExecutionTime( Timestamp.from( Instant.now( ).plusSeconds( _nRetryDelay ) ) );
-        FileTransferRequestHome.update( request );
+        // the source is only deleted by the node still holding the lease : a node which claimed the request again would find no file to transfer
+        TransferLeaseService.fence( leaseCheck, targetFileStoreService, strNewFileKey );
 
-        e.printStackTrace(pw);
+        long lStart = System.nanoTime( );
+        sourceFileStoreService.delete( strOldFileKey );
+        timer.record( TransferStage.SOURCE_DELETE, lStart );
 
-        FileRequestError error = new FileRequestError( request.getId(), ResponseCode, e.getMessage() == null ? "" : e.getMessage(), sw.toString(), Timestamp.from( Instant.now( ) ) );
-        FileRequestErrorHome.create( error );
+        return strNewFileKey;
+
+    }
 
-        if(_bNotificationsEnabled) 
+    private static void HandleException ( FileTransferRequest request, Exception e, int ResponseCode, TransferTimer timer ) 
+    {
+        if ( RetryPolicyService.isPermanent( ResponseCode ) )
+        {
+            // retrying cannot succeed : the retry count is left untouched
+            request.setRequestStatus( RequestStatus.STATUS_ERROR );
+            // the execution time of a request in error is the time of its last attempt
+            request.setExecutionTime( Timestamp.from( Instant.now( ) ) );
+        }
+        else
         {
-            Map<String, Object> model = new HashMap<>( );
-            model.put( MARK_REQUEST, request );
-            model.put( MARK_ERROR, error );
+            request.upRetryCount();
 
-            HtmlTemplate template = AppTemplateService.getTemplate( TEMPLATE_MAIL, null, model );
-            if(request.getContactMail() != null ) {
-                MailService.sendMailHtml(_sMailRecipient, _sApplicationCode + " " + _sSiteName, _sMailSender, _sMailSubject, template.getHtml());
+            if(request.getRetryCount() >= _nRetryLimit) 
+            {
+                request.setRequestStatus( RequestStatus.STATUS_ERROR );
+                request.setExecutionTime( Timestamp.from( Instant.now( ) ) );
             }
-            else {
-                MailService.sendMailHtml(request.getContactMail(), null, _sMailRecipient, _sApplicationCode + " " + _sSiteName, _sMailSender, _sMailSubject, template.getHtml());
+            else 
+            {
+                request.setRequestStatus( RequestStatus.STATUS_FAILED );
+                request.setExecutionTime( Timestamp.from( Instant.now( ).plusSeconds( RetryPolicyService.getRetryDelay( ResponseCode, request.getRetryCount( ) ) ) ) );
             }
         }
+
+        long lStart = System.nanoTime( );
+        if ( !FileTransferRequestHome.updateLeased( request ) )
+        {
+            AppLogService.error( "The lease of the request " + request.getId( ) + " has been lost : its failure is discarded", e );
+            return;
+        }
+
+        // the trace is stored once for all the errors sharing its fingerprint
+        FileRequestError error = new FileRequestError( request.getId(), ResponseCode, e.getMessage() == null ? "" : e.getMessage(), ErrorTraceService.getTrace( e ), Timestamp.from( Instant.now( ) ) );
+        error.setFingerprint( ErrorTraceService.getFingerprint( e ) );
+        FileRequestErrorHome.create( error );
+        timer.record( TransferStage.DB_UPDATE, lStart );
+
+        // the errors are mailed by periodic digests, off the transfer path
+        if ( _bNotificationsEnabled )
+        {
+            ErrorDigestService.add( request, error );
+        }
     }
 
     public Timestamp getExecutionTime( )
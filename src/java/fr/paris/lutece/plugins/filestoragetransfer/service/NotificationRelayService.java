@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequest;
+import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequestHome;
+import fr.paris.lutece.plugins.filestoragetransfer.business.ListenerNotification;
+import fr.paris.lutece.plugins.filestoragetransfer.business.ListenerNotificationHome;
+import fr.paris.lutece.plugins.filestoragetransfer.business.RequestStatus;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Relay delivering the notifications of the outbox to the listeners. The notifications are written with the completion of their request, so they
+ * survive a crash of the node ; the relay claims them with a lease, delivers them through the {@link FileSwitcherNotifierService} and deletes them
+ * once delivered. A notification whose delivery fails, or whose node stops before the end of its lease, is delivered again : the listeners are
+ * notified at least once and must accept the same completed request several times.
+ */
+public final class NotificationRelayService
+{
+    private static final String PROPERTY_PREFIX = "filestoragetransfer.outbox.";
+    private static final String PROPERTY_ENABLED = PROPERTY_PREFIX + "enabled";
+    private static final String PROPERTY_POLL_INTERVAL = PROPERTY_PREFIX + "pollInterval";
+    private static final String PROPERTY_BATCH_SIZE = PROPERTY_PREFIX + "batchSize";
+    private static final String PROPERTY_LEASE_DURATION = PROPERTY_PREFIX + "leaseDuration";
+    private static final String PROPERTY_BASE_DELAY = PROPERTY_PREFIX + "retry.baseDelay";
+    private static final String PROPERTY_MAX_DELAY = PROPERTY_PREFIX + "retry.maxDelay";
+    private static final String PROPERTY_BATCH_DELAY = "filestoragetransfer.listeners.batchDelay";
+
+    private static final long DEFAULT_POLL_INTERVAL = 10;
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final long DEFAULT_LEASE_DURATION = 300;
+    private static final long DEFAULT_BASE_DELAY = 30;
+    private static final long DEFAULT_MAX_DELAY = 3600;
+    private static final long DEFAULT_BATCH_DELAY = 1000;
+    private static final long MIN_WAIT = 1000;
+    private static final String THREAD_NAME = "filestoragetransfer-notification-relay";
+    private static final long STOP_TIMEOUT = 60000L;
+
+    private static final Object _lock = new Object( );
+    private static final Set<String> _setBusyListeners = ConcurrentHashMap.newKeySet( );
+    private static boolean _bSignaled;
+    private static volatile boolean _bRunning;
+    private static Thread _thread;
+
+    /**
+     * Private constructor
+     */
+    private NotificationRelayService( )
+    {
+    }
+
+    /**
+     * Tell if the notifications go through the outbox
+     * 
+     * @return true if enabled
+     */
+    public static boolean isEnabled( )
+    {
+        return AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, true );
+    }
+
+    /**
+     * Start the relay thread
+     */
+    public static synchronized void start( )
+    {
+        if ( _thread != null && _thread.isAlive( ) )
+        {
+            return;
+        }
+
+        _bRunning = true;
+        _thread = new Thread( NotificationRelayService::relay, THREAD_NAME );
+        _thread.setDaemon( true );
+        _thread.start( );
+    }
+
+    /**
+     * Stop the relay thread and wait for its end. The notifications being delivered are delivered again by the next relay once their lease has
+     * expired.
+     */
+    public static void stop( )
+    {
+        Thread thread;
+
+        synchronized( NotificationRelayService.class )
+        {
+            _bRunning = false;
+            thread = _thread;
+            _thread = null;
+        }
+
+        if ( thread != null )
+        {
+            thread.interrupt( );
+            try
+            {
+                thread.join( STOP_TIMEOUT );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+            }
+        }
+    }
+
+    /**
+     * Wake the relay up, a notification having been written to the outbox
+     */
+    public static void signal( )
+    {
+        synchronized( _lock )
+        {
+            _bSignaled = true;
+            _lock.notifyAll( );
+        }
+    }
+
+    /**
+     * Claim the due notifications of the listeners that are not being notified, and deliver them, a batch for each listener, without waiting for the
+     * outcome of the deliveries : a listener is claimed for again as soon as its delivery is over, whatever the other listeners
+     * 
+     * @param nBatchSize
+     *            the maximum number of notifications to deliver, 0 for no limit
+     * @return the number of claimed notifications
+     */
+    public static int relayDueNotifications( int nBatchSize )
+    {
+        Instant now = Instant.now( );
+        long lLeaseDuration = AppPropertiesService.getPropertyLong( PROPERTY_LEASE_DURATION, DEFAULT_LEASE_DURATION );
+        Instant leaseExpiration = now.plusSeconds( lLeaseDuration );
+        String strClaimToken = UUID.randomUUID( ).toString( );
+
+        List<ListenerNotification> listNotifications = ListenerNotificationHome.claim( Timestamp.from( now ), nBatchSize,
+                new ArrayList<>( _setBusyListeners ), strClaimToken, Timestamp.from( leaseExpiration ) );
+
+        if ( listNotifications.isEmpty( ) )
+        {
+            return 0;
+        }
+
+        List<Integer> listIdRequests = listNotifications.stream( ).map( ListenerNotification::getIdRequest ).distinct( ).collect( Collectors.toList( ) );
+        Map<Integer, FileTransferRequest> mapRequests = FileTransferRequestHome.getRequestsListByIds( listIdRequests ).stream( )
+                .collect( Collectors.toMap( FileTransferRequest::getId, Function.identity( ) ) );
+
+        Map<String, List<ListenerNotification>> mapByListener = listNotifications.stream( )
+                .collect( Collectors.groupingBy( ListenerNotification::getListenerName, LinkedHashMap::new, Collectors.toList( ) ) );
+
+        FileSwitcherNotifierService notifier = FileSwitcherNotifierService.instance( );
+
+        for ( Map.Entry<String, List<ListenerNotification>> entry : mapByListener.entrySet( ) )
+        {
+            String strListenerName = entry.getKey( );
+            List<FileTransferRequest> listRequests = new ArrayList<>( );
+            List<Integer> listIds = new ArrayList<>( );
+            List<Integer> listObsoleteIds = new ArrayList<>( );
+            int nMaxAttemptCount = 0;
+
+            for ( ListenerNotification notification : entry.getValue( ) )
+            {
+                FileTransferRequest request = mapRequests.get( notification.getIdRequest( ) );
+
+                // a request deleted or requeued since its completion is not notified
+                if ( request == null || request.getRequestStatus( ) != RequestStatus.STATUS_DONE )
+                {
+                    listObsoleteIds.add( notification.getId( ) );
+                }
+                else
+                {
+                    listRequests.add( request );
+                    listIds.add( notification.getId( ) );
+                    nMaxAttemptCount = Math.max( nMaxAttemptCount, notification.getAttemptCount( ) );
+                }
+            }
+
+            ListenerNotificationHome.remove( listObsoleteIds, strClaimToken );
+
+            if ( listRequests.isEmpty( ) )
+            {
+                continue;
+            }
+
+            int nAttemptCount = nMaxAttemptCount;
+            _setBusyListeners.add( strListenerName );
+            notifier.notifyListener( strListenerName, listRequests, bSuccess -> {
+                try
+                {
+                    if ( bSuccess )
+                    {
+                        ListenerNotificationHome.remove( listIds, strClaimToken );
+                    }
+                    else
+                    {
+                        ListenerNotificationHome.release( listIds, strClaimToken, Timestamp.from( Instant.now( ).plusSeconds( getRetryDelay( nAttemptCount ) ) ) );
+                    }
+                }
+                finally
+                {
+                    // the leases protect the notifications not delivered by then
+                    if ( Instant.now( ).isAfter( leaseExpiration ) )
+                    {
+                        AppLogService.error( "Notification of the listener " + strListenerName
+                                + " over after the end of its lease : the notifications may have been delivered again" );
+                    }
+                    _setBusyListeners.remove( strListenerName );
+                    signal( );
+                }
+            } );
+        }
+
+        return listNotifications.size( );
+    }
+
+    /**
+     * Get the delay before the next delivery of a notification
+     * 
+     * @param nAttemptCount
+     *            the number of failed deliveries
+     * @return the delay in seconds
+     */
+    static long getRetryDelay( int nAttemptCount )
+    {
+        return RetryPolicyService.computeDelay( AppPropertiesService.getPropertyLong( PROPERTY_BASE_DELAY, DEFAULT_BASE_DELAY ),
+                AppPropertiesService.getPropertyLong( PROPERTY_MAX_DELAY, DEFAULT_MAX_DELAY ), 0, nAttemptCount, 0 );
+    }
+
+    /**
+     * Loop of the relay thread
+     */
+    private static void relay( )
+    {
+        AppLogService.info( "Listener notification relay started" );
+
+        while ( _bRunning && !Thread.currentThread( ).isInterrupted( ) )
+        {
+            try
+            {
+                int nBatchSize = AppPropertiesService.getPropertyInt( PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE );
+
+                // a full batch means other notifications may be due
+                if ( relayDueNotifications( nBatchSize ) < nBatchSize && await( getPollInterval( ) ) )
+                {
+                    // the completions following a signal are delivered in the same batch
+                    Thread.sleep( AppPropertiesService.getPropertyLong( PROPERTY_BATCH_DELAY, DEFAULT_BATCH_DELAY ) );
+                }
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+            }
+            catch( RuntimeException e )
+            {
+                AppLogService.error( "Listener notification relay error : " + e.getMessage( ), e );
+                try
+                {
+                    await( getPollInterval( ) );
+                }
+                catch( InterruptedException ie )
+                {
+                    Thread.currentThread( ).interrupt( );
+                }
+            }
+        }
+
+        AppLogService.info( "Listener notification relay stopped" );
+    }
+
+    /**
+     * Wait for a signal or for a timeout
+     * 
+     * @param lTimeout
+     *            the timeout in milliseconds
+     * @return true if the relay has been signaled
+     * @throws InterruptedException
+     *             if the thread is interrupted
+     */
+    private static boolean await( long lTimeout ) throws InterruptedException
+    {
+        long lDeadline = System.currentTimeMillis( ) + lTimeout;
+
+        synchronized( _lock )
+        {
+            long lRemaining = lTimeout;
+
+            while ( !_bSignaled && lRemaining > 0 )
+            {
+                _lock.wait( lRemaining );
+                lRemaining = lDeadline - System.currentTimeMillis( );
+            }
+
+            boolean bSignaled = _bSignaled;
+            _bSignaled = false;
+
+            return bSignaled;
+        }
+    }
+
+    /**
+     * Returns the poll interval
+     * 
+     * @return the interval in milliseconds
+     */
+    private static long getPollInterval( )
+    {
+        return Math.max( AppPropertiesService.getPropertyLong( PROPERTY_POLL_INTERVAL, DEFAULT_POLL_INTERVAL ) * 1000, MIN_WAIT );
+    }
+}
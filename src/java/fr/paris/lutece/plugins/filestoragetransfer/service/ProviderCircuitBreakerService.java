@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Circuit breakers of the transfers between file service providers, keyed by pair of source and target providers. When a provider is down, the
+ * transfers involving it are short-circuited instead of failing one by one, which would consume their retries and record an error for each of
+ * them. A failed transfer does not tell which of its providers failed : the failure is charged to the pair, so that a healthy provider is not
+ * short-circuited for the transfers it shares with another, failing, one.
+ */
+public final class ProviderCircuitBreakerService
+{
+    private static final String PROPERTY_ENABLED = "filestoragetransfer.circuitBreaker.enabled";
+    private static final String PROPERTY_FAILURE_THRESHOLD = "filestoragetransfer.circuitBreaker.failureThreshold";
+    private static final String PROPERTY_OPEN_DURATION = "filestoragetransfer.circuitBreaker.openDuration";
+    private static final String PROPERTY_HALF_OPEN_TRIALS = "filestoragetransfer.circuitBreaker.halfOpenTrials";
+
+    private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    private static final long DEFAULT_OPEN_DURATION = 60;
+    private static final int DEFAULT_HALF_OPEN_TRIALS = 1;
+    private static final String PAIR_SEPARATOR = " -> ";
+
+    private static final Map<String, CircuitBreaker> _mapCircuitBreakers = new ConcurrentHashMap<>( );
+
+    /**
+     * Private constructor
+     */
+    private ProviderCircuitBreakerService( )
+    {
+    }
+
+    /**
+     * Tell if the circuit breakers are enabled
+     * 
+     * @return true if enabled
+     */
+    public static boolean isEnabled( )
+    {
+        return AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, true );
+    }
+
+    /**
+     * Returns the circuit breaker of the transfers between two providers, created on first use
+     * 
+     * @param strSourceProviderName
+     *            the name of the source provider
+     * @param strTargetProviderName
+     *            the name of the target provider
+     * @return the circuit breaker
+     */
+    public static CircuitBreaker getCircuitBreaker( String strSourceProviderName, String strTargetProviderName )
+    {
+        return _mapCircuitBreakers.computeIfAbsent( strSourceProviderName + PAIR_SEPARATOR + strTargetProviderName,
+                strName -> new CircuitBreaker( strName, AppPropertiesService.getPropertyInt( PROPERTY_FAILURE_THRESHOLD, DEFAULT_FAILURE_THRESHOLD ),
+                        AppPropertiesService.getPropertyLong( PROPERTY_OPEN_DURATION, DEFAULT_OPEN_DURATION ) * 1000,
+                        AppPropertiesService.getPropertyInt( PROPERTY_HALF_OPEN_TRIALS, DEFAULT_HALF_OPEN_TRIALS ) ) );
+    }
+
+    /**
+     * Acquire the permission to transfer a file between two providers
+     * 
+     * @param strSourceProviderName
+     *            the name of the source provider
+     * @param strTargetProviderName
+     *            the name of the target provider
+     * @return 0 if the transfer is allowed, otherwise the delay in milliseconds before the circuits may allow it
+     */
+    public static long acquire( String strSourceProviderName, String strTargetProviderName )
+    {
+        if ( !isEnabled( ) )
+        {
+            return 0;
+        }
+
+        CircuitBreaker circuitBreaker = getCircuitBreaker( strSourceProviderName, strTargetProviderName );
+
+        return circuitBreaker.allowRequest( ) ? 0 : getRetryDelay( circuitBreaker );
+    }
+
+    /**
+     * Record a successful transfer between two providers
+     * 
+     * @param strSourceProviderName
+     *            the name of the source provider
+     * @param strTargetProviderName
+     *            the name of the target provider
+     */
+    public static void onSuccess( String strSourceProviderName, String strTargetProviderName )
+    {
+        if ( isEnabled( ) )
+        {
+            recordSuccess( getCircuitBreaker( strSourceProviderName, strTargetProviderName ) );
+        }
+    }
+
+    /**
+     * Record a transfer failure between two providers
+     * 
+     * @param strSourceProviderName
+     *            the name of the source provider
+     * @param strTargetProviderName
+     *            the name of the target provider
+     */
+    public static void onFailure( String strSourceProviderName, String strTargetProviderName )
+    {
+        if ( isEnabled( ) )
+        {
+            recordFailure( getCircuitBreaker( strSourceProviderName, strTargetProviderName ) );
+        }
+    }
+
+    /**
+     * Release the permission acquired for a transfer whose outcome says nothing about the providers (a missing file for instance)
+     * 
+     * @param strSourceProviderName
+     *            the name of the source provider
+     * @param strTargetProviderName
+     *            the name of the target provider
+     */
+    public static void release( String strSourceProviderName, String strTargetProviderName )
+    {
+        if ( isEnabled( ) )
+        {
+            getCircuitBreaker( strSourceProviderName, strTargetProviderName ).release( );
+        }
+    }
+
+    /**
+     * Record a success on a circuit
+     * 
+     * @param circuitBreaker
+     *            the circuit breaker
+     */
+    private static void recordSuccess( CircuitBreaker circuitBreaker )
+    {
+        if ( circuitBreaker.onSuccess( ) )
+        {
+            AppLogService.info( "The transfers " + circuitBreaker.getName( ) + " succeed again, they are resumed" );
+        }
+    }
+
+    /**
+     * Record a failure on a circuit
+     * 
+     * @param circuitBreaker
+     *            the circuit breaker
+     */
+    private static void recordFailure( CircuitBreaker circuitBreaker )
+    {
+        if ( circuitBreaker.onFailure( ) )
+        {
+            AppLogService.error( "The transfers " + circuitBreaker.getName( ) + " are failing, they are suspended" );
+        }
+    }
+
+    /**
+     * Returns the delay before a short-circuited transfer is executed again
+     * 
+     * @param circuitBreaker
+     *            the open circuit breaker
+     * @return the delay in milliseconds
+     */
+    private static long getRetryDelay( CircuitBreaker circuitBreaker )
+    {
+        long lRemaining = circuitBreaker.getRemainingOpenTime( );
+
+        // half-open circuit with its trials running
+        return lRemaining > 0 ? lRemaining : AppPropertiesService.getPropertyLong( PROPERTY_OPEN_DURATION, DEFAULT_OPEN_DURATION ) * 1000;
+    }
+}
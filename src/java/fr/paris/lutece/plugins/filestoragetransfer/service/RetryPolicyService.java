@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.commons.lang3.StringUtils;
+
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Retry policy of the failed transfers. Permanent errors (file not found, invalid request, ...) are not retried. Transient errors are retried with an
+ * exponential backoff, randomized by a jitter and capped, which can be configured for each error code.
+ */
+public final class RetryPolicyService
+{
+    private static final String PROPERTY_PREFIX = "filestoragetransfer.retry.";
+    private static final String PROPERTY_PERMANENT_CODES = PROPERTY_PREFIX + "permanentCodes";
+    private static final String PROPERTY_BASE_DELAY = "baseDelay";
+    private static final String PROPERTY_MAX_DELAY = "maxDelay";
+    private static final String PROPERTY_JITTER = PROPERTY_PREFIX + "jitter";
+    private static final String PROPERTY_LEGACY_RETRY_DELAY = "filestoragetransfer.RetryDelay";
+
+    private static final String DEFAULT_PERMANENT_CODES = "400,404,410,422";
+    private static final long DEFAULT_BASE_DELAY = 60;
+    private static final long DEFAULT_MAX_DELAY = 86400;
+    private static final int DEFAULT_JITTER_PERCENT = 50;
+    private static final String CODES_SEPARATOR = ",";
+    private static final String PROPERTY_SEPARATOR = ".";
+    private static final int MAX_SHIFT = 30;
+
+    /**
+     * Private constructor
+     */
+    private RetryPolicyService( )
+    {
+    }
+
+    /**
+     * Tell if an error is permanent : the request is set in error without being retried
+     * 
+     * @param nResponseCode
+     *            the error code
+     * @return true if the error is permanent
+     */
+    public static boolean isPermanent( int nResponseCode )
+    {
+        String strCodes = AppPropertiesService.getProperty( PROPERTY_PERMANENT_CODES, DEFAULT_PERMANENT_CODES );
+        String strCode = String.valueOf( nResponseCode );
+
+        for ( String strPermanentCode : strCodes.split( CODES_SEPARATOR ) )
+        {
+            if ( strCode.equals( strPermanentCode.trim( ) ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the delay before the next retry of a request
+     * 
+     * @param nResponseCode
+     *            the error code
+     * @param nRetryCount
+     *            the number of failed executions of the request, including the current one
+     * @return the delay in seconds
+     */
+    public static long getRetryDelay( int nResponseCode, int nRetryCount )
+    {
+        long lMaxDelay = getCodeProperty( nResponseCode, PROPERTY_MAX_DELAY,
+                AppPropertiesService.getPropertyLong( PROPERTY_LEGACY_RETRY_DELAY, DEFAULT_MAX_DELAY ) );
+        long lBaseDelay = getCodeProperty( nResponseCode, PROPERTY_BASE_DELAY, DEFAULT_BASE_DELAY );
+        int nJitterPercent = AppPropertiesService.getPropertyInt( PROPERTY_JITTER, DEFAULT_JITTER_PERCENT );
+
+        return computeDelay( lBaseDelay, lMaxDelay, nJitterPercent, nRetryCount, ThreadLocalRandom.current( ).nextDouble( ) );
+    }
+
+    /**
+     * Compute an exponential backoff delay : base * 2^(retry - 1), capped, of which a random part up to the jitter percentage is removed
+     * 
+     * @param lBaseDelay
+     *            the delay of the first retry
+     * @param lMaxDelay
+     *            the maximum delay
+     * @param nJitterPercent
+     *            the maximum percentage of the delay removed randomly
+     * @param nRetryCount
+     *            the number of failed executions
+     * @param dRandom
+     *            a random number between 0 and 1
+     * @return the delay in seconds
+     */
+    static long computeDelay( long lBaseDelay, long lMaxDelay, int nJitterPercent, int nRetryCount, double dRandom )
+    {
+        int nShift = Math.min( Math.max( nRetryCount - 1, 0 ), MAX_SHIFT );
+        long lDelay = lBaseDelay << nShift;
+
+        if ( lDelay > lMaxDelay || lDelay < lBaseDelay )
+        {
+            lDelay = lMaxDelay;
+        }
+
+        int nJitter = Math.min( Math.max( nJitterPercent, 0 ), 100 );
+
+        return lDelay - (long) ( lDelay * nJitter / 100.0 * dRandom );
+    }
+
+    /**
+     * Get a retry property for an error code, falling back to the default retry property
+     * 
+     * @param nResponseCode
+     *            the error code
+     * @param strKey
+     *            the property key
+     * @param lDefault
+     *            the default value
+     * @return the value
+     */
+    private static long getCodeProperty( int nResponseCode, String strKey, long lDefault )
+    {
+        String strCodeValue = AppPropertiesService.getProperty( PROPERTY_PREFIX + nResponseCode + PROPERTY_SEPARATOR + strKey );
+
+        if ( StringUtils.isNotBlank( strCodeValue ) )
+        {
+            try
+            {
+                return Long.parseLong( strCodeValue.trim( ) );
+            }
+            catch( NumberFormatException e )
+            {
+                // invalid value, the default property is used
+            }
+        }
+
+        return AppPropertiesService.getPropertyLong( PROPERTY_PREFIX + strKey, lDefault );
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.util.function.BooleanSupplier;
+
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.TransferStage;
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.TransferTimer;
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.IChecksumFileStoreServiceProvider;
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.IServerSideTransferFileStoreServiceProvider;
+import fr.paris.lutece.portal.service.file.FileServiceException;
+import fr.paris.lutece.portal.service.file.IFileStoreServiceProvider;
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Service transferring a file between two providers of the same backend on the server side, in metadata time instead of bandwidth time. Without
+ * checksum verification the file is moved. With checksum verification the file is copied, the checksum given by the source provider is verified on
+ * the copy, then the source file is deleted.
+ */
+public final class ServerSideTransferService
+{
+    /**
+     * Private constructor
+     */
+    private ServerSideTransferService( )
+    {
+    }
+
+    /**
+     * Transfer a file on the server side, if the source provider accepts the target provider
+     * 
+     * @param sourceFileStoreService
+     *            the source provider
+     * @param targetFileStoreService
+     *            the target provider
+     * @param strOldFileKey
+     *            the key of the file in the source provider
+     * @param checksum
+     *            the checksum to verify, set with the checksum of the source file, null to skip the verification
+     * @param timer
+     *            the timer of the transfer stages
+     * @param leaseCheck
+     *            the check of the lease of the request, done before the source file is moved or deleted, null if the transfer is not leased
+     * @return the key of the file in the target provider, or null if the file cannot be transferred on the server side : nothing has been done then
+     * @throws FileServiceException
+     *             if the transfer fails
+     */
+    public static String transfer( IServerSideTransferFileStoreServiceProvider sourceFileStoreService, IFileStoreServiceProvider targetFileStoreService,
+            String strOldFileKey, TransferChecksum checksum, TransferTimer timer, BooleanSupplier leaseCheck ) throws FileServiceException
+    {
+        if ( !sourceFileStoreService.canTransferTo( targetFileStoreService ) )
+        {
+            return null;
+        }
+
+        long lStart = System.nanoTime( );
+
+        if ( checksum == null )
+        {
+            if ( leaseCheck != null && !leaseCheck.getAsBoolean( ) )
+            {
+                throw new TransferLeaseLostException( "Lease lost before the move of the file " + strOldFileKey );
+            }
+
+            String strNewFileKey = sourceFileStoreService.moveFile( strOldFileKey, targetFileStoreService );
+            timer.record( TransferStage.TARGET_WRITE, lStart );
+
+            return strNewFileKey;
+        }
+
+        String strSourceChecksum = null;
+        if ( sourceFileStoreService instanceof IChecksumFileStoreServiceProvider )
+        {
+            strSourceChecksum = ( (IChecksumFileStoreServiceProvider) sourceFileStoreService ).getChecksum( strOldFileKey, checksum.getAlgorithm( ) );
+            timer.record( TransferStage.SOURCE_READ, lStart );
+        }
+
+        if ( strSourceChecksum == null )
+        {
+            AppLogService.debug( "No " + checksum.getAlgorithm( ) + " checksum from the provider " + sourceFileStoreService.getName( )
+                    + " : the file " + strOldFileKey + " is copied through the JVM" );
+            return null;
+        }
+        checksum.setValue( strSourceChecksum );
+
+        lStart = System.nanoTime( );
+        String strNewFileKey = sourceFileStoreService.copyFile( strOldFileKey, targetFileStoreService );
+        timer.record( TransferStage.TARGET_WRITE, lStart );
+
+        // the source is only deleted once the copy is known to be identical, by the node still holding the lease
+        lStart = System.nanoTime( );
+        ChecksumVerificationService.verify( targetFileStoreService, strNewFileKey, checksum );
+        timer.record( TransferStage.CHECKSUM_VERIFICATION, lStart );
+        TransferLeaseService.fence( leaseCheck, targetFileStoreService, strNewFileKey );
+
+        lStart = System.nanoTime( );
+        sourceFileStoreService.delete( strOldFileKey );
+        timer.record( TransferStage.SOURCE_DELETE, lStart );
+
+        return strNewFileKey;
+    }
+}
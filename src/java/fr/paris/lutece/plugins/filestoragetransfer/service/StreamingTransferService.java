@@ -0,0 +1,499 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import fr.paris.lutece.plugins.filestoragetransfer.business.TransferCheckpoint;
+import fr.paris.lutece.plugins.filestoragetransfer.business.TransferCheckpointHome;
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.TransferStage;
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.TransferTimer;
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.FileStoreOutputStream;
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.IResumableFileStoreServiceProvider;
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.IStreamingFileStoreServiceProvider;
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.ResumableFileStoreOutputStream;
+import fr.paris.lutece.portal.business.file.File;
+import fr.paris.lutece.portal.service.file.FileServiceException;
+import fr.paris.lutece.portal.service.file.IFileStoreServiceProvider;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Service streaming a file from a source provider to a target provider through a fixed size buffer, so that the memory used by a transfer does not
+ * depend on the size of the file. Large files are sent in chunks to the target providers supporting it, the progress being recorded so that a failed
+ * transfer resumes from the last acknowledged chunk.
+ */
+public final class StreamingTransferService
+{
+    private static final String PROPERTY_BUFFER_SIZE = "filestoragetransfer.streaming.bufferSize";
+    private static final String PROPERTY_CHUNKED_THRESHOLD = "filestoragetransfer.chunked.threshold";
+    private static final String PROPERTY_CHUNK_SIZE = "filestoragetransfer.chunked.chunkSize";
+
+    private static final int DEFAULT_BUFFER_SIZE = 65536;
+    private static final long DEFAULT_CHUNKED_THRESHOLD = 104857600L;
+    private static final long DEFAULT_CHUNK_SIZE = 8388608L;
+
+    /**
+     * Private constructor
+     */
+    private StreamingTransferService( )
+    {
+    }
+
+    /**
+     * Stream a file from the source provider to the target provider
+     * 
+     * @param sourceFileStoreService
+     *            the source provider
+     * @param targetFileStoreService
+     *            the target provider
+     * @param strFileKey
+     *            the key of the file in the source provider
+     * @param nIdRequest
+     *            the id of the transfer request, used to record the progress of chunked transfers, 0 if the transfer is not resumable
+     * @param checksum
+     *            the checksum updated with the bytes read from the source, null if none
+     * @param throttle
+     *            the throttle of the bytes read from the source
+     * @param timer
+     *            the timer of the transfer, measuring the reads of the source and the writes to the target
+     * @return the key of the file in the target provider
+     * @throws FileServiceException
+     *             if the file cannot be found, read or stored
+     */
+    public static String transfer( IFileStoreServiceProvider sourceFileStoreService, IStreamingFileStoreServiceProvider targetFileStoreService,
+            String strFileKey, int nIdRequest, TransferChecksum checksum, TransferThrottle throttle, TransferTimer timer ) throws FileServiceException
+    {
+        File fileMetaData = sourceFileStoreService.getFileMetaData( strFileKey );
+
+        if ( fileMetaData == null )
+        {
+            throw new FileServiceException( "File not found", 404, null );
+        }
+
+        if ( nIdRequest > 0 && targetFileStoreService instanceof IResumableFileStoreServiceProvider
+                && fileMetaData.getSize( ) >= AppPropertiesService.getPropertyLong( PROPERTY_CHUNKED_THRESHOLD, DEFAULT_CHUNKED_THRESHOLD ) )
+        {
+            return transferChunked( sourceFileStoreService, (IResumableFileStoreServiceProvider) targetFileStoreService, strFileKey, fileMetaData,
+                    nIdRequest, checksum, throttle, timer );
+        }
+
+        try ( InputStream inputStream = openInputStream( sourceFileStoreService, strFileKey, throttle, timer ) )
+        {
+            long lStart = System.nanoTime( );
+            FileStoreOutputStream outputStream = targetFileStoreService.openFileOutputStream( fileMetaData );
+            timer.record( TransferStage.TARGET_WRITE, lStart );
+            try
+            {
+                copy( inputStream, outputStream, checksum, timer );
+                lStart = System.nanoTime( );
+                outputStream.close( );
+                timer.record( TransferStage.TARGET_WRITE, lStart );
+            }
+            catch( IOException | RuntimeException e )
+            {
+                abort( outputStream );
+                throw e;
+            }
+
+            return outputStream.getFileKey( );
+        }
+        catch( IOException e )
+        {
+            throw new FileServiceException( "Unable to stream the file " + strFileKey + " : " + e.getMessage( ), 500, e );
+        }
+    }
+
+    /**
+     * Stream a file in chunks, resuming the upload recorded in the checkpoint of the request if any
+     * 
+     * @param sourceFileStoreService
+     *            the source provider
+     * @param targetFileStoreService
+     *            the target provider
+     * @param strFileKey
+     *            the key of the file in the source provider
+     * @param fileMetaData
+     *            the metadata of the file
+     * @param nIdRequest
+     *            the id of the transfer request
+     * @param checksum
+     *            the checksum updated with the bytes read from the source, null if none
+     * @param throttle
+     *            the throttle of the bytes read from the source
+     * @param timer
+     *            the timer of the transfer
+     * @return the key of the file in the target provider
+     * @throws FileServiceException
+     *             if the file cannot be found, read or stored
+     */
+    private static String transferChunked( IFileStoreServiceProvider sourceFileStoreService, IResumableFileStoreServiceProvider targetFileStoreService,
+            String strFileKey, File fileMetaData, int nIdRequest, TransferChecksum checksum, TransferThrottle throttle, TransferTimer timer )
+            throws FileServiceException
+    {
+        TransferCheckpoint checkpoint = TransferCheckpointHome.findByIdRequest( nIdRequest ).orElse( null );
+        ResumableFileStoreOutputStream outputStream = null;
+
+        if ( checkpoint != null )
+        {
+            try
+            {
+                outputStream = targetFileStoreService.resumeFileOutputStream( fileMetaData, checkpoint.getUploadId( ), checkpoint.getOffset( ) );
+            }
+            catch( FileServiceException e )
+            {
+                AppLogService.info( "Unable to resume the transfer of request " + nIdRequest + ", restarting from the beginning : " + e.getMessage( ) );
+                TransferCheckpointHome.remove( nIdRequest );
+                checkpoint = null;
+            }
+        }
+
+        if ( outputStream == null )
+        {
+            outputStream = targetFileStoreService.openResumableFileOutputStream( fileMetaData );
+        }
+
+        // the upload is suspended whatever the failure once opened : it is resumed by the next retry, or aborted if it has no checkpoint
+        try
+        {
+            if ( checkpoint == null )
+            {
+                checkpoint = TransferCheckpointHome
+                        .create( new TransferCheckpoint( nIdRequest, outputStream.getUploadId( ), 0, Timestamp.from( Instant.now( ) ) ) );
+            }
+
+            try ( InputStream inputStream = openInputStream( sourceFileStoreService, strFileKey, throttle, timer ) )
+            {
+                skip( inputStream, checkpoint.getOffset( ), checksum );
+                copyChunks( inputStream, outputStream, checkpoint, checksum, timer );
+                long lStart = System.nanoTime( );
+                outputStream.close( );
+                timer.record( TransferStage.TARGET_WRITE, lStart );
+            }
+        }
+        catch( IOException e )
+        {
+            interrupt( outputStream, checkpoint );
+            throw new FileServiceException( "Unable to stream the file " + strFileKey + " : " + e.getMessage( ), 500, e );
+        }
+        catch( FileServiceException | RuntimeException e )
+        {
+            interrupt( outputStream, checkpoint );
+            throw e;
+        }
+
+        TransferCheckpointHome.remove( nIdRequest );
+
+        return outputStream.getFileKey( );
+    }
+
+    /**
+     * Open the input stream of the source file
+     * 
+     * @param sourceFileStoreService
+     *            the source provider
+     * @param strFileKey
+     *            the key of the file
+     * @param throttle
+     *            the throttle of the bytes read, null if none
+     * @param timer
+     *            the timer of the transfer
+     * @return the input stream
+     * @throws FileServiceException
+     *             if the file cannot be found
+     */
+    private static InputStream openInputStream( IFileStoreServiceProvider sourceFileStoreService, String strFileKey, TransferThrottle throttle,
+            TransferTimer timer ) throws FileServiceException
+    {
+        long lStart = System.nanoTime( );
+        InputStream inputStream = sourceFileStoreService.getInputStream( strFileKey );
+        timer.record( TransferStage.SOURCE_READ, lStart );
+
+        if ( inputStream == null )
+        {
+            throw new FileServiceException( "File not found", 404, null );
+        }
+
+        // the timed stream is wrapped by the throttle : the throttling waits are not counted as source reads
+        inputStream = timer.wrap( inputStream );
+
+        return throttle != null ? throttle.wrap( inputStream ) : inputStream;
+    }
+
+    /**
+     * Copy the input stream into the output stream
+     * 
+     * @param inputStream
+     *            the input stream
+     * @param outputStream
+     *            the output stream
+     * @param checksum
+     *            the checksum to update, null if none
+     * @param timer
+     *            the timer of the transfer
+     * @return the number of bytes copied
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    static long copy( InputStream inputStream, FileStoreOutputStream outputStream, TransferChecksum checksum, TransferTimer timer ) throws IOException
+    {
+        long lCount = 0;
+
+        try ( TransferBuffer transferBuffer = acquireBuffer( ) )
+        {
+            byte [ ] buffer = transferBuffer.array( );
+            int nRead;
+
+            while ( ( nRead = inputStream.read( buffer ) ) != -1 )
+            {
+                long lStart = System.nanoTime( );
+                outputStream.write( buffer, 0, nRead );
+                timer.record( TransferStage.TARGET_WRITE, lStart );
+                if ( checksum != null )
+                {
+                    checksum.update( buffer, 0, nRead );
+                }
+                lCount += nRead;
+            }
+        }
+
+        return lCount;
+    }
+
+    /**
+     * Copy the input stream into the output stream, acknowledging a chunk and recording the checkpoint each time the chunk size is reached
+     * 
+     * @param inputStream
+     *            the input stream
+     * @param outputStream
+     *            the output stream
+     * @param checkpoint
+     *            the checkpoint of the transfer
+     * @param checksum
+     *            the checksum to update, null if none
+     * @param timer
+     *            the timer of the transfer
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    private static void copyChunks( InputStream inputStream, ResumableFileStoreOutputStream outputStream, TransferCheckpoint checkpoint,
+            TransferChecksum checksum, TransferTimer timer ) throws IOException
+    {
+        long lChunkSize = AppPropertiesService.getPropertyLong( PROPERTY_CHUNK_SIZE, DEFAULT_CHUNK_SIZE );
+        long lPending = 0;
+
+        try ( TransferBuffer transferBuffer = acquireBuffer( ) )
+        {
+            byte [ ] buffer = transferBuffer.array( );
+            int nRead;
+
+            while ( ( nRead = inputStream.read( buffer ) ) != -1 )
+            {
+                long lStart = System.nanoTime( );
+                outputStream.write( buffer, 0, nRead );
+                timer.record( TransferStage.TARGET_WRITE, lStart );
+                if ( checksum != null )
+                {
+                    checksum.update( buffer, 0, nRead );
+                }
+                lPending += nRead;
+
+                if ( lPending >= lChunkSize )
+                {
+                    lStart = System.nanoTime( );
+                    checkpoint.setOffset( outputStream.acknowledge( ) );
+                    timer.record( TransferStage.TARGET_WRITE, lStart );
+                    checkpoint.setUpdateTime( Timestamp.from( Instant.now( ) ) );
+                    lStart = System.nanoTime( );
+                    TransferCheckpointHome.update( checkpoint );
+                    timer.record( TransferStage.DB_UPDATE, lStart );
+                    lPending = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Skip the bytes already acknowledged by the target provider. When a checksum is computed, the skipped bytes are read to update it.
+     * 
+     * @param inputStream
+     *            the input stream
+     * @param lOffset
+     *            the number of bytes to skip
+     * @param checksum
+     *            the checksum to update, null if none
+     * @throws IOException
+     *             if the stream ends before the offset
+     */
+    private static void skip( InputStream inputStream, long lOffset, TransferChecksum checksum ) throws IOException
+    {
+        if ( checksum != null && lOffset > 0 )
+        {
+            try ( TransferBuffer transferBuffer = acquireBuffer( ) )
+            {
+                skip( inputStream, lOffset, checksum, transferBuffer.array( ) );
+            }
+        }
+        else
+        {
+            skip( inputStream, lOffset, checksum, null );
+        }
+    }
+
+    /**
+     * Skip the bytes already acknowledged by the target provider
+     * 
+     * @param inputStream
+     *            the input stream
+     * @param lOffset
+     *            the number of bytes to skip
+     * @param checksum
+     *            the checksum to update, null if none
+     * @param buffer
+     *            the buffer reading the skipped bytes, null to skip them without reading them
+     * @throws IOException
+     *             if the stream ends before the offset
+     */
+    private static void skip( InputStream inputStream, long lOffset, TransferChecksum checksum, byte [ ] buffer ) throws IOException
+    {
+        long lRemaining = lOffset;
+
+        while ( lRemaining > 0 )
+        {
+            long lSkipped;
+
+            if ( buffer != null )
+            {
+                lSkipped = inputStream.read( buffer, 0, (int) Math.min( buffer.length, lRemaining ) );
+                if ( lSkipped > 0 )
+                {
+                    checksum.update( buffer, 0, (int) lSkipped );
+                }
+            }
+            else
+            {
+                lSkipped = inputStream.skip( lRemaining );
+            }
+
+            if ( lSkipped <= 0 )
+            {
+                // skip may not move forward without being at the end of the stream
+                int nByte = inputStream.read( );
+                if ( nByte == -1 )
+                {
+                    throw new EOFException( "The source file is shorter than the acknowledged offset " + lOffset );
+                }
+                if ( checksum != null )
+                {
+                    checksum.update( new byte [ ] {
+                            (byte) nByte
+                    }, 0, 1 );
+                }
+                lSkipped = 1;
+            }
+            lRemaining -= lSkipped;
+        }
+    }
+
+    /**
+     * Acquire a buffer of the configured size from the heap pool
+     * 
+     * @return the buffer, to be closed once used
+     */
+    private static TransferBuffer acquireBuffer( )
+    {
+        return TransferBufferPool.acquireHeap( AppPropertiesService.getPropertyInt( PROPERTY_BUFFER_SIZE, DEFAULT_BUFFER_SIZE ) );
+    }
+
+    /**
+     * Abort the storage of a partially written file
+     * 
+     * @param outputStream
+     *            the output stream
+     */
+    private static void abort( FileStoreOutputStream outputStream )
+    {
+        try
+        {
+            outputStream.abort( );
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "Unable to abort the storage of the file : " + e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Interrupt a chunked upload : the acknowledged chunks are kept for the next retry if the checkpoint of the upload is recorded, otherwise the
+     * upload is aborted
+     * 
+     * @param outputStream
+     *            the output stream
+     * @param checkpoint
+     *            the checkpoint of the upload, null if it has not been recorded
+     */
+    private static void interrupt( ResumableFileStoreOutputStream outputStream, TransferCheckpoint checkpoint )
+    {
+        if ( checkpoint != null )
+        {
+            suspend( outputStream );
+        }
+        else
+        {
+            abort( outputStream );
+        }
+    }
+
+    /**
+     * Suspend an interrupted chunked upload
+     * 
+     * @param outputStream
+     *            the output stream
+     */
+    private static void suspend( ResumableFileStoreOutputStream outputStream )
+    {
+        try
+        {
+            outputStream.suspend( );
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "Unable to suspend the upload " + outputStream.getUploadId( ) + " : " + e.getMessage( ), e );
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Throttling of the transfers : the number of operations and of bytes per second of each provider is limited by token buckets, keyed by provider
+ * name. The limits are read from the properties at each transfer, so that they follow a reload of the properties.
+ */
+public final class ThrottlingService
+{
+    private static final String PROPERTY_PREFIX = "filestoragetransfer.throttling.";
+    private static final String PROPERTY_OPERATIONS_PER_SECOND = "opsPerSecond";
+    private static final String PROPERTY_BYTES_PER_SECOND = "bytesPerSecond";
+    private static final String PROPERTY_BURST = PROPERTY_PREFIX + "burst";
+    private static final String PROPERTY_SEPARATOR = ".";
+
+    private static final long DEFAULT_BURST = 1;
+
+    private static final Map<String, TokenBucket> _mapOperationBuckets = new ConcurrentHashMap<>( );
+    private static final Map<String, TokenBucket> _mapBytesBuckets = new ConcurrentHashMap<>( );
+
+    /**
+     * Private constructor
+     */
+    private ThrottlingService( )
+    {
+    }
+
+    /**
+     * Returns the throttle of a transfer between two providers
+     * 
+     * @param strSourceProviderName
+     *            the name of the source provider
+     * @param strTargetProviderName
+     *            the name of the target provider
+     * @return the throttle
+     */
+    public static TransferThrottle getThrottle( String strSourceProviderName, String strTargetProviderName )
+    {
+        List<TokenBucket> listOperationBuckets = new ArrayList<>( 2 );
+        List<TokenBucket> listBytesBuckets = new ArrayList<>( 2 );
+        long lBurst = AppPropertiesService.getPropertyLong( PROPERTY_BURST, DEFAULT_BURST );
+
+        addBucket( listOperationBuckets, _mapOperationBuckets, strSourceProviderName, PROPERTY_OPERATIONS_PER_SECOND, lBurst );
+        addBucket( listBytesBuckets, _mapBytesBuckets, strSourceProviderName, PROPERTY_BYTES_PER_SECOND, lBurst );
+
+        if ( !String.valueOf( strSourceProviderName ).equals( strTargetProviderName ) )
+        {
+            addBucket( listOperationBuckets, _mapOperationBuckets, strTargetProviderName, PROPERTY_OPERATIONS_PER_SECOND, lBurst );
+            addBucket( listBytesBuckets, _mapBytesBuckets, strTargetProviderName, PROPERTY_BYTES_PER_SECOND, lBurst );
+        }
+
+        return new TransferThrottle( listOperationBuckets, listBytesBuckets );
+    }
+
+    /**
+     * Add the bucket of a provider to a list if the provider is limited, updating its rate from the properties
+     * 
+     * @param listBuckets
+     *            the list of buckets
+     * @param mapBuckets
+     *            the buckets by provider name
+     * @param strProviderName
+     *            the name of the provider
+     * @param strKey
+     *            the key of the rate property
+     * @param lBurst
+     *            the number of seconds of permits a bucket can hold
+     */
+    private static void addBucket( List<TokenBucket> listBuckets, Map<String, TokenBucket> mapBuckets, String strProviderName, String strKey,
+            long lBurst )
+    {
+        long lRate = getRate( strProviderName, strKey );
+
+        if ( lRate <= 0 )
+        {
+            // not limited
+            mapBuckets.remove( String.valueOf( strProviderName ) );
+            return;
+        }
+
+        TokenBucket bucket = mapBuckets.computeIfAbsent( String.valueOf( strProviderName ), strName -> new TokenBucket( lRate, lBurst ) );
+        bucket.setRate( lRate, lBurst );
+
+        listBuckets.add( bucket );
+    }
+
+    /**
+     * Returns the rate of a provider : the property of the provider, or the default property for all providers
+     * 
+     * @param strProviderName
+     *            the name of the provider
+     * @param strKey
+     *            the key of the rate property
+     * @return the rate, 0 if not limited
+     */
+    private static long getRate( String strProviderName, String strKey )
+    {
+        long lDefault = AppPropertiesService.getPropertyLong( PROPERTY_PREFIX + strKey, 0 );
+
+        return AppPropertiesService.getPropertyLong( PROPERTY_PREFIX + strProviderName + PROPERTY_SEPARATOR + strKey, lDefault );
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting a rate of permits (operations or bytes) per second. The bucket holds up to a burst of permits ; an acquisition larger than
+ * the available permits is granted once the missing permits are refilled, so that a large file does not need a bucket of its size.
+ */
+public class TokenBucket
+{
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos( 1 );
+
+    private double _dRate;
+    private double _dCapacity;
+    private double _dTokens;
+    private long _lLastRefill;
+
+    /**
+     * Constructor
+     * 
+     * @param dRate
+     *            the number of permits per second
+     * @param dBurstSeconds
+     *            the number of seconds of permits the bucket can hold
+     */
+    public TokenBucket( double dRate, double dBurstSeconds )
+    {
+        this( dRate, dBurstSeconds, System.nanoTime( ) );
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param dRate
+     *            the number of permits per second
+     * @param dBurstSeconds
+     *            the number of seconds of permits the bucket can hold
+     * @param lNow
+     *            the current time in nanoseconds
+     */
+    TokenBucket( double dRate, double dBurstSeconds, long lNow )
+    {
+        setRate( dRate, dBurstSeconds );
+        _dTokens = _dCapacity;
+        _lLastRefill = lNow;
+    }
+
+    /**
+     * Returns the number of permits per second
+     * 
+     * @return the rate
+     */
+    public synchronized double getRate( )
+    {
+        return _dRate;
+    }
+
+    /**
+     * Change the rate of the bucket, the available permits being kept within the new capacity
+     * 
+     * @param dRate
+     *            the number of permits per second
+     * @param dBurstSeconds
+     *            the number of seconds of permits the bucket can hold
+     */
+    public final synchronized void setRate( double dRate, double dBurstSeconds )
+    {
+        _dRate = dRate;
+        _dCapacity = Math.max( dRate * dBurstSeconds, 1 );
+        _dTokens = Math.min( _dTokens, _dCapacity );
+    }
+
+    /**
+     * Acquire permits, waiting until they are available
+     * 
+     * @param lPermits
+     *            the number of permits
+     * @throws InterruptedException
+     *             if the thread is interrupted while waiting
+     */
+    public void acquire( long lPermits ) throws InterruptedException
+    {
+        long lWait = reserve( lPermits, System.nanoTime( ) );
+
+        if ( lWait > 0 )
+        {
+            TimeUnit.NANOSECONDS.sleep( lWait );
+        }
+    }
+
+    /**
+     * Reserve permits. The permits are taken immediately, possibly making the bucket negative : the following acquisitions wait for the debt to be
+     * refilled.
+     * 
+     * @param lPermits
+     *            the number of permits
+     * @param lNow
+     *            the current time in nanoseconds
+     * @return the time to wait in nanoseconds before using the permits
+     */
+    synchronized long reserve( long lPermits, long lNow )
+    {
+        if ( lNow > _lLastRefill )
+        {
+            _dTokens = Math.min( _dCapacity, _dTokens + ( lNow - _lLastRefill ) * _dRate / NANOS_PER_SECOND );
+            _lLastRefill = lNow;
+        }
+
+        _dTokens -= lPermits;
+
+        if ( _dTokens >= 0 )
+        {
+            return 0;
+        }
+
+        return (long) Math.ceil( -_dTokens * NANOS_PER_SECOND / _dRate );
+    }
+}
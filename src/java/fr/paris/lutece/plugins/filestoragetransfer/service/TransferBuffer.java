@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+
+/**
+ * Buffer lent by a {@link TransferBufferPool}, given back to the pool when it is closed. A buffer must not be used once closed.
+ */
+public final class TransferBuffer implements AutoCloseable
+{
+    private final TransferBufferPool _pool;
+    private ByteBuffer _buffer;
+    private Cleaner.Cleanable _cleanable;
+    private TransferBufferPool.LeakDetector _leakDetector;
+
+    /**
+     * Constructor
+     * 
+     * @param pool
+     *            the pool of the buffer, null for a buffer allocated out of the pool
+     * @param buffer
+     *            the buffer
+     */
+    TransferBuffer( TransferBufferPool pool, ByteBuffer buffer )
+    {
+        _pool = pool;
+        _buffer = buffer;
+    }
+
+    /**
+     * Report the buffer if it is garbage collected without having been closed
+     * 
+     * @param cleaner
+     *            the cleaner
+     * @param leakDetector
+     *            the action reporting the leak
+     */
+    void trackLeak( Cleaner cleaner, TransferBufferPool.LeakDetector leakDetector )
+    {
+        _leakDetector = leakDetector;
+        _cleanable = cleaner.register( this, leakDetector );
+    }
+
+    /**
+     * Get the buffer
+     * 
+     * @return the buffer, whose capacity may exceed the requested size
+     */
+    public ByteBuffer getByteBuffer( )
+    {
+        return _buffer;
+    }
+
+    /**
+     * Get the array of a heap buffer
+     * 
+     * @return the array, whose length may exceed the requested size
+     */
+    public byte [ ] array( )
+    {
+        return _buffer.array( );
+    }
+
+    /**
+     * Give the buffer back to its pool
+     */
+    @Override
+    public void close( )
+    {
+        if ( _buffer == null )
+        {
+            return;
+        }
+
+        if ( _leakDetector != null )
+        {
+            _leakDetector.released( );
+            _cleanable.clean( );
+        }
+        if ( _pool != null )
+        {
+            _pool.release( _buffer );
+        }
+        _buffer = null;
+    }
+}
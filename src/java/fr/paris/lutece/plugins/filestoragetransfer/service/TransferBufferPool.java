@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.BufferPoolMetrics;
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.TransferMetricsService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Pool of the buffers of the transfers, so that concurrent transfers reuse a bounded set of buffers instead of allocating new ones. The buffers are
+ * grouped by size classes, powers of two from the page size to the largest pooled size. The direct pool serves the channel I/O with page-aligned
+ * direct buffers ; the heap pool serves the stream I/O, which only accepts arrays. When a pool reaches its maximum memory, or for a size larger than
+ * the largest class, a heap buffer is allocated out of the pool and left to the garbage collector.
+ */
+public final class TransferBufferPool
+{
+    private static final String PROPERTY_PREFIX = "filestoragetransfer.bufferPool.";
+    private static final String PROPERTY_ENABLED = PROPERTY_PREFIX + "enabled";
+    private static final String PROPERTY_MAX_MEMORY = ".maxMemory";
+    private static final String PROPERTY_MAX_BUFFER_SIZE = PROPERTY_PREFIX + "maxBufferSize";
+    private static final String PROPERTY_LEAK_DETECTION = PROPERTY_PREFIX + "leakDetection";
+
+    private static final String POOL_DIRECT = "direct";
+    private static final String POOL_HEAP = "heap";
+    private static final long DEFAULT_MAX_MEMORY = 33554432L;
+    private static final int DEFAULT_MAX_BUFFER_SIZE = 8388608;
+    private static final int PAGE_SIZE = 4096;
+
+    private static final TransferBufferPool _directPool = new TransferBufferPool( POOL_DIRECT, true );
+    private static final TransferBufferPool _heapPool = new TransferBufferPool( POOL_HEAP, false );
+    private static Cleaner _cleaner;
+
+    private final boolean _bDirect;
+    private final boolean _bEnabled;
+    private final long _lMaxMemory;
+    private final int _nMaxBufferSize;
+    private final boolean _bLeakDetection;
+    private final Queue<ByteBuffer> [ ] _sizeClasses;
+    private final AtomicLong _lAllocatedBytes = new AtomicLong( );
+    private final BufferPoolMetrics _metrics;
+
+    /**
+     * Constructor
+     * 
+     * @param strName
+     *            the name of the pool
+     * @param bDirect
+     *            true for direct buffers
+     */
+    TransferBufferPool( String strName, boolean bDirect )
+    {
+        this( strName, bDirect, AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, true ),
+                AppPropertiesService.getPropertyLong( PROPERTY_PREFIX + strName + PROPERTY_MAX_MEMORY, DEFAULT_MAX_MEMORY ),
+                AppPropertiesService.getPropertyInt( PROPERTY_MAX_BUFFER_SIZE, DEFAULT_MAX_BUFFER_SIZE ),
+                AppPropertiesService.getPropertyBoolean( PROPERTY_LEAK_DETECTION, false ), TransferMetricsService.getBufferPoolMetrics( strName,
+                        AppPropertiesService.getPropertyLong( PROPERTY_PREFIX + strName + PROPERTY_MAX_MEMORY, DEFAULT_MAX_MEMORY ) ) );
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param strName
+     *            the name of the pool
+     * @param bDirect
+     *            true for direct buffers
+     * @param bEnabled
+     *            false to allocate every buffer out of the pool
+     * @param lMaxMemory
+     *            the maximum memory of the buffers allocated by the pool
+     * @param nMaxBufferSize
+     *            the size of the largest class, rounded to a power of two
+     * @param bLeakDetection
+     *            true to report the buffers garbage collected without having been released
+     * @param metrics
+     *            the metrics of the pool
+     */
+    @SuppressWarnings( "unchecked" )
+    TransferBufferPool( String strName, boolean bDirect, boolean bEnabled, long lMaxMemory, int nMaxBufferSize, boolean bLeakDetection,
+            BufferPoolMetrics metrics )
+    {
+        _bDirect = bDirect;
+        _bEnabled = bEnabled;
+        _lMaxMemory = lMaxMemory;
+        _nMaxBufferSize = getClassSize( Math.max( nMaxBufferSize, PAGE_SIZE ) );
+        _bLeakDetection = bLeakDetection;
+        _metrics = metrics;
+        _sizeClasses = new Queue [ getClassIndex( _nMaxBufferSize ) + 1];
+
+        for ( int i = 0; i < _sizeClasses.length; i++ )
+        {
+            _sizeClasses [i] = new ConcurrentLinkedQueue<>( );
+        }
+    }
+
+    /**
+     * Acquire a page-aligned direct buffer, for the channel I/O
+     * 
+     * @param nSize
+     *            the minimum capacity of the buffer
+     * @return the buffer, to be closed once used
+     */
+    public static TransferBuffer acquireDirect( int nSize )
+    {
+        return _directPool.acquire( nSize );
+    }
+
+    /**
+     * Acquire a heap buffer, for the stream I/O
+     * 
+     * @param nSize
+     *            the minimum capacity of the buffer
+     * @return the buffer, to be closed once used
+     */
+    public static TransferBuffer acquireHeap( int nSize )
+    {
+        return _heapPool.acquire( nSize );
+    }
+
+    /**
+     * Acquire a buffer
+     * 
+     * @param nSize
+     *            the minimum capacity of the buffer
+     * @return the buffer, to be closed once used
+     */
+    TransferBuffer acquire( int nSize )
+    {
+        if ( !_bEnabled || nSize > _nMaxBufferSize )
+        {
+            _metrics.bufferUnpooled( );
+            return new TransferBuffer( null, ByteBuffer.allocate( nSize ) );
+        }
+
+        int nClassSize = getClassSize( nSize );
+        ByteBuffer buffer = _sizeClasses [getClassIndex( nClassSize )].poll( );
+
+        if ( buffer != null )
+        {
+            _metrics.bufferReused( nClassSize );
+        }
+        else if ( _lAllocatedBytes.addAndGet( nClassSize ) <= _lMaxMemory )
+        {
+            buffer = allocate( nClassSize );
+            _metrics.bufferAllocated( nClassSize );
+        }
+        else
+        {
+            _lAllocatedBytes.addAndGet( -nClassSize );
+            _metrics.bufferUnpooled( );
+            return new TransferBuffer( null, ByteBuffer.allocate( nSize ) );
+        }
+
+        buffer.clear( );
+        TransferBuffer transferBuffer = new TransferBuffer( this, buffer );
+
+        if ( _bLeakDetection )
+        {
+            transferBuffer.trackLeak( getCleaner( ), new LeakDetector( this, nClassSize, new Throwable( "Transfer buffer acquired here" ) ) );
+        }
+
+        return transferBuffer;
+    }
+
+    /**
+     * Give a buffer back to the pool
+     * 
+     * @param buffer
+     *            the buffer
+     */
+    void release( ByteBuffer buffer )
+    {
+        int nClassSize = buffer.capacity( );
+        _metrics.bufferReleased( nClassSize );
+        _sizeClasses [getClassIndex( nClassSize )].offer( buffer );
+    }
+
+    /**
+     * Forget a buffer garbage collected without having been released
+     * 
+     * @param nClassSize
+     *            the size of the buffer
+     * @param origin
+     *            the acquisition of the buffer
+     */
+    void leak( int nClassSize, Throwable origin )
+    {
+        _lAllocatedBytes.addAndGet( -nClassSize );
+        _metrics.bufferLeaked( nClassSize );
+        AppLogService.error( "A transfer buffer of " + nClassSize + " bytes has not been released", origin );
+    }
+
+    /**
+     * Allocate a buffer of a size class
+     * 
+     * @param nClassSize
+     *            the size class
+     * @return the buffer
+     */
+    private ByteBuffer allocate( int nClassSize )
+    {
+        if ( _bDirect )
+        {
+            return ByteBuffer.allocateDirect( nClassSize + PAGE_SIZE ).alignedSlice( PAGE_SIZE ).limit( nClassSize ).slice( );
+        }
+
+        return ByteBuffer.allocate( nClassSize );
+    }
+
+    /**
+     * Get the size class of a size : the smallest power of two holding it, at least a page
+     * 
+     * @param nSize
+     *            the size
+     * @return the size class
+     */
+    static int getClassSize( int nSize )
+    {
+        return nSize <= PAGE_SIZE ? PAGE_SIZE : Integer.highestOneBit( nSize - 1 ) << 1;
+    }
+
+    /**
+     * Get the index of a size class
+     * 
+     * @param nClassSize
+     *            the size class
+     * @return the index, 0 for a page
+     */
+    private static int getClassIndex( int nClassSize )
+    {
+        return Integer.numberOfTrailingZeros( nClassSize ) - Integer.numberOfTrailingZeros( PAGE_SIZE );
+    }
+
+    /**
+     * Get the cleaner of the leak detection, created on first use
+     * 
+     * @return the cleaner
+     */
+    private static synchronized Cleaner getCleaner( )
+    {
+        if ( _cleaner == null )
+        {
+            _cleaner = Cleaner.create( );
+        }
+        return _cleaner;
+    }
+
+    /**
+     * Action run when a tracked buffer becomes unreachable or is released. It must not reference the buffer, which could not be collected otherwise.
+     */
+    static final class LeakDetector implements Runnable
+    {
+        private final TransferBufferPool _pool;
+        private final int _nClassSize;
+        private final Throwable _origin;
+        private volatile boolean _bReleased;
+
+        /**
+         * Constructor
+         * 
+         * @param pool
+         *            the pool of the buffer
+         * @param nClassSize
+         *            the size of the buffer
+         * @param origin
+         *            the acquisition of the buffer
+         */
+        LeakDetector( TransferBufferPool pool, int nClassSize, Throwable origin )
+        {
+            _pool = pool;
+            _nClassSize = nClassSize;
+            _origin = origin;
+        }
+
+        /**
+         * Mark the buffer released
+         */
+        void released( )
+        {
+            _bReleased = true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run( )
+        {
+            if ( !_bReleased )
+            {
+                _pool.leak( _nClassSize, _origin );
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Checksum of a transferred file, computed incrementally while the file is copied. Supported algorithms are the message digests of the JVM (SHA-256,
+ * ...) and CRC32C.
+ */
+public final class TransferChecksum
+{
+    public static final String ALGORITHM_CRC32C = "CRC32C";
+    public static final String ALGORITHM_NONE = "NONE";
+
+    private static final String PROPERTY_ALGORITHM = "filestoragetransfer.checksum.algorithm";
+    private static final String DEFAULT_ALGORITHM = "SHA-256";
+    private static final String SEPARATOR = ":";
+    private static final char [ ] HEX_DIGITS = "0123456789abcdef".toCharArray( );
+
+    private final String _strAlgorithm;
+    private final MessageDigest _digest;
+    private final Checksum _checksum;
+    private String _strValue;
+
+    /**
+     * Constructor
+     * 
+     * @param strAlgorithm
+     *            the algorithm
+     */
+    private TransferChecksum( String strAlgorithm )
+    {
+        _strAlgorithm = strAlgorithm;
+
+        if ( ALGORITHM_CRC32C.equalsIgnoreCase( strAlgorithm ) )
+        {
+            _digest = null;
+            _checksum = new CRC32C( );
+        }
+        else
+        {
+            try
+            {
+                _digest = MessageDigest.getInstance( strAlgorithm );
+                _checksum = null;
+            }
+            catch( NoSuchAlgorithmException e )
+            {
+                throw new AppException( "Unknown checksum algorithm : " + strAlgorithm, e );
+            }
+        }
+    }
+
+    /**
+     * Create a checksum with the configured algorithm
+     * 
+     * @return the checksum, or null if the checksum verification is disabled
+     */
+    public static TransferChecksum create( )
+    {
+        return create( AppPropertiesService.getProperty( PROPERTY_ALGORITHM, DEFAULT_ALGORITHM ) );
+    }
+
+    /**
+     * Create a checksum
+     * 
+     * @param strAlgorithm
+     *            the algorithm
+     * @return the checksum, or null if the algorithm is NONE
+     */
+    public static TransferChecksum create( String strAlgorithm )
+    {
+        if ( strAlgorithm == null || ALGORITHM_NONE.equalsIgnoreCase( strAlgorithm ) )
+        {
+            return null;
+        }
+        return new TransferChecksum( strAlgorithm );
+    }
+
+    /**
+     * Update the checksum with the given bytes
+     * 
+     * @param buffer
+     *            the buffer
+     * @param nOffset
+     *            the offset of the first byte in the buffer
+     * @param nLength
+     *            the number of bytes
+     */
+    public void update( byte [ ] buffer, int nOffset, int nLength )
+    {
+        if ( _digest != null )
+        {
+            _digest.update( buffer, nOffset, nLength );
+        }
+        else
+        {
+            _checksum.update( buffer, nOffset, nLength );
+        }
+    }
+
+    /**
+     * Update the checksum with the remaining bytes of a buffer
+     * 
+     * @param buffer
+     *            the buffer, read up to its limit
+     */
+    public void update( ByteBuffer buffer )
+    {
+        if ( _digest != null )
+        {
+            _digest.update( buffer );
+        }
+        else
+        {
+            _checksum.update( buffer );
+        }
+    }
+
+    /**
+     * Set the value of a checksum computed by a provider, the content of the file not going through the JVM
+     * 
+     * @param strValue
+     *            the checksum as a hexadecimal string
+     */
+    void setValue( String strValue )
+    {
+        _strValue = strValue.toLowerCase( );
+    }
+
+    /**
+     * Get the algorithm
+     * 
+     * @return the algorithm
+     */
+    public String getAlgorithm( )
+    {
+        return _strAlgorithm;
+    }
+
+    /**
+     * Get the value of the checksum, once all the bytes have been given
+     * 
+     * @return the checksum as a lower case hexadecimal string
+     */
+    public String getValue( )
+    {
+        if ( _strValue == null )
+        {
+            if ( _digest != null )
+            {
+                _strValue = toHex( _digest.digest( ) );
+            }
+            else
+            {
+                long lValue = _checksum.getValue( );
+                _strValue = toHex( new byte [ ] {
+                        (byte) ( lValue >>> 24 ), (byte) ( lValue >>> 16 ), (byte) ( lValue >>> 8 ), (byte) lValue
+                } );
+            }
+        }
+        return _strValue;
+    }
+
+    /**
+     * Get the checksum with its algorithm, as stored with the transfer request
+     * 
+     * @return the checksum, as algorithm:value
+     */
+    @Override
+    public String toString( )
+    {
+        return _strAlgorithm + SEPARATOR + getValue( );
+    }
+
+    /**
+     * Convert bytes to a lower case hexadecimal string
+     * 
+     * @param bytes
+     *            the bytes
+     * @return the hexadecimal string
+     */
+    static String toHex( byte [ ] bytes )
+    {
+        char [ ] chars = new char [ bytes.length * 2];
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            chars [i * 2] = HEX_DIGITS [( bytes [i] >> 4 ) & 0xF];
+            chars [i * 2 + 1] = HEX_DIGITS [bytes [i] & 0xF];
+        }
+        return new String( chars );
+    }
+}
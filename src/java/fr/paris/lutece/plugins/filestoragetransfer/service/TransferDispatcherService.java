@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequest;
+import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequestHome;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Dispatcher executing the due transfer requests. A thread of the dispatcher runs continuously : it is woken up as soon as a request is created on
+ * this node, and otherwise polls the database at a short interval (or at the next execution time of a delayed request) to pick up the requests
+ * created by other nodes. The dispatcher keeps a worker pool for its whole life and claims the due requests as its workers free up, so that all of
+ * them are busy as long as requests are due. The transfer daemon executes the due requests by batches, as a fallback when the dispatcher is not
+ * running.
+ */
+public final class TransferDispatcherService
+{
+    private static final String PROPERTY_ENABLED = "filestoragetransfer.dispatcher.enabled";
+    private static final String PROPERTY_POLL_INTERVAL = "filestoragetransfer.dispatcher.pollInterval";
+    private static final String PROPERTY_BATCH_SIZE = "filestoragetransfer.UploadLimit";
+    private static final String PROPERTY_CONCURRENCY = "filestoragetransfer.daemon.concurrency";
+    private static final String PROPERTY_USE_VIRTUAL_THREADS = "filestoragetransfer.daemon.useVirtualThreads";
+
+    private static final long DEFAULT_POLL_INTERVAL = 30;
+    private static final long MIN_WAIT = 1000;
+    private static final String THREAD_NAME = "filestoragetransfer-dispatcher";
+    private static final long STOP_TIMEOUT = 60000L;
+
+    private static final Object _lock = new Object( );
+    private static boolean _bSignaled;
+    private static volatile boolean _bRunning;
+    private static Thread _thread;
+
+    /**
+     * Private constructor
+     */
+    private TransferDispatcherService( )
+    {
+    }
+
+    /**
+     * Tell if the dispatcher is enabled. A system property of the same name overrides the configuration : the tests disable the dispatcher so that
+     * it does not execute the requests they create.
+     * 
+     * @return true if enabled
+     */
+    public static boolean isEnabled( )
+    {
+        String strEnabled = System.getProperty( PROPERTY_ENABLED );
+
+        return strEnabled != null ? Boolean.parseBoolean( strEnabled ) : AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, true );
+    }
+
+    /**
+     * Tell if the dispatcher thread is running
+     * 
+     * @return true if running
+     */
+    public static synchronized boolean isRunning( )
+    {
+        return _thread != null && _thread.isAlive( );
+    }
+
+    /**
+     * Start the dispatcher thread
+     */
+    public static synchronized void start( )
+    {
+        if ( _thread != null && _thread.isAlive( ) )
+        {
+            return;
+        }
+
+        _bRunning = true;
+        _thread = new Thread( TransferDispatcherService::dispatch, THREAD_NAME );
+        _thread.setDaemon( true );
+        _thread.start( );
+    }
+
+    /**
+     * Stop the dispatcher thread, the running transfers being interrupted, and wait for the thread to close its worker pool
+     */
+    public static void stop( )
+    {
+        Thread thread;
+
+        synchronized( TransferDispatcherService.class )
+        {
+            _bRunning = false;
+            thread = _thread;
+            _thread = null;
+        }
+
+        if ( thread != null )
+        {
+            thread.interrupt( );
+            try
+            {
+                thread.join( STOP_TIMEOUT );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+            }
+        }
+    }
+
+    /**
+     * Wake the dispatcher up, a request being ready to be executed
+     */
+    public static void signal( )
+    {
+        synchronized( _lock )
+        {
+            _bSignaled = true;
+            _lock.notifyAll( );
+        }
+    }
+
+    /**
+     * Claim and execute a batch of due requests, waiting for the end of their execution. The requests are claimed as the workers free up, no more
+     * than free workers at a time : the requests left due stay available to the other nodes.
+     * 
+     * @param nBatchSize
+     *            the maximum number of requests to execute, 0 for no limit
+     * @param sbLogs
+     *            the logs of the execution
+     * @return the number of executed requests
+     */
+    public static int processDueRequests( int nBatchSize, StringBuffer sbLogs )
+    {
+        // workers append concurrently to the logs
+        Consumer<String> log = strLog -> sbLogs.append( strLog ).append( '\n' );
+        int nExecuted = 0;
+
+        try ( TransferWorkerPool pool = newWorkerPool( ) )
+        {
+            while ( nBatchSize <= 0 || nExecuted < nBatchSize )
+            {
+                int nSlots = pool.acquireSlots( nBatchSize > 0 ? nBatchSize - nExecuted : Integer.MAX_VALUE );
+                int nSubmitted = submitDueRequests( pool, nSlots, log );
+                nExecuted += nSubmitted;
+
+                if ( nSubmitted < nSlots )
+                {
+                    // no more due requests
+                    break;
+                }
+            }
+        }
+        catch( InterruptedException e )
+        {
+            sbLogs.append( "Transfer run interrupted\n" );
+            Thread.currentThread( ).interrupt( );
+        }
+
+        return nExecuted;
+    }
+
+    /**
+     * Claim due requests for the free slots of the worker pool and submit them
+     * 
+     * @param pool
+     *            the worker pool
+     * @param nSlots
+     *            the number of slots acquired by the caller, released if left unused
+     * @param log
+     *            the log of the outcome of the requests
+     * @return the number of submitted requests
+     */
+    private static int submitDueRequests( TransferWorkerPool pool, int nSlots, Consumer<String> log )
+    {
+        List<FileTransferRequest> listRequest = Collections.emptyList( );
+        int nSubmitted = 0;
+
+        try
+        {
+            listRequest = TransferLeaseService.claimRequests( nSlots );
+
+            for ( FileTransferRequest request : listRequest )
+            {
+                pool.submit( newTask( request, log ) );
+                nSubmitted++;
+            }
+        }
+        finally
+        {
+            pool.releaseSlots( nSlots - nSubmitted );
+            // the leases of the requests left unsubmitted by a failure expire
+            listRequest.subList( nSubmitted, listRequest.size( ) ).forEach( TransferLeaseService::release );
+        }
+
+        return nSubmitted;
+    }
+
+    /**
+     * Create the task executing a claimed request
+     * 
+     * @param request
+     *            the request
+     * @param log
+     *            the log of the outcome of the request
+     * @return the task
+     */
+    private static Runnable newTask( FileTransferRequest request, Consumer<String> log )
+    {
+        return ( ) -> {
+            try
+            {
+                FileSwitcherService.TransferFileToNewFileService( request );
+                log.accept( "Request " + request.getId( ) + ": DONE." );
+            }
+            catch( Exception e )
+            {
+                log.accept( "Request " + request.getId( ) + " : FAILED ->" + e.getMessage( ) );
+            }
+            finally
+            {
+                TransferLeaseService.release( request );
+            }
+        };
+    }
+
+    /**
+     * Create a worker pool of the configured concurrency
+     * 
+     * @return the worker pool
+     */
+    private static TransferWorkerPool newWorkerPool( )
+    {
+        return new TransferWorkerPool( AppPropertiesService.getPropertyInt( PROPERTY_CONCURRENCY, 1 ),
+                AppPropertiesService.getPropertyBoolean( PROPERTY_USE_VIRTUAL_THREADS, true ) );
+    }
+
+    /**
+     * Loop of the dispatcher thread
+     */
+    private static void dispatch( )
+    {
+        AppLogService.info( "File transfer dispatcher started" );
+
+        // the pool lives as long as the thread : stopping the dispatcher interrupts the running transfers
+        try ( TransferWorkerPool pool = newWorkerPool( ) )
+        {
+            while ( _bRunning && !Thread.currentThread( ).isInterrupted( ) )
+            {
+                try
+                {
+                    // the claim of a batch waits for a free worker, and claims no more requests than free workers
+                    int nBatchSize = AppPropertiesService.getPropertyInt( PROPERTY_BATCH_SIZE, 0 );
+                    int nSlots = pool.acquireSlots( nBatchSize > 0 ? nBatchSize : Integer.MAX_VALUE );
+
+                    // fewer due requests than free workers : wait for a new request or for the next due one
+                    if ( submitDueRequests( pool, nSlots, AppLogService::debug ) < nSlots )
+                    {
+                        await( getWaitTime( ) );
+                    }
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread( ).interrupt( );
+                }
+                catch( RuntimeException e )
+                {
+                    AppLogService.error( "File transfer dispatcher error : " + e.getMessage( ), e );
+                    try
+                    {
+                        await( getPollInterval( ) );
+                    }
+                    catch( InterruptedException ie )
+                    {
+                        Thread.currentThread( ).interrupt( );
+                    }
+                }
+            }
+        }
+
+        AppLogService.info( "File transfer dispatcher stopped" );
+    }
+
+    /**
+     * Wait for a signal or for a timeout
+     * 
+     * @param lTimeout
+     *            the timeout in milliseconds
+     * @throws InterruptedException
+     *             if the thread is interrupted
+     */
+    private static void await( long lTimeout ) throws InterruptedException
+    {
+        long lDeadline = System.currentTimeMillis( ) + lTimeout;
+
+        synchronized( _lock )
+        {
+            long lRemaining = lTimeout;
+
+            while ( !_bSignaled && lRemaining > 0 )
+            {
+                _lock.wait( lRemaining );
+                lRemaining = lDeadline - System.currentTimeMillis( );
+            }
+            _bSignaled = false;
+        }
+    }
+
+    /**
+     * Returns the time to wait before the next poll : the poll interval, or less if a delayed request is due before
+     * 
+     * @return the time in milliseconds
+     */
+    private static long getWaitTime( )
+    {
+        long lWait = getPollInterval( );
+        Optional<Timestamp> nextExecutionTime = FileTransferRequestHome.getNextExecutionTime( );
+
+        if ( nextExecutionTime.isPresent( ) )
+        {
+            lWait = Math.min( lWait, Math.max( nextExecutionTime.get( ).getTime( ) - System.currentTimeMillis( ), MIN_WAIT ) );
+        }
+
+        return lWait;
+    }
+
+    /**
+     * Returns the poll interval
+     * 
+     * @return the interval in milliseconds
+     */
+    private static long getPollInterval( )
+    {
+        return Math.max( AppPropertiesService.getPropertyLong( PROPERTY_POLL_INTERVAL, DEFAULT_POLL_INTERVAL ) * 1000, MIN_WAIT );
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+import org.apache.commons.lang3.StringUtils;
+
+import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequest;
+import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequestHome;
+import fr.paris.lutece.portal.service.file.FileServiceException;
+import fr.paris.lutece.portal.service.file.IFileStoreServiceProvider;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Service leasing the transfer requests to the node executing them, so that several nodes can run the transfer daemon on the same database. The
+ * leases of the requests claimed by this node are renewed by a heartbeat thread until their execution ends, so that a transfer lasting longer than
+ * the lease duration is not claimed again by another node.
+ */
+public final class TransferLeaseService
+{
+    private static final String PROPERTY_NODE_ID = "filestoragetransfer.node.id";
+    private static final String PROPERTY_LEASE_DURATION = "filestoragetransfer.lease.duration";
+    private static final String PROPERTY_CLAIM_SKIP_LOCKED = "filestoragetransfer.claim.skipLocked";
+
+    private static final int DEFAULT_LEASE_DURATION = 3600;
+    private static final String THREAD_NAME = "filestoragetransfer-lease-renewal";
+
+    private static String _strNodeId;
+    private static final Map<Integer, Lease> _mapHeldLeases = new ConcurrentHashMap<>( );
+    private static volatile boolean _bRunning;
+    private static Thread _thread;
+
+    /**
+     * Private constructor
+     */
+    private TransferLeaseService( )
+    {
+    }
+
+    /**
+     * Claim the due requests for the current node
+     * 
+     * @param nLimit
+     *            the maximum number of requests to claim, 0 for no limit
+     * @return the claimed requests, set IN_PROGRESS and leased to the current node
+     */
+    public static List<FileTransferRequest> claimRequests( int nLimit )
+    {
+        Instant now = Instant.now( );
+        int nLeaseDuration = getLeaseDuration( );
+        boolean bSkipLocked = AppPropertiesService.getPropertyBoolean( PROPERTY_CLAIM_SKIP_LOCKED, false );
+
+        List<FileTransferRequest> listRequests = FileTransferRequestHome.claimRequestsToExecute( Timestamp.from( now ), nLimit, getNodeId( ),
+                UUID.randomUUID( ).toString( ), Timestamp.from( now.plusSeconds( nLeaseDuration ) ), bSkipLocked );
+
+        // a copy of the lease is kept : the executing worker releases the lease of the request before updating it
+        listRequests.forEach( request -> _mapHeldLeases.put( request.getId( ), new Lease( request ) ) );
+
+        return listRequests;
+    }
+
+    /**
+     * Stop renewing the lease of a request, its execution being over
+     * 
+     * @param request
+     *            the request
+     */
+    public static void release( FileTransferRequest request )
+    {
+        _mapHeldLeases.remove( request.getId( ) );
+    }
+
+    /**
+     * Renew the lease of a request before an irreversible step of its execution, such as the deletion of its source file
+     * 
+     * @param request
+     *            the request
+     * @return true if the request is still leased to this node, or if it is not leased
+     */
+    public static boolean confirmLease( FileTransferRequest request )
+    {
+        if ( request.getClaimToken( ) == null )
+        {
+            return true;
+        }
+
+        return FileTransferRequestHome.renewLease( request.getId( ), request.getOwnerNode( ), request.getClaimToken( ),
+                Timestamp.from( Instant.now( ).plusSeconds( getLeaseDuration( ) ) ) );
+    }
+
+    /**
+     * Check that a transfer still holds its lease before the source file is deleted. If the lease has been lost, the copy is deleted from the target
+     * provider : the node which claimed the request again transfers the file from its source.
+     * 
+     * @param leaseCheck
+     *            the check of the lease, null if the transfer is not leased
+     * @param targetFileStoreService
+     *            the target provider
+     * @param strNewFileKey
+     *            the key of the copy in the target provider
+     * @throws TransferLeaseLostException
+     *             if the lease has been lost
+     */
+    static void fence( BooleanSupplier leaseCheck, IFileStoreServiceProvider targetFileStoreService, String strNewFileKey )
+            throws TransferLeaseLostException
+    {
+        if ( leaseCheck == null || leaseCheck.getAsBoolean( ) )
+        {
+            return;
+        }
+
+        try
+        {
+            targetFileStoreService.delete( strNewFileKey );
+        }
+        catch( FileServiceException e )
+        {
+            AppLogService.error( "Unable to delete the copy " + strNewFileKey + " of a transfer whose lease is lost : " + e.getMessage( ), e );
+        }
+        throw new TransferLeaseLostException( "Lease lost before the deletion of the source file, the copy " + strNewFileKey + " has been deleted" );
+    }
+
+    /**
+     * Start the heartbeat thread renewing the held leases
+     */
+    public static synchronized void start( )
+    {
+        if ( _thread != null && _thread.isAlive( ) )
+        {
+            return;
+        }
+
+        _bRunning = true;
+        _thread = new Thread( TransferLeaseService::renew, THREAD_NAME );
+        _thread.setDaemon( true );
+        _thread.start( );
+    }
+
+    /**
+     * Stop the heartbeat thread
+     */
+    public static synchronized void stop( )
+    {
+        _bRunning = false;
+
+        if ( _thread != null )
+        {
+            _thread.interrupt( );
+            _thread = null;
+        }
+    }
+
+    /**
+     * Renew the held leases, the leases lost in the meantime being forgotten
+     * 
+     * @return the number of renewed leases
+     */
+    static int renewHeldLeases( )
+    {
+        int nRenewed = 0;
+        Timestamp leaseExpiration = Timestamp.from( Instant.now( ).plusSeconds( getLeaseDuration( ) ) );
+
+        for ( Lease lease : _mapHeldLeases.values( ) )
+        {
+            if ( FileTransferRequestHome.renewLease( lease._nIdRequest, lease._strOwnerNode, lease._strClaimToken, leaseExpiration ) )
+            {
+                nRenewed++;
+            }
+            else
+            {
+                // the request has been completed, or its lease has expired and it has been claimed again
+                _mapHeldLeases.remove( lease._nIdRequest );
+            }
+        }
+
+        return nRenewed;
+    }
+
+    /**
+     * Loop of the heartbeat thread : the leases are renewed three times by lease duration, so that a late renewal does not lose them
+     */
+    private static void renew( )
+    {
+        while ( _bRunning && !Thread.currentThread( ).isInterrupted( ) )
+        {
+            try
+            {
+                Thread.sleep( Math.max( getLeaseDuration( ) * 1000L / 3, 1000L ) );
+                renewHeldLeases( );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+            }
+            catch( RuntimeException e )
+            {
+                AppLogService.error( "Unable to renew the leases of the file transfer requests : " + e.getMessage( ), e );
+            }
+        }
+    }
+
+    /**
+     * Returns the lease duration
+     * 
+     * @return the duration in seconds
+     */
+    private static int getLeaseDuration( )
+    {
+        return AppPropertiesService.getPropertyInt( PROPERTY_LEASE_DURATION, DEFAULT_LEASE_DURATION );
+    }
+
+    /**
+     * Get the identifier of the current node, taken from the configuration or built from the JVM name (pid@host)
+     * 
+     * @return the node identifier
+     */
+    public static synchronized String getNodeId( )
+    {
+        if ( _strNodeId == null )
+        {
+            String strNodeId = AppPropertiesService.getProperty( PROPERTY_NODE_ID );
+            _strNodeId = StringUtils.isNotBlank( strNodeId ) ? strNodeId : ManagementFactory.getRuntimeMXBean( ).getName( );
+        }
+        return _strNodeId;
+    }
+
+    /**
+     * The lease of a claimed request
+     */
+    private static final class Lease
+    {
+        private final int _nIdRequest;
+        private final String _strOwnerNode;
+        private final String _strClaimToken;
+
+        /**
+         * Constructor
+         * 
+         * @param request
+         *            the claimed request
+         */
+        Lease( FileTransferRequest request )
+        {
+            _nIdRequest = request.getId( );
+            _strOwnerNode = request.getOwnerNode( );
+            _strClaimToken = request.getClaimToken( );
+        }
+    }
+}
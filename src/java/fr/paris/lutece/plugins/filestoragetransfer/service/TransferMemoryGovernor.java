@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import fr.paris.lutece.portal.business.file.File;
+import fr.paris.lutece.portal.service.file.FileServiceException;
+import fr.paris.lutece.portal.service.file.IFileStoreServiceProvider;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Admission controller bounding the bytes of the files loaded in memory by the concurrent transfers of this node. A transfer reserves the size of
+ * its file, read from the file metadata, and waits while the reservations of the running transfers leave no room for it. A waiting transfer is
+ * overtaken by the smaller transfers that fit, until it has waited for the maximum bypass time : the later transfers then wait behind it, so that
+ * a large file is not starved by a flow of small ones.
+ * <p>
+ * Only the transfers loading the whole file, towards target providers storing whole files, are admitted by the governor : their reservation is
+ * held until the checksum of the stored file has been verified. The FileChannel and streaming transfers copy the file through bounded pooled
+ * buffers and are not governed, nor are the server-side transfers.
+ * </p>
+ */
+public final class TransferMemoryGovernor
+{
+    private static final String PROPERTY_PREFIX = "filestoragetransfer.memoryGovernor.";
+    private static final String PROPERTY_ENABLED = PROPERTY_PREFIX + "enabled";
+    private static final String PROPERTY_MAX_IN_FLIGHT_BYTES = PROPERTY_PREFIX + "maxInFlightBytes";
+    private static final String PROPERTY_MAX_BYPASS_TIME = PROPERTY_PREFIX + "maxBypassTime";
+    private static final String PROPERTY_MAX_WAIT = PROPERTY_PREFIX + "maxWait";
+    private static final String PROPERTY_POSTPONE_DELAY = PROPERTY_PREFIX + "postponeDelay";
+
+    private static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 268435456L;
+    private static final long DEFAULT_MAX_BYPASS_TIME = 30;
+    private static final long DEFAULT_MAX_WAIT = 60;
+    private static final long DEFAULT_POSTPONE_DELAY = 60;
+
+    private static final TransferMemoryGovernor _instance = new TransferMemoryGovernor(
+            AppPropertiesService.getPropertyLong( PROPERTY_MAX_IN_FLIGHT_BYTES, DEFAULT_MAX_IN_FLIGHT_BYTES ),
+            TimeUnit.SECONDS.toMillis( AppPropertiesService.getPropertyLong( PROPERTY_MAX_BYPASS_TIME, DEFAULT_MAX_BYPASS_TIME ) ) );
+
+    private final long _lMaxInFlightBytes;
+    private final long _lMaxBypassNanos;
+    private final List<Reservation> _listWaiting = new ArrayList<>( );
+    private long _lInFlightBytes;
+
+    /**
+     * Constructor
+     * 
+     * @param lMaxInFlightBytes
+     *            the maximum number of bytes reserved at the same time
+     * @param lMaxBypassTime
+     *            the time in milliseconds after which a waiting transfer is no longer overtaken
+     */
+    TransferMemoryGovernor( long lMaxInFlightBytes, long lMaxBypassTime )
+    {
+        _lMaxInFlightBytes = Math.max( 1, lMaxInFlightBytes );
+        _lMaxBypassNanos = TimeUnit.MILLISECONDS.toNanos( lMaxBypassTime );
+    }
+
+    /**
+     * Tell if the governor is enabled
+     * 
+     * @return true if enabled
+     */
+    public static boolean isEnabled( )
+    {
+        return AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, true );
+    }
+
+    /**
+     * Reserve the memory needed to load a file, waiting for it to be available. A file whose size is unknown reserves the whole budget.
+     * 
+     * @param fileStoreService
+     *            the provider of the file
+     * @param strKey
+     *            the key of the file
+     * @return the reserved bytes, to be released once the transfer has ended
+     * @throws FileServiceException
+     *             if the metadata of the file cannot be read
+     * @throws TransferPostponedException
+     *             if the memory is not available within the maximum wait
+     */
+    public static long reserve( IFileStoreServiceProvider fileStoreService, String strKey ) throws FileServiceException
+    {
+        if ( !isEnabled( ) )
+        {
+            return 0;
+        }
+
+        File file = fileStoreService.getFileMetaData( strKey );
+        long lEstimatedBytes = ( file != null && file.getSize( ) > 0 ) ? file.getSize( ) : Long.MAX_VALUE;
+        long lPostponeDelay = TimeUnit.SECONDS.toMillis( AppPropertiesService.getPropertyLong( PROPERTY_POSTPONE_DELAY, DEFAULT_POSTPONE_DELAY ) );
+
+        try
+        {
+            long lReserved = _instance.reserve( lEstimatedBytes,
+                    TimeUnit.SECONDS.toMillis( AppPropertiesService.getPropertyLong( PROPERTY_MAX_WAIT, DEFAULT_MAX_WAIT ) ) );
+
+            if ( lReserved < 0 )
+            {
+                throw new TransferPostponedException( "Not enough memory to load the file " + strKey + " : " + _instance.getInFlightBytes( )
+                        + " bytes of files in flight", lPostponeDelay );
+            }
+
+            return lReserved;
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            throw new TransferPostponedException( "Interrupted while waiting for the memory to load the file " + strKey, lPostponeDelay );
+        }
+    }
+
+    /**
+     * Release a reservation
+     * 
+     * @param lReservedBytes
+     *            the bytes returned by the reservation
+     */
+    public static void release( long lReservedBytes )
+    {
+        _instance.releaseBytes( lReservedBytes );
+    }
+
+    /**
+     * Reserve bytes, waiting for them to be available. A reservation larger than the budget is reduced to the budget, so that it runs alone.
+     * 
+     * @param lBytes
+     *            the bytes to reserve
+     * @param lTimeout
+     *            the maximum wait in milliseconds
+     * @return the reserved bytes, -1 if the timeout has elapsed
+     * @throws InterruptedException
+     *             if the thread is interrupted while waiting
+     */
+    synchronized long reserve( long lBytes, long lTimeout ) throws InterruptedException
+    {
+        long lReserved = Math.min( Math.max( lBytes, 0 ), _lMaxInFlightBytes );
+
+        if ( lReserved == 0 )
+        {
+            return 0;
+        }
+
+        long lNow = System.nanoTime( );
+        long lDeadline = lNow + TimeUnit.MILLISECONDS.toNanos( lTimeout );
+        Reservation reservation = new Reservation( lReserved, lNow );
+        _listWaiting.add( reservation );
+
+        try
+        {
+            while ( !isAdmissible( reservation ) )
+            {
+                long lRemaining = lDeadline - System.nanoTime( );
+
+                if ( lRemaining <= 0 )
+                {
+                    return -1;
+                }
+                TimeUnit.NANOSECONDS.timedWait( this, lRemaining );
+            }
+
+            _lInFlightBytes += lReserved;
+            return lReserved;
+        }
+        finally
+        {
+            // leaving the queue may let the transfers held behind this one go
+            _listWaiting.remove( reservation );
+            notifyAll( );
+        }
+    }
+
+    /**
+     * Release bytes
+     * 
+     * @param lReservedBytes
+     *            the reserved bytes
+     */
+    synchronized void releaseBytes( long lReservedBytes )
+    {
+        if ( lReservedBytes > 0 )
+        {
+            _lInFlightBytes = Math.max( 0, _lInFlightBytes - lReservedBytes );
+            notifyAll( );
+        }
+    }
+
+    /**
+     * Returns the bytes reserved by the running transfers
+     * 
+     * @return the bytes
+     */
+    synchronized long getInFlightBytes( )
+    {
+        return _lInFlightBytes;
+    }
+
+    /**
+     * Returns the number of transfers waiting for memory
+     * 
+     * @return the number of transfers
+     */
+    synchronized int getWaitingCount( )
+    {
+        return _listWaiting.size( );
+    }
+
+    /**
+     * Tell if a waiting reservation can be admitted : it must fit in the budget, and no reservation queued before it must have waited beyond the
+     * maximum bypass time
+     * 
+     * @param reservation
+     *            the reservation
+     * @return true if the reservation can be admitted
+     */
+    private boolean isAdmissible( Reservation reservation )
+    {
+        if ( _lInFlightBytes + reservation._lBytes > _lMaxInFlightBytes )
+        {
+            return false;
+        }
+
+        long lNow = System.nanoTime( );
+
+        for ( Reservation waiting : _listWaiting )
+        {
+            if ( waiting == reservation )
+            {
+                return true;
+            }
+            if ( lNow - waiting._lQueueTime >= _lMaxBypassNanos )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Reservation waiting for memory
+     */
+    private static final class Reservation
+    {
+        private final long _lBytes;
+        private final long _lQueueTime;
+
+        /**
+         * Constructor
+         * 
+         * @param lBytes
+         *            the bytes to reserve
+         * @param lQueueTime
+         *            the time the reservation was queued, in nanoseconds
+         */
+        Reservation( long lBytes, long lQueueTime )
+        {
+            _lBytes = lBytes;
+            _lQueueTime = lQueueTime;
+        }
+    }
+}
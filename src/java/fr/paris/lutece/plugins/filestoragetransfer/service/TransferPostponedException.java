@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import fr.paris.lutece.portal.service.file.FileServiceException;
+
+/**
+ * Exception thrown when a transfer cannot start yet, the node lacking the resources to run it. The request is postponed : it is not an error of the
+ * transfer and does not consume a retry.
+ */
+public class TransferPostponedException extends FileServiceException
+{
+    private static final long serialVersionUID = 1L;
+    private static final int RESPONSE_CODE = 503;
+
+    private final long _lDelay;
+
+    /**
+     * Constructor
+     * 
+     * @param strMessage
+     *            the message
+     * @param lDelay
+     *            the delay in milliseconds before the transfer can be tried again
+     */
+    public TransferPostponedException( String strMessage, long lDelay )
+    {
+        super( strMessage, RESPONSE_CODE, null );
+        _lDelay = lDelay;
+    }
+
+    /**
+     * Returns the delay before the transfer can be tried again
+     * 
+     * @return the delay in milliseconds
+     */
+    public long getDelay( )
+    {
+        return _lDelay;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.List;
+
+import fr.paris.lutece.portal.service.file.FileServiceException;
+
+/**
+ * Throttle of a transfer, acquiring the operations and the bytes transferred from the token buckets of its source and target providers
+ */
+public class TransferThrottle
+{
+    private final List<TokenBucket> _listOperationBuckets;
+    private final List<TokenBucket> _listBytesBuckets;
+
+    /**
+     * Constructor
+     * 
+     * @param listOperationBuckets
+     *            the buckets limiting the number of operations
+     * @param listBytesBuckets
+     *            the buckets limiting the number of bytes
+     */
+    TransferThrottle( List<TokenBucket> listOperationBuckets, List<TokenBucket> listBytesBuckets )
+    {
+        _listOperationBuckets = listOperationBuckets;
+        _listBytesBuckets = listBytesBuckets;
+    }
+
+    /**
+     * Acquire an operation on the providers, waiting if their request rate is exceeded
+     * 
+     * @throws FileServiceException
+     *             if the thread is interrupted while waiting
+     */
+    public void acquireOperation( ) throws FileServiceException
+    {
+        try
+        {
+            acquire( _listOperationBuckets, 1 );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            throw new FileServiceException( "Transfer interrupted while throttled", 503, e );
+        }
+    }
+
+    /**
+     * Acquire bytes on the providers, waiting if their bandwidth is exceeded
+     * 
+     * @param lBytes
+     *            the number of bytes
+     * @throws FileServiceException
+     *             if the thread is interrupted while waiting
+     */
+    public void acquireBytes( long lBytes ) throws FileServiceException
+    {
+        try
+        {
+            acquire( _listBytesBuckets, lBytes );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            throw new FileServiceException( "Transfer interrupted while throttled", 503, e );
+        }
+    }
+
+    /**
+     * Wrap an input stream so that the bytes read are acquired on the providers
+     * 
+     * @param inputStream
+     *            the input stream
+     * @return the throttled input stream, or the input stream itself if the bandwidth of the providers is not limited
+     */
+    public InputStream wrap( InputStream inputStream )
+    {
+        if ( _listBytesBuckets.isEmpty( ) )
+        {
+            return inputStream;
+        }
+        return new ThrottledInputStream( inputStream );
+    }
+
+    /**
+     * Acquire permits on buckets
+     * 
+     * @param listBuckets
+     *            the buckets
+     * @param lPermits
+     *            the number of permits
+     * @throws InterruptedException
+     *             if the thread is interrupted while waiting
+     */
+    private static void acquire( List<TokenBucket> listBuckets, long lPermits ) throws InterruptedException
+    {
+        for ( TokenBucket bucket : listBuckets )
+        {
+            bucket.acquire( lPermits );
+        }
+    }
+
+    /**
+     * Input stream acquiring the bytes read
+     */
+    private class ThrottledInputStream extends FilterInputStream
+    {
+        /**
+         * Constructor
+         * 
+         * @param inputStream
+         *            the input stream
+         */
+        ThrottledInputStream( InputStream inputStream )
+        {
+            super( inputStream );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read( ) throws IOException
+        {
+            int nByte = super.read( );
+            if ( nByte != -1 )
+            {
+                throttle( 1 );
+            }
+            return nByte;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read( byte [ ] buffer, int nOffset, int nLength ) throws IOException
+        {
+            int nRead = super.read( buffer, nOffset, nLength );
+            if ( nRead > 0 )
+            {
+                throttle( nRead );
+            }
+            return nRead;
+        }
+
+        /**
+         * Acquire the bytes read
+         * 
+         * @param nBytes
+         *            the number of bytes
+         * @throws InterruptedIOException
+         *             if the thread is interrupted while waiting
+         */
+        private void throttle( int nBytes ) throws InterruptedIOException
+        {
+            try
+            {
+                acquire( _listBytesBuckets, nBytes );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+                throw new InterruptedIOException( "Transfer interrupted while throttled" );
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Worker pool running file transfers concurrently. Virtual threads are used when the running JVM provides them, a bounded pool of platform threads
+ * otherwise. In both cases, the number of transfers running at the same time never exceeds the configured concurrency : a task runs in a slot of
+ * the pool, acquired before its submission and released at its end.
+ */
+public final class TransferWorkerPool implements AutoCloseable
+{
+    private static final String THREAD_NAME_PREFIX = "filestoragetransfer-worker-";
+    private static final String METHOD_NEW_VIRTUAL_THREAD_EXECUTOR = "newVirtualThreadPerTaskExecutor";
+
+    private final ExecutorService _executor;
+    private final Semaphore _permits;
+    private final boolean _bVirtualThreads;
+
+    /**
+     * Constructor
+     * 
+     * @param nConcurrency
+     *            the maximum number of tasks running at the same time
+     * @param bUseVirtualThreads
+     *            true to use virtual threads if the JVM supports them
+     */
+    public TransferWorkerPool( int nConcurrency, boolean bUseVirtualThreads )
+    {
+        int nPoolSize = Math.max( 1, nConcurrency );
+        ExecutorService virtualExecutor = bUseVirtualThreads ? newVirtualThreadExecutor( ) : null;
+
+        _bVirtualThreads = virtualExecutor != null;
+        _executor = _bVirtualThreads ? virtualExecutor : Executors.newFixedThreadPool( nPoolSize, new WorkerThreadFactory( ) );
+        _permits = new Semaphore( nPoolSize );
+    }
+
+    /**
+     * Run all the tasks and wait for all of them to complete
+     * 
+     * @param listTasks
+     *            the tasks to run
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting
+     */
+    public void runAll( List<Runnable> listTasks ) throws InterruptedException
+    {
+        List<Future<?>> listFutures = new ArrayList<>( listTasks.size( ) );
+
+        for ( Runnable task : listTasks )
+        {
+            acquireSlots( 1 );
+            try
+            {
+                listFutures.add( submit( task ) );
+            }
+            catch( RuntimeException e )
+            {
+                releaseSlots( 1 );
+                throw e;
+            }
+        }
+
+        for ( Future<?> future : listFutures )
+        {
+            try
+            {
+                future.get( );
+            }
+            catch( ExecutionException e )
+            {
+                AppLogService.error( "Transfer task failed : " + e.getCause( ).getMessage( ), e.getCause( ) );
+            }
+        }
+    }
+
+    /**
+     * Acquire free slots, waiting for at least one of them
+     * 
+     * @param nMaxSlots
+     *            the maximum number of slots to acquire
+     * @return the number of acquired slots, between 1 and the given maximum
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting
+     */
+    public int acquireSlots( int nMaxSlots ) throws InterruptedException
+    {
+        // bound the number of running tasks, virtual thread executors being unbounded
+        _permits.acquire( );
+        int nSlots = 1;
+
+        while ( nSlots < nMaxSlots && _permits.tryAcquire( ) )
+        {
+            nSlots++;
+        }
+
+        return nSlots;
+    }
+
+    /**
+     * Release slots acquired and left unused
+     * 
+     * @param nSlots
+     *            the number of slots
+     */
+    public void releaseSlots( int nSlots )
+    {
+        if ( nSlots > 0 )
+        {
+            _permits.release( nSlots );
+        }
+    }
+
+    /**
+     * Submit a task in a slot acquired by the caller, the slot being released at the end of the task. If the submission fails, the slot is left
+     * acquired.
+     * 
+     * @param task
+     *            the task
+     * @return the future of the task
+     */
+    public Future<?> submit( Runnable task )
+    {
+        return _executor.submit( ( ) -> {
+            try
+            {
+                task.run( );
+            }
+            finally
+            {
+                _permits.release( );
+            }
+        } );
+    }
+
+    /**
+     * Tell if the pool runs on virtual threads
+     * 
+     * @return true if the tasks are run by virtual threads
+     */
+    public boolean isVirtualThreads( )
+    {
+        return _bVirtualThreads;
+    }
+
+    /**
+     * Shut the pool down and wait for the running tasks to end
+     */
+    @Override
+    public void close( )
+    {
+        _executor.shutdown( );
+        try
+        {
+            while ( !_executor.awaitTermination( 1, TimeUnit.MINUTES ) )
+            {
+                AppLogService.info( "Waiting for the file transfer workers to end" );
+            }
+        }
+        catch( InterruptedException e )
+        {
+            _executor.shutdownNow( );
+            Thread.currentThread( ).interrupt( );
+        }
+    }
+
+    /**
+     * Create a virtual thread per task executor, the plugin being compiled against a JDK that does not provide them
+     * 
+     * @return the executor, or null if virtual threads are not available
+     */
+    private static ExecutorService newVirtualThreadExecutor( )
+    {
+        try
+        {
+            Method method = Executors.class.getMethod( METHOD_NEW_VIRTUAL_THREAD_EXECUTOR );
+            return (ExecutorService) method.invoke( null );
+        }
+        catch( ReflectiveOperationException | RuntimeException e )
+        {
+            AppLogService.debug( "Virtual threads are not available, using platform threads" );
+            return null;
+        }
+    }
+
+    /**
+     * Thread factory naming the platform worker threads
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger _nThreadCount = new AtomicInteger( );
+
+        @Override
+        public Thread newThread( Runnable runnable )
+        {
+            Thread thread = new Thread( runnable, THREAD_NAME_PREFIX + _nThreadCount.incrementAndGet( ) );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+}
@@ -1,8 +1,15 @@
 package fr.paris.lutece.plugins.filestoragetransfer.service.listener;
 
+import java.util.List;
+
 import fr.paris.lutece.portal.service.util.LuteceService;
 import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequest;
 
+/**
+ * Listener of the completed transfer requests. When the notifications go through the outbox, a request is notified at least once : after a
+ * failure, a timeout or a restart of the node, the same request may be notified again, so the listeners must apply the new file key
+ * idempotently (for instance by updating the rows still holding the old file key).
+ */
 public interface IFileTransferListener extends LuteceService
 {
     /**
@@ -13,6 +20,18 @@ public interface IFileTransferListener extends LuteceService
      */
     void changeFileService( FileTransferRequest FileTransferRequest );
 
+    /**
+     * Notify the listener for a batch of file service switches. Listeners updating their own data should override this method to apply the new
+     * file keys with set-based statements; the default implementation notifies each request on its own.
+     * 
+     * @param listRequests
+     *            the transfer requests, completed
+     */
+    default void changeFileServices( List<FileTransferRequest> listRequests )
+    {
+        listRequests.forEach( this::changeFileService );
+    }
+
     /**
      * Get the name of the listener.
      * 
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of a pool of transfer buffers, recorded by the pool : memory held by the pool and lent to the transfers, hits, misses, buffers
+ * allocated out of the pool and leaked buffers
+ */
+public class BufferPoolMetrics
+{
+    private final String _strPoolName;
+    private final long _lMaxMemory;
+    private final AtomicLong _allocatedBytes = new AtomicLong( );
+    private final AtomicLong _inUseBytes = new AtomicLong( );
+    private final LongAdder _hits = new LongAdder( );
+    private final LongAdder _misses = new LongAdder( );
+    private final LongAdder _unpooled = new LongAdder( );
+    private final LongAdder _leaks = new LongAdder( );
+
+    /**
+     * Constructor
+     * 
+     * @param strPoolName
+     *            the name of the pool
+     * @param lMaxMemory
+     *            the maximum memory of the pool
+     */
+    public BufferPoolMetrics( String strPoolName, long lMaxMemory )
+    {
+        _strPoolName = strPoolName;
+        _lMaxMemory = lMaxMemory;
+    }
+
+    /**
+     * Returns the name of the pool
+     * 
+     * @return the name
+     */
+    public String getPoolName( )
+    {
+        return _strPoolName;
+    }
+
+    /**
+     * Returns the maximum memory of the pool
+     * 
+     * @return the number of bytes
+     */
+    public long getMaxMemory( )
+    {
+        return _lMaxMemory;
+    }
+
+    /**
+     * Returns the memory of the buffers allocated by the pool, idle or lent
+     * 
+     * @return the number of bytes
+     */
+    public long getAllocatedBytes( )
+    {
+        return _allocatedBytes.get( );
+    }
+
+    /**
+     * Returns the memory of the pooled buffers lent to the transfers
+     * 
+     * @return the number of bytes
+     */
+    public long getInUseBytes( )
+    {
+        return _inUseBytes.get( );
+    }
+
+    /**
+     * Returns the number of buffers taken from the pool
+     * 
+     * @return the number of buffers
+     */
+    public long getHitCount( )
+    {
+        return _hits.sum( );
+    }
+
+    /**
+     * Returns the number of buffers allocated because the pool had no idle buffer of their size
+     * 
+     * @return the number of buffers
+     */
+    public long getMissCount( )
+    {
+        return _misses.sum( );
+    }
+
+    /**
+     * Returns the number of buffers allocated out of the pool, larger than the largest size class or beyond the maximum memory
+     * 
+     * @return the number of buffers
+     */
+    public long getUnpooledCount( )
+    {
+        return _unpooled.sum( );
+    }
+
+    /**
+     * Returns the number of buffers garbage collected without having been released, counted when the leak detection is enabled
+     * 
+     * @return the number of buffers
+     */
+    public long getLeakCount( )
+    {
+        return _leaks.sum( );
+    }
+
+    /**
+     * Record a buffer taken from the pool
+     * 
+     * @param nSize
+     *            the size of the buffer
+     */
+    public void bufferReused( int nSize )
+    {
+        _hits.increment( );
+        _inUseBytes.addAndGet( nSize );
+    }
+
+    /**
+     * Record a buffer allocated by the pool
+     * 
+     * @param nSize
+     *            the size of the buffer
+     */
+    public void bufferAllocated( int nSize )
+    {
+        _misses.increment( );
+        _allocatedBytes.addAndGet( nSize );
+        _inUseBytes.addAndGet( nSize );
+    }
+
+    /**
+     * Record a buffer allocated out of the pool
+     */
+    public void bufferUnpooled( )
+    {
+        _unpooled.increment( );
+    }
+
+    /**
+     * Record a buffer given back to the pool
+     * 
+     * @param nSize
+     *            the size of the buffer
+     */
+    public void bufferReleased( int nSize )
+    {
+        _inUseBytes.addAndGet( -nSize );
+    }
+
+    /**
+     * Record a pooled buffer garbage collected without having been released
+     * 
+     * @param nSize
+     *            the size of the buffer
+     */
+    public void bufferLeaked( int nSize )
+    {
+        _leaks.increment( );
+        _inUseBytes.addAndGet( -nSize );
+        _allocatedBytes.addAndGet( -nSize );
+    }
+}
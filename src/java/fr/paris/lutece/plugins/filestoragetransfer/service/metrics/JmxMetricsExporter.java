@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Exporter publishing the metrics of each provider pair and of each listener as MBeans of the platform MBean server, named
+ * <code>fr.paris.lutece.plugins.filestoragetransfer:type=TransferMetrics,source=...,target=...</code> and
+ * <code>fr.paris.lutece.plugins.filestoragetransfer:type=ListenerMetrics,listener=...</code>, and of each buffer pool, named
+ * <code>fr.paris.lutece.plugins.filestoragetransfer:type=BufferPoolMetrics,pool=...</code>
+ */
+public class JmxMetricsExporter implements IMetricsExporter
+{
+    private static final String DOMAIN = "fr.paris.lutece.plugins.filestoragetransfer";
+    private static final double MILLIS_PER_SECOND = 1000d;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void register( ProviderPairMetrics metrics )
+    {
+        MetricsMBean<ProviderPairMetrics> mbean = new MetricsMBean<>( metrics, "File transfer metrics of " + metrics.getSourceProviderName( ) + " -> "
+                + metrics.getTargetProviderName( ) );
+
+        mbean.addAttribute( "SuccessCount", Long.class, ProviderPairMetrics::getSuccessCount );
+        mbean.addAttribute( "FailureCount", Long.class, ProviderPairMetrics::getFailureCount );
+        mbean.addAttribute( "BytesTransferred", Long.class, ProviderPairMetrics::getBytesTransferred );
+        mbean.addAttribute( "InFlight", Long.class, ProviderPairMetrics::getInFlight );
+
+        for ( TransferStage stage : TransferStage.values( ) )
+        {
+            mbean.addLatencyAttributes( getAttributePrefix( stage ), m -> m.getLatency( stage ) );
+        }
+
+        register( mbean, DOMAIN + ":type=TransferMetrics,source=" + ObjectName.quote( metrics.getSourceProviderName( ) ) + ",target="
+                + ObjectName.quote( metrics.getTargetProviderName( ) ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void register( ListenerMetrics metrics )
+    {
+        MetricsMBean<ListenerMetrics> mbean = new MetricsMBean<>( metrics, "Notification metrics of the listener " + metrics.getListenerName( ) );
+
+        mbean.addAttribute( "SuccessCount", Long.class, ListenerMetrics::getSuccessCount );
+        mbean.addAttribute( "FailureCount", Long.class, ListenerMetrics::getFailureCount );
+        mbean.addAttribute( "TimeoutCount", Long.class, ListenerMetrics::getTimeoutCount );
+        mbean.addAttribute( "RejectionCount", Long.class, ListenerMetrics::getRejectionCount );
+        mbean.addAttribute( "Pending", Long.class, ListenerMetrics::getPending );
+        mbean.addLatencyAttributes( "Notification", ListenerMetrics::getLatency );
+
+        register( mbean, DOMAIN + ":type=ListenerMetrics,listener=" + ObjectName.quote( metrics.getListenerName( ) ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void register( BufferPoolMetrics metrics )
+    {
+        MetricsMBean<BufferPoolMetrics> mbean = new MetricsMBean<>( metrics, "Transfer buffer pool " + metrics.getPoolName( ) );
+
+        mbean.addAttribute( "MaxMemory", Long.class, BufferPoolMetrics::getMaxMemory );
+        mbean.addAttribute( "AllocatedBytes", Long.class, BufferPoolMetrics::getAllocatedBytes );
+        mbean.addAttribute( "InUseBytes", Long.class, BufferPoolMetrics::getInUseBytes );
+        mbean.addAttribute( "HitCount", Long.class, BufferPoolMetrics::getHitCount );
+        mbean.addAttribute( "MissCount", Long.class, BufferPoolMetrics::getMissCount );
+        mbean.addAttribute( "UnpooledCount", Long.class, BufferPoolMetrics::getUnpooledCount );
+        mbean.addAttribute( "LeakCount", Long.class, BufferPoolMetrics::getLeakCount );
+
+        register( mbean, DOMAIN + ":type=BufferPoolMetrics,pool=" + ObjectName.quote( metrics.getPoolName( ) ) );
+    }
+
+    /**
+     * Register an MBean, replacing the one left by a previous deployment of the webapp
+     * 
+     * @param mbean
+     *            the MBean
+     * @param strName
+     *            the object name of the MBean
+     */
+    private static void register( DynamicMBean mbean, String strName )
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer( );
+
+        try
+        {
+            ObjectName name = new ObjectName( strName );
+
+            try
+            {
+                server.registerMBean( mbean, name );
+            }
+            catch( InstanceAlreadyExistsException e )
+            {
+                // left by a previous deployment of the webapp
+                server.unregisterMBean( name );
+                server.registerMBean( mbean, name );
+            }
+        }
+        catch( JMException e )
+        {
+            AppLogService.error( "Unable to register the metrics MBean " + strName + " : " + e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Get the prefix of the attributes of a stage : SOURCE_READ gives SourceRead
+     * 
+     * @param stage
+     *            the stage
+     * @return the prefix
+     */
+    private static String getAttributePrefix( TransferStage stage )
+    {
+        StringBuilder sbPrefix = new StringBuilder( );
+
+        for ( String strWord : stage.name( ).split( "_" ) )
+        {
+            sbPrefix.append( strWord.charAt( 0 ) ).append( strWord.substring( 1 ).toLowerCase( ) );
+        }
+
+        return sbPrefix.toString( );
+    }
+
+    /**
+     * Read-only MBean of metrics
+     * 
+     * @param <T>
+     *            the type of the metrics
+     */
+    private static final class MetricsMBean<T> implements DynamicMBean
+    {
+        private final Map<String, Function<T, Object>> _mapAttributes = new LinkedHashMap<>( );
+        private final Map<String, String> _mapTypes = new LinkedHashMap<>( );
+        private final T _metrics;
+        private final String _strDescription;
+
+        MetricsMBean( T metrics, String strDescription )
+        {
+            _metrics = metrics;
+            _strDescription = strDescription;
+        }
+
+        void addAttribute( String strName, Class<?> type, Function<T, Object> getter )
+        {
+            _mapAttributes.put( strName, getter );
+            _mapTypes.put( strName, type.getName( ) );
+        }
+
+        void addLatencyAttributes( String strPrefix, Function<T, LatencyHistogram> latencyGetter )
+        {
+            addAttribute( strPrefix + "Count", Long.class, m -> latencyGetter.apply( m ).getCount( ) );
+            addAttribute( strPrefix + "MeanMillis", Double.class, m -> {
+                LatencyHistogram latency = latencyGetter.apply( m );
+                long lCount = latency.getCount( );
+                return lCount == 0 ? 0d : latency.getSumSeconds( ) * MILLIS_PER_SECOND / lCount;
+            } );
+            addAttribute( strPrefix + "P95Millis", Double.class, m -> latencyGetter.apply( m ).getQuantileSeconds( 0.95 ) * MILLIS_PER_SECOND );
+        }
+
+        @Override
+        public Object getAttribute( String strAttribute ) throws AttributeNotFoundException
+        {
+            Function<T, Object> getter = _mapAttributes.get( strAttribute );
+
+            if ( getter == null )
+            {
+                throw new AttributeNotFoundException( strAttribute );
+            }
+
+            return getter.apply( _metrics );
+        }
+
+        @Override
+        public void setAttribute( Attribute attribute ) throws AttributeNotFoundException
+        {
+            throw new AttributeNotFoundException( "The transfer metrics are read-only" );
+        }
+
+        @Override
+        public AttributeList getAttributes( String [ ] attributes )
+        {
+            AttributeList list = new AttributeList( );
+
+            for ( String strAttribute : attributes )
+            {
+                Function<T, Object> getter = _mapAttributes.get( strAttribute );
+                if ( getter != null )
+                {
+                    list.add( new Attribute( strAttribute, getter.apply( _metrics ) ) );
+                }
+            }
+
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes( AttributeList attributes )
+        {
+            return new AttributeList( );
+        }
+
+        @Override
+        public Object invoke( String strActionName, Object [ ] params, String [ ] signature ) throws ReflectionException
+        {
+            throw new ReflectionException( new NoSuchMethodException( strActionName ) );
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo( )
+        {
+            List<MBeanAttributeInfo> listAttributes = new ArrayList<>( );
+
+            for ( Map.Entry<String, String> type : _mapTypes.entrySet( ) )
+            {
+                listAttributes.add( new MBeanAttributeInfo( type.getKey( ), type.getValue( ), type.getKey( ), true, false, false ) );
+            }
+
+            return new MBeanInfo( getClass( ).getName( ), _strDescription, listAttributes.toArray( new MBeanAttributeInfo [ 0] ), null, null, null );
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with fixed buckets, recorded without locking. The bounds suit calls to remote storages : from 1 ms to 5 minutes.
+ */
+public class LatencyHistogram
+{
+    private static final double [ ] BOUNDS = {
+            0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300
+    };
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    // the last bucket counts the latencies above the highest bound
+    private final LongAdder [ ] _buckets = new LongAdder [ BOUNDS.length + 1];
+    private final LongAdder _sumNanos = new LongAdder( );
+
+    /**
+     * Constructor
+     */
+    public LatencyHistogram( )
+    {
+        for ( int i = 0; i < _buckets.length; i++ )
+        {
+            _buckets [i] = new LongAdder( );
+        }
+    }
+
+    /**
+     * Record a latency
+     * 
+     * @param lNanos
+     *            the latency in nanoseconds
+     */
+    public void record( long lNanos )
+    {
+        double dSeconds = lNanos / NANOS_PER_SECOND;
+        int nBucket = 0;
+
+        while ( nBucket < BOUNDS.length && dSeconds > BOUNDS [nBucket] )
+        {
+            nBucket++;
+        }
+
+        _buckets [nBucket].increment( );
+        _sumNanos.add( lNanos );
+    }
+
+    /**
+     * Returns the upper bounds of the buckets in seconds, the last bucket being unbounded
+     * 
+     * @return the bounds
+     */
+    public static double [ ] getBounds( )
+    {
+        return BOUNDS.clone( );
+    }
+
+    /**
+     * Returns the cumulative counts of the buckets : the number of latencies lower or equal to each bound, the last one being the total count
+     * 
+     * @return the cumulative counts, one more than the bounds
+     */
+    public long [ ] getCumulativeCounts( )
+    {
+        long [ ] counts = new long [ _buckets.length];
+        long lCount = 0;
+
+        for ( int i = 0; i < _buckets.length; i++ )
+        {
+            lCount += _buckets [i].sum( );
+            counts [i] = lCount;
+        }
+
+        return counts;
+    }
+
+    /**
+     * Returns the number of recorded latencies
+     * 
+     * @return the count
+     */
+    public long getCount( )
+    {
+        long lCount = 0;
+
+        for ( LongAdder bucket : _buckets )
+        {
+            lCount += bucket.sum( );
+        }
+
+        return lCount;
+    }
+
+    /**
+     * Returns the sum of the recorded latencies
+     * 
+     * @return the sum in seconds
+     */
+    public double getSumSeconds( )
+    {
+        return _sumNanos.sum( ) / NANOS_PER_SECOND;
+    }
+
+    /**
+     * Estimate a quantile of the recorded latencies : the bound of the first bucket reaching the quantile
+     * 
+     * @param dQuantile
+     *            the quantile, between 0 and 1
+     * @return the estimated latency in seconds, 0 if nothing has been recorded, infinity if it exceeds the highest bound
+     */
+    public double getQuantileSeconds( double dQuantile )
+    {
+        long [ ] counts = getCumulativeCounts( );
+        long lTotal = counts [counts.length - 1];
+
+        if ( lTotal == 0 )
+        {
+            return 0;
+        }
+
+        double dRank = dQuantile * lTotal;
+
+        for ( int i = 0; i < BOUNDS.length; i++ )
+        {
+            if ( counts [i] >= dRank )
+            {
+                return BOUNDS [i];
+            }
+        }
+
+        return Double.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of the notifications of a file transfer listener
+ */
+public class ListenerMetrics
+{
+    private final String _strListenerName;
+    private final LatencyHistogram _latency = new LatencyHistogram( );
+    private final LongAdder _successes = new LongAdder( );
+    private final LongAdder _failures = new LongAdder( );
+    private final LongAdder _timeouts = new LongAdder( );
+    private final LongAdder _rejections = new LongAdder( );
+    private final AtomicLong _pending = new AtomicLong( );
+
+    /**
+     * Constructor
+     * 
+     * @param strListenerName
+     *            the name of the listener
+     */
+    public ListenerMetrics( String strListenerName )
+    {
+        _strListenerName = strListenerName;
+    }
+
+    /**
+     * Returns the name of the listener
+     * 
+     * @return the name
+     */
+    public String getListenerName( )
+    {
+        return _strListenerName;
+    }
+
+    /**
+     * Returns the latency histogram of the notifications, timed out notifications excluded
+     * 
+     * @return the histogram
+     */
+    public LatencyHistogram getLatency( )
+    {
+        return _latency;
+    }
+
+    /**
+     * Returns the number of notifications processed by the listener
+     * 
+     * @return the number of notifications
+     */
+    public long getSuccessCount( )
+    {
+        return _successes.sum( );
+    }
+
+    /**
+     * Returns the number of notifications for which the listener threw an exception
+     * 
+     * @return the number of notifications
+     */
+    public long getFailureCount( )
+    {
+        return _failures.sum( );
+    }
+
+    /**
+     * Returns the number of notifications interrupted after the timeout of the listener
+     * 
+     * @return the number of notifications
+     */
+    public long getTimeoutCount( )
+    {
+        return _timeouts.sum( );
+    }
+
+    /**
+     * Returns the number of notifications dropped because the notification queue was full
+     * 
+     * @return the number of notifications
+     */
+    public long getRejectionCount( )
+    {
+        return _rejections.sum( );
+    }
+
+    /**
+     * Returns the number of notifications queued or running on this node
+     * 
+     * @return the number of notifications
+     */
+    public long getPending( )
+    {
+        return _pending.get( );
+    }
+
+    void notificationQueued( )
+    {
+        _pending.incrementAndGet( );
+    }
+
+    void notificationRejected( )
+    {
+        _pending.decrementAndGet( );
+        _rejections.increment( );
+    }
+
+    void notificationEnded( long lDurationNanos, boolean bSuccess )
+    {
+        _pending.decrementAndGet( );
+        _latency.record( lDurationNanos );
+        ( bSuccess ? _successes : _failures ).increment( );
+    }
+
+    void notificationTimedOut( )
+    {
+        _pending.decrementAndGet( );
+        _timeouts.increment( );
+    }
+}
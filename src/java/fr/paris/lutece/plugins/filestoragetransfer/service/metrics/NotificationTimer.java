@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service.metrics;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Timer of the notification of a listener, from its queuing to its outcome. The notification ends once : by its completion, its timeout or its
+ * rejection, whichever comes first, each of them being possibly reported by a different thread.
+ */
+public class NotificationTimer
+{
+    private final ListenerMetrics _metrics;
+    private final AtomicBoolean _bEnded = new AtomicBoolean( );
+    private volatile long _lStartNanos;
+
+    /**
+     * Constructor
+     * 
+     * @param metrics
+     *            the metrics of the listener, null to measure nothing
+     */
+    NotificationTimer( ListenerMetrics metrics )
+    {
+        _metrics = metrics;
+        _lStartNanos = System.nanoTime( );
+
+        if ( _metrics != null )
+        {
+            _metrics.notificationQueued( );
+        }
+    }
+
+    /**
+     * Start measuring the latency, when the listener is called
+     */
+    public void start( )
+    {
+        _lStartNanos = System.nanoTime( );
+    }
+
+    /**
+     * End the notification, the listener having returned
+     * 
+     * @param bSuccess
+     *            false if the listener threw an exception
+     * @return true if this call ended the notification, false if it had already timed out
+     */
+    public boolean stop( boolean bSuccess )
+    {
+        if ( !_bEnded.compareAndSet( false, true ) )
+        {
+            return false;
+        }
+
+        if ( _metrics != null )
+        {
+            _metrics.notificationEnded( System.nanoTime( ) - _lStartNanos, bSuccess );
+        }
+
+        return true;
+    }
+
+    /**
+     * End the notification, the listener not having returned before its timeout
+     * 
+     * @return true if this call ended the notification, false if the listener had already returned
+     */
+    public boolean timeout( )
+    {
+        if ( !_bEnded.compareAndSet( false, true ) )
+        {
+            return false;
+        }
+
+        if ( _metrics != null )
+        {
+            _metrics.notificationTimedOut( );
+        }
+
+        return true;
+    }
+
+    /**
+     * End the notification, the listener not being called because the notification queue is full
+     * 
+     * @return true if this call ended the notification
+     */
+    public boolean reject( )
+    {
+        if ( !_bEnded.compareAndSet( false, true ) )
+        {
+            return false;
+        }
+
+        if ( _metrics != null )
+        {
+            _metrics.notificationRejected( );
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service.metrics;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Formatter of the transfer metrics in the Prometheus text exposition format
+ */
+public final class PrometheusTextFormatter
+{
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final String METRIC_DURATION = "filestoragetransfer_stage_duration_seconds";
+    private static final String METRIC_BYTES = "filestoragetransfer_transferred_bytes_total";
+    private static final String METRIC_TRANSFERS = "filestoragetransfer_transfers_total";
+    private static final String METRIC_IN_FLIGHT = "filestoragetransfer_transfers_in_flight";
+    private static final String METRIC_NOTIFICATION_DURATION = "filestoragetransfer_listener_duration_seconds";
+    private static final String METRIC_NOTIFICATIONS = "filestoragetransfer_listener_notifications_total";
+    private static final String METRIC_NOTIFICATIONS_PENDING = "filestoragetransfer_listener_notifications_pending";
+    private static final String METRIC_POOL_MAX = "filestoragetransfer_buffer_pool_max_bytes";
+    private static final String METRIC_POOL_ALLOCATED = "filestoragetransfer_buffer_pool_allocated_bytes";
+    private static final String METRIC_POOL_IN_USE = "filestoragetransfer_buffer_pool_in_use_bytes";
+    private static final String METRIC_POOL_BUFFERS = "filestoragetransfer_buffer_pool_buffers_total";
+
+    /**
+     * Private constructor
+     */
+    private PrometheusTextFormatter( )
+    {
+    }
+
+    /**
+     * Format metrics
+     * 
+     * @param listMetrics
+     *            the metrics of the provider pairs
+     * @return the metrics in the text exposition format
+     */
+    public static String format( Collection<ProviderPairMetrics> listMetrics )
+    {
+        return format( listMetrics, Collections.emptyList( ) );
+    }
+
+    /**
+     * Format metrics
+     * 
+     * @param listMetrics
+     *            the metrics of the provider pairs
+     * @param listListenerMetrics
+     *            the metrics of the listeners
+     * @return the metrics in the text exposition format
+     */
+    public static String format( Collection<ProviderPairMetrics> listMetrics, Collection<ListenerMetrics> listListenerMetrics )
+    {
+        return format( listMetrics, listListenerMetrics, Collections.emptyList( ) );
+    }
+
+    /**
+     * Format metrics
+     * 
+     * @param listMetrics
+     *            the metrics of the provider pairs
+     * @param listListenerMetrics
+     *            the metrics of the listeners
+     * @param listBufferPoolMetrics
+     *            the metrics of the buffer pools
+     * @return the metrics in the text exposition format
+     */
+    public static String format( Collection<ProviderPairMetrics> listMetrics, Collection<ListenerMetrics> listListenerMetrics,
+            Collection<BufferPoolMetrics> listBufferPoolMetrics )
+    {
+        StringBuilder sb = new StringBuilder( );
+
+        appendHeader( sb, METRIC_DURATION, "Time spent in each stage of the file transfers", "histogram" );
+        for ( ProviderPairMetrics metrics : listMetrics )
+        {
+            for ( TransferStage stage : TransferStage.values( ) )
+            {
+                appendHistogram( sb, METRIC_DURATION, getLabels( metrics ) + ",stage=\"" + stage.getLabel( ) + "\"", metrics.getLatency( stage ) );
+            }
+        }
+
+        appendHeader( sb, METRIC_BYTES, "Bytes read from the source providers", "counter" );
+        for ( ProviderPairMetrics metrics : listMetrics )
+        {
+            appendSample( sb, METRIC_BYTES, getLabels( metrics ), Long.toString( metrics.getBytesTransferred( ) ) );
+        }
+
+        appendHeader( sb, METRIC_TRANSFERS, "File transfers by outcome", "counter" );
+        for ( ProviderPairMetrics metrics : listMetrics )
+        {
+            appendSample( sb, METRIC_TRANSFERS, getLabels( metrics ) + ",outcome=\"success\"", Long.toString( metrics.getSuccessCount( ) ) );
+            appendSample( sb, METRIC_TRANSFERS, getLabels( metrics ) + ",outcome=\"failure\"", Long.toString( metrics.getFailureCount( ) ) );
+        }
+
+        appendHeader( sb, METRIC_IN_FLIGHT, "File transfers in progress on this node", "gauge" );
+        for ( ProviderPairMetrics metrics : listMetrics )
+        {
+            appendSample( sb, METRIC_IN_FLIGHT, getLabels( metrics ), Long.toString( metrics.getInFlight( ) ) );
+        }
+
+        if ( !listListenerMetrics.isEmpty( ) )
+        {
+            appendListeners( sb, listListenerMetrics );
+        }
+
+        if ( !listBufferPoolMetrics.isEmpty( ) )
+        {
+            appendBufferPools( sb, listBufferPoolMetrics );
+        }
+
+        return sb.toString( );
+    }
+
+    private static void appendListeners( StringBuilder sb, Collection<ListenerMetrics> listListenerMetrics )
+    {
+        appendHeader( sb, METRIC_NOTIFICATION_DURATION, "Time spent by the listeners to process the transfer notifications", "histogram" );
+        for ( ListenerMetrics metrics : listListenerMetrics )
+        {
+            appendHistogram( sb, METRIC_NOTIFICATION_DURATION, getLabels( metrics ), metrics.getLatency( ) );
+        }
+
+        appendHeader( sb, METRIC_NOTIFICATIONS, "Transfer notifications by listener and outcome", "counter" );
+        for ( ListenerMetrics metrics : listListenerMetrics )
+        {
+            appendSample( sb, METRIC_NOTIFICATIONS, getLabels( metrics ) + ",outcome=\"success\"", Long.toString( metrics.getSuccessCount( ) ) );
+            appendSample( sb, METRIC_NOTIFICATIONS, getLabels( metrics ) + ",outcome=\"failure\"", Long.toString( metrics.getFailureCount( ) ) );
+            appendSample( sb, METRIC_NOTIFICATIONS, getLabels( metrics ) + ",outcome=\"timeout\"", Long.toString( metrics.getTimeoutCount( ) ) );
+            appendSample( sb, METRIC_NOTIFICATIONS, getLabels( metrics ) + ",outcome=\"rejected\"", Long.toString( metrics.getRejectionCount( ) ) );
+        }
+
+        appendHeader( sb, METRIC_NOTIFICATIONS_PENDING, "Transfer notifications queued or running on this node", "gauge" );
+        for ( ListenerMetrics metrics : listListenerMetrics )
+        {
+            appendSample( sb, METRIC_NOTIFICATIONS_PENDING, getLabels( metrics ), Long.toString( metrics.getPending( ) ) );
+        }
+    }
+
+    private static void appendBufferPools( StringBuilder sb, Collection<BufferPoolMetrics> listBufferPoolMetrics )
+    {
+        appendHeader( sb, METRIC_POOL_MAX, "Maximum memory of the buffers allocated by the pool", "gauge" );
+        for ( BufferPoolMetrics metrics : listBufferPoolMetrics )
+        {
+            appendSample( sb, METRIC_POOL_MAX, getLabels( metrics ), Long.toString( metrics.getMaxMemory( ) ) );
+        }
+
+        appendHeader( sb, METRIC_POOL_ALLOCATED, "Memory of the buffers allocated by the pool", "gauge" );
+        for ( BufferPoolMetrics metrics : listBufferPoolMetrics )
+        {
+            appendSample( sb, METRIC_POOL_ALLOCATED, getLabels( metrics ), Long.toString( metrics.getAllocatedBytes( ) ) );
+        }
+
+        appendHeader( sb, METRIC_POOL_IN_USE, "Memory of the buffers of the pool lent to the transfers", "gauge" );
+        for ( BufferPoolMetrics metrics : listBufferPoolMetrics )
+        {
+            appendSample( sb, METRIC_POOL_IN_USE, getLabels( metrics ), Long.toString( metrics.getInUseBytes( ) ) );
+        }
+
+        appendHeader( sb, METRIC_POOL_BUFFERS, "Buffers acquired from the pool by outcome, and buffers leaked", "counter" );
+        for ( BufferPoolMetrics metrics : listBufferPoolMetrics )
+        {
+            appendSample( sb, METRIC_POOL_BUFFERS, getLabels( metrics ) + ",outcome=\"hit\"", Long.toString( metrics.getHitCount( ) ) );
+            appendSample( sb, METRIC_POOL_BUFFERS, getLabels( metrics ) + ",outcome=\"miss\"", Long.toString( metrics.getMissCount( ) ) );
+            appendSample( sb, METRIC_POOL_BUFFERS, getLabels( metrics ) + ",outcome=\"unpooled\"", Long.toString( metrics.getUnpooledCount( ) ) );
+            appendSample( sb, METRIC_POOL_BUFFERS, getLabels( metrics ) + ",outcome=\"leak\"", Long.toString( metrics.getLeakCount( ) ) );
+        }
+    }
+
+    private static void appendHistogram( StringBuilder sb, String strMetric, String strLabels, LatencyHistogram latency )
+    {
+        double [ ] bounds = LatencyHistogram.getBounds( );
+        long [ ] counts = latency.getCumulativeCounts( );
+
+        for ( int i = 0; i < counts.length; i++ )
+        {
+            String strBound = i < bounds.length ? Double.toString( bounds [i] ) : "+Inf";
+            appendSample( sb, strMetric + "_bucket", strLabels + ",le=\"" + strBound + "\"", Long.toString( counts [i] ) );
+        }
+        appendSample( sb, strMetric + "_sum", strLabels, Double.toString( latency.getSumSeconds( ) ) );
+        appendSample( sb, strMetric + "_count", strLabels, Long.toString( counts [counts.length - 1] ) );
+    }
+
+    private static void appendHeader( StringBuilder sb, String strMetric, String strHelp, String strType )
+    {
+        sb.append( "# HELP " ).append( strMetric ).append( ' ' ).append( strHelp ).append( '\n' );
+        sb.append( "# TYPE " ).append( strMetric ).append( ' ' ).append( strType ).append( '\n' );
+    }
+
+    private static void appendSample( StringBuilder sb, String strMetric, String strLabels, String strValue )
+    {
+        sb.append( strMetric ).append( '{' ).append( strLabels ).append( "} " ).append( strValue ).append( '\n' );
+    }
+
+    private static String getLabels( ProviderPairMetrics metrics )
+    {
+        return "source=\"" + escape( metrics.getSourceProviderName( ) ) + "\",target=\"" + escape( metrics.getTargetProviderName( ) ) + "\"";
+    }
+
+    private static String getLabels( ListenerMetrics metrics )
+    {
+        return "listener=\"" + escape( metrics.getListenerName( ) ) + "\"";
+    }
+
+    private static String getLabels( BufferPoolMetrics metrics )
+    {
+        return "pool=\"" + escape( metrics.getPoolName( ) ) + "\"";
+    }
+
+    /**
+     * Escape a label value
+     * 
+     * @param strValue
+     *            the value
+     * @return the escaped value
+     */
+    static String escape( String strValue )
+    {
+        return strValue == null ? "" : strValue.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ).replace( "\n", "\\n" );
+    }
+}
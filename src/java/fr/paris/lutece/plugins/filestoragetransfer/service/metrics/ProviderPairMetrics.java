@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of the transfers from a source provider to a target provider
+ */
+public class ProviderPairMetrics
+{
+    private final String _strSourceProviderName;
+    private final String _strTargetProviderName;
+    private final Map<TransferStage, LatencyHistogram> _mapLatencies = new EnumMap<>( TransferStage.class );
+    private final LongAdder _bytesTransferred = new LongAdder( );
+    private final LongAdder _successes = new LongAdder( );
+    private final LongAdder _failures = new LongAdder( );
+    private final AtomicLong _inFlight = new AtomicLong( );
+
+    /**
+     * Constructor
+     * 
+     * @param strSourceProviderName
+     *            the name of the source provider
+     * @param strTargetProviderName
+     *            the name of the target provider
+     */
+    public ProviderPairMetrics( String strSourceProviderName, String strTargetProviderName )
+    {
+        _strSourceProviderName = strSourceProviderName;
+        _strTargetProviderName = strTargetProviderName;
+
+        for ( TransferStage stage : TransferStage.values( ) )
+        {
+            _mapLatencies.put( stage, new LatencyHistogram( ) );
+        }
+    }
+
+    /**
+     * Returns the name of the source provider
+     * 
+     * @return the name
+     */
+    public String getSourceProviderName( )
+    {
+        return _strSourceProviderName;
+    }
+
+    /**
+     * Returns the name of the target provider
+     * 
+     * @return the name
+     */
+    public String getTargetProviderName( )
+    {
+        return _strTargetProviderName;
+    }
+
+    /**
+     * Returns the latency histogram of a stage
+     * 
+     * @param stage
+     *            the stage
+     * @return the histogram
+     */
+    public LatencyHistogram getLatency( TransferStage stage )
+    {
+        return _mapLatencies.get( stage );
+    }
+
+    /**
+     * Returns the number of bytes read from the source provider
+     * 
+     * @return the number of bytes
+     */
+    public long getBytesTransferred( )
+    {
+        return _bytesTransferred.sum( );
+    }
+
+    /**
+     * Returns the number of successful transfers
+     * 
+     * @return the number of transfers
+     */
+    public long getSuccessCount( )
+    {
+        return _successes.sum( );
+    }
+
+    /**
+     * Returns the number of failed transfers
+     * 
+     * @return the number of transfers
+     */
+    public long getFailureCount( )
+    {
+        return _failures.sum( );
+    }
+
+    /**
+     * Returns the number of transfers in progress on this node
+     * 
+     * @return the number of transfers
+     */
+    public long getInFlight( )
+    {
+        return _inFlight.get( );
+    }
+
+    void addBytesTransferred( long lBytes )
+    {
+        _bytesTransferred.add( lBytes );
+    }
+
+    void transferStarted( )
+    {
+        _inFlight.incrementAndGet( );
+    }
+
+    void transferEnded( boolean bSuccess )
+    {
+        _inFlight.decrementAndGet( );
+        ( bSuccess ? _successes : _failures ).increment( );
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Registry of the transfer metrics, by provider pair : latency of each stage, bytes transferred, successes, failures and transfers in flight ; and
+ * of the notification metrics, by listener ; and of the buffer pools. The metrics are published by the {@link IMetricsExporter} beans of the context.
+ */
+public final class TransferMetricsService
+{
+    private static final String PROPERTY_ENABLED = "filestoragetransfer.metrics.enabled";
+
+    private static final Map<String, ProviderPairMetrics> _mapMetrics = new ConcurrentHashMap<>( );
+    private static final Map<String, ListenerMetrics> _mapListenerMetrics = new ConcurrentHashMap<>( );
+    private static final Map<String, BufferPoolMetrics> _mapBufferPoolMetrics = new ConcurrentHashMap<>( );
+    private static final List<IMetricsExporter> _listExporters = new CopyOnWriteArrayList<>( );
+
+    /**
+     * Private constructor
+     */
+    private TransferMetricsService( )
+    {
+    }
+
+    /**
+     * Tell if the metrics are recorded
+     * 
+     * @return true if the metrics are enabled
+     */
+    public static boolean isEnabled( )
+    {
+        return AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, true );
+    }
+
+    /**
+     * Register the exporters declared in the context and publish the metrics already recorded
+     */
+    public static void start( )
+    {
+        for ( IMetricsExporter exporter : SpringContextService.getBeansOfType( IMetricsExporter.class ) )
+        {
+            addExporter( exporter );
+        }
+    }
+
+    /**
+     * Register an exporter and publish the metrics already recorded
+     * 
+     * @param exporter
+     *            the exporter
+     */
+    public static synchronized void addExporter( IMetricsExporter exporter )
+    {
+        _listExporters.add( exporter );
+
+        for ( ProviderPairMetrics metrics : _mapMetrics.values( ) )
+        {
+            register( exporter, metrics );
+        }
+        for ( ListenerMetrics metrics : _mapListenerMetrics.values( ) )
+        {
+            register( exporter, metrics );
+        }
+        for ( BufferPoolMetrics metrics : _mapBufferPoolMetrics.values( ) )
+        {
+            register( exporter, metrics );
+        }
+    }
+
+    /**
+     * Start measuring a transfer
+     * 
+     * @param strSourceProviderName
+     *            the name of the source provider
+     * @param strTargetProviderName
+     *            the name of the target provider
+     * @return the timer of the transfer, measuring nothing if the metrics are disabled
+     */
+    public static TransferTimer startTransfer( String strSourceProviderName, String strTargetProviderName )
+    {
+        return new TransferTimer( isEnabled( ) ? getMetrics( strSourceProviderName, strTargetProviderName ) : null );
+    }
+
+    /**
+     * Start measuring the notification of a listener, queued for execution
+     * 
+     * @param strListenerName
+     *            the name of the listener
+     * @return the timer of the notification, measuring nothing if the metrics are disabled
+     */
+    public static NotificationTimer startNotification( String strListenerName )
+    {
+        return new NotificationTimer( isEnabled( ) ? getListenerMetrics( strListenerName ) : null );
+    }
+
+    /**
+     * Get the metrics of a provider pair, published to the exporters when they are created
+     * 
+     * @param strSourceProviderName
+     *            the name of the source provider
+     * @param strTargetProviderName
+     *            the name of the target provider
+     * @return the metrics
+     */
+    public static ProviderPairMetrics getMetrics( String strSourceProviderName, String strTargetProviderName )
+    {
+        String strKey = strSourceProviderName + '\n' + strTargetProviderName;
+        ProviderPairMetrics metrics = _mapMetrics.get( strKey );
+
+        if ( metrics == null )
+        {
+            metrics = createMetrics( strKey, strSourceProviderName, strTargetProviderName );
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Returns the metrics of every provider pair
+     * 
+     * @return the metrics
+     */
+    public static Collection<ProviderPairMetrics> getAllMetrics( )
+    {
+        return new ArrayList<>( _mapMetrics.values( ) );
+    }
+
+    /**
+     * Get the metrics of a listener, published to the exporters when they are created
+     * 
+     * @param strListenerName
+     *            the name of the listener
+     * @return the metrics
+     */
+    public static ListenerMetrics getListenerMetrics( String strListenerName )
+    {
+        ListenerMetrics metrics = _mapListenerMetrics.get( strListenerName );
+
+        if ( metrics == null )
+        {
+            metrics = createListenerMetrics( strListenerName );
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Returns the metrics of every listener
+     * 
+     * @return the metrics
+     */
+    public static Collection<ListenerMetrics> getAllListenerMetrics( )
+    {
+        return new ArrayList<>( _mapListenerMetrics.values( ) );
+    }
+
+    /**
+     * Get the metrics of a buffer pool, published to the exporters when they are created. The buffer pools record their metrics whether the metrics
+     * are enabled or not.
+     * 
+     * @param strPoolName
+     *            the name of the pool
+     * @param lMaxMemory
+     *            the maximum memory of the pool
+     * @return the metrics
+     */
+    public static synchronized BufferPoolMetrics getBufferPoolMetrics( String strPoolName, long lMaxMemory )
+    {
+        BufferPoolMetrics metrics = _mapBufferPoolMetrics.get( strPoolName );
+
+        if ( metrics == null )
+        {
+            metrics = new BufferPoolMetrics( strPoolName, lMaxMemory );
+            _mapBufferPoolMetrics.put( strPoolName, metrics );
+
+            for ( IMetricsExporter exporter : _listExporters )
+            {
+                register( exporter, metrics );
+            }
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Returns the metrics of every buffer pool
+     * 
+     * @return the metrics
+     */
+    public static Collection<BufferPoolMetrics> getAllBufferPoolMetrics( )
+    {
+        return new ArrayList<>( _mapBufferPoolMetrics.values( ) );
+    }
+
+    /**
+     * Create the metrics of a provider pair, synchronized with the registration of the exporters so that each one publishes them once
+     * 
+     * @param strKey
+     *            the key of the pair
+     * @param strSourceProviderName
+     *            the name of the source provider
+     * @param strTargetProviderName
+     *            the name of the target provider
+     * @return the metrics
+     */
+    private static synchronized ProviderPairMetrics createMetrics( String strKey, String strSourceProviderName, String strTargetProviderName )
+    {
+        ProviderPairMetrics metrics = _mapMetrics.get( strKey );
+
+        if ( metrics == null )
+        {
+            metrics = new ProviderPairMetrics( strSourceProviderName, strTargetProviderName );
+            _mapMetrics.put( strKey, metrics );
+
+            for ( IMetricsExporter exporter : _listExporters )
+            {
+                register( exporter, metrics );
+            }
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Create the metrics of a listener, synchronized with the registration of the exporters so that each one publishes them once
+     * 
+     * @param strListenerName
+     *            the name of the listener
+     * @return the metrics
+     */
+    private static synchronized ListenerMetrics createListenerMetrics( String strListenerName )
+    {
+        ListenerMetrics metrics = _mapListenerMetrics.get( strListenerName );
+
+        if ( metrics == null )
+        {
+            metrics = new ListenerMetrics( strListenerName );
+            _mapListenerMetrics.put( strListenerName, metrics );
+
+            for ( IMetricsExporter exporter : _listExporters )
+            {
+                register( exporter, metrics );
+            }
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Publish metrics to an exporter, a failing exporter not failing the transfers
+     * 
+     * @param exporter
+     *            the exporter
+     * @param metrics
+     *            the metrics
+     */
+    private static void register( IMetricsExporter exporter, ProviderPairMetrics metrics )
+    {
+        try
+        {
+            exporter.register( metrics );
+        }
+        catch( RuntimeException e )
+        {
+            AppLogService.error( "Unable to export the metrics of " + metrics.getSourceProviderName( ) + " -> " + metrics.getTargetProviderName( ) + " : "
+                    + e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Publish the metrics of a listener to an exporter, a failing exporter not failing the notifications
+     * 
+     * @param exporter
+     *            the exporter
+     * @param metrics
+     *            the metrics
+     */
+    private static void register( IMetricsExporter exporter, ListenerMetrics metrics )
+    {
+        try
+        {
+            exporter.register( metrics );
+        }
+        catch( RuntimeException e )
+        {
+            AppLogService.error( "Unable to export the metrics of the listener " + metrics.getListenerName( ) + " : " + e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Publish the metrics of a buffer pool to an exporter
+     * 
+     * @param exporter
+     *            the exporter
+     * @param metrics
+     *            the metrics
+     */
+    private static void register( IMetricsExporter exporter, BufferPoolMetrics metrics )
+    {
+        try
+        {
+            exporter.register( metrics );
+        }
+        catch( RuntimeException e )
+        {
+            AppLogService.error( "Unable to export the metrics of the buffer pool " + metrics.getPoolName( ) + " : " + e.getMessage( ), e );
+        }
+    }
+}
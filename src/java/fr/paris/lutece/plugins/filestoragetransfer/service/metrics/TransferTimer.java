@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Timer of a transfer, summing the time spent in each stage and recording it in the metrics of its provider pair when the transfer ends. A timer
+ * is used by a single thread.
+ */
+public class TransferTimer
+{
+    private final ProviderPairMetrics _metrics;
+    private final long _lStartNanos;
+    private final long [ ] _stageNanos = new long [ TransferStage.values( ).length];
+    private long _lBytes;
+    private boolean _bStopped;
+
+    /**
+     * Constructor
+     * 
+     * @param metrics
+     *            the metrics of the provider pair, null to measure nothing
+     */
+    TransferTimer( ProviderPairMetrics metrics )
+    {
+        _metrics = metrics;
+        _lStartNanos = System.nanoTime( );
+
+        if ( _metrics != null )
+        {
+            _metrics.transferStarted( );
+        }
+    }
+
+    /**
+     * Add the time elapsed since a start time to a stage
+     * 
+     * @param stage
+     *            the stage
+     * @param lStartNanos
+     *            the start time, from {@link System#nanoTime()}
+     */
+    public void record( TransferStage stage, long lStartNanos )
+    {
+        _stageNanos [stage.ordinal( )] += System.nanoTime( ) - lStartNanos;
+    }
+
+    /**
+     * Add a number of bytes read from the source provider
+     * 
+     * @param lBytes
+     *            the number of bytes
+     */
+    public void addBytes( long lBytes )
+    {
+        _lBytes += lBytes;
+    }
+
+    /**
+     * Wrap the input stream of the source file, adding the time spent and the bytes read to the {@link TransferStage#SOURCE_READ} stage
+     * 
+     * @param inputStream
+     *            the input stream
+     * @return the measured input stream
+     */
+    public InputStream wrap( InputStream inputStream )
+    {
+        return _metrics != null ? new TimedInputStream( inputStream ) : inputStream;
+    }
+
+    /**
+     * End the transfer, recording the time of its stages and its outcome. Only the first call is recorded.
+     * 
+     * @param bSuccess
+     *            true if the file has been transferred
+     */
+    public void stop( boolean bSuccess )
+    {
+        if ( _metrics == null || _bStopped )
+        {
+            return;
+        }
+        _bStopped = true;
+
+        _stageNanos [TransferStage.TOTAL.ordinal( )] = System.nanoTime( ) - _lStartNanos;
+        for ( TransferStage stage : TransferStage.values( ) )
+        {
+            if ( _stageNanos [stage.ordinal( )] > 0 )
+            {
+                _metrics.getLatency( stage ).record( _stageNanos [stage.ordinal( )] );
+            }
+        }
+
+        _metrics.addBytesTransferred( _lBytes );
+        _metrics.transferEnded( bSuccess );
+    }
+
+    /**
+     * Input stream measuring the time spent in the reads of the underlying stream
+     */
+    private class TimedInputStream extends FilterInputStream
+    {
+        TimedInputStream( InputStream in )
+        {
+            super( in );
+        }
+
+        @Override
+        public int read( ) throws IOException
+        {
+            long lStart = System.nanoTime( );
+            int nByte = super.read( );
+            record( TransferStage.SOURCE_READ, lStart );
+            if ( nByte != -1 )
+            {
+                addBytes( 1 );
+            }
+            return nByte;
+        }
+
+        @Override
+        public int read( byte [ ] buffer, int nOffset, int nLength ) throws IOException
+        {
+            long lStart = System.nanoTime( );
+            int nRead = super.read( buffer, nOffset, nLength );
+            record( TransferStage.SOURCE_READ, lStart );
+            if ( nRead > 0 )
+            {
+                addBytes( nRead );
+            }
+            return nRead;
+        }
+
+        @Override
+        public long skip( long lCount ) throws IOException
+        {
+            long lStart = System.nanoTime( );
+            long lSkipped = super.skip( lCount );
+            record( TransferStage.SOURCE_READ, lStart );
+            return lSkipped;
+        }
+    }
+}
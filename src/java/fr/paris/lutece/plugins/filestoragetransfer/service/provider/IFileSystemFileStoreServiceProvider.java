@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service.provider;
+
+import java.nio.file.Path;
+
+import fr.paris.lutece.portal.business.file.File;
+import fr.paris.lutece.portal.service.file.FileServiceException;
+import fr.paris.lutece.portal.service.file.IFileStoreServiceProvider;
+
+/**
+ * File store service provider keeping its files in a filesystem (local disk, NFS, ...). When both providers of a transfer implement this interface,
+ * the transfer engine copies the file from channel to channel, the kernel moving the bytes (sendfile, copy_file_range) without copying them to the
+ * heap.
+ */
+public interface IFileSystemFileStoreServiceProvider extends IFileStoreServiceProvider
+{
+    /**
+     * Get the path of a stored file
+     * 
+     * @param strKey
+     *            the key of the file
+     * @return the path, or null if there is no such file
+     * @throws FileServiceException
+     *             if the path cannot be resolved
+     */
+    Path getFilePath( String strKey ) throws FileServiceException;
+
+    /**
+     * Reserve the path of a new file, in a directory where the file can be written. The file is not part of the store until it is committed.
+     * 
+     * @param fileMetaData
+     *            the metadata of the file (title, mime type, size), without physical file
+     * @return the path where the file must be written
+     * @throws FileServiceException
+     *             if the path cannot be reserved
+     */
+    Path newFilePath( File fileMetaData ) throws FileServiceException;
+
+    /**
+     * Add to the store a file written at a reserved path
+     * 
+     * @param path
+     *            the path given by {@link #newFilePath(File)}
+     * @param fileMetaData
+     *            the metadata of the file
+     * @return the key of the stored file
+     * @throws FileServiceException
+     *             if the file cannot be stored
+     */
+    String commitFilePath( Path path, File fileMetaData ) throws FileServiceException;
+}
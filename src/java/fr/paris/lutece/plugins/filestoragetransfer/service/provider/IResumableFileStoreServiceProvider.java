@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service.provider;
+
+import fr.paris.lutece.portal.business.file.File;
+import fr.paris.lutece.portal.service.file.FileServiceException;
+
+/**
+ * Streaming file store service provider able to store a file in several chunks, and to resume the storage of a file from the last acknowledged chunk
+ * after a failure. The transfer engine uses chunked transfers for the large files when the target provider implements this interface.
+ */
+public interface IResumableFileStoreServiceProvider extends IStreamingFileStoreServiceProvider
+{
+    /**
+     * Open a stream to store a new file in chunks
+     * 
+     * @param fileMetaData
+     *            the metadata of the file (title, mime type, size), without physical file
+     * @return the output stream
+     * @throws FileServiceException
+     *             if the stream cannot be opened
+     */
+    ResumableFileStoreOutputStream openResumableFileOutputStream( File fileMetaData ) throws FileServiceException;
+
+    /**
+     * Reopen the stream of an interrupted upload, positioned after the last acknowledged chunk
+     * 
+     * @param fileMetaData
+     *            the metadata of the file
+     * @param strUploadId
+     *            the identifier of the upload, as returned by {@link ResumableFileStoreOutputStream#getUploadId()}
+     * @param lOffset
+     *            the number of bytes acknowledged for this upload
+     * @return the output stream
+     * @throws FileServiceException
+     *             if the upload cannot be resumed (unknown or expired upload, offset mismatch)
+     */
+    ResumableFileStoreOutputStream resumeFileOutputStream( File fileMetaData, String strUploadId, long lOffset ) throws FileServiceException;
+}
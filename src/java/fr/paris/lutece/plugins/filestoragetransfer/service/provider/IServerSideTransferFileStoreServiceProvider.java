@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service.provider;
+
+import fr.paris.lutece.portal.service.file.FileServiceException;
+import fr.paris.lutece.portal.service.file.IFileStoreServiceProvider;
+
+/**
+ * File store service provider able to copy or move its files to another provider of the same backend (two buckets of an object store, two
+ * directories of a filesystem, two tables of a database, ...) without the content going through the JVM. The transfer engine prefers this capability
+ * of the source provider when it accepts the target provider. When the checksum verification is enabled, the source provider should also implement
+ * {@link IChecksumFileStoreServiceProvider}, otherwise the file is copied through the JVM.
+ */
+public interface IServerSideTransferFileStoreServiceProvider extends IFileStoreServiceProvider
+{
+    /**
+     * Tell if the files of this provider can be copied or moved to a target provider on the server side
+     * 
+     * @param targetFileStoreService
+     *            the target provider
+     * @return true if the target provider shares the backend of this provider
+     */
+    boolean canTransferTo( IFileStoreServiceProvider targetFileStoreService );
+
+    /**
+     * Copy a file to the target provider, the source file being kept
+     * 
+     * @param strKey
+     *            the key of the file
+     * @param targetFileStoreService
+     *            the target provider, accepted by {@link #canTransferTo(IFileStoreServiceProvider)}
+     * @return the key of the copy in the target provider
+     * @throws FileServiceException
+     *             if the copy fails
+     */
+    String copyFile( String strKey, IFileStoreServiceProvider targetFileStoreService ) throws FileServiceException;
+
+    /**
+     * Move a file to the target provider. Providers able to rename a file should override this method : the default implementation copies the file
+     * then deletes it.
+     * 
+     * @param strKey
+     *            the key of the file
+     * @param targetFileStoreService
+     *            the target provider, accepted by {@link #canTransferTo(IFileStoreServiceProvider)}
+     * @return the key of the file in the target provider
+     * @throws FileServiceException
+     *             if the move fails
+     */
+    default String moveFile( String strKey, IFileStoreServiceProvider targetFileStoreService ) throws FileServiceException
+    {
+        String strNewKey = copyFile( strKey, targetFileStoreService );
+        delete( strKey );
+
+        return strNewKey;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.web;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.PrometheusTextFormatter;
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.TransferMetricsService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Servlet exposing the transfer metrics in the Prometheus text format. It answers 404 unless it is enabled, and requires the configured bearer
+ * token if any.
+ */
+public class PrometheusMetricsServlet extends HttpServlet
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final String PROPERTY_ENABLED = "filestoragetransfer.metrics.prometheus.enabled";
+    private static final String PROPERTY_TOKEN = "filestoragetransfer.metrics.prometheus.token";
+    private static final String HEADER_AUTHORIZATION = "Authorization";
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doGet( HttpServletRequest request, HttpServletResponse response ) throws IOException
+    {
+        if ( !AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, false ) )
+        {
+            response.sendError( HttpServletResponse.SC_NOT_FOUND );
+            return;
+        }
+
+        if ( !isAuthorized( request ) )
+        {
+            response.sendError( HttpServletResponse.SC_UNAUTHORIZED );
+            return;
+        }
+
+        response.setContentType( PrometheusTextFormatter.CONTENT_TYPE );
+        response.getWriter( ).write( PrometheusTextFormatter.format( TransferMetricsService.getAllMetrics( ), TransferMetricsService.getAllListenerMetrics( ),
+                TransferMetricsService.getAllBufferPoolMetrics( ) ) );
+    }
+
+    /**
+     * Check the bearer token of the request
+     * 
+     * @param request
+     *            the request
+     * @return true if no token is configured or if the request has the configured token
+     */
+    private static boolean isAuthorized( HttpServletRequest request )
+    {
+        String strToken = AppPropertiesService.getProperty( PROPERTY_TOKEN, "" );
+
+        if ( strToken.isEmpty( ) )
+        {
+            return true;
+        }
+
+        String strAuthorization = request.getHeader( HEADER_AUTHORIZATION );
+
+        return strAuthorization != null && strAuthorization.startsWith( BEARER_PREFIX ) && MessageDigest.isEqual(
+                strToken.getBytes( StandardCharsets.UTF_8 ), strAuthorization.substring( BEARER_PREFIX.length( ) ).getBytes( StandardCharsets.UTF_8 ) );
+    }
+}
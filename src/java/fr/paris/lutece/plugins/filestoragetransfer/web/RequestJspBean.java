@@ -41,29 +41,36 @@ import fr.paris.lutece.portal.service.spring.SpringContextService;
 import fr.paris.lutece.plugins.filestoragetransfer.business.FileRequestError;
 import fr.paris.lutece.plugins.filestoragetransfer.business.FileRequestErrorHome;
 import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequest;
+import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequestFilter;
 import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequestHome;
 import fr.paris.lutece.plugins.filestoragetransfer.business.RequestStatus;
+import fr.paris.lutece.plugins.filestoragetransfer.business.TransferCheckpointHome;
 import fr.paris.lutece.plugins.filestoragetransfer.service.FileSwitcherService;
+import fr.paris.lutece.plugins.filestoragetransfer.service.TransferDispatcherService;
 import fr.paris.lutece.portal.service.admin.AccessDeniedException;
 import fr.paris.lutece.portal.service.file.IFileStoreServiceProvider;
 import fr.paris.lutece.portal.service.i18n.I18nService;
 import fr.paris.lutece.portal.service.util.AppException;
 import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.portal.util.mvc.admin.MVCAdminJspBean;
 import fr.paris.lutece.portal.util.mvc.admin.annotations.Controller;
 import fr.paris.lutece.portal.util.mvc.commons.annotations.Action;
 import fr.paris.lutece.portal.util.mvc.commons.annotations.View;
 import fr.paris.lutece.util.url.UrlItem;
 import fr.paris.lutece.util.html.AbstractPaginator;
 
-import java.util.Comparator;
 import java.sql.Timestamp;
 import java.time.Instant;
-import java.util.ArrayList;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import java.util.Arrays;
 
 
@@ -71,7 +78,7 @@ import java.util.Arrays;
  * This class provides the user interface to manage Request features ( manage, create, modify, remove )
  */
 @Controller( controllerJsp = "ManageRequests.jsp", controllerPath = "jsp/admin/plugins/filestoragetransfer/", right = "FILESTORAGETRANSFER_REQUEST_MANAGEMENT" )
-public class RequestJspBean extends AbstractPaginatorJspBean<Integer, FileTransferRequest>
+public class RequestJspBean extends MVCAdminJspBean
 {
 
     // Rights
@@ -86,6 +93,16 @@ public class RequestJspBean extends AbstractPaginatorJspBean<Integer, FileTransf
 
     // Parameters
     private static final String PARAMETER_ID_REQUEST = "id";
+    private static final String PARAMETER_REQUEST_STATUS_FILTER = "request_status_filter";
+    private static final String PARAMETER_SOURCE_FILTER = "source_filter";
+    private static final String PARAMETER_TARGET_FILTER = "target_filter";
+    private static final String PARAMETER_REQUEST_CONTEXT_FILTER = "request_context_filter";
+    private static final String PARAMETER_ERROR_CODE_FILTER = "error_code_filter";
+    private static final String PARAMETER_CREATION_DATE_FROM_FILTER = "creation_date_from_filter";
+    private static final String PARAMETER_CREATION_DATE_TO_FILTER = "creation_date_to_filter";
+    private static final String VALUE_NO_FILTER = "none";
+    private static final String PARAMETER_AFTER = "after";
+    private static final String PARAMETER_BEFORE = "before";
 
     // Properties for page titles
     private static final String PROPERTY_PAGE_TITLE_MANAGE_REQUESTS = "filestoragetransfer.manage_requests.pageTitle";
@@ -100,12 +117,27 @@ public class RequestJspBean extends AbstractPaginatorJspBean<Integer, FileTransf
     private static final String MARK_ERROR_LIST = "error_list";
     private static final String MARK_REQUEST_STATUS_LIST = "request_status_list";
     private static final String MARK_SELECTED_REQUEST_STATUS_FILTER = "selected_request_status_filter";
+    private static final String MARK_FILTER = "filter";
+    private static final String MARK_CREATION_DATE_FROM_FILTER = "creation_date_from_filter";
+    private static final String MARK_CREATION_DATE_TO_FILTER = "creation_date_to_filter";
     private static final String MARK_LOCALE = "locale";
+    private static final String MARK_NB_ITEMS_PER_PAGE = "nb_items_per_page";
+    private static final String MARK_NEXT_CURSOR = "next_cursor";
+    private static final String MARK_PREVIOUS_CURSOR = "previous_cursor";
+    private static final String MARK_REQUEST_COUNT = "request_count";
+    private static final String MARK_REQUEST_COUNT_LIMITED = "request_count_limited";
 
     private static final String JSP_MANAGE_REQUESTS = "jsp/admin/plugins/filestoragetransfer/ManageRequests.jsp";
 
     // Properties
+    private static final String PROPERTY_DEFAULT_LIST_ITEM_PER_PAGE = "filestoragetransfer.listItems.itemsPerPage";
+    private static final String PROPERTY_COUNT_LIMIT = "filestoragetransfer.listItems.countLimit";
+    private static final int DEFAULT_ITEMS_PER_PAGE = 50;
+    private static final int DEFAULT_COUNT_LIMIT = 10000;
     private static final String MESSAGE_CONFIRM_REMOVE_REQUEST = "filestoragetransfer.message.confirmRemoveRequest";
+    private static final String MESSAGE_CONFIRM_REQUEUE_FILTERED_REQUESTS = "filestoragetransfer.message.confirmRequeueFilteredRequests";
+    private static final String MESSAGE_CONFIRM_CANCEL_FILTERED_REQUESTS = "filestoragetransfer.message.confirmCancelFilteredRequests";
+    private static final String MESSAGE_CONFIRM_DELETE_FILTERED_REQUESTS = "filestoragetransfer.message.confirmDeleteFilteredRequests";
 
     // Validations
     private static final String VALIDATION_ATTRIBUTES_PREFIX = "filestoragetransfer.model.entity.request.attribute.";
@@ -125,6 +157,12 @@ public class RequestJspBean extends AbstractPaginatorJspBean<Integer, FileTransf
     private static final String ACTION_RESET_FILE_TRANSFER_REQUEST_STATUS = "resetFileRequestStatus";
     private static final String ACTION_PLAY_FILE_TRANSFER_REQUEST = "playFileTransferRequest";
     private static final String ACTION_RESET_ALL_FILE_TRANSFER_REQUEST_STATUS = "resetStatusOfAllErrorRequests";
+    private static final String ACTION_CONFIRM_REQUEUE_FILTERED_REQUESTS = "confirmRequeueFilteredRequests";
+    private static final String ACTION_REQUEUE_FILTERED_REQUESTS = "requeueFilteredRequests";
+    private static final String ACTION_CONFIRM_CANCEL_FILTERED_REQUESTS = "confirmCancelFilteredRequests";
+    private static final String ACTION_CANCEL_FILTERED_REQUESTS = "cancelFilteredRequests";
+    private static final String ACTION_CONFIRM_DELETE_FILTERED_REQUESTS = "confirmDeleteFilteredRequests";
+    private static final String ACTION_DELETE_FILTERED_REQUESTS = "deleteFilteredRequests";
 
     // Infos
     private static final String INFO_REQUEST_CREATED = "filestoragetransfer.info.request.created";
@@ -132,14 +170,17 @@ public class RequestJspBean extends AbstractPaginatorJspBean<Integer, FileTransf
     private static final String INFO_RESET_FILE_TRANSFER_REQUEST_STATUS = "filestoragetransfer.info.request.status.reset";
     private static final String INFO_REQUEST_PLAYED = "filestoragetransfer.info.request.played";
     private static final String INFO_RESET_ALL_FILE_TRANSFER_REQUEST_STATUS = "filestoragetransfer.info.request.status.reset.all";
+    private static final String INFO_FILTERED_REQUESTS_REQUEUED = "filestoragetransfer.info.request.filtered.requeued";
+    private static final String INFO_FILTERED_REQUESTS_CANCELED = "filestoragetransfer.info.request.filtered.canceled";
+    private static final String INFO_FILTERED_REQUESTS_DELETED = "filestoragetransfer.info.request.filtered.deleted";
 
     // Errors
     private static final String ERROR_RESOURCE_NOT_FOUND = "Resource not found";
 
     // Session variable to store working values
     private FileTransferRequest _fileTransferRequest;
-    private List<Integer> _listIdFileTransferRequests;
-    private RequestStatus _statusFilter = RequestStatus.STATUS_UNKNOWN;
+    private int _nItemsPerPage;
+    private FileTransferRequestFilter _filter = new FileTransferRequestFilter( );
 
     /**
      * Build the Manage View
@@ -155,63 +196,343 @@ public class RequestJspBean extends AbstractPaginatorJspBean<Integer, FileTransf
 
         List<RequestStatus> requestStatusList = RequestStatus.getAllStatus();
 
-        if ( request.getParameter( AbstractPaginator.PARAMETER_PAGE_INDEX ) == null || _listIdFileTransferRequests.isEmpty( ) )
+        _nItemsPerPage = AbstractPaginator.getItemsPerPage( request, AbstractPaginator.PARAMETER_ITEMS_PER_PAGE, _nItemsPerPage,
+                AppPropertiesService.getPropertyInt( PROPERTY_DEFAULT_LIST_ITEM_PER_PAGE, DEFAULT_ITEMS_PER_PAGE ) );
+
+        Map<String, Object> model = getModel( );
+        putRequestsPage( request, model );
+        model.put( MARK_REQUEST_STATUS_LIST, requestStatusList );
+        model.put( MARK_SELECTED_REQUEST_STATUS_FILTER, _filter.containsRequestStatus( ) ? _filter.getRequestStatus( ) : RequestStatus.STATUS_UNKNOWN );
+        model.put( MARK_FILTER, _filter );
+        model.put( MARK_CREATION_DATE_FROM_FILTER, formatDate( _filter.getCreationTimeFrom( ), false ) );
+        model.put( MARK_CREATION_DATE_TO_FILTER, formatDate( _filter.getCreationTimeTo( ), true ) );
+        model.put( MARK_FILESERVICES_LIST, getFileServicesList( ) );
+        model.put( MARK_LOCALE, getLocale( ) );
+        return getPage( PROPERTY_PAGE_TITLE_MANAGE_REQUESTS, TEMPLATE_MANAGE_REQUESTS, model );
+    }
+
+    /**
+     * Put the page of requests in the model. The pages are read by keyset on the id, from the cursor given in the request : the page does not
+     * depend on the number of requests before it, and no list of ids is kept in the session.
+     * 
+     * @param request
+     *            The HTTP request
+     * @param model
+     *            the model
+     */
+    private void putRequestsPage( HttpServletRequest request, Map<String, Object> model )
+    {
+        int nIdAfter = NumberUtils.toInt( request.getParameter( PARAMETER_AFTER ), 0 );
+        int nIdBefore = NumberUtils.toInt( request.getParameter( PARAMETER_BEFORE ), 0 );
+        boolean bForward = nIdBefore <= 0;
+
+        // one more request is read to know if there is a following page
+        List<FileTransferRequest> listRequests = FileTransferRequestHome.getRequestsPage( _filter, bForward ? nIdAfter : nIdBefore, bForward,
+                _nItemsPerPage + 1 );
+        boolean bHasNext;
+        boolean bHasPrevious;
+
+        if ( bForward )
         {
-            if ( !_statusFilter.equals( RequestStatus.STATUS_UNKNOWN ) )
+            bHasPrevious = nIdAfter > 0;
+            bHasNext = listRequests.size( ) > _nItemsPerPage;
+            if ( bHasNext )
             {
-                _listIdFileTransferRequests = FileTransferRequestHome.getIdRequestsListByStatus( _statusFilter.getValue() );
+                listRequests = listRequests.subList( 0, _nItemsPerPage );
             }
-            else {
-                _listIdFileTransferRequests = FileTransferRequestHome.getIdRequestsList( );
+        }
+        else if ( listRequests.size( ) > _nItemsPerPage )
+        {
+            bHasPrevious = true;
+            bHasNext = true;
+            listRequests = listRequests.subList( 1, listRequests.size( ) );
+        }
+        else
+        {
+            // back to the first page, which is full
+            listRequests = FileTransferRequestHome.getRequestsPage( _filter, 0, true, _nItemsPerPage + 1 );
+            bHasPrevious = false;
+            bHasNext = listRequests.size( ) > _nItemsPerPage;
+            if ( bHasNext )
+            {
+                listRequests = listRequests.subList( 0, _nItemsPerPage );
             }
         }
 
-        Map<String, Object> model = getPaginatedListModel( request, MARK_REQUEST_LIST, _listIdFileTransferRequests, JSP_MANAGE_REQUESTS );
-        model.put( MARK_REQUEST_STATUS_LIST, requestStatusList );
-        model.put( MARK_SELECTED_REQUEST_STATUS_FILTER, _statusFilter);
-        model.put( MARK_LOCALE, getLocale( ) );
-        return getPage( PROPERTY_PAGE_TITLE_MANAGE_REQUESTS, TEMPLATE_MANAGE_REQUESTS, model );
+        int nCountLimit = AppPropertiesService.getPropertyInt( PROPERTY_COUNT_LIMIT, DEFAULT_COUNT_LIMIT );
+        int nCount = FileTransferRequestHome.countByFilter( _filter, nCountLimit );
+
+        model.put( MARK_REQUEST_LIST, listRequests );
+        model.put( MARK_NB_ITEMS_PER_PAGE, String.valueOf( _nItemsPerPage ) );
+        model.put( MARK_REQUEST_COUNT, nCount );
+        model.put( MARK_REQUEST_COUNT_LIMITED, nCount >= nCountLimit );
+        if ( bHasNext && !listRequests.isEmpty( ) )
+        {
+            model.put( MARK_NEXT_CURSOR, listRequests.get( listRequests.size( ) - 1 ).getId( ) );
+        }
+        if ( bHasPrevious && !listRequests.isEmpty( ) )
+        {
+            model.put( MARK_PREVIOUS_CURSOR, listRequests.get( 0 ).getId( ) );
+        }
     }
 
     @Action( ACTION_FILTER_REQUEST )
     public String dofilterRequest( HttpServletRequest request ) throws AccessDeniedException
     {
-        String statusFilterValue = request.getParameter( "request_status_filter" );
-        if(statusFilterValue != "none") {
-            _statusFilter = RequestStatus.getRequestStatusByValue( statusFilterValue );   
+        FileTransferRequestFilter filter = new FileTransferRequestFilter( );
+
+        String statusFilterValue = request.getParameter( PARAMETER_REQUEST_STATUS_FILTER );
+        if ( statusFilterValue != null && !VALUE_NO_FILTER.equals( statusFilterValue ) )
+        {
+            filter.setRequestStatus( RequestStatus.getRequestStatusByValue( statusFilterValue ) );
         }
-        else {
-            _statusFilter = RequestStatus.STATUS_UNKNOWN;
+
+        filter.setSourceFileserviceproviderName( getFilterParameter( request, PARAMETER_SOURCE_FILTER ) );
+        filter.setTargetFileserviceproviderName( getFilterParameter( request, PARAMETER_TARGET_FILTER ) );
+        filter.setRequestContext( getFilterParameter( request, PARAMETER_REQUEST_CONTEXT_FILTER ) );
+
+        String strErrorCode = getFilterParameter( request, PARAMETER_ERROR_CODE_FILTER );
+        if ( strErrorCode != null )
+        {
+            try
+            {
+                filter.setErrorCode( Integer.parseInt( strErrorCode ) );
+            }
+            catch( NumberFormatException e )
+            {
+                // invalid code, not filtered
+            }
         }
+
+        filter.setCreationTimeFrom( parseDate( getFilterParameter( request, PARAMETER_CREATION_DATE_FROM_FILTER ), false ) );
+        filter.setCreationTimeTo( parseDate( getFilterParameter( request, PARAMETER_CREATION_DATE_TO_FILTER ), true ) );
+
+        _filter = filter;
+
         return redirectView( request, VIEW_MANAGE_REQUESTS );
     }
 
     /**
-     * Get Items from Ids list
+     * Manages the requeue form of the requests matching the current filter
+     *
+     * @param request
+     *            The Http request
+     * @return the html code to confirm
+     */
+    @Action( ACTION_CONFIRM_REQUEUE_FILTERED_REQUESTS )
+    public String getConfirmRequeueFilteredRequests( HttpServletRequest request )
+    {
+        return confirmFilteredRequests( request, MESSAGE_CONFIRM_REQUEUE_FILTERED_REQUESTS, ACTION_REQUEUE_FILTERED_REQUESTS );
+    }
+
+    /**
+     * Requeue the requests matching the current filter
+     *
+     * @param request
+     *            The Http request
+     * @return the jsp URL to display the form to manage requests
+     * @throws AccessDeniedException
+     *             if the security token is invalid
+     */
+    @Action( ACTION_REQUEUE_FILTERED_REQUESTS )
+    public String doRequeueFilteredRequests( HttpServletRequest request ) throws AccessDeniedException
+    {
+        if ( !SecurityTokenService.getInstance( ).validate( request, ACTION_REQUEUE_FILTERED_REQUESTS ) )
+        {
+            throw new AccessDeniedException( "Invalid security token" );
+        }
+
+        int nCount = FileTransferRequestHome.requeueByFilter( _filter );
+
+        addCountInfo( INFO_FILTERED_REQUESTS_REQUEUED, nCount );
+
+        return redirectView( request, VIEW_MANAGE_REQUESTS );
+    }
+
+    /**
+     * Manages the cancellation form of the requests matching the current filter
+     *
+     * @param request
+     *            The Http request
+     * @return the html code to confirm
+     */
+    @Action( ACTION_CONFIRM_CANCEL_FILTERED_REQUESTS )
+    public String getConfirmCancelFilteredRequests( HttpServletRequest request )
+    {
+        return confirmFilteredRequests( request, MESSAGE_CONFIRM_CANCEL_FILTERED_REQUESTS, ACTION_CANCEL_FILTERED_REQUESTS );
+    }
+
+    /**
+     * Cancel the requests matching the current filter
+     *
+     * @param request
+     *            The Http request
+     * @return the jsp URL to display the form to manage requests
+     * @throws AccessDeniedException
+     *             if the security token is invalid
+     */
+    @Action( ACTION_CANCEL_FILTERED_REQUESTS )
+    public String doCancelFilteredRequests( HttpServletRequest request ) throws AccessDeniedException
+    {
+        if ( !SecurityTokenService.getInstance( ).validate( request, ACTION_CANCEL_FILTERED_REQUESTS ) )
+        {
+            throw new AccessDeniedException( "Invalid security token" );
+        }
+
+        int nCount = FileTransferRequestHome.cancelByFilter( _filter );
+
+        addCountInfo( INFO_FILTERED_REQUESTS_CANCELED, nCount );
+
+        return redirectView( request, VIEW_MANAGE_REQUESTS );
+    }
+
+    /**
+     * Manages the removal form of the requests matching the current filter
+     *
+     * @param request
+     *            The Http request
+     * @return the html code to confirm
+     */
+    @Action( ACTION_CONFIRM_DELETE_FILTERED_REQUESTS )
+    public String getConfirmDeleteFilteredRequests( HttpServletRequest request )
+    {
+        return confirmFilteredRequests( request, MESSAGE_CONFIRM_DELETE_FILTERED_REQUESTS, ACTION_DELETE_FILTERED_REQUESTS );
+    }
+
+    /**
+     * Delete the requests matching the current filter
+     *
+     * @param request
+     *            The Http request
+     * @return the jsp URL to display the form to manage requests
+     * @throws AccessDeniedException
+     *             if the security token is invalid
+     */
+    @Action( ACTION_DELETE_FILTERED_REQUESTS )
+    public String doDeleteFilteredRequests( HttpServletRequest request ) throws AccessDeniedException
+    {
+        if ( !SecurityTokenService.getInstance( ).validate( request, ACTION_DELETE_FILTERED_REQUESTS ) )
+        {
+            throw new AccessDeniedException( "Invalid security token" );
+        }
+
+        int nCount = FileTransferRequestHome.deleteByFilter( _filter );
+
+        addCountInfo( INFO_FILTERED_REQUESTS_DELETED, nCount );
+
+        return redirectView( request, VIEW_MANAGE_REQUESTS );
+    }
+
+    /**
+     * Redirects to the confirmation of a bulk action on the requests matching the current filter
+     *
+     * @param request
+     *            The Http request
+     * @param strMessageKey
+     *            The key of the confirmation message
+     * @param strAction
+     *            The action to confirm, protected by a security token
+     * @return the html code to confirm
+     */
+    private String confirmFilteredRequests( HttpServletRequest request, String strMessageKey, String strAction )
+    {
+        UrlItem url = new UrlItem( getActionUrl( strAction ) );
+        url.addParameter( SecurityTokenService.PARAMETER_TOKEN, SecurityTokenService.getInstance( ).getToken( request, strAction ) );
+
+        String strMessageUrl = AdminMessageService.getMessageUrl( request, strMessageKey, new Object [ ] {
+                FileTransferRequestHome.countByFilter( _filter )
+        }, url.getUrl( ), AdminMessage.TYPE_CONFIRMATION );
+
+        return redirect( request, strMessageUrl );
+    }
+
+    /**
+     * Add an information message about a number of requests
+     * 
+     * @param strMessageKey
+     *            the key of the message
+     * @param nCount
+     *            the number of requests
+     */
+    private void addCountInfo( String strMessageKey, int nCount )
+    {
+        addInfo( I18nService.getLocalizedString( strMessageKey, new Object [ ] {
+                nCount
+        }, getLocale( ) ) );
+    }
+
+    /**
+     * Returns a filter parameter
+     * 
+     * @param request
+     *            The Http request
+     * @param strParameter
+     *            the name of the parameter
+     * @return the value, null if empty or not filtered
+     */
+    private static String getFilterParameter( HttpServletRequest request, String strParameter )
+    {
+        String strValue = StringUtils.trimToNull( request.getParameter( strParameter ) );
+
+        return VALUE_NO_FILTER.equals( strValue ) ? null : strValue;
+    }
+
+    /**
+     * Parse a date of the filter form (yyyy-MM-dd)
      * 
-     * @param listIds
-     * @return the populated list of items corresponding to the id List
+     * @param strDate
+     *            the date
+     * @param bEndOfDay
+     *            true to return the start of the following day, so that the whole day is included
+     * @return the timestamp, null if the date is empty or invalid
      */
-    @Override
-    List<FileTransferRequest> getItemsFromIds( List<Integer> listIds )
+    private static Timestamp parseDate( String strDate, boolean bEndOfDay )
     {
-        List<FileTransferRequest> listRequest = FileTransferRequestHome.getRequestsListByIds( listIds );
-        // keep original order
-        return listRequest.stream( ).sorted( Comparator.comparingInt( notif -> listIds.indexOf( notif.getId( ) ) ) ).collect( Collectors.toList( ) );
+        if ( strDate == null )
+        {
+            return null;
+        }
+
+        try
+        {
+            LocalDate date = LocalDate.parse( strDate );
+            return Timestamp.valueOf( ( bEndOfDay ? date.plusDays( 1 ) : date ).atStartOfDay( ) );
+        }
+        catch( DateTimeParseException e )
+        {
+            return null;
+        }
     }
 
-    @Override
-    int getPluginDefaultNumberOfItemPerPage( )
+    /**
+     * Format a date of the filter form (yyyy-MM-dd)
+     * 
+     * @param timestamp
+     *            the timestamp
+     * @param bEndOfDay
+     *            true if the timestamp is the start of the day following the date
+     * @return the date, empty if none
+     */
+    private static String formatDate( Timestamp timestamp, boolean bEndOfDay )
     {
-        return AppPropertiesService.getPropertyInt( PROPERTY_DEFAULT_LIST_ITEM_PER_PAGE, 50 );
+        if ( timestamp == null )
+        {
+            return "";
+        }
+
+        LocalDate date = timestamp.toLocalDateTime( ).toLocalDate( );
+        return ( bEndOfDay ? date.minusDays( 1 ) : date ).toString( );
     }
 
     /**
-     * reset the _listIdRequests list
+     * Returns the names of the file service providers
+     * 
+     * @return the names
      */
-    public void resetListId( )
+    private static List<String> getFileServicesList( )
     {
-        _listIdFileTransferRequests = new ArrayList<>( );
+        return SpringContextService.getBeansOfType( IFileStoreServiceProvider.class ).stream( ).map( IFileStoreServiceProvider::getName )
+                .collect( Collectors.toList( ) );
     }
 
     /**
@@ -299,7 +620,6 @@ public class RequestJspBean extends AbstractPaginatorJspBean<Integer, FileTransf
 
         FileTransferRequestHome.create( _fileTransferRequest );
         addInfo( INFO_REQUEST_CREATED, getLocale( ) );
-        resetListId( );
 
         return redirectView( request, VIEW_MANAGE_REQUESTS );
     }
@@ -324,6 +644,7 @@ public class RequestJspBean extends AbstractPaginatorJspBean<Integer, FileTransf
             FileRequestErrorHome.remove( error.getId( ) );
         });
 
+        TransferCheckpointHome.remove( nId );
         FileTransferRequestHome.remove( nId );
 
         return redirect( request, strMessageUrl );
@@ -350,10 +671,11 @@ public class RequestJspBean extends AbstractPaginatorJspBean<Integer, FileTransf
         _fileTransferRequest.setRequestStatus( RequestStatus.STATUS_TODO );
         _fileTransferRequest.setRetryCount(0);
         _fileTransferRequest.setExecutionTime( Timestamp.from(Instant.now()) );
+        _fileTransferRequest.releaseLease( );
 
         FileTransferRequestHome.update(_fileTransferRequest);
+        TransferDispatcherService.signal( );
         addInfo( INFO_RESET_FILE_TRANSFER_REQUEST_STATUS, getLocale( ) );
-        resetListId( );
         
         return redirectView( request, VIEW_MANAGE_REQUESTS );
     }
@@ -361,15 +683,13 @@ public class RequestJspBean extends AbstractPaginatorJspBean<Integer, FileTransf
     @Action( ACTION_RESET_ALL_FILE_TRANSFER_REQUEST_STATUS )
     public String doResetAllFileRequestStatus( HttpServletRequest request )
     {
-        List<FileTransferRequest> fileRequestList = FileTransferRequestHome.getRequestsListByStatus( RequestStatus.STATUS_ERROR.getValue() );
+        FileTransferRequestFilter filter = new FileTransferRequestFilter( );
+        filter.setRequestStatus( RequestStatus.STATUS_ERROR );
 
-        fileRequestList.forEach( fileRequest -> {
-            fileRequest.setRequestStatus( RequestStatus.STATUS_TODO );
-            FileTransferRequestHome.update(fileRequest);
-        });
+        // a single statement, the dispatcher being signaled by the home
+        int nCount = FileTransferRequestHome.requeueByFilter( filter );
 
-        addInfo( INFO_RESET_ALL_FILE_TRANSFER_REQUEST_STATUS, getLocale( ) );
-        resetListId( );
+        addCountInfo( INFO_RESET_ALL_FILE_TRANSFER_REQUEST_STATUS, nCount );
         return redirectView( request, VIEW_MANAGE_REQUESTS );
     }
 
@@ -444,7 +764,6 @@ public class RequestJspBean extends AbstractPaginatorJspBean<Integer, FileTransf
 
         FileTransferRequestHome.update( _fileTransferRequest );
         addInfo( INFO_REQUEST_UPDATED, getLocale( ) );
-        resetListId( );
 
         return redirectView( request, VIEW_MANAGE_REQUESTS );
     }
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.web;
+
+import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequestHome;
+import fr.paris.lutece.plugins.filestoragetransfer.business.RequestStatus;
+import fr.paris.lutece.plugins.filestoragetransfer.business.StatusCounter;
+import fr.paris.lutece.plugins.filestoragetransfer.business.StatusCounterHome;
+import fr.paris.lutece.portal.business.user.AdminUser;
+import fr.paris.lutece.portal.service.dashboard.DashboardComponent;
+import fr.paris.lutece.portal.service.template.AppTemplateService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Dashboard component of the transfer queue : the number of requests by status and by provider pair, read from the status counters, the lag of
+ * the oldest due request and the completions per minute
+ */
+public class TransferQueueDashboardComponent extends DashboardComponent
+{
+    // Templates
+    private static final String TEMPLATE_DASHBOARD = "/admin/plugins/filestoragetransfer/dashboard/transfer_queue_dashboard.html";
+
+    // Properties
+    private static final String PROPERTY_COMPLETION_WINDOW = "filestoragetransfer.dashboard.completionWindow";
+    private static final int DEFAULT_COMPLETION_WINDOW = 5;
+
+    // Markers
+    private static final String MARK_STATUS_LIST = "request_status_list";
+    private static final String MARK_STATUS_TOTALS = "status_totals";
+    private static final String MARK_PAIRS = "provider_pairs";
+    private static final String MARK_SOURCE = "source";
+    private static final String MARK_TARGET = "target";
+    private static final String MARK_COUNTERS = "counters";
+    private static final String MARK_OLDEST_DUE_TIME = "oldest_due_time";
+    private static final String MARK_LAG = "lag";
+    private static final String MARK_COMPLETION_WINDOW = "completion_window";
+    private static final String MARK_COMPLETIONS_PER_MINUTE = "completions_per_minute";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getDashboardData( AdminUser user, HttpServletRequest request )
+    {
+        Map<String, Object> model = new HashMap<>( );
+        Map<String, Long> mapStatusTotals = new HashMap<>( );
+        Map<String, Map<String, Long>> mapPairCounters = new HashMap<>( );
+        List<Map<String, Object>> listPairs = new ArrayList<>( );
+
+        // the counters are ordered by provider pair
+        for ( StatusCounter counter : StatusCounterHome.getStatusCountersList( ) )
+        {
+            String strStatus = counter.getRequestStatus( ).getValue( );
+            mapStatusTotals.merge( strStatus, counter.getCount( ), Long::sum );
+
+            Map<String, Long> mapCounters = mapPairCounters.computeIfAbsent(
+                    counter.getSourceFileserviceproviderName( ) + '\n' + counter.getTargetFileserviceproviderName( ), k -> {
+                        Map<String, Long> mapPairCounter = new HashMap<>( );
+                        listPairs.add( newPair( counter, mapPairCounter ) );
+                        return mapPairCounter;
+                    } );
+            mapCounters.put( strStatus, counter.getCount( ) );
+        }
+
+        Instant now = Instant.now( );
+        Optional<Timestamp> oldestDueTime = FileTransferRequestHome.getNextExecutionTime( ).filter( time -> !time.toInstant( ).isAfter( now ) );
+        if ( oldestDueTime.isPresent( ) )
+        {
+            model.put( MARK_OLDEST_DUE_TIME, oldestDueTime.get( ) );
+            model.put( MARK_LAG, ( now.toEpochMilli( ) - oldestDueTime.get( ).getTime( ) ) / 1000 );
+        }
+
+        int nCompletionWindow = Math.max( AppPropertiesService.getPropertyInt( PROPERTY_COMPLETION_WINDOW, DEFAULT_COMPLETION_WINDOW ), 1 );
+        int nCompleted = FileTransferRequestHome.countCompletedSince( Timestamp.from( now.minusSeconds( nCompletionWindow * 60L ) ) );
+
+        model.put( MARK_STATUS_LIST, RequestStatus.getAllStatus( ) );
+        model.put( MARK_STATUS_TOTALS, mapStatusTotals );
+        model.put( MARK_PAIRS, listPairs );
+        model.put( MARK_COMPLETION_WINDOW, nCompletionWindow );
+        model.put( MARK_COMPLETIONS_PER_MINUTE, (double) nCompleted / nCompletionWindow );
+
+        return AppTemplateService.getTemplate( TEMPLATE_DASHBOARD, user.getLocale( ), model ).getHtml( );
+    }
+
+    /**
+     * Create the model of a provider pair
+     * 
+     * @param counter
+     *            a counter of the pair
+     * @param mapCounters
+     *            the counters of the pair, by status
+     * @return the model
+     */
+    private static Map<String, Object> newPair( StatusCounter counter, Map<String, Long> mapCounters )
+    {
+        Map<String, Object> pair = new HashMap<>( );
+        pair.put( MARK_SOURCE, counter.getSourceFileserviceproviderName( ) );
+        pair.put( MARK_TARGET, counter.getTargetFileserviceproviderName( ) );
+        pair.put( MARK_COUNTERS, mapCounters );
+
+        return pair;
+    }
+}
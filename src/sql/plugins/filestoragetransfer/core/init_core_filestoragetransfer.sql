@@ -35,3 +35,8 @@ INSERT INTO core_admin_right (id_right,name,level_right,admin_url,description,is
 DELETE FROM core_user_right WHERE id_right = 'FILESTORAGETRANSFER_ERROR_MANAGEMENT';
 INSERT INTO core_user_right (id_right,id_user) VALUES ('FILESTORAGETRANSFER_ERROR_MANAGEMENT',1);
 
+--
+-- Data for table core_dashboard
+--
+DELETE FROM core_dashboard WHERE dashboard_name = 'FILESTORAGETRANSFER_QUEUE';
+INSERT INTO core_dashboard (dashboard_name, dashboard_column, dashboard_order) VALUES ('FILESTORAGETRANSFER_QUEUE', 1, 5);
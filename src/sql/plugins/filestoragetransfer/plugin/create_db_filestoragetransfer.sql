@@ -10,15 +10,22 @@ old_file_key varchar(255) default '' NOT NULL,
 source_fileserviceprovider_name varchar(255) default '' NOT NULL,
 new_file_key varchar(255) default NULL,
 target_fileserviceprovider_name varchar(255) default '' NOT NULL,
-request_status VARCHAR(10) default 'TODO' NOT NULL,
+request_status VARCHAR(20) default 'TODO' NOT NULL,
 retry_count int default 0 NOT NULL,
 execution_time TIMESTAMP default CURRENT_TIMESTAMP NOT NULL,
 creation_time TIMESTAMP default CURRENT_TIMESTAMP NOT NULL,
 request_context varchar(255) default NULL,
 contact_mail varchar(255) default NULL,
+owner_node varchar(255) default NULL,
+lease_expiration TIMESTAMP NULL,
+claim_token varchar(50) default NULL,
+checksum varchar(150) default NULL,
 PRIMARY KEY (id_request)
 );
 
+CREATE INDEX idx_filestoragetransfer_request_due ON filestoragetransfer_request (request_status, execution_time);
+CREATE INDEX idx_filestoragetransfer_request_status ON filestoragetransfer_request (request_status, id_request);
+
 --
 -- Structure for table filestoragetransfer_error
 --
@@ -30,8 +37,66 @@ id_request int default '0' NOT NULL,
 code int default '0' NOT NULL,
 error_message long varchar NOT NULL,
 error_trace long varchar NOT NULL,
+fingerprint varchar(64) default NULL,
 execution_time TIMESTAMP default CURRENT_TIMESTAMP NOT NULL,
 PRIMARY KEY (id_error)
 );
 
+--
+-- Structure for table filestoragetransfer_error_trace
+--
+
+DROP TABLE IF EXISTS filestoragetransfer_error_trace;
+CREATE TABLE filestoragetransfer_error_trace (
+fingerprint varchar(64) NOT NULL,
+error_trace long varchar NOT NULL,
+creation_time TIMESTAMP default CURRENT_TIMESTAMP NOT NULL,
+PRIMARY KEY (fingerprint)
+);
+
+--
+-- Structure for table filestoragetransfer_checkpoint
+--
+
+DROP TABLE IF EXISTS filestoragetransfer_checkpoint;
+CREATE TABLE filestoragetransfer_checkpoint (
+id_request int NOT NULL,
+upload_id varchar(255) NOT NULL,
+chunk_offset bigint default 0 NOT NULL,
+update_time TIMESTAMP default CURRENT_TIMESTAMP NOT NULL,
+PRIMARY KEY (id_request)
+);
+
+--
+-- Structure for table filestoragetransfer_status_counter
+--
+
+DROP TABLE IF EXISTS filestoragetransfer_status_counter;
+CREATE TABLE filestoragetransfer_status_counter (
+source_fileserviceprovider_name varchar(255) NOT NULL,
+target_fileserviceprovider_name varchar(255) NOT NULL,
+request_status varchar(20) NOT NULL,
+shard int default 0 NOT NULL,
+request_count bigint default 0 NOT NULL,
+PRIMARY KEY (source_fileserviceprovider_name, target_fileserviceprovider_name, request_status, shard)
+);
+
+--
+-- Structure for table filestoragetransfer_notification
+--
+
+DROP TABLE IF EXISTS filestoragetransfer_notification;
+CREATE TABLE filestoragetransfer_notification (
+id_notification int AUTO_INCREMENT,
+id_request int NOT NULL,
+listener_name varchar(255) NOT NULL,
+attempt_count int default 0 NOT NULL,
+next_attempt_time TIMESTAMP default CURRENT_TIMESTAMP NOT NULL,
+claim_token varchar(50) default NULL,
+creation_time TIMESTAMP default CURRENT_TIMESTAMP NOT NULL,
+PRIMARY KEY (id_notification)
+);
+
+CREATE INDEX idx_filestoragetransfer_notification_due ON filestoragetransfer_notification (next_attempt_time);
+
 ALTER TABLE filestoragetransfer_error ADD CONSTRAINT fk_filestoragetransfer_error_id_request FOREIGN KEY (id_request) REFERENCES filestoragetransfer_request(id_request);
@@ -0,0 +1,79 @@
+--
+-- Work claiming : IN_PROGRESS status and lease of the requests to the executing node
+--
+ALTER TABLE filestoragetransfer_request MODIFY request_status VARCHAR(20) default 'TODO' NOT NULL;
+ALTER TABLE filestoragetransfer_request ADD COLUMN owner_node varchar(255) default NULL;
+ALTER TABLE filestoragetransfer_request ADD COLUMN lease_expiration TIMESTAMP NULL;
+ALTER TABLE filestoragetransfer_request ADD COLUMN claim_token varchar(50) default NULL;
+
+--
+-- Index for the selection of the due requests
+--
+CREATE INDEX idx_filestoragetransfer_request_due ON filestoragetransfer_request (request_status, execution_time);
+CREATE INDEX idx_filestoragetransfer_request_status ON filestoragetransfer_request (request_status, id_request);
+
+--
+-- Structure for table filestoragetransfer_checkpoint
+--
+CREATE TABLE filestoragetransfer_checkpoint (
+id_request int NOT NULL,
+upload_id varchar(255) NOT NULL,
+chunk_offset bigint default 0 NOT NULL,
+update_time TIMESTAMP default CURRENT_TIMESTAMP NOT NULL,
+PRIMARY KEY (id_request)
+);
+
+--
+-- Checksum of the transferred file
+--
+ALTER TABLE filestoragetransfer_request ADD COLUMN checksum varchar(150) default NULL;
+
+--
+-- Counters of the requests by provider pair and status, maintained on every status transition
+--
+CREATE TABLE filestoragetransfer_status_counter (
+source_fileserviceprovider_name varchar(255) NOT NULL,
+target_fileserviceprovider_name varchar(255) NOT NULL,
+request_status varchar(20) NOT NULL,
+shard int default 0 NOT NULL,
+request_count bigint default 0 NOT NULL,
+PRIMARY KEY (source_fileserviceprovider_name, target_fileserviceprovider_name, request_status, shard)
+);
+
+INSERT INTO filestoragetransfer_status_counter ( source_fileserviceprovider_name, target_fileserviceprovider_name, request_status, request_count )
+SELECT pairs.source_fileserviceprovider_name, pairs.target_fileserviceprovider_name, statuses.request_status, 0
+FROM ( SELECT DISTINCT source_fileserviceprovider_name, target_fileserviceprovider_name FROM filestoragetransfer_request ) pairs,
+( SELECT 'TODO' AS request_status UNION SELECT 'IN_PROGRESS' UNION SELECT 'DONE' UNION SELECT 'FAILED' UNION SELECT 'ERROR' UNION SELECT 'CANCELED' ) statuses;
+
+UPDATE filestoragetransfer_status_counter SET request_count = ( SELECT COUNT(*) FROM filestoragetransfer_request r
+WHERE r.source_fileserviceprovider_name = filestoragetransfer_status_counter.source_fileserviceprovider_name
+AND r.target_fileserviceprovider_name = filestoragetransfer_status_counter.target_fileserviceprovider_name
+AND r.request_status = filestoragetransfer_status_counter.request_status );
+
+--
+-- Outbox of the listener notifications, written with the completion of the requests
+--
+CREATE TABLE filestoragetransfer_notification (
+id_notification int AUTO_INCREMENT,
+id_request int NOT NULL,
+listener_name varchar(255) NOT NULL,
+attempt_count int default 0 NOT NULL,
+next_attempt_time TIMESTAMP default CURRENT_TIMESTAMP NOT NULL,
+claim_token varchar(50) default NULL,
+creation_time TIMESTAMP default CURRENT_TIMESTAMP NOT NULL,
+PRIMARY KEY (id_notification)
+);
+
+CREATE INDEX idx_filestoragetransfer_notification_due ON filestoragetransfer_notification (next_attempt_time);
+
+--
+-- Stack traces of the errors stored once by fingerprint
+--
+ALTER TABLE filestoragetransfer_error ADD COLUMN fingerprint varchar(64) default NULL;
+
+CREATE TABLE filestoragetransfer_error_trace (
+fingerprint varchar(64) NOT NULL,
+error_trace long varchar NOT NULL,
+creation_time TIMESTAMP default CURRENT_TIMESTAMP NOT NULL,
+PRIMARY KEY (fingerprint)
+);
@@ -49,6 +49,7 @@ public class ErrorBusinessTest extends LuteceTestCase
     private static final int IDREQUEST2 = 2;
     private static final String ERRORMESSAGE1 = "ErrorMessage1";
     private static final String ERRORMESSAGE2 = "ErrorMessage2";
+    private static final String TRACE = "Trace";
 
     /**
      * test Error
@@ -88,4 +89,28 @@ public class ErrorBusinessTest extends LuteceTestCase
 
     }
 
+    /**
+     * test the errors sharing a trace
+     */
+    public void testSharedTrace( )
+    {
+        String strFingerprint = "fingerprint-" + System.currentTimeMillis( );
+        FileRequestError error1 = new FileRequestError( IDREQUEST1, 500, ERRORMESSAGE1, TRACE, null );
+        error1.setFingerprint( strFingerprint );
+        FileRequestError error2 = new FileRequestError( IDREQUEST2, 500, ERRORMESSAGE2, "another occurrence", null );
+        error2.setFingerprint( strFingerprint );
+
+        FileRequestErrorHome.create( error1 );
+        FileRequestErrorHome.create( error2 );
+
+        // the trace of the first error is stored once and shared
+        FileRequestError errorStored = FileRequestErrorHome.findByPrimaryKey( error2.getId( ) ).orElse( new FileRequestError( ) );
+        assertEquals( strFingerprint, errorStored.getFingerprint( ) );
+        assertEquals( TRACE, errorStored.getErrorTrace( ) );
+        assertEquals( ERRORMESSAGE2, errorStored.getErrorMessage( ) );
+
+        FileRequestErrorHome.remove( error1.getId( ) );
+        FileRequestErrorHome.remove( error2.getId( ) );
+    }
+
 }
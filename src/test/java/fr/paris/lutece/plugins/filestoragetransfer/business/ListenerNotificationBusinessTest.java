@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.business;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * This is the business class test for the object ListenerNotification
+ */
+public class ListenerNotificationBusinessTest extends LuteceTestCase
+{
+    private static final String OLDFILEKEY = "OldFileKey";
+    private static final String SOURCEPROVIDER = "SourceProvider";
+    private static final String TARGETPROVIDER = "TargetProvider";
+    private static final String LISTENER1 = "Listener1";
+    private static final String LISTENER2 = "Listener2";
+    private static final String TOKEN = "ListenerNotificationBusinessTest";
+
+    /**
+     * test the outbox through the delivery of the notifications of a completed request
+     */
+    public void testBusiness( )
+    {
+        FileTransferRequest request = new FileTransferRequest( OLDFILEKEY, SOURCEPROVIDER, TARGETPROVIDER, null, null );
+        FileTransferRequestHome.create( request );
+
+        // Complete test : a notification for each listener
+        request.setRequestStatus( RequestStatus.STATUS_DONE );
+        FileTransferRequestHome.complete( request, Arrays.asList( LISTENER1, LISTENER2 ) );
+        assertEquals( RequestStatus.STATUS_DONE, FileTransferRequestHome.findByPrimaryKey( request.getId( ) ).get( ).getRequestStatus( ) );
+
+        // Exclusion test : the notifications of a busy listener are not claimed
+        Instant now = Instant.now( );
+        List<ListenerNotification> listNotifications = claim( request, now, LISTENER1 );
+        assertEquals( 1, listNotifications.size( ) );
+        assertEquals( LISTENER2, listNotifications.get( 0 ).getListenerName( ) );
+        ListenerNotificationHome.release( Arrays.asList( listNotifications.get( 0 ).getId( ) ), TOKEN, Timestamp.from( now ) );
+
+        listNotifications = claim( request, now );
+        assertEquals( 2, listNotifications.size( ) );
+        assertEquals( 1, listNotifications.get( 0 ).getAttemptCount( ) );
+
+        // Lease test : the claimed notifications are not claimed again before the end of their lease
+        assertTrue( claim( request, now ).isEmpty( ) );
+
+        // Release test : a failed notification is delivered again after its delay
+        ListenerNotification notification1 = listNotifications.get( 0 );
+        ListenerNotification notification2 = listNotifications.get( 1 );
+        ListenerNotificationHome.release( Arrays.asList( notification1.getId( ) ), TOKEN, Timestamp.from( now.plusSeconds( 60 ) ) );
+        assertTrue( claim( request, now ).isEmpty( ) );
+        List<ListenerNotification> listRetried = claim( request, now.plusSeconds( 120 ) );
+        assertEquals( 1, listRetried.size( ) );
+        assertEquals( notification1.getId( ), listRetried.get( 0 ).getId( ) );
+        assertEquals( 2, listRetried.get( 0 ).getAttemptCount( ) );
+
+        // Remove test : the delivered notifications are deleted, once their lease expired
+        ListenerNotificationHome.remove( Arrays.asList( notification1.getId( ), notification2.getId( ) ), TOKEN );
+        assertTrue( claim( request, now.plusSeconds( 3600 ) ).isEmpty( ) );
+
+        FileTransferRequestHome.remove( request.getId( ) );
+    }
+
+    /**
+     * Claim the due notifications of the test request, releasing the notifications of the other requests
+     * 
+     * @param request
+     *            the test request
+     * @param now
+     *            the current time
+     * @param excludedListeners
+     *            the names of the listeners whose notifications are not claimed
+     * @return the notifications of the request
+     */
+    private static List<ListenerNotification> claim( FileTransferRequest request, Instant now, String... excludedListeners )
+    {
+        List<ListenerNotification> listClaimed = ListenerNotificationHome.claim( Timestamp.from( now ), 0, Arrays.asList( excludedListeners ), TOKEN,
+                Timestamp.from( now.plusSeconds( 300 ) ) );
+        List<Integer> listOthers = listClaimed.stream( ).filter( n -> n.getIdRequest( ) != request.getId( ) ).map( ListenerNotification::getId )
+                .collect( Collectors.toList( ) );
+        ListenerNotificationHome.release( listOthers, TOKEN, Timestamp.from( Instant.now( ) ) );
+
+        return listClaimed.stream( ).filter( n -> n.getIdRequest( ) == request.getId( ) ).sorted( ( n1, n2 ) -> Integer.compare( n1.getId( ), n2.getId( ) ) )
+                .collect( Collectors.toList( ) );
+    }
+}
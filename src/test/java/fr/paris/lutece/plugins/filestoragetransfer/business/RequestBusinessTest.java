@@ -38,7 +38,12 @@ import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequest;
 import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequestHome;
 import fr.paris.lutece.test.LuteceTestCase;
 
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import org.bouncycastle.cert.ocsp.Req;
 
@@ -49,6 +54,7 @@ public class RequestBusinessTest extends LuteceTestCase
 {
     private static final String OLDFILEKEY1 = "OldFileKey1";
     private static final String OLDFILEKEY2 = "OldFileKey2";
+    private static final String NEWFILEKEY1 = "NewFileKey1";
     private static final String SOURCEFILESERVICEPROVIDERNAME1 = "SourceFileserviceproviderName1";
     private static final String SOURCEFILESERVICEPROVIDERNAME2 = "SourceFileserviceproviderName2";
     private static final String TARGETFILESERVICEPROVIDERNAME1 = "TargetFileserviceproviderName1";
@@ -100,4 +106,319 @@ public class RequestBusinessTest extends LuteceTestCase
 
     }
 
+    /**
+     * test the selection of the requests to execute
+     */
+    public void testSelectRequestsToExecute( )
+    {
+        Timestamp now = Timestamp.from( Instant.now( ) );
+
+        FileTransferRequest requestLate = new FileTransferRequest( OLDFILEKEY1, SOURCEFILESERVICEPROVIDERNAME1, TARGETFILESERVICEPROVIDERNAME1, null, null );
+        requestLate.setExecutionTime( Timestamp.from( now.toInstant( ).minusSeconds( 7200 ) ) );
+        requestLate.setRequestStatus( RequestStatus.STATUS_FAILED );
+        FileTransferRequestHome.create( requestLate );
+
+        FileTransferRequest requestDue = new FileTransferRequest( OLDFILEKEY2, SOURCEFILESERVICEPROVIDERNAME1, TARGETFILESERVICEPROVIDERNAME1, null, null );
+        requestDue.setExecutionTime( Timestamp.from( now.toInstant( ).minusSeconds( 3600 ) ) );
+        FileTransferRequestHome.create( requestDue );
+
+        FileTransferRequest requestNotDue = new FileTransferRequest( OLDFILEKEY2, SOURCEFILESERVICEPROVIDERNAME2, TARGETFILESERVICEPROVIDERNAME2, null, null );
+        requestNotDue.setExecutionTime( Timestamp.from( now.toInstant( ).plusSeconds( 3600 ) ) );
+        FileTransferRequestHome.create( requestNotDue );
+
+        try
+        {
+            List<Integer> listIds = FileTransferRequestHome.selectRequestsListByStatusAndExecutionTime( now, 0 ).stream( ).map( FileTransferRequest::getId )
+                    .collect( Collectors.toList( ) );
+            assertTrue( listIds.indexOf( requestLate.getId( ) ) >= 0 );
+            assertTrue( listIds.indexOf( requestLate.getId( ) ) < listIds.indexOf( requestDue.getId( ) ) );
+            assertFalse( listIds.contains( requestNotDue.getId( ) ) );
+
+            assertEquals( 1, FileTransferRequestHome.selectRequestsListByStatusAndExecutionTime( now, 1 ).size( ) );
+        }
+        finally
+        {
+            FileTransferRequestHome.remove( requestLate.getId( ) );
+            FileTransferRequestHome.remove( requestDue.getId( ) );
+            FileTransferRequestHome.remove( requestNotDue.getId( ) );
+        }
+    }
+
+    /**
+     * test the next execution time of the requests to execute
+     */
+    public void testNextExecutionTime( )
+    {
+        FileTransferRequest request = new FileTransferRequest( OLDFILEKEY1, SOURCEFILESERVICEPROVIDERNAME1, TARGETFILESERVICEPROVIDERNAME1, null, null );
+        request.setExecutionTime( Timestamp.from( Instant.now( ).minusSeconds( 7200 ) ) );
+        request.setRequestStatus( RequestStatus.STATUS_FAILED );
+        FileTransferRequestHome.create( request );
+
+        try
+        {
+            Optional<Timestamp> nextExecutionTime = FileTransferRequestHome.getNextExecutionTime( );
+            assertTrue( nextExecutionTime.isPresent( ) );
+            assertFalse( nextExecutionTime.get( ).after( request.getExecutionTime( ) ) );
+        }
+        finally
+        {
+            FileTransferRequestHome.remove( request.getId( ) );
+        }
+    }
+
+    /**
+     * test the claim of the requests, the reclaim of an expired lease and the fencing of the updates by the lease
+     */
+    public void testClaimRequests( )
+    {
+        // the request is due in the future : only the claims of the test, at later dates, select it
+        Instant now = Instant.now( );
+        FileTransferRequest request = new FileTransferRequest( OLDFILEKEY1, SOURCEFILESERVICEPROVIDERNAME1, TARGETFILESERVICEPROVIDERNAME1, null, null );
+        request.setExecutionTime( Timestamp.from( now.plusSeconds( 3600 ) ) );
+        FileTransferRequestHome.create( request );
+
+        try
+        {
+            Timestamp claimTime = Timestamp.from( now.plusSeconds( 7200 ) );
+            Timestamp leaseExpiration = Timestamp.from( now.plusSeconds( 10800 ) );
+
+            FileTransferRequest requestA = findClaimed( FileTransferRequestHome.claimRequestsToExecute( claimTime, 0, "nodeA", "tokenA", leaseExpiration, false ),
+                    request.getId( ) );
+            assertNotNull( requestA );
+            assertEquals( RequestStatus.STATUS_IN_PROGRESS, requestA.getRequestStatus( ) );
+            assertEquals( "nodeA", requestA.getOwnerNode( ) );
+
+            // the lease is held : the request cannot be claimed again
+            assertNull( findClaimed( FileTransferRequestHome.claimRequestsToExecute( claimTime, 0, "nodeB", "tokenB", leaseExpiration, false ),
+                    request.getId( ) ) );
+            assertTrue( FileTransferRequestHome.renewLease( request.getId( ), "nodeA", "tokenA", leaseExpiration ) );
+
+            // the lease has expired : the request is claimed again by another node
+            Timestamp reclaimTime = Timestamp.from( now.plusSeconds( 14400 ) );
+            FileTransferRequest requestB = findClaimed(
+                    FileTransferRequestHome.claimRequestsToExecute( reclaimTime, 0, "nodeB", "tokenC", Timestamp.from( now.plusSeconds( 18000 ) ), false ),
+                    request.getId( ) );
+            assertNotNull( requestB );
+            assertEquals( "nodeB", requestB.getOwnerNode( ) );
+
+            // the node which lost the lease can neither renew it nor overwrite the request
+            assertFalse( FileTransferRequestHome.renewLease( request.getId( ), "nodeA", "tokenA", leaseExpiration ) );
+            requestA.setRequestStatus( RequestStatus.STATUS_ERROR );
+            assertFalse( FileTransferRequestHome.updateLeased( requestA ) );
+            FileTransferRequest requestStored = FileTransferRequestHome.findByPrimaryKey( request.getId( ) ).orElseThrow( );
+            assertEquals( RequestStatus.STATUS_IN_PROGRESS, requestStored.getRequestStatus( ) );
+            assertEquals( "tokenC", requestStored.getClaimToken( ) );
+
+            // the node holding the lease completes the request and releases the lease
+            requestB.setRequestStatus( RequestStatus.STATUS_DONE );
+            assertTrue( FileTransferRequestHome.updateLeased( requestB ) );
+            requestStored = FileTransferRequestHome.findByPrimaryKey( request.getId( ) ).orElseThrow( );
+            assertEquals( RequestStatus.STATUS_DONE, requestStored.getRequestStatus( ) );
+            assertNull( requestStored.getClaimToken( ) );
+            assertNull( requestStored.getOwnerNode( ) );
+        }
+        finally
+        {
+            FileTransferRequestHome.remove( request.getId( ) );
+        }
+    }
+
+    /**
+     * Find a request among the claimed ones
+     * 
+     * @param listClaimed
+     *            the claimed requests
+     * @param nIdRequest
+     *            the identifier of the request
+     * @return the claimed request, or null if it has not been claimed
+     */
+    private static FileTransferRequest findClaimed( List<FileTransferRequest> listClaimed, int nIdRequest )
+    {
+        return listClaimed.stream( ).filter( claimed -> claimed.getId( ) == nIdRequest ).findFirst( ).orElse( null );
+    }
+
+    /**
+     * test the batch creation of requests
+     */
+    public void testCreateAll( )
+    {
+        List<FileTransferRequest> listRequests = new ArrayList<>( );
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            FileTransferRequest request = new FileTransferRequest( OLDFILEKEY1 + i, SOURCEFILESERVICEPROVIDERNAME1, TARGETFILESERVICEPROVIDERNAME1, null, null );
+            request.setRequestStatus( RequestStatus.STATUS_DONE );
+            listRequests.add( request );
+        }
+
+        FileTransferRequestHome.createAll( listRequests );
+
+        try
+        {
+            for ( int i = 0; i < 3; i++ )
+            {
+                FileTransferRequest request = listRequests.get( i );
+                assertTrue( request.getId( ) > 0 );
+
+                FileTransferRequest requestStored = FileTransferRequestHome.findByPrimaryKey( request.getId( ) ).orElse( new FileTransferRequest( ) );
+                assertEquals( OLDFILEKEY1 + i, requestStored.getOldFileKey( ) );
+            }
+        }
+        finally
+        {
+            listRequests.forEach( request -> FileTransferRequestHome.remove( request.getId( ) ) );
+        }
+    }
+
+    /**
+     * test the bulk updates by filter
+     */
+    public void testBulkUpdatesByFilter( )
+    {
+        String strContext = "bulk-" + System.currentTimeMillis( );
+        List<FileTransferRequest> listRequests = new ArrayList<>( );
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            FileTransferRequest request = new FileTransferRequest( OLDFILEKEY1 + i, SOURCEFILESERVICEPROVIDERNAME1, TARGETFILESERVICEPROVIDERNAME1, strContext, null );
+            request.setRequestStatus( i < 2 ? RequestStatus.STATUS_ERROR : RequestStatus.STATUS_DONE );
+            request.setRetryCount( 3 );
+            listRequests.add( request );
+        }
+        FileTransferRequestHome.createAll( listRequests );
+
+        FileRequestError error = new FileRequestError( listRequests.get( 0 ).getId( ), 503, "error", "", Timestamp.from( Instant.now( ) ) );
+        FileRequestErrorHome.create( error );
+
+        FileTransferRequestFilter filter = new FileTransferRequestFilter( );
+        filter.setRequestContext( strContext );
+        filter.setRequestStatus( RequestStatus.STATUS_ERROR );
+
+        try
+        {
+            assertEquals( 2, FileTransferRequestHome.countByFilter( filter ) );
+
+            // cancel the requests in error with the error code
+            filter.setErrorCode( 503 );
+            assertEquals( 1, FileTransferRequestHome.cancelByFilter( filter ) );
+            assertEquals( RequestStatus.STATUS_CANCELED,
+                    FileTransferRequestHome.findByPrimaryKey( listRequests.get( 0 ).getId( ) ).orElseThrow( ).getRequestStatus( ) );
+
+            // requeue the other one
+            filter.setErrorCode( null );
+            assertEquals( 1, FileTransferRequestHome.requeueByFilter( filter ) );
+            FileTransferRequest requestRequeued = FileTransferRequestHome.findByPrimaryKey( listRequests.get( 1 ).getId( ) ).orElseThrow( );
+            assertEquals( RequestStatus.STATUS_TODO, requestRequeued.getRequestStatus( ) );
+            assertEquals( 0, requestRequeued.getRetryCount( ) );
+
+            // delete all the requests of the context, with their errors
+            filter.setRequestStatus( null );
+            assertEquals( 3, FileTransferRequestHome.deleteByFilter( filter ) );
+            assertEquals( 0, FileTransferRequestHome.countByFilter( filter ) );
+            assertTrue( FileRequestErrorHome.getErrorsListByRequestId( listRequests.get( 0 ).getId( ) ).isEmpty( ) );
+        }
+        finally
+        {
+            filter.setRequestStatus( null );
+            filter.setErrorCode( null );
+            FileTransferRequestHome.deleteByFilter( filter );
+        }
+    }
+
+    /**
+     * Test that the bulk requeue and cancel leave the DONE requests unchanged
+     */
+    public void testBulkUpdatesKeepDoneRequests( )
+    {
+        String strContext = "bulk-done-" + System.currentTimeMillis( );
+        List<FileTransferRequest> listRequests = new ArrayList<>( );
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            FileTransferRequest request = new FileTransferRequest( OLDFILEKEY1 + i, SOURCEFILESERVICEPROVIDERNAME1, TARGETFILESERVICEPROVIDERNAME1, strContext, null );
+            request.setRequestStatus( i == 0 ? RequestStatus.STATUS_DONE : RequestStatus.STATUS_ERROR );
+            listRequests.add( request );
+        }
+        FileTransferRequestHome.createAll( listRequests );
+
+        FileTransferRequest requestDone = FileTransferRequestHome.findByPrimaryKey( listRequests.get( 0 ).getId( ) ).orElseThrow( );
+        requestDone.setNewFileKey( NEWFILEKEY1 );
+        FileTransferRequestHome.update( requestDone );
+
+        FileTransferRequestFilter filter = new FileTransferRequestFilter( );
+        filter.setRequestContext( strContext );
+
+        try
+        {
+            // without a status in the filter, only the request in error is canceled then requeued
+            assertEquals( 1, FileTransferRequestHome.cancelByFilter( filter ) );
+            assertEquals( 1, FileTransferRequestHome.requeueByFilter( filter ) );
+            assertEquals( RequestStatus.STATUS_TODO,
+                    FileTransferRequestHome.findByPrimaryKey( listRequests.get( 1 ).getId( ) ).orElseThrow( ).getRequestStatus( ) );
+
+            // a filter on the DONE status matches no request to update
+            filter.setRequestStatus( RequestStatus.STATUS_DONE );
+            assertEquals( 0, FileTransferRequestHome.requeueByFilter( filter ) );
+            assertEquals( 0, FileTransferRequestHome.cancelByFilter( filter ) );
+
+            FileTransferRequest requestStored = FileTransferRequestHome.findByPrimaryKey( requestDone.getId( ) ).orElseThrow( );
+            assertEquals( RequestStatus.STATUS_DONE, requestStored.getRequestStatus( ) );
+            assertEquals( NEWFILEKEY1, requestStored.getNewFileKey( ) );
+        }
+        finally
+        {
+            filter.setRequestStatus( null );
+            FileTransferRequestHome.deleteByFilter( filter );
+        }
+    }
+
+    /**
+     * Test the keyset pagination of the requests
+     */
+    public void testRequestsPage( )
+    {
+        String strContext = "page-" + System.currentTimeMillis( );
+        List<FileTransferRequest> listRequests = new ArrayList<>( );
+
+        for ( int i = 0; i < 5; i++ )
+        {
+            FileTransferRequest request = new FileTransferRequest( OLDFILEKEY1 + i, SOURCEFILESERVICEPROVIDERNAME1, TARGETFILESERVICEPROVIDERNAME1, strContext, null );
+            request.setRequestStatus( RequestStatus.STATUS_DONE );
+            listRequests.add( request );
+        }
+        FileTransferRequestHome.createAll( listRequests );
+
+        FileTransferRequestFilter filter = new FileTransferRequestFilter( );
+        filter.setRequestContext( strContext );
+
+        try
+        {
+            // first page : the most recent requests
+            List<FileTransferRequest> listPage = FileTransferRequestHome.getRequestsPage( filter, 0, true, 2 );
+            assertEquals( 2, listPage.size( ) );
+            assertEquals( listRequests.get( 4 ).getId( ), listPage.get( 0 ).getId( ) );
+            assertEquals( listRequests.get( 3 ).getId( ), listPage.get( 1 ).getId( ) );
+
+            // next page, after the last request of the first one
+            listPage = FileTransferRequestHome.getRequestsPage( filter, listPage.get( 1 ).getId( ), true, 2 );
+            assertEquals( 2, listPage.size( ) );
+            assertEquals( listRequests.get( 2 ).getId( ), listPage.get( 0 ).getId( ) );
+            assertEquals( listRequests.get( 1 ).getId( ), listPage.get( 1 ).getId( ) );
+
+            // previous page, before the first request of the second one, still ordered by descending id
+            listPage = FileTransferRequestHome.getRequestsPage( filter, listPage.get( 0 ).getId( ), false, 2 );
+            assertEquals( 2, listPage.size( ) );
+            assertEquals( listRequests.get( 4 ).getId( ), listPage.get( 0 ).getId( ) );
+            assertEquals( listRequests.get( 3 ).getId( ), listPage.get( 1 ).getId( ) );
+
+            // limited count
+            assertEquals( 5, FileTransferRequestHome.countByFilter( filter, 10 ) );
+            assertEquals( 3, FileTransferRequestHome.countByFilter( filter, 3 ) );
+        }
+        finally
+        {
+            FileTransferRequestHome.deleteByFilter( filter );
+        }
+    }
+
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.business;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * This is the business class test for the object StatusCounter
+ */
+public class StatusCounterBusinessTest extends LuteceTestCase
+{
+    private static final String OLDFILEKEY = "OldFileKey";
+    private static final String TARGETPROVIDER = "TargetProvider";
+
+    /**
+     * test the counters through the status transitions of a request
+     */
+    public void testBusiness( )
+    {
+        // a provider pair of its own, so that the counters only count the requests of this test
+        String strSourceProvider = "counter-" + System.currentTimeMillis( );
+        FileTransferRequest request = new FileTransferRequest( OLDFILEKEY, strSourceProvider, TARGETPROVIDER, null, null );
+        request.setRequestStatus( RequestStatus.STATUS_ERROR );
+
+        // Create test
+        FileTransferRequestHome.create( request );
+        assertEquals( 1, getCount( strSourceProvider, RequestStatus.STATUS_ERROR ) );
+        assertEquals( 0, getCount( strSourceProvider, RequestStatus.STATUS_TODO ) );
+
+        // Update test
+        request.setRequestStatus( RequestStatus.STATUS_DONE );
+        FileTransferRequestHome.update( request );
+        assertEquals( 0, getCount( strSourceProvider, RequestStatus.STATUS_ERROR ) );
+        assertEquals( 1, getCount( strSourceProvider, RequestStatus.STATUS_DONE ) );
+
+        // Set-based update test
+        FileTransferRequestFilter filter = new FileTransferRequestFilter( );
+        filter.setSourceFileserviceproviderName( strSourceProvider );
+        FileTransferRequestHome.cancelByFilter( filter );
+        assertEquals( 0, getCount( strSourceProvider, RequestStatus.STATUS_DONE ) );
+        assertEquals( 1, getCount( strSourceProvider, RequestStatus.STATUS_CANCELED ) );
+
+        // Rebuild test
+        StatusCounterHome.rebuild( );
+        assertEquals( 1, getCount( strSourceProvider, RequestStatus.STATUS_CANCELED ) );
+
+        // Delete test
+        FileTransferRequestHome.remove( request.getId( ) );
+        assertEquals( 0, getCount( strSourceProvider, RequestStatus.STATUS_CANCELED ) );
+    }
+
+    /**
+     * Get the counter of the test provider pair
+     * 
+     * @param strSourceProvider
+     *            the source provider name
+     * @param status
+     *            the status
+     * @return the number of requests
+     */
+    private static long getCount( String strSourceProvider, RequestStatus status )
+    {
+        return StatusCounterHome.getStatusCountersList( ).stream( )
+                .filter( counter -> strSourceProvider.equals( counter.getSourceFileserviceproviderName( ) ) && counter.getRequestStatus( ) == status )
+                .mapToLong( StatusCounter::getCount ).sum( );
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.business;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * This is the business class test for the object TransferCheckpoint
+ */
+public class TransferCheckpointBusinessTest extends LuteceTestCase
+{
+    private static final int IDREQUEST = 1;
+    private static final String UPLOADID1 = "UploadId1";
+    private static final String UPLOADID2 = "UploadId2";
+    private static final long OFFSET1 = 8388608L;
+    private static final long OFFSET2 = 5368709120L;
+
+    /**
+     * test TransferCheckpoint
+     */
+    public void testBusiness( )
+    {
+        // Initialize an object
+        TransferCheckpoint checkpoint = new TransferCheckpoint( IDREQUEST, UPLOADID1, OFFSET1, Timestamp.from( Instant.now( ) ) );
+
+        // Create test
+        TransferCheckpointHome.create( checkpoint );
+        Optional<TransferCheckpoint> optCheckpointStored = TransferCheckpointHome.findByIdRequest( IDREQUEST );
+        TransferCheckpoint checkpointStored = optCheckpointStored.orElse( new TransferCheckpoint( ) );
+        assertEquals( checkpointStored.getUploadId( ), checkpoint.getUploadId( ) );
+        assertEquals( checkpointStored.getOffset( ), checkpoint.getOffset( ) );
+
+        // Update test
+        checkpoint.setUploadId( UPLOADID2 );
+        checkpoint.setOffset( OFFSET2 );
+        TransferCheckpointHome.update( checkpoint );
+        optCheckpointStored = TransferCheckpointHome.findByIdRequest( IDREQUEST );
+        checkpointStored = optCheckpointStored.orElse( new TransferCheckpoint( ) );
+
+        assertEquals( checkpointStored.getUploadId( ), checkpoint.getUploadId( ) );
+        assertEquals( checkpointStored.getOffset( ), checkpoint.getOffset( ) );
+
+        // Delete test
+        TransferCheckpointHome.remove( IDREQUEST );
+        optCheckpointStored = TransferCheckpointHome.findByIdRequest( IDREQUEST );
+        assertNull( optCheckpointStored.orElse( null ) );
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test of the CircuitBreaker class
+ */
+public class CircuitBreakerTest extends LuteceTestCase
+{
+    /**
+     * test the opening of the circuit after consecutive failures
+     */
+    public void testOpen( )
+    {
+        CircuitBreaker circuitBreaker = new CircuitBreaker( "source -> target", 3, 1000, 1 );
+
+        assertTrue( circuitBreaker.allowRequest( 0 ) );
+        assertFalse( circuitBreaker.onFailure( 0 ) );
+        assertFalse( circuitBreaker.onFailure( 0 ) );
+        circuitBreaker.onSuccess( );
+        assertFalse( circuitBreaker.onFailure( 0 ) );
+        assertFalse( circuitBreaker.onFailure( 0 ) );
+        assertTrue( circuitBreaker.onFailure( 100 ) );
+
+        assertEquals( CircuitBreaker.State.OPEN, circuitBreaker.getState( ) );
+        assertFalse( circuitBreaker.allowRequest( 500 ) );
+        assertEquals( 600, circuitBreaker.getRemainingOpenTime( 500 ) );
+    }
+
+    /**
+     * test the trial transfers of a half-open circuit
+     */
+    public void testHalfOpen( )
+    {
+        CircuitBreaker circuitBreaker = new CircuitBreaker( "source -> target", 1, 1000, 1 );
+
+        assertTrue( circuitBreaker.onFailure( 0 ) );
+
+        // a single trial is allowed
+        assertTrue( circuitBreaker.allowRequest( 1000 ) );
+        assertEquals( CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState( ) );
+        assertFalse( circuitBreaker.allowRequest( 1000 ) );
+
+        // a failed trial opens the circuit again
+        assertTrue( circuitBreaker.onFailure( 1000 ) );
+        assertFalse( circuitBreaker.allowRequest( 1500 ) );
+
+        // a released trial can be acquired again, a successful one closes the circuit
+        assertTrue( circuitBreaker.allowRequest( 2000 ) );
+        circuitBreaker.release( );
+        assertTrue( circuitBreaker.allowRequest( 2000 ) );
+        assertTrue( circuitBreaker.onSuccess( ) );
+        assertEquals( CircuitBreaker.State.CLOSED, circuitBreaker.getState( ) );
+        assertTrue( circuitBreaker.allowRequest( 2000 ) );
+        assertTrue( circuitBreaker.allowRequest( 2000 ) );
+    }
+}
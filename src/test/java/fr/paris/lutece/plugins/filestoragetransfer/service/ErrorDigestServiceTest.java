@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+import fr.paris.lutece.plugins.filestoragetransfer.business.FileRequestError;
+import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequest;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test of the ErrorDigestService class
+ */
+public class ErrorDigestServiceTest extends LuteceTestCase
+{
+    private static final String FINGERPRINT1 = "fingerprint1";
+    private static final String FINGERPRINT2 = "fingerprint2";
+
+    /**
+     * test the aggregation of the errors of a recipient
+     */
+    public void testDigest( )
+    {
+        String strContactMail = "digest-" + System.nanoTime( ) + "@localhost";
+
+        for ( int i = 1; i <= 3; i++ )
+        {
+            ErrorDigestService.add( newRequest( i, strContactMail ), newError( i, FINGERPRINT1 ) );
+        }
+        ErrorDigestService.add( newRequest( 4, strContactMail ), newError( 4, FINGERPRINT2 ) );
+
+        List<ErrorDigestGroup> listGroups = ErrorDigestService.getPendingGroups( strContactMail );
+        assertEquals( 2, listGroups.size( ) );
+
+        // the largest group first
+        ErrorDigestGroup group = listGroups.get( 0 );
+        assertEquals( FINGERPRINT1, group.getFingerprint( ) );
+        assertEquals( 3, group.getCount( ) );
+        assertEquals( Arrays.asList( 1, 2, 3 ), group.getSampleIdRequests( ) );
+        assertEquals( 1, listGroups.get( 1 ).getCount( ) );
+
+        // the sent digests are not pending anymore
+        ErrorDigestService.sendDigests( );
+        assertTrue( ErrorDigestService.getPendingGroups( strContactMail ).isEmpty( ) );
+    }
+
+    /**
+     * Build a failed request
+     * 
+     * @param nId
+     *            the request id
+     * @param strContactMail
+     *            the contact mail
+     * @return the request
+     */
+    private static FileTransferRequest newRequest( int nId, String strContactMail )
+    {
+        FileTransferRequest request = new FileTransferRequest( "key" + nId, "source", "target", null, strContactMail );
+        request.setId( nId );
+
+        return request;
+    }
+
+    /**
+     * Build an error
+     * 
+     * @param nIdRequest
+     *            the request id
+     * @param strFingerprint
+     *            the trace fingerprint
+     * @return the error
+     */
+    private static FileRequestError newError( int nIdRequest, String strFingerprint )
+    {
+        FileRequestError error = new FileRequestError( nIdRequest, 503, "Service unavailable", "", new Timestamp( System.currentTimeMillis( ) ) );
+        error.setFingerprint( strFingerprint );
+
+        return error;
+    }
+}
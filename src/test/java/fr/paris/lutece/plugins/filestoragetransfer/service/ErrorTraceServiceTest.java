@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.io.IOException;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test of the ErrorTraceService class
+ */
+public class ErrorTraceServiceTest extends LuteceTestCase
+{
+    private static final int FRAMES = 5;
+
+    /**
+     * test the fingerprints of the errors of a same failure
+     */
+    public void testFingerprint( )
+    {
+        Exception [ ] errors = new Exception [ 3];
+        for ( int i = 0; i < errors.length; i++ )
+        {
+            // same site, different messages
+            errors [i] = newError( "file " + i, new IOException( "timeout " + i ) );
+        }
+
+        String strFingerprint = ErrorTraceService.getFingerprint( errors [0], FRAMES );
+        assertEquals( 64, strFingerprint.length( ) );
+        assertEquals( strFingerprint, ErrorTraceService.getFingerprint( errors [1], FRAMES ) );
+        assertEquals( strFingerprint, ErrorTraceService.getFingerprint( errors [2], FRAMES ) );
+
+        // another cause
+        assertFalse( strFingerprint.equals( ErrorTraceService.getFingerprint( newError( "file", new IllegalStateException( ) ), FRAMES ) ) );
+    }
+
+    /**
+     * test the trace of an error
+     */
+    public void testTrace( )
+    {
+        String strTrace = ErrorTraceService.getTrace( newError( "first", new IOException( "cause" ) ) );
+
+        assertTrue( strTrace.startsWith( IllegalArgumentException.class.getName( ) + ": first" ) );
+        assertTrue( strTrace.contains( "Caused by: " + IOException.class.getName( ) + ": cause" ) );
+
+        // each trace holds a single error
+        assertFalse( ErrorTraceService.getTrace( newError( "second", new IOException( "cause" ) ) ).contains( "first" ) );
+    }
+
+    /**
+     * Build an error
+     * 
+     * @param strMessage
+     *            the message
+     * @param cause
+     *            the cause
+     * @return the error
+     */
+    private static Exception newError( String strMessage, Exception cause )
+    {
+        return new IllegalArgumentException( strMessage, cause );
+    }
+}
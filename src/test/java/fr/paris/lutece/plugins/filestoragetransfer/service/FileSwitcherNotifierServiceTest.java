@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import fr.paris.lutece.plugins.filestoragetransfer.business.FileTransferRequest;
+import fr.paris.lutece.plugins.filestoragetransfer.service.listener.IFileTransferListener;
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.ListenerMetrics;
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.TransferMetricsService;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test of the asynchronous notification of the listeners
+ */
+public class FileSwitcherNotifierServiceTest extends LuteceTestCase
+{
+    private static final long TIMEOUT = 200;
+    private static final long WAIT = 5;
+
+    /**
+     * test that a slow and a failing listener neither delay the notification nor prevent the other listeners from being notified
+     * 
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    public void testListenersIsolation( ) throws InterruptedException
+    {
+        CountDownLatch fastNotified = new CountDownLatch( 1 );
+        CountDownLatch slowInterrupted = new CountDownLatch( 1 );
+        CountDownLatch failingCalled = new CountDownLatch( 1 );
+
+        IFileTransferListener fastListener = listener( "testFastListener", request -> fastNotified.countDown( ) );
+        IFileTransferListener slowListener = listener( "testSlowListener", request -> {
+            try
+            {
+                Thread.sleep( TimeUnit.SECONDS.toMillis( 30 ) );
+            }
+            catch( InterruptedException e )
+            {
+                slowInterrupted.countDown( );
+                Thread.currentThread( ).interrupt( );
+            }
+        } );
+        IFileTransferListener failingListener = listener( "testFailingListener", request -> {
+            failingCalled.countDown( );
+            throw new IllegalStateException( "listener failure" );
+        } );
+
+        FileSwitcherNotifierService notifier = new FileSwitcherNotifierService( List.of( slowListener, failingListener, fastListener ), 3, 10, TIMEOUT, 1,
+                0 );
+
+        try
+        {
+            long lStart = System.nanoTime( );
+            notifier.notifyFileTransferListeners( new FileTransferRequest( "key", "source", "target", null, null ) );
+            assertTrue( TimeUnit.NANOSECONDS.toMillis( System.nanoTime( ) - lStart ) < TIMEOUT );
+
+            assertTrue( fastNotified.await( WAIT, TimeUnit.SECONDS ) );
+            assertTrue( failingCalled.await( WAIT, TimeUnit.SECONDS ) );
+            assertTrue( slowInterrupted.await( WAIT, TimeUnit.SECONDS ) );
+
+            ListenerMetrics fastMetrics = TransferMetricsService.getListenerMetrics( "testFastListener" );
+            ListenerMetrics slowMetrics = TransferMetricsService.getListenerMetrics( "testSlowListener" );
+            ListenerMetrics failingMetrics = TransferMetricsService.getListenerMetrics( "testFailingListener" );
+            awaitEnded( fastMetrics );
+            awaitEnded( slowMetrics );
+            awaitEnded( failingMetrics );
+
+            assertEquals( 1, fastMetrics.getSuccessCount( ) );
+            assertEquals( 1, fastMetrics.getLatency( ).getCount( ) );
+            assertEquals( 1, slowMetrics.getTimeoutCount( ) );
+            assertEquals( 0, slowMetrics.getSuccessCount( ) );
+            assertEquals( 1, failingMetrics.getFailureCount( ) );
+        }
+        finally
+        {
+            notifier.shutdown( );
+        }
+    }
+
+    /**
+     * test the aggregation of the requests into batches, flushed by size or by delay
+     * 
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    public void testBatches( ) throws InterruptedException
+    {
+        BlockingQueue<List<FileTransferRequest>> batches = new LinkedBlockingQueue<>( );
+        List<FileTransferRequest> listUnbatchedRequests = new CopyOnWriteArrayList<>( );
+        IFileTransferListener batchListener = new IFileTransferListener( )
+        {
+            @Override
+            public void changeFileService( FileTransferRequest request )
+            {
+                listUnbatchedRequests.add( request );
+            }
+
+            @Override
+            public void changeFileServices( List<FileTransferRequest> listRequests )
+            {
+                batches.add( listRequests );
+            }
+
+            @Override
+            public String getName( )
+            {
+                return "testBatchListener";
+            }
+        };
+        List<FileTransferRequest> listSingleRequests = new CopyOnWriteArrayList<>( );
+        IFileTransferListener singleListener = listener( "testSingleListener", listSingleRequests::add );
+
+        FileSwitcherNotifierService notifier = new FileSwitcherNotifierService( List.of( batchListener, singleListener ), 2, 10, 0, 3, TIMEOUT );
+
+        try
+        {
+            for ( int i = 1; i <= 4; i++ )
+            {
+                FileTransferRequest request = new FileTransferRequest( "key" + i, "source", "target", null, null );
+                request.setId( i );
+                notifier.notifyFileTransferListeners( request );
+            }
+
+            // the first batch is full, the second one is flushed after its delay
+            List<FileTransferRequest> listFirstBatch = batches.poll( WAIT, TimeUnit.SECONDS );
+            assertNotNull( listFirstBatch );
+            assertEquals( 3, listFirstBatch.size( ) );
+            assertEquals( 1, listFirstBatch.get( 0 ).getId( ) );
+
+            long lStart = System.nanoTime( );
+            List<FileTransferRequest> listSecondBatch = batches.poll( WAIT, TimeUnit.SECONDS );
+            assertNotNull( listSecondBatch );
+            assertEquals( 1, listSecondBatch.size( ) );
+            assertEquals( 4, listSecondBatch.get( 0 ).getId( ) );
+            assertTrue( TimeUnit.NANOSECONDS.toMillis( System.nanoTime( ) - lStart ) < WAIT * 1000 );
+            assertTrue( listUnbatchedRequests.isEmpty( ) );
+
+            // the default batch method notifies each request. The single listener is notified after the batch listener : its last
+            // notification may not be queued yet when the batch listener has received the second batch
+            long lDeadline = System.nanoTime( ) + TimeUnit.SECONDS.toNanos( WAIT );
+            while ( listSingleRequests.size( ) < 4 && System.nanoTime( ) < lDeadline )
+            {
+                Thread.sleep( 10 );
+            }
+            awaitEnded( TransferMetricsService.getListenerMetrics( "testSingleListener" ) );
+            assertEquals( 4, listSingleRequests.size( ) );
+        }
+        finally
+        {
+            notifier.shutdown( );
+        }
+    }
+
+    /**
+     * Wait for the notifications of a listener to end
+     * 
+     * @param metrics
+     *            the metrics of the listener
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    private static void awaitEnded( ListenerMetrics metrics ) throws InterruptedException
+    {
+        long lDeadline = System.nanoTime( ) + TimeUnit.SECONDS.toNanos( WAIT );
+
+        while ( metrics.getPending( ) > 0 && System.nanoTime( ) < lDeadline )
+        {
+            Thread.sleep( 10 );
+        }
+        assertEquals( 0, metrics.getPending( ) );
+    }
+
+    /**
+     * Create a listener
+     * 
+     * @param strName
+     *            the name of the listener
+     * @param action
+     *            the action of the listener
+     * @return the listener
+     */
+    private static IFileTransferListener listener( String strName, Consumer<FileTransferRequest> action )
+    {
+        return new IFileTransferListener( )
+        {
+            @Override
+            public void changeFileService( FileTransferRequest request )
+            {
+                action.accept( request );
+            }
+
+            @Override
+            public String getName( )
+            {
+                return strName;
+            }
+        };
+    }
+}
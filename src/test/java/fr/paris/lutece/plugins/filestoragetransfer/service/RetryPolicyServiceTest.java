@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test of the RetryPolicyService class
+ */
+public class RetryPolicyServiceTest extends LuteceTestCase
+{
+    /**
+     * test the exponential backoff
+     */
+    public void testComputeDelay( )
+    {
+        assertEquals( 60, RetryPolicyService.computeDelay( 60, 3600, 50, 1, 0 ) );
+        assertEquals( 120, RetryPolicyService.computeDelay( 60, 3600, 50, 2, 0 ) );
+        assertEquals( 480, RetryPolicyService.computeDelay( 60, 3600, 50, 4, 0 ) );
+
+        // capped
+        assertEquals( 3600, RetryPolicyService.computeDelay( 60, 3600, 50, 10, 0 ) );
+        assertEquals( 3600, RetryPolicyService.computeDelay( 60, 3600, 50, 1000, 0 ) );
+    }
+
+    /**
+     * test the jitter
+     */
+    public void testJitter( )
+    {
+        assertEquals( 240, RetryPolicyService.computeDelay( 60, 3600, 50, 4, 1 ) );
+        assertEquals( 360, RetryPolicyService.computeDelay( 60, 3600, 50, 4, 0.5 ) );
+        assertEquals( 480, RetryPolicyService.computeDelay( 60, 3600, 0, 4, 1 ) );
+    }
+
+    /**
+     * test the error classification
+     */
+    public void testIsPermanent( )
+    {
+        assertTrue( RetryPolicyService.isPermanent( 404 ) );
+        assertFalse( RetryPolicyService.isPermanent( 503 ) );
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.TransferMetricsService;
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.TransferTimer;
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.IChecksumFileStoreServiceProvider;
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.IServerSideTransferFileStoreServiceProvider;
+import fr.paris.lutece.portal.service.file.IFileStoreServiceProvider;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test of the ServerSideTransferService class
+ */
+public class ServerSideTransferServiceTest extends LuteceTestCase
+{
+    private static final String KEY = "key";
+    private static final String CHECKSUM = "0123abcd";
+
+    /**
+     * test a move, without checksum verification
+     */
+    public void testMove( ) throws Exception
+    {
+        Map<String, String> backend = new ConcurrentHashMap<>( );
+        backend.put( "source/" + KEY, CHECKSUM );
+        List<String> listCalls = new ArrayList<>( );
+
+        String strNewKey = ServerSideTransferService.transfer( newProvider( "source", backend, listCalls ), newProvider( "target", backend, listCalls ),
+                KEY, null, newTimer( ), null );
+
+        assertEquals( KEY, strNewKey );
+        assertEquals( "[moveFile]", listCalls.toString( ) );
+        assertEquals( CHECKSUM, backend.get( "target/" + KEY ) );
+        assertFalse( backend.containsKey( "source/" + KEY ) );
+    }
+
+    /**
+     * test a copy verified by the checksum of the source file
+     */
+    public void testVerifiedCopy( ) throws Exception
+    {
+        Map<String, String> backend = new ConcurrentHashMap<>( );
+        backend.put( "source/" + KEY, CHECKSUM );
+        List<String> listCalls = new ArrayList<>( );
+        TransferChecksum checksum = TransferChecksum.create( TransferChecksum.ALGORITHM_CRC32C );
+
+        String strNewKey = ServerSideTransferService.transfer( newProvider( "source", backend, listCalls ), newProvider( "target", backend, listCalls ),
+                KEY, checksum, newTimer( ), null );
+
+        assertEquals( KEY, strNewKey );
+        assertEquals( "[getChecksum, copyFile, getChecksum, delete]", listCalls.toString( ) );
+        assertEquals( CHECKSUM, checksum.getValue( ) );
+        assertFalse( backend.containsKey( "source/" + KEY ) );
+    }
+
+    /**
+     * test a verified copy whose lease is lost before the deletion of the source file
+     */
+    public void testLeaseLost( ) throws Exception
+    {
+        Map<String, String> backend = new ConcurrentHashMap<>( );
+        backend.put( "source/" + KEY, CHECKSUM );
+        List<String> listCalls = new ArrayList<>( );
+        TransferChecksum checksum = TransferChecksum.create( TransferChecksum.ALGORITHM_CRC32C );
+
+        try
+        {
+            ServerSideTransferService.transfer( newProvider( "source", backend, listCalls ), newProvider( "target", backend, listCalls ), KEY, checksum,
+                    newTimer( ), ( ) -> false );
+            fail( "The transfer should fail without its lease" );
+        }
+        catch( TransferLeaseLostException e )
+        {
+            // the copy is deleted, the source is kept for the node holding the lease
+            assertEquals( "[getChecksum, copyFile, getChecksum, delete]", listCalls.toString( ) );
+            assertTrue( backend.containsKey( "source/" + KEY ) );
+            assertFalse( backend.containsKey( "target/" + KEY ) );
+        }
+    }
+
+    /**
+     * test a target provider of another backend
+     */
+    public void testOtherBackend( ) throws Exception
+    {
+        Map<String, String> backend = new ConcurrentHashMap<>( );
+        backend.put( "source/" + KEY, CHECKSUM );
+        List<String> listCalls = new ArrayList<>( );
+
+        assertNull( ServerSideTransferService.transfer( newProvider( "source", backend, listCalls ),
+                newProvider( "target", new ConcurrentHashMap<>( ), listCalls ), KEY, null, newTimer( ), null ) );
+        assertTrue( listCalls.isEmpty( ) );
+    }
+
+    /**
+     * Start a transfer timer
+     * 
+     * @return the timer
+     */
+    private static TransferTimer newTimer( )
+    {
+        return TransferMetricsService.startTransfer( "source", "target" );
+    }
+
+    /**
+     * Create a provider storing its files in a map shared by the providers of a backend, the value of a file being its checksum
+     * 
+     * @param strName
+     *            the name of the provider, prefixing the keys of its files in the backend
+     * @param backend
+     *            the backend
+     * @param listCalls
+     *            the calls of the transfer operations
+     * @return the provider
+     */
+    private static IServerSideTransferFileStoreServiceProvider newProvider( String strName, Map<String, String> backend, List<String> listCalls )
+    {
+        return (IServerSideTransferFileStoreServiceProvider) Proxy.newProxyInstance( ServerSideTransferServiceTest.class.getClassLoader( ),
+                new Class<?> [ ] {
+                        IServerSideTransferFileStoreServiceProvider.class, IChecksumFileStoreServiceProvider.class
+                }, new FileStoreHandler( strName, backend, listCalls ) );
+    }
+
+    /**
+     * Provider of a backend
+     */
+    private static final class FileStoreHandler implements InvocationHandler
+    {
+        private final String _strName;
+        private final Map<String, String> _backend;
+        private final List<String> _listCalls;
+
+        /**
+         * Constructor
+         * 
+         * @param strName
+         *            the name of the provider
+         * @param backend
+         *            the backend
+         * @param listCalls
+         *            the calls of the transfer operations
+         */
+        private FileStoreHandler( String strName, Map<String, String> backend, List<String> listCalls )
+        {
+            _strName = strName;
+            _backend = backend;
+            _listCalls = listCalls;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object invoke( Object proxy, Method method, Object [ ] args )
+        {
+            if ( "getName".equals( method.getName( ) ) )
+            {
+                return _strName;
+            }
+            if ( "canTransferTo".equals( method.getName( ) ) )
+            {
+                InvocationHandler target = Proxy.getInvocationHandler( args [0] );
+                return target instanceof FileStoreHandler && ( (FileStoreHandler) target )._backend == _backend;
+            }
+
+            _listCalls.add( method.getName( ) );
+            String strPath = _strName + "/" + args [0];
+
+            switch( method.getName( ) )
+            {
+                case "moveFile":
+                    _backend.put( ( (IFileStoreServiceProvider) args [1] ).getName( ) + "/" + args [0], _backend.remove( strPath ) );
+                    return args [0];
+                case "copyFile":
+                    _backend.put( ( (IFileStoreServiceProvider) args [1] ).getName( ) + "/" + args [0], _backend.get( strPath ) );
+                    return args [0];
+                case "getChecksum":
+                    return _backend.get( strPath );
+                case "delete":
+                    _backend.remove( strPath );
+                    return null;
+                default:
+                    throw new UnsupportedOperationException( method.getName( ) );
+            }
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Random;
+
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.TransferMetricsService;
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.TransferTimer;
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.FileStoreOutputStream;
+import fr.paris.lutece.plugins.filestoragetransfer.service.provider.IStreamingFileStoreServiceProvider;
+import fr.paris.lutece.portal.business.file.File;
+import fr.paris.lutece.portal.service.file.FileServiceException;
+import fr.paris.lutece.portal.service.file.IFileStoreServiceProvider;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test of the StreamingTransferService class
+ */
+public class StreamingTransferServiceTest extends LuteceTestCase
+{
+    private static final String KEY = "key";
+    private static final String NEW_KEY = "newKey";
+    private static final int FILE_SIZE = 300000;
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * test a file streamed to a target provider supporting it : the file is written through the buffer, whatever its size
+     */
+    public void testTransfer( ) throws Exception
+    {
+        byte [ ] content = newContent( );
+        RecordingOutputStream outputStream = new RecordingOutputStream( );
+        TransferChecksum checksum = TransferChecksum.create( TransferChecksum.ALGORITHM_CRC32C );
+
+        String strNewKey = StreamingTransferService.transfer( newSource( new ByteArrayInputStream( content ) ), newTarget( outputStream ), KEY, 0, checksum,
+                null, newTimer( ) );
+
+        assertEquals( NEW_KEY, strNewKey );
+        assertTrue( outputStream._bClosed );
+        assertFalse( outputStream._bAborted );
+        assertTrue( Arrays.equals( content, outputStream._content.toByteArray( ) ) );
+        assertTrue( outputStream._nWrites > 1 );
+        assertTrue( outputStream._nMaxWriteLength <= BUFFER_SIZE );
+
+        TransferChecksum expected = TransferChecksum.create( TransferChecksum.ALGORITHM_CRC32C );
+        expected.update( content, 0, content.length );
+        assertEquals( expected.getValue( ), checksum.getValue( ) );
+    }
+
+    /**
+     * test a source failing during the transfer : the partially written file is aborted
+     */
+    public void testAbortedTransfer( ) throws Exception
+    {
+        RecordingOutputStream outputStream = new RecordingOutputStream( );
+        InputStream inputStream = new InputStream( )
+        {
+            private int _nReads;
+
+            @Override
+            public int read( )
+            {
+                return 0;
+            }
+
+            @Override
+            public int read( byte [ ] buffer, int nOffset, int nLength ) throws IOException
+            {
+                if ( _nReads++ > 0 )
+                {
+                    throw new IOException( "read failure" );
+                }
+                return nLength;
+            }
+        };
+
+        try
+        {
+            StreamingTransferService.transfer( newSource( inputStream ), newTarget( outputStream ), KEY, 0, null, null, newTimer( ) );
+            fail( "the transfer must fail" );
+        }
+        catch( FileServiceException e )
+        {
+            assertEquals( Integer.valueOf( 500 ), e.getResponseCode( ) );
+            assertTrue( outputStream._bAborted );
+            assertFalse( outputStream._bClosed );
+            assertEquals( 1, outputStream._nWrites );
+        }
+    }
+
+    /**
+     * test a missing source file
+     */
+    public void testFileNotFound( )
+    {
+        RecordingOutputStream outputStream = new RecordingOutputStream( );
+
+        try
+        {
+            StreamingTransferService.transfer( newSource( null ), newTarget( outputStream ), KEY, 0, null, null, newTimer( ) );
+            fail( "the file must not be found" );
+        }
+        catch( FileServiceException e )
+        {
+            assertEquals( Integer.valueOf( 404 ), e.getResponseCode( ) );
+            assertEquals( 0, outputStream._nWrites );
+        }
+    }
+
+    /**
+     * Create the content of a file larger than the transfer buffer
+     * 
+     * @return the content
+     */
+    private static byte [ ] newContent( )
+    {
+        byte [ ] content = new byte [ FILE_SIZE];
+        new Random( 42 ).nextBytes( content );
+
+        return content;
+    }
+
+    /**
+     * Start a transfer timer
+     * 
+     * @return the timer
+     */
+    private static TransferTimer newTimer( )
+    {
+        return TransferMetricsService.startTransfer( "source", "target" );
+    }
+
+    /**
+     * Create a source provider
+     * 
+     * @param inputStream
+     *            the content of the file, null if the file does not exist
+     * @return the provider
+     */
+    private static IFileStoreServiceProvider newSource( InputStream inputStream )
+    {
+        return (IFileStoreServiceProvider) Proxy.newProxyInstance( StreamingTransferServiceTest.class.getClassLoader( ), new Class<?> [ ] {
+                IFileStoreServiceProvider.class
+        }, ( proxy, method, args ) -> {
+            switch( method.getName( ) )
+            {
+                case "getFileMetaData":
+                    return inputStream != null ? new File( ) : null;
+                case "getInputStream":
+                    return inputStream;
+                default:
+                    throw new UnsupportedOperationException( method.getName( ) );
+            }
+        } );
+    }
+
+    /**
+     * Create a target provider supporting the streaming
+     * 
+     * @param outputStream
+     *            the stream storing the file
+     * @return the provider
+     */
+    private static IStreamingFileStoreServiceProvider newTarget( FileStoreOutputStream outputStream )
+    {
+        return (IStreamingFileStoreServiceProvider) Proxy.newProxyInstance( StreamingTransferServiceTest.class.getClassLoader( ), new Class<?> [ ] {
+                IStreamingFileStoreServiceProvider.class
+        }, ( proxy, method, args ) -> {
+            if ( "openFileOutputStream".equals( method.getName( ) ) )
+            {
+                return outputStream;
+            }
+            throw new UnsupportedOperationException( method.getName( ) );
+        } );
+    }
+
+    /**
+     * Output stream recording the file and the writes
+     */
+    private static final class RecordingOutputStream extends FileStoreOutputStream
+    {
+        private final ByteArrayOutputStream _content = new ByteArrayOutputStream( );
+        private int _nWrites;
+        private int _nMaxWriteLength;
+        private boolean _bClosed;
+        private boolean _bAborted;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write( int nByte )
+        {
+            write( new byte [ ] {
+                    (byte) nByte
+            }, 0, 1 );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write( byte [ ] buffer, int nOffset, int nLength )
+        {
+            _content.write( buffer, nOffset, nLength );
+            _nWrites++;
+            _nMaxWriteLength = Math.max( _nMaxWriteLength, nLength );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close( )
+        {
+            _bClosed = true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void abort( ) throws IOException
+        {
+            _bAborted = true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getFileKey( )
+        {
+            return _bClosed ? NEW_KEY : null;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test of the TokenBucket class
+ */
+public class TokenBucketTest extends LuteceTestCase
+{
+    private static final long SECOND = 1000000000L;
+
+    /**
+     * test the burst and the refill of the bucket
+     */
+    public void testReserve( )
+    {
+        TokenBucket bucket = new TokenBucket( 10, 1, 0 );
+
+        // the burst is available at once
+        assertEquals( 0, bucket.reserve( 10, 0 ) );
+
+        // then one permit every 100 ms
+        assertEquals( SECOND / 10, bucket.reserve( 1, 0 ) );
+        assertEquals( 0, bucket.reserve( 1, SECOND / 5 ) );
+
+        // the bucket does not hold more than its capacity
+        assertEquals( SECOND / 10, bucket.reserve( 11, 10 * SECOND ) );
+    }
+
+    /**
+     * test an acquisition larger than the capacity
+     */
+    public void testLargeReserve( )
+    {
+        TokenBucket bucket = new TokenBucket( 100, 1, 0 );
+
+        // the missing permits are waited for
+        assertEquals( 9 * SECOND, bucket.reserve( 1000, 0 ) );
+        assertEquals( 9 * SECOND + SECOND / 100, bucket.reserve( 1, 0 ) );
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.nio.ByteBuffer;
+
+import fr.paris.lutece.plugins.filestoragetransfer.service.metrics.BufferPoolMetrics;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test of the TransferBufferPool class
+ */
+public class TransferBufferPoolTest extends LuteceTestCase
+{
+    private static final int PAGE_SIZE = 4096;
+    private static final int MAX_BUFFER_SIZE = 65536;
+
+    /**
+     * test the size classes
+     */
+    public void testClassSize( )
+    {
+        assertEquals( PAGE_SIZE, TransferBufferPool.getClassSize( 1 ) );
+        assertEquals( PAGE_SIZE, TransferBufferPool.getClassSize( PAGE_SIZE ) );
+        assertEquals( 2 * PAGE_SIZE, TransferBufferPool.getClassSize( PAGE_SIZE + 1 ) );
+        assertEquals( 65536, TransferBufferPool.getClassSize( 65536 ) );
+        assertEquals( 131072, TransferBufferPool.getClassSize( 65537 ) );
+    }
+
+    /**
+     * test the reuse of a released buffer
+     */
+    public void testReuse( )
+    {
+        BufferPoolMetrics metrics = new BufferPoolMetrics( "heap", 1048576 );
+        TransferBufferPool pool = new TransferBufferPool( "heap", false, true, 1048576, MAX_BUFFER_SIZE, false, metrics );
+
+        TransferBuffer buffer = pool.acquire( 10000 );
+        byte [ ] array = buffer.array( );
+        assertEquals( 16384, array.length );
+        assertEquals( 16384, metrics.getInUseBytes( ) );
+        buffer.close( );
+        buffer.close( );
+        assertEquals( 0, metrics.getInUseBytes( ) );
+
+        // same size class
+        try ( TransferBuffer reused = pool.acquire( 9000 ) )
+        {
+            assertTrue( array == reused.array( ) );
+        }
+
+        assertEquals( 1, metrics.getMissCount( ) );
+        assertEquals( 1, metrics.getHitCount( ) );
+        assertEquals( 16384, metrics.getAllocatedBytes( ) );
+    }
+
+    /**
+     * test the buffers allocated out of the pool
+     */
+    public void testUnpooled( )
+    {
+        BufferPoolMetrics metrics = new BufferPoolMetrics( "heap", 2 * PAGE_SIZE );
+        TransferBufferPool pool = new TransferBufferPool( "heap", false, true, 2 * PAGE_SIZE, MAX_BUFFER_SIZE, false, metrics );
+
+        // above the largest size class
+        try ( TransferBuffer buffer = pool.acquire( MAX_BUFFER_SIZE + 1 ) )
+        {
+            assertEquals( MAX_BUFFER_SIZE + 1, buffer.array( ).length );
+        }
+
+        // beyond the maximum memory
+        try ( TransferBuffer first = pool.acquire( PAGE_SIZE ); TransferBuffer second = pool.acquire( PAGE_SIZE );
+                TransferBuffer third = pool.acquire( PAGE_SIZE ) )
+        {
+            assertEquals( 2 * PAGE_SIZE, metrics.getInUseBytes( ) );
+        }
+
+        assertEquals( 2, metrics.getUnpooledCount( ) );
+        assertEquals( 2, metrics.getMissCount( ) );
+        assertEquals( 2 * PAGE_SIZE, metrics.getAllocatedBytes( ) );
+        assertEquals( 0, metrics.getInUseBytes( ) );
+    }
+
+    /**
+     * test the direct buffers
+     */
+    public void testDirect( )
+    {
+        BufferPoolMetrics metrics = new BufferPoolMetrics( "direct", 1048576 );
+        TransferBufferPool pool = new TransferBufferPool( "direct", true, true, 1048576, MAX_BUFFER_SIZE, false, metrics );
+
+        try ( TransferBuffer buffer = pool.acquire( PAGE_SIZE + 1 ) )
+        {
+            ByteBuffer byteBuffer = buffer.getByteBuffer( );
+            assertTrue( byteBuffer.isDirect( ) );
+            assertEquals( 2 * PAGE_SIZE, byteBuffer.capacity( ) );
+            assertEquals( 2 * PAGE_SIZE, byteBuffer.remaining( ) );
+            assertEquals( 0, byteBuffer.alignmentOffset( 0, PAGE_SIZE ) );
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Test of the TransferChecksum class
+ */
+public class TransferChecksumTest extends LuteceTestCase
+{
+    /**
+     * test a message digest computed in several updates
+     */
+    public void testSha256( )
+    {
+        byte [ ] content = "abc".getBytes( StandardCharsets.US_ASCII );
+        TransferChecksum checksum = TransferChecksum.create( "SHA-256" );
+        checksum.update( content, 0, 1 );
+        checksum.update( content, 1, 2 );
+
+        assertEquals( "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", checksum.getValue( ) );
+        assertEquals( "SHA-256:ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", checksum.toString( ) );
+    }
+
+    /**
+     * test CRC32C
+     */
+    public void testCrc32c( )
+    {
+        byte [ ] content = "123456789".getBytes( StandardCharsets.US_ASCII );
+        TransferChecksum checksum = TransferChecksum.create( TransferChecksum.ALGORITHM_CRC32C );
+        checksum.update( content, 0, content.length );
+
+        assertEquals( "e3069283", checksum.getValue( ) );
+    }
+
+    /**
+     * test the disabled checksum
+     */
+    public void testNone( )
+    {
+        assertNull( TransferChecksum.create( TransferChecksum.ALGORITHM_NONE ) );
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test of the TransferMemoryGovernor class
+ */
+public class TransferMemoryGovernorTest extends LuteceTestCase
+{
+    private static final long BUDGET = 100;
+    private static final long TIMEOUT = 50;
+    private static final long NO_BYPASS = 0;
+    private static final long BYPASS = 60000;
+
+    /**
+     * test the reservations within the budget
+     */
+    public void testReserve( ) throws InterruptedException
+    {
+        TransferMemoryGovernor governor = new TransferMemoryGovernor( BUDGET, BYPASS );
+
+        assertEquals( 60, governor.reserve( 60, TIMEOUT ) );
+        assertEquals( -1, governor.reserve( 60, TIMEOUT ) );
+        assertEquals( 0, governor.getWaitingCount( ) );
+        assertEquals( 0, governor.reserve( 0, TIMEOUT ) );
+
+        governor.releaseBytes( 60 );
+        assertEquals( 60, governor.reserve( 60, TIMEOUT ) );
+        governor.releaseBytes( 60 );
+
+        // a file larger than the budget runs alone
+        assertEquals( BUDGET, governor.reserve( 1000, TIMEOUT ) );
+        assertEquals( BUDGET, governor.getInFlightBytes( ) );
+        governor.releaseBytes( BUDGET );
+        assertEquals( 0, governor.getInFlightBytes( ) );
+    }
+
+    /**
+     * test a small file overtaking a waiting large one
+     */
+    public void testBypass( ) throws InterruptedException
+    {
+        TransferMemoryGovernor governor = new TransferMemoryGovernor( BUDGET, BYPASS );
+        long lHeld = governor.reserve( 80, TIMEOUT );
+        AtomicLong lLarge = new AtomicLong( );
+        Thread thread = startReservation( governor, 50, lLarge );
+
+        assertEquals( 20, governor.reserve( 20, TIMEOUT ) );
+
+        governor.releaseBytes( lHeld );
+        governor.releaseBytes( 20 );
+        thread.join( );
+        assertEquals( 50, lLarge.get( ) );
+    }
+
+    /**
+     * test a large file waiting beyond the bypass time holding the next ones
+     */
+    public void testNoBypass( ) throws InterruptedException
+    {
+        TransferMemoryGovernor governor = new TransferMemoryGovernor( BUDGET, NO_BYPASS );
+        long lHeld = governor.reserve( 80, TIMEOUT );
+        AtomicLong lLarge = new AtomicLong( );
+        Thread thread = startReservation( governor, 50, lLarge );
+
+        assertEquals( -1, governor.reserve( 20, TIMEOUT ) );
+
+        governor.releaseBytes( lHeld );
+        thread.join( );
+        assertEquals( 50, lLarge.get( ) );
+    }
+
+    /**
+     * Start a reservation in another thread and wait for it to be queued
+     * 
+     * @param governor
+     *            the governor
+     * @param lBytes
+     *            the bytes to reserve
+     * @param lResult
+     *            the result of the reservation
+     * @return the thread
+     */
+    private static Thread startReservation( TransferMemoryGovernor governor, long lBytes, AtomicLong lResult ) throws InterruptedException
+    {
+        Thread thread = new Thread( ( ) -> {
+            try
+            {
+                lResult.set( governor.reserve( lBytes, BYPASS ) );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+            }
+        } );
+        thread.start( );
+
+        while ( governor.getWaitingCount( ) == 0 )
+        {
+            Thread.sleep( 1 );
+        }
+
+        return thread;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test of the TransferWorkerPool class
+ */
+public class TransferWorkerPoolTest extends LuteceTestCase
+{
+    private static final int CONCURRENCY = 3;
+    private static final int TASKS = 20;
+
+    /**
+     * test the bound of the concurrent tasks, with platform and virtual threads
+     */
+    public void testConcurrency( ) throws InterruptedException
+    {
+        checkConcurrency( false );
+        checkConcurrency( true );
+    }
+
+    /**
+     * test a failing task not preventing the other tasks from running
+     */
+    public void testFailure( ) throws InterruptedException
+    {
+        AtomicInteger nRun = new AtomicInteger( );
+        List<Runnable> listTasks = new ArrayList<>( );
+
+        for ( int i = 0; i < TASKS; i++ )
+        {
+            int nTask = i;
+            listTasks.add( ( ) -> {
+                nRun.incrementAndGet( );
+                if ( nTask % 2 == 0 )
+                {
+                    throw new IllegalStateException( "failure of task " + nTask );
+                }
+            } );
+        }
+
+        try ( TransferWorkerPool pool = new TransferWorkerPool( CONCURRENCY, false ) )
+        {
+            pool.runAll( listTasks );
+        }
+
+        assertEquals( TASKS, nRun.get( ) );
+    }
+
+    /**
+     * test the slots acquired before the submission of tasks, and released at their end
+     */
+    public void testSlots( ) throws Exception
+    {
+        AtomicInteger nRun = new AtomicInteger( );
+
+        try ( TransferWorkerPool pool = new TransferWorkerPool( CONCURRENCY, false ) )
+        {
+            assertEquals( CONCURRENCY, pool.acquireSlots( TASKS ) );
+            pool.releaseSlots( CONCURRENCY - 1 );
+            assertEquals( CONCURRENCY - 1, pool.acquireSlots( TASKS ) );
+
+            // every slot is acquired : the slot of the task is free again once it has ended
+            pool.submit( nRun::incrementAndGet ).get( );
+            assertEquals( 1, pool.acquireSlots( TASKS ) );
+        }
+
+        assertEquals( 1, nRun.get( ) );
+    }
+
+    /**
+     * Run tasks and check that no more than the concurrency run at the same time
+     * 
+     * @param bUseVirtualThreads
+     *            true to use virtual threads if the JVM supports them
+     */
+    private static void checkConcurrency( boolean bUseVirtualThreads ) throws InterruptedException
+    {
+        AtomicInteger nRunning = new AtomicInteger( );
+        AtomicInteger nMaxRunning = new AtomicInteger( );
+        AtomicInteger nRun = new AtomicInteger( );
+        List<Runnable> listTasks = new ArrayList<>( );
+
+        for ( int i = 0; i < TASKS; i++ )
+        {
+            listTasks.add( ( ) -> {
+                nMaxRunning.accumulateAndGet( nRunning.incrementAndGet( ), Math::max );
+                try
+                {
+                    Thread.sleep( 5 );
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread( ).interrupt( );
+                }
+                nRunning.decrementAndGet( );
+                nRun.incrementAndGet( );
+            } );
+        }
+
+        try ( TransferWorkerPool pool = new TransferWorkerPool( CONCURRENCY, bUseVirtualThreads ) )
+        {
+            if ( !bUseVirtualThreads )
+            {
+                assertFalse( pool.isVirtualThreads( ) );
+            }
+            pool.runAll( listTasks );
+        }
+
+        // runAll returns once every task has ended
+        assertEquals( TASKS, nRun.get( ) );
+        assertTrue( nMaxRunning.get( ) <= CONCURRENCY );
+        assertTrue( nMaxRunning.get( ) > 1 );
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.filestoragetransfer.service.metrics;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test of the transfer metrics
+ */
+public class TransferMetricsTest extends LuteceTestCase
+{
+    private static final long MILLISECOND = 1000000L;
+
+    /**
+     * test the buckets and the quantiles of the histogram
+     */
+    public void testLatencyHistogram( )
+    {
+        LatencyHistogram histogram = new LatencyHistogram( );
+        assertEquals( 0d, histogram.getQuantileSeconds( 0.5 ), 0d );
+
+        // 9 latencies of 3 ms and one of 2 s
+        for ( int i = 0; i < 9; i++ )
+        {
+            histogram.record( 3 * MILLISECOND );
+        }
+        histogram.record( 2000 * MILLISECOND );
+
+        assertEquals( 10, histogram.getCount( ) );
+        assertEquals( 2.027, histogram.getSumSeconds( ), 1e-9 );
+        assertEquals( 0.005, histogram.getQuantileSeconds( 0.9 ), 0d );
+        assertEquals( 2.5, histogram.getQuantileSeconds( 0.95 ), 0d );
+
+        long [ ] counts = histogram.getCumulativeCounts( );
+        assertEquals( LatencyHistogram.getBounds( ).length + 1, counts.length );
+        assertEquals( 0, counts [0] );
+        assertEquals( 9, counts [1] );
+        assertEquals( 10, counts [counts.length - 1] );
+    }
+
+    /**
+     * test the stages and the bytes recorded by a timer
+     * 
+     * @throws IOException
+     *             if the stream cannot be read
+     */
+    public void testTransferTimer( ) throws IOException
+    {
+        ProviderPairMetrics metrics = new ProviderPairMetrics( "source", "target" );
+        TransferTimer timer = new TransferTimer( metrics );
+        assertEquals( 1, metrics.getInFlight( ) );
+
+        try ( InputStream inputStream = timer.wrap( new ByteArrayInputStream( new byte [ 1000] ) ) )
+        {
+            while ( inputStream.read( new byte [ 300] ) != -1 )
+            {
+                // read the whole stream
+            }
+        }
+        timer.record( TransferStage.SOURCE_DELETE, System.nanoTime( ) - MILLISECOND );
+        timer.stop( true );
+        timer.stop( false );
+
+        assertEquals( 0, metrics.getInFlight( ) );
+        assertEquals( 1, metrics.getSuccessCount( ) );
+        assertEquals( 0, metrics.getFailureCount( ) );
+        assertEquals( 1000, metrics.getBytesTransferred( ) );
+        assertEquals( 1, metrics.getLatency( TransferStage.SOURCE_READ ).getCount( ) );
+        assertEquals( 1, metrics.getLatency( TransferStage.SOURCE_DELETE ).getCount( ) );
+        assertEquals( 1, metrics.getLatency( TransferStage.TOTAL ).getCount( ) );
+        assertEquals( 0, metrics.getLatency( TransferStage.TARGET_WRITE ).getCount( ) );
+    }
+
+    /**
+     * test the Prometheus text format
+     */
+    public void testPrometheusFormat( )
+    {
+        ProviderPairMetrics metrics = new ProviderPairMetrics( "source \"a\"", "target" );
+        TransferTimer timer = new TransferTimer( metrics );
+        timer.addBytes( 42 );
+        timer.stop( false );
+
+        String strText = PrometheusTextFormatter.format( List.of( metrics ) );
+
+        assertTrue( strText.contains( "# TYPE filestoragetransfer_stage_duration_seconds histogram\n" ) );
+        assertTrue( strText.contains( "filestoragetransfer_stage_duration_seconds_bucket{source=\"source \\\"a\\\"\",target=\"target\",stage=\"total\",le=\"+Inf\"} 1\n" ) );
+        assertTrue( strText.contains( "filestoragetransfer_transferred_bytes_total{source=\"source \\\"a\\\"\",target=\"target\"} 42\n" ) );
+        assertTrue( strText.contains( "filestoragetransfer_transfers_total{source=\"source \\\"a\\\"\",target=\"target\",outcome=\"failure\"} 1\n" ) );
+        assertTrue( strText.contains( "filestoragetransfer_transfers_in_flight{source=\"source \\\"a\\\"\",target=\"target\"} 0\n" ) );
+    }
+}